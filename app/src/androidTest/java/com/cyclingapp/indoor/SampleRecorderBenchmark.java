@@ -0,0 +1,114 @@
+package com.cyclingapp.indoor;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Écriture des échantillons sur l'appareil : une minute de session (60
+ * échantillons) par itération, en blocs compressés dans une transaction
+ * (chemin de SampleRecorder) contre un db.insert par échantillon.
+ * Lancement : ./gradlew :app:connectedAndroidTest
+ */
+@RunWith(AndroidJUnit4.class)
+public class SampleRecorderBenchmark {
+    
+    // Base à part, supprimée à la fin : celle de l'utilisateur n'est pas touchée
+    private static final String CHUNK_DATABASE = "bench_chunks.db";
+    private static final long BENCH_SESSION_ID = 1;
+    private static final int MINUTE = SampleChunkCodec.CHUNK_SECONDS;
+    
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+    
+    private Context context;
+    private SessionDatabaseHelper helper;
+    private SampleBuffer minute;
+    private File rowDatabaseFile;
+    private SQLiteDatabase rowDatabase;
+    
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(CHUNK_DATABASE);
+        helper = new SessionDatabaseHelper(context, CHUNK_DATABASE);
+        minute = new SampleBuffer(MINUTE);
+        for (int second = 0; second < MINUTE; second++) {
+            minute.add(second, 240 + second % 7 * 5, 88 + second % 3, 33.5f + second % 5 * 0.1f, 150 + second / 20);
+        }
+        
+        // Ancien schéma (version 6) dans une base à part : une ligne par seconde
+        rowDatabaseFile = new File(context.getCacheDir(), "bench_rows.db");
+        SQLiteDatabase.deleteDatabase(rowDatabaseFile);
+        rowDatabase = SQLiteDatabase.openOrCreateDatabase(rowDatabaseFile, null);
+        rowDatabase.enableWriteAheadLogging();
+        rowDatabase.execSQL("CREATE TABLE session_samples (session_id INTEGER NOT NULL, t INTEGER NOT NULL, " +
+            "power INTEGER, cadence INTEGER, speed REAL, heart_rate INTEGER, PRIMARY KEY (session_id, t))");
+    }
+    
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(CHUNK_DATABASE);
+        rowDatabase.close();
+        SQLiteDatabase.deleteDatabase(rowDatabaseFile);
+    }
+    
+    @Test
+    public void chunkedBatchWrite() {
+        BenchmarkState state = benchmarkRule.getState();
+        int index = 0;
+        while (state.keepRunning()) {
+            // Encodage compris, comme au flush de l'enregistreur
+            List<SampleChunk> chunks = SampleChunk.split(minute);
+            helper.writeChunks(BENCH_SESSION_ID, chunks);
+            state.pauseTiming();
+            // Bloc suivant : la table grossit comme pendant une vraie session
+            shift(++index);
+            state.resumeTiming();
+        }
+    }
+    
+    @Test
+    public void rowPerSampleInsert() {
+        BenchmarkState state = benchmarkRule.getState();
+        ContentValues values = new ContentValues();
+        int offset = 0;
+        while (state.keepRunning()) {
+            for (int i = 0; i < MINUTE; i++) {
+                values.put("session_id", BENCH_SESSION_ID);
+                values.put("t", offset + i);
+                values.put("power", minute.getPower(i));
+                values.put("cadence", minute.getCadence(i));
+                values.put("speed", minute.getSpeed(i));
+                values.put("heart_rate", minute.getHeartRate(i));
+                rowDatabase.insert("session_samples", null, values);
+            }
+            offset += MINUTE;
+        }
+    }
+    
+    // Décale la minute de référence au bloc d'indice donné
+    private void shift(int index) {
+        SampleBuffer next = new SampleBuffer(MINUTE);
+        for (int i = 0; i < MINUTE; i++) {
+            next.add(index * MINUTE + i, minute.getPower(i), minute.getCadence(i),
+                minute.getSpeed(i), minute.getHeartRate(i));
+        }
+        minute = next;
+    }
+}
@@ -0,0 +1,269 @@
+package com.cyclingapp.indoor;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Accès aux sessions sur l'appareil : connexion partagée et requêtes
+ * compilées de SessionDatabaseHelper contre l'ancien chemin (ouverture de la
+ * base, ContentValues, fermeture à chaque appel), pour la création, la mise à
+ * jour, la suppression, une page de l'historique et le comptage. Les deux
+ * côtés travaillent sur des bases à part, supprimées ensuite.
+ * Lancement : ./gradlew :app:connectedAndroidTest
+ */
+@RunWith(AndroidJUnit4.class)
+public class SessionDatabaseHelperBenchmark {
+    
+    private static final String SHARED_DATABASE = "bench_cycling_sessions.db";
+    // Sessions présentes pendant la lecture de l'historique, dont une page est lue
+    private static final int HISTORY_ROWS = 200;
+    private static final int PAGE_SIZE = 20;
+    
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+    
+    private Context context;
+    private SessionDatabaseHelper helper;
+    private Session session;
+    private File openPerCallFile;
+    
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(SHARED_DATABASE);
+        helper = new SessionDatabaseHelper(context, SHARED_DATABASE);
+        session = new Session();
+        session.setStartTime(0);
+        session.setEndTime(3600000);
+        session.setDistance(32.4);
+        session.setCalories(812);
+        session.setAvgSpeed(32.4);
+        session.setAvgPower(226);
+        session.setUserWeight(75);
+        session.setNormalizedPower(241);
+        session.setIntensityFactor(0.96);
+        session.setTrainingStressScore(92.5);
+        session.setMeanMaxCurve("5:612,15:488,30:402,60:351,300:288,1200:259,3600:226");
+        session.setPowerZones("312,604,1288,910,402,76,8");
+        session.setCadenceZones("120,480,2210,790");
+        session.setHeartRateZones("240,1110,1620,560,70");
+        session.setId(helper.saveSession(session));
+        
+        // Même ligne dans une base à part, rouverte à chaque appel comme avant la connexion partagée
+        openPerCallFile = new File(context.getCacheDir(), "bench_sessions.db");
+        SQLiteDatabase.deleteDatabase(openPerCallFile);
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(openPerCallFile, null);
+        db.execSQL("CREATE TABLE sessions (id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+            "start_time INTEGER NOT NULL, end_time INTEGER NOT NULL, distance REAL NOT NULL, " +
+            "calories REAL NOT NULL, avg_speed REAL NOT NULL, avg_power REAL NOT NULL, " +
+            "user_weight INTEGER NOT NULL, np REAL NOT NULL DEFAULT 0, " +
+            "intensity_factor REAL NOT NULL DEFAULT 0, tss REAL NOT NULL DEFAULT 0, " +
+            "mean_max TEXT NOT NULL DEFAULT '', power_zones TEXT NOT NULL DEFAULT '', " +
+            "cadence_zones TEXT NOT NULL DEFAULT '', hr_zones TEXT NOT NULL DEFAULT '', " +
+            "w_prime_balance BLOB)");
+        db.execSQL("CREATE TABLE session_chunks (session_id INTEGER NOT NULL, " +
+            "chunk_index INTEGER NOT NULL, sample_count INTEGER NOT NULL, data BLOB NOT NULL, " +
+            "PRIMARY KEY (session_id, chunk_index)) WITHOUT ROWID");
+        db.execSQL("CREATE INDEX idx_sessions_start_time ON sessions (start_time)");
+        db.insert("sessions", null, toValues(session));
+        
+        // Historique identique des deux côtés : une session par jour
+        Session past = copyOf(session);
+        for (int i = 1; i <= HISTORY_ROWS; i++) {
+            past.setStartTime(i * 86400000L);
+            past.setEndTime(past.getStartTime() + 3600000);
+            helper.saveSession(past);
+            db.insert("sessions", null, toValues(past));
+        }
+        db.close();
+    }
+    
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(SHARED_DATABASE);
+        SQLiteDatabase.deleteDatabase(openPerCallFile);
+    }
+    
+    @Test
+    public void sharedConnectionInsert() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            helper.saveSession(session);
+        }
+    }
+    
+    @Test
+    public void openPerCallInsert() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(openPerCallFile, null);
+            db.insert("sessions", null, toValues(session));
+            db.close();
+        }
+    }
+    
+    @Test
+    public void sharedConnectionUpdate() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            helper.updateSession(session);
+        }
+    }
+    
+    @Test
+    public void openPerCallUpdate() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(openPerCallFile, null);
+            db.update("sessions", toValues(session), "id = ?", new String[]{"1"});
+            db.close();
+        }
+    }
+    
+    @Test
+    public void sharedConnectionDelete() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            // Ligne à supprimer créée hors mesure
+            state.pauseTiming();
+            long id = helper.saveSession(session);
+            state.resumeTiming();
+            helper.deleteSession(id);
+        }
+    }
+    
+    @Test
+    public void openPerCallDelete() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            SQLiteDatabase setup = SQLiteDatabase.openOrCreateDatabase(openPerCallFile, null);
+            String id = String.valueOf(setup.insert("sessions", null, toValues(session)));
+            setup.close();
+            state.resumeTiming();
+            // Session et échantillons, comme SessionDatabaseHelper.deleteSession
+            SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(openPerCallFile, null);
+            db.beginTransaction();
+            try {
+                db.delete("sessions", "id = ?", new String[]{id});
+                db.delete("session_chunks", "session_id = ?", new String[]{id});
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            db.close();
+        }
+    }
+    
+    @Test
+    public void sharedConnectionHistoryPage() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            helper.getSessionsBefore(Long.MAX_VALUE, Long.MAX_VALUE, PAGE_SIZE);
+        }
+    }
+    
+    @Test
+    public void openPerCallHistoryPage() {
+        BenchmarkState state = benchmarkRule.getState();
+        String max = String.valueOf(Long.MAX_VALUE);
+        while (state.keepRunning()) {
+            // Même requête par clé, colonnes résolues à chaque ligne comme l'ancien getAllSessions
+            SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(openPerCallFile, null);
+            Cursor cursor = db.rawQuery("SELECT * FROM sessions WHERE start_time <= ? AND " +
+                "(start_time < ? OR id < ?) ORDER BY start_time DESC, id DESC LIMIT ?",
+                new String[]{max, max, max, String.valueOf(PAGE_SIZE)});
+            List<Session> sessions = new ArrayList<>();
+            while (cursor.moveToNext()) {
+                sessions.add(new Session(
+                    cursor.getLong(cursor.getColumnIndexOrThrow("id")),
+                    cursor.getLong(cursor.getColumnIndexOrThrow("start_time")),
+                    cursor.getLong(cursor.getColumnIndexOrThrow("end_time")),
+                    cursor.getDouble(cursor.getColumnIndexOrThrow("distance")),
+                    cursor.getDouble(cursor.getColumnIndexOrThrow("calories")),
+                    cursor.getDouble(cursor.getColumnIndexOrThrow("avg_speed")),
+                    cursor.getDouble(cursor.getColumnIndexOrThrow("avg_power")),
+                    cursor.getInt(cursor.getColumnIndexOrThrow("user_weight"))));
+            }
+            cursor.close();
+            db.close();
+        }
+    }
+    
+    @Test
+    public void sharedConnectionCount() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            helper.getSessionCount();
+        }
+    }
+    
+    @Test
+    public void openPerCallCount() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(openPerCallFile, null);
+            Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM sessions", null);
+            cursor.moveToFirst();
+            cursor.getInt(0);
+            cursor.close();
+            db.close();
+        }
+    }
+    
+    private static Session copyOf(Session session) {
+        Session copy = new Session();
+        copy.setDistance(session.getDistance());
+        copy.setCalories(session.getCalories());
+        copy.setAvgSpeed(session.getAvgSpeed());
+        copy.setAvgPower(session.getAvgPower());
+        copy.setUserWeight(session.getUserWeight());
+        copy.setNormalizedPower(session.getNormalizedPower());
+        copy.setIntensityFactor(session.getIntensityFactor());
+        copy.setTrainingStressScore(session.getTrainingStressScore());
+        copy.setMeanMaxCurve(session.getMeanMaxCurve());
+        copy.setPowerZones(session.getPowerZones());
+        copy.setCadenceZones(session.getCadenceZones());
+        copy.setHeartRateZones(session.getHeartRateZones());
+        return copy;
+    }
+    
+    // Valeurs construites à chaque enregistrement, comme l'ancien SessionDatabaseHelper.toValues
+    private static ContentValues toValues(Session session) {
+        ContentValues values = new ContentValues();
+        values.put("start_time", session.getStartTime());
+        values.put("end_time", session.getEndTime());
+        values.put("distance", session.getDistance());
+        values.put("calories", session.getCalories());
+        values.put("avg_speed", session.getAvgSpeed());
+        values.put("avg_power", session.getAvgPower());
+        values.put("user_weight", session.getUserWeight());
+        values.put("np", session.getNormalizedPower());
+        values.put("intensity_factor", session.getIntensityFactor());
+        values.put("tss", session.getTrainingStressScore());
+        values.put("mean_max", session.getMeanMaxCurve());
+        values.put("power_zones", session.getPowerZones());
+        values.put("cadence_zones", session.getCadenceZones());
+        values.put("hr_zones", session.getHeartRateZones());
+        values.put("w_prime_balance", session.getWPrimeBalanceSeries());
+        return values;
+    }
+}
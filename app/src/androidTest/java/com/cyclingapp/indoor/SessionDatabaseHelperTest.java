@@ -0,0 +1,161 @@
+package com.cyclingapp.indoor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Pages de l'historique par clé (start_time, id) sur une base à part.
+ * Les sessions commencent par groupes de quatre à la même heure, insérées
+ * dans le désordre : les égalités chevauchent les limites de page.
+ * Lancement : ./gradlew :app:connectedAndroidTest
+ */
+@RunWith(AndroidJUnit4.class)
+public class SessionDatabaseHelperTest {
+    
+    private static final String DATABASE = "test_sessions.db";
+    private static final int SESSION_COUNT = 100;
+    private static final int TIES = 4;
+    private static final int PAGE = 7;
+    
+    private Context context;
+    private SessionDatabaseHelper helper;
+    // Ordre attendu de l'historique : start_time puis id décroissants
+    private List<Session> expected;
+    
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DATABASE);
+        helper = new SessionDatabaseHelper(context, DATABASE);
+        
+        List<Long> startTimes = new ArrayList<>();
+        for (int i = 0; i < SESSION_COUNT; i++) {
+            startTimes.add(1000000L + 60000L * (i / TIES));
+        }
+        Collections.shuffle(startTimes, new Random(25));
+        expected = new ArrayList<>();
+        for (long startTime : startTimes) {
+            Session session = session(startTime);
+            session.setId(helper.saveSession(session));
+            expected.add(session);
+        }
+        Collections.sort(expected, (a, b) -> a.getStartTime() != b.getStartTime()
+            ? Long.compare(b.getStartTime(), a.getStartTime()) : Long.compare(b.getId(), a.getId()));
+    }
+    
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(DATABASE);
+    }
+    
+    @Test
+    public void olderPagesWalkTheWholeHistoryInOrder() {
+        List<Session> walked = new ArrayList<>();
+        List<Session> page = helper.getSessionsBefore(Long.MAX_VALUE, Long.MAX_VALUE, PAGE);
+        while (!page.isEmpty()) {
+            assertTrue(page.size() <= PAGE);
+            walked.addAll(page);
+            Session last = page.get(page.size() - 1);
+            page = helper.getSessionsBefore(last.getStartTime(), last.getId(), PAGE);
+        }
+        assertEquals(ids(expected), ids(walked));
+    }
+    
+    @Test
+    public void newerPagesComeBackInHistoryOrder() {
+        Session oldest = expected.get(expected.size() - 1);
+        int end = expected.size() - 1;
+        List<Session> page = helper.getSessionsAfter(oldest.getStartTime(), oldest.getId(), PAGE);
+        while (!page.isEmpty()) {
+            // Les sessions juste plus récentes que la clé, de la plus récente à la plus ancienne
+            assertEquals(ids(expected.subList(Math.max(0, end - PAGE), end)), ids(page));
+            end -= page.size();
+            page = helper.getSessionsAfter(page.get(0).getStartTime(), page.get(0).getId(), PAGE);
+        }
+        assertEquals(0, end);
+    }
+    
+    @Test
+    public void keyInsideTiesExcludesItselfAndSplitsById() {
+        // Deuxième session d'un groupe de même heure
+        int index = 2 * TIES + 1;
+        Session key = expected.get(index);
+        assertEquals(key.getStartTime(), expected.get(index - 1).getStartTime());
+        assertEquals(key.getStartTime(), expected.get(index + 1).getStartTime());
+        
+        assertEquals(ids(expected.subList(index + 1, index + 1 + PAGE)),
+            ids(helper.getSessionsBefore(key.getStartTime(), key.getId(), PAGE)));
+        assertEquals(ids(expected.subList(index - PAGE, index)),
+            ids(helper.getSessionsAfter(key.getStartTime(), key.getId(), PAGE)));
+    }
+    
+    @Test
+    public void walkContinuesFromADeletedKey() {
+        List<Session> first = helper.getSessionsBefore(Long.MAX_VALUE, Long.MAX_VALUE, PAGE);
+        Session last = first.get(first.size() - 1);
+        helper.deleteSession(last.getId());
+        // La clé n'a pas besoin d'exister : la page suivante reprend juste après
+        assertEquals(ids(expected.subList(PAGE, 2 * PAGE)),
+            ids(helper.getSessionsBefore(last.getStartTime(), last.getId(), PAGE)));
+        
+        Session key = expected.get(2 * PAGE);
+        for (Session session : expected.subList(PAGE - 3, 2 * PAGE)) {
+            helper.deleteSession(session.getId());
+        }
+        assertEquals(ids(expected.subList(0, PAGE - 3)),
+            ids(helper.getSessionsAfter(key.getStartTime(), key.getId(), PAGE)));
+    }
+    
+    @Test
+    public void sessionInProgressIsHiddenUntilSaved() {
+        // Ligne créée au démarrage d'une session, la plus récente de l'historique
+        Session running = session(Long.MAX_VALUE / 2);
+        running.setEndTime(running.getStartTime());
+        running.setId(helper.saveSession(running));
+        
+        assertEquals(ids(expected.subList(0, PAGE)),
+            ids(helper.getSessionsBefore(Long.MAX_VALUE, Long.MAX_VALUE, PAGE)));
+        Session newest = expected.get(0);
+        assertTrue(helper.getSessionsAfter(newest.getStartTime(), newest.getId(), PAGE).isEmpty());
+        assertFalse(ids(helper.getAllSessions()).contains(running.getId()));
+        
+        // Enregistrement final : la session apparaît en tête
+        running.setEndTime(running.getStartTime() + 3600000);
+        assertTrue(helper.updateSession(running));
+        assertEquals(running.getId(), helper.getSessionsBefore(Long.MAX_VALUE, Long.MAX_VALUE, PAGE).get(0).getId());
+    }
+    
+    private static Session session(long startTime) {
+        Session session = new Session();
+        session.setStartTime(startTime);
+        session.setEndTime(startTime + 3600000);
+        session.setDistance(30.0);
+        session.setUserWeight(75);
+        return session;
+    }
+    
+    private static List<Long> ids(List<Session> sessions) {
+        List<Long> ids = new ArrayList<>();
+        for (Session session : sessions) {
+            ids.add(session.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,225 @@
+package com.cyclingapp.indoor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Fenêtre de l'historique sur une base à part, dans une vraie RecyclerView :
+ * chargement au défilement, fenêtre bornée aux deux bouts et complétée après
+ * des suppressions. La liste remplace le contenu de SessionHistoryActivity.
+ * Lancement : ./gradlew :app:connectedAndroidTest
+ */
+@RunWith(AndroidJUnit4.class)
+public class SessionPageLoaderTest {
+    
+    private static final String DATABASE = "test_history.db";
+    // Plus que la fenêtre : le défilement doit en oublier une partie
+    private static final int SESSION_COUNT = SessionPageLoader.MAX_WINDOW + 50;
+    private static final int TIES = 4;
+    private static final long TIMEOUT_MS = 10000;
+    // Vérifications successives sans changement avant de considérer le chargement terminé
+    private static final int STABLE_CHECKS = 3;
+    
+    private Context context;
+    private SessionDatabaseHelper helper;
+    private SessionRepository repository;
+    // Identifiants dans l'ordre de l'historique
+    private List<Long> expected;
+    
+    private ActivityScenario<SessionHistoryActivity> scenario;
+    private RecyclerView recyclerView;
+    private SessionHistoryAdapter adapter;
+    private SessionPageLoader loader;
+    
+    @Before
+    public void setUp() throws Exception {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DATABASE);
+        helper = new SessionDatabaseHelper(context, DATABASE);
+        repository = new SessionRepository(helper);
+        
+        List<Long> startTimes = new ArrayList<>();
+        for (int i = 0; i < SESSION_COUNT; i++) {
+            startTimes.add(1000000L + 60000L * (i / TIES));
+        }
+        Collections.shuffle(startTimes, new Random(25));
+        List<Session> sessions = new ArrayList<>();
+        for (long startTime : startTimes) {
+            Session session = new Session();
+            session.setStartTime(startTime);
+            session.setEndTime(startTime + 3600000);
+            session.setUserWeight(75);
+            session.setId(helper.saveSession(session));
+            sessions.add(session);
+        }
+        Collections.sort(sessions, (a, b) -> a.getStartTime() != b.getStartTime()
+            ? Long.compare(b.getStartTime(), a.getStartTime()) : Long.compare(b.getId(), a.getId()));
+        expected = new ArrayList<>();
+        for (Session session : sessions) {
+            expected.add(session.getId());
+        }
+        
+        scenario = ActivityScenario.launch(SessionHistoryActivity.class);
+        scenario.onActivity(activity -> {
+            recyclerView = new RecyclerView(activity);
+            LinearLayoutManager layoutManager = new LinearLayoutManager(activity);
+            recyclerView.setLayoutManager(layoutManager);
+            adapter = new SessionHistoryAdapter(new ArrayList<>(), null);
+            recyclerView.setAdapter(adapter);
+            activity.setContentView(recyclerView);
+            loader = new SessionPageLoader(repository, this, adapter, () -> { });
+            loader.attach(recyclerView, layoutManager);
+            loader.reload();
+        });
+        awaitLoaded();
+    }
+    
+    @After
+    public void tearDown() {
+        scenario.onActivity(activity -> repository.cancelAll(this));
+        scenario.close();
+        helper.close();
+        context.deleteDatabase(DATABASE);
+    }
+    
+    @Test
+    public void openingShowsTheNewestSessions() {
+        List<Long> window = window();
+        assertTrue(window.size() >= SessionPageLoader.PAGE_SIZE);
+        assertEquals(expected.subList(0, window.size()), window);
+    }
+    
+    @Test
+    public void scrollingTrimsTheWindowAtBothEnds() throws Exception {
+        Long oldest = expected.get(expected.size() - 1);
+        List<Long> window = window();
+        for (int i = 0; i < SESSION_COUNT && !last(window).equals(oldest); i++) {
+            scenario.onActivity(activity -> recyclerView.scrollToPosition(adapter.getItemCount() - 1));
+            awaitLoaded();
+            window = window();
+            assertTrue(window.size() <= SessionPageLoader.MAX_WINDOW);
+            assertContiguous(expected, window);
+        }
+        assertEquals(oldest, last(window));
+        // Les plus récentes ont été oubliées
+        assertEquals(SessionPageLoader.MAX_WINDOW, window.size());
+        
+        Long newest = expected.get(0);
+        for (int i = 0; i < SESSION_COUNT && !window.get(0).equals(newest); i++) {
+            scenario.onActivity(activity -> recyclerView.scrollToPosition(0));
+            awaitLoaded();
+            window = window();
+            assertTrue(window.size() <= SessionPageLoader.MAX_WINDOW);
+            assertContiguous(expected, window);
+        }
+        assertEquals(newest, window.get(0));
+    }
+    
+    @Test
+    public void deletedSessionsAreReplacedByOlderOnes() throws Exception {
+        int before = window().size();
+        List<Long> remaining = new ArrayList<>(expected);
+        deleteFromWindow(0, before - 5, remaining);
+        
+        awaitLoaded();
+        List<Long> window = window();
+        // Cinq sessions restantes : la page suivante est chargée à la suite
+        assertTrue(window.size() > 5);
+        assertEquals(remaining.subList(0, window.size()), window);
+    }
+    
+    @Test
+    public void emptiedWindowReloadsFromTheNewest() throws Exception {
+        Long oldest = expected.get(expected.size() - 1);
+        for (int i = 0; i < SESSION_COUNT && !last(window()).equals(oldest); i++) {
+            scenario.onActivity(activity -> recyclerView.scrollToPosition(adapter.getItemCount() - 1));
+            awaitLoaded();
+        }
+        List<Long> remaining = new ArrayList<>(expected);
+        deleteFromWindow(0, window().size(), remaining);
+        
+        awaitLoaded();
+        List<Long> window = window();
+        assertFalse(window.isEmpty());
+        assertEquals(remaining.subList(0, window.size()), window);
+    }
+    
+    // Supprime les sessions [from, to) de la fenêtre, comme l'écran d'historique
+    private void deleteFromWindow(int from, int to, List<Long> remaining) {
+        List<Session> deleted = new ArrayList<>();
+        scenario.onActivity(activity -> {
+            for (int i = from; i < to; i++) {
+                deleted.add(adapter.getItem(i));
+            }
+        });
+        for (Session session : deleted) {
+            helper.deleteSession(session.getId());
+            remaining.remove(Long.valueOf(session.getId()));
+        }
+        scenario.onActivity(activity -> {
+            for (Session session : deleted) {
+                loader.remove(session);
+            }
+        });
+    }
+    
+    // Attend qu'aucune page ne soit en lecture et que la fenêtre ne change plus
+    // (un défilement ou une mise en page peut encore lancer la page suivante)
+    private void awaitLoaded() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        List<Long> previous = null;
+        int stable = 0;
+        while (stable < STABLE_CHECKS) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Chargement jamais terminé");
+            }
+            InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+            boolean[] loading = new boolean[1];
+            scenario.onActivity(activity -> loading[0] = loader.isLoading());
+            List<Long> window = window();
+            stable = !loading[0] && window.equals(previous) ? stable + 1 : 0;
+            previous = window;
+            Thread.sleep(20);
+        }
+    }
+    
+    private List<Long> window() {
+        List<Long> ids = new ArrayList<>();
+        scenario.onActivity(activity -> {
+            for (int i = 0; i < adapter.getItemCount(); i++) {
+                ids.add(adapter.getItem(i).getId());
+            }
+        });
+        return ids;
+    }
+    
+    // La fenêtre est une suite de l'historique, sans trou ni doublon
+    private static void assertContiguous(List<Long> history, List<Long> window) {
+        int start = history.indexOf(window.get(0));
+        assertTrue(start >= 0 && start + window.size() <= history.size());
+        assertEquals(history.subList(start, start + window.size()), window);
+    }
+    
+    private static Long last(List<Long> window) {
+        return window.get(window.size() - 1);
+    }
+}
@@ -0,0 +1,180 @@
+package com.cyclingapp.indoor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SessionRepository sur une base à part : regroupement des enregistrements
+ * d'une même session, annulation par propriétaire et livraison des échecs.
+ * Le thread d'écriture (et les lectures, qui ouvrent la base) est retenu en
+ * prenant le verrou de SessionDatabaseHelper pendant que les appels sont soumis.
+ * Lancement : ./gradlew :app:connectedAndroidTest
+ */
+@RunWith(AndroidJUnit4.class)
+public class SessionRepositoryTest {
+    
+    private static final String DATABASE = "test_repository.db";
+    private static final long TIMEOUT_MS = 5000;
+    
+    private Context context;
+    private SessionDatabaseHelper helper;
+    private SessionRepository repository;
+    
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DATABASE);
+        helper = new SessionDatabaseHelper(context, DATABASE);
+        repository = new SessionRepository(helper);
+    }
+    
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(DATABASE);
+    }
+    
+    @Test
+    public void queuedSavesOfASessionAreCoalesced() throws Exception {
+        Session session = session(1000L);
+        List<Boolean> results = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch delivered = new CountDownLatch(2);
+        Future<Boolean> first;
+        Future<Boolean> second;
+        synchronized (helper) {
+            Future<Long> blocker = repository.insertSession(null, session(500L), null);
+            awaitWriterBlocked();
+            first = repository.saveSession(this, session, saved -> {
+                results.add(saved);
+                delivered.countDown();
+            });
+            // Dernier état de la session, qui doit être celui écrit
+            session.setDistance(42.5);
+            second = repository.saveSession(null, session, saved -> {
+                results.add(saved);
+                delivered.countDown();
+            });
+            assertFalse(blocker.isDone());
+        }
+        
+        assertSame(first, second);
+        assertTrue(first.get(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertTrue(delivered.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(2, results.size());
+        assertTrue(results.get(0) && results.get(1));
+        // Une seule ligne créée pour la session, avec la distance la plus récente
+        assertEquals(2, helper.getSessionCount());
+        assertEquals(42.5, helper.getSessionsBefore(Long.MAX_VALUE, Long.MAX_VALUE, 1).get(0).getDistance(), 0.0);
+        
+        // La session n'attend plus : un nouvel enregistrement est une nouvelle tâche
+        Future<Boolean> third = repository.saveSession(null, session, null);
+        assertNotSame(first, third);
+        assertTrue(third.get(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    }
+    
+    @Test
+    public void cancelAllSkipsPendingReadsAndSilencesWrites() throws Exception {
+        long id = helper.saveSession(session(1000L));
+        Object leaving = new Object();
+        Object staying = new Object();
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch stayingDelivered = new CountDownLatch(1);
+        Future<Boolean> delete;
+        Future<List<Session>> cancelledRead;
+        Future<List<Session>> keptRead;
+        synchronized (helper) {
+            // Deux lectures occupent les deux threads de lecture, bloqués à l'ouverture de la base
+            repository.loadSessionsBefore(staying, Long.MAX_VALUE, Long.MAX_VALUE, 10, null);
+            repository.loadSessionsBefore(staying, Long.MAX_VALUE, Long.MAX_VALUE, 10, null);
+            cancelledRead = repository.loadSessionsBefore(leaving, Long.MAX_VALUE, Long.MAX_VALUE, 10,
+                page -> calls.add("lecture annulée"));
+            keptRead = repository.loadSessionsBefore(staying, Long.MAX_VALUE, Long.MAX_VALUE, 10, page -> {
+                calls.add("lecture conservée");
+                stayingDelivered.countDown();
+            });
+            delete = repository.deleteSession(leaving, id, deleted -> calls.add("suppression"));
+            repository.cancelAll(leaving);
+        }
+        
+        assertTrue(cancelledRead.isCancelled());
+        assertFalse(keptRead.isCancelled());
+        // L'écriture a lieu malgré l'annulation
+        assertTrue(delete.get(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(0, helper.getSessionCount());
+        assertTrue(stayingDelivered.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        
+        // Livraison d'une écriture suivante : celle de la suppression, postée avant, serait déjà passée
+        CountDownLatch later = new CountDownLatch(1);
+        repository.insertSession(null, session(2000L), newId -> later.countDown());
+        assertTrue(later.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        assertEquals(Collections.singletonList("lecture conservée"), calls);
+    }
+    
+    @Test
+    public void failedReadDeliversNull() throws Exception {
+        helper.close();
+        context.deleteDatabase(DATABASE);
+        helper = new SessionDatabaseHelper(context, DATABASE) {
+            @Override
+            public List<Session> getSessionsBefore(long startTime, long id, int limit) {
+                throw new IllegalStateException("Base illisible");
+            }
+        };
+        repository = new SessionRepository(helper);
+        
+        CountDownLatch delivered = new CountDownLatch(1);
+        List<List<Session>> pages = Collections.synchronizedList(new ArrayList<>());
+        repository.loadSessionsBefore(this, Long.MAX_VALUE, Long.MAX_VALUE, 10, page -> {
+            pages.add(page);
+            delivered.countDown();
+        });
+        
+        assertTrue("Aucune livraison après un échec", delivered.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertNull(pages.get(0));
+    }
+    
+    private static Session session(long startTime) {
+        Session session = new Session();
+        session.setStartTime(startTime);
+        session.setEndTime(startTime + 3600000);
+        session.setDistance(30.0);
+        session.setUserWeight(75);
+        return session;
+    }
+    
+    // Attend que le thread d'écriture soit bloqué sur le verrou de la base (tenu par le test)
+    private static void awaitWriterBlocked() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (System.currentTimeMillis() < deadline) {
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (thread.getName().equals("db-writer") && thread.getState() == Thread.State.BLOCKED) {
+                    return;
+                }
+            }
+            Thread.sleep(5);
+        }
+        throw new AssertionError("Thread d'écriture jamais bloqué");
+    }
+}
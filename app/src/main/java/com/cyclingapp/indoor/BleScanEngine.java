@@ -0,0 +1,408 @@
+package com.cyclingapp.indoor;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothManager;
+import android.bluetooth.le.BluetoothLeScanner;
+import android.bluetooth.le.ScanCallback;
+import android.bluetooth.le.ScanFilter;
+import android.bluetooth.le.ScanRecord;
+import android.bluetooth.le.ScanResult;
+import android.bluetooth.le.ScanSettings;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelUuid;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Scan BLE partagé par tous les écrans : les demandes des clients sont
+ * regroupées sur un seul scan matériel, dans le mode le plus exigeant demandé.
+ * Les appareils vus sont gardés en cache (RSSI, dernière apparition) pour
+ * qu'un nouveau client les reçoive sans attendre.
+ * À utiliser depuis le thread principal uniquement.
+ */
+public class BleScanEngine {
+    
+    private static final String TAG = "BleScanEngine";
+    private static BleScanEngine instance;
+    
+    // Intervalle minimal entre deux notifications d'un même appareil à un client
+    public static final long DEFAULT_MIN_INTERVAL_MS = 1000;
+    // Délai de regroupement des résultats en mode BATCH
+    private static final long BATCH_REPORT_DELAY_MS = 2000;
+    // Au-delà, un appareil n'est plus annoncé depuis le cache
+    private static final long CACHE_EXPIRY_MS = 60000;
+    // Taille maximale du cache (salle de sport : beaucoup de capteurs voisins)
+    private static final int MAX_CACHED_DEVICES = 64;
+    
+    public enum Mode {
+        // Résultats immédiats (connexion en cours)
+        LOW_LATENCY,
+        // Résultats groupés par le contrôleur, économe en batterie (recherche de fond)
+        BATCH
+    }
+    
+    public interface ScanListener {
+        void onDeviceFound(DiscoveredDevice device);
+        // Durée demandée écoulée ou scan interrompu
+        void onScanFinished();
+        void onScanFailed(int errorCode);
+    }
+    
+    /** Dernière annonce reçue d'un appareil. */
+    public static final class DiscoveredDevice {
+        private final BluetoothDevice device;
+        private final String name;
+        private final int rssi;
+        private final long lastSeenMillis;
+        private final int sensorKind;
+        
+        DiscoveredDevice(BluetoothDevice device, String name, int rssi, long lastSeenMillis, int sensorKind) {
+            this.device = device;
+            this.name = name;
+            this.rssi = rssi;
+            this.lastSeenMillis = lastSeenMillis;
+            this.sensorKind = sensorKind;
+        }
+        
+        public BluetoothDevice getDevice() { return device; }
+        public String getAddress() { return device.getAddress(); }
+        public String getName() { return name; }
+        public int getRssi() { return rssi; }
+        // Horloge SystemClock.elapsedRealtime()
+        public long getLastSeenMillis() { return lastSeenMillis; }
+        // Type annoncé (SensorParser.KIND_*), -1 si inconnu
+        public int getSensorKind() { return sensorKind; }
+    }
+    
+    private static final class Client {
+        final ScanListener listener;
+        Mode mode;
+        long minIntervalMs;
+        Runnable timeout;
+        // Dernière notification par adresse, de la plus ancienne à la plus récente
+        final LinkedHashMap<String, Long> lastDelivery = new LinkedHashMap<>();
+        
+        Client(ScanListener listener) {
+            this.listener = listener;
+        }
+    }
+    
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final List<Client> clients = new ArrayList<>();
+    private final Map<String, DiscoveredDevice> cache = new LinkedHashMap<String, DiscoveredDevice>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DiscoveredDevice> eldest) {
+            return size() > MAX_CACHED_DEVICES;
+        }
+    };
+    private BluetoothAdapter adapter;
+    private BluetoothLeScanner scanner;
+    private Mode activeMode;
+    
+    private BleScanEngine() {}
+    
+    public static synchronized BleScanEngine getInstance() {
+        if (instance == null) {
+            instance = new BleScanEngine();
+        }
+        return instance;
+    }
+    
+    public boolean startScan(Context context, ScanListener listener, Mode mode, long durationMs) {
+        return startScan(context, listener, mode, durationMs, DEFAULT_MIN_INTERVAL_MS);
+    }
+    
+    /**
+     * Inscrit (ou met à jour) un client. Les appareils déjà en cache lui sont
+     * transmis immédiatement.
+     * @return false si le scanner n'est pas disponible
+     */
+    public boolean startScan(Context context, ScanListener listener, Mode mode, long durationMs,
+                             long minIntervalMs) {
+        if (!ensureScanner(context)) {
+            return false;
+        }
+        
+        Client client = findClient(listener);
+        boolean isNew = client == null;
+        if (isNew) {
+            client = new Client(listener);
+            clients.add(client);
+        } else {
+            handler.removeCallbacks(client.timeout);
+        }
+        client.mode = mode;
+        client.minIntervalMs = minIntervalMs;
+        Client scheduled = client;
+        client.timeout = () -> finish(scheduled);
+        handler.postDelayed(client.timeout, durationMs);
+        
+        if (!updateHardwareScan()) {
+            return false;
+        }
+        
+        if (isNew) {
+            long now = SystemClock.elapsedRealtime();
+            for (DiscoveredDevice device : new ArrayList<>(cache.values())) {
+                if (now - device.getLastSeenMillis() <= CACHE_EXPIRY_MS) {
+                    deliver(client, device);
+                }
+            }
+        }
+        return true;
+    }
+    
+    public void stopScan(ScanListener listener) {
+        Client client = findClient(listener);
+        if (client == null) {
+            return;
+        }
+        handler.removeCallbacks(client.timeout);
+        clients.remove(client);
+        client.lastDelivery.clear();
+        updateHardwareScan();
+    }
+    
+    public boolean isScanning(ScanListener listener) {
+        return findClient(listener) != null;
+    }
+    
+    // Appareils vus récemment, du plus récent au plus ancien
+    public List<DiscoveredDevice> getCachedDevices() {
+        List<DiscoveredDevice> devices = new ArrayList<>();
+        long now = SystemClock.elapsedRealtime();
+        for (DiscoveredDevice device : cache.values()) {
+            if (now - device.getLastSeenMillis() <= CACHE_EXPIRY_MS) {
+                devices.add(0, device);
+            }
+        }
+        return devices;
+    }
+    
+    // Appareil le plus récent du type demandé (null si aucun dans le cache)
+    public DiscoveredDevice findCachedDevice(int sensorKind) {
+        for (DiscoveredDevice device : getCachedDevices()) {
+            if (device.getSensorKind() == sensorKind) {
+                return device;
+            }
+        }
+        return null;
+    }
+    
+    private boolean ensureScanner(Context context) {
+        if (adapter == null) {
+            BluetoothManager bluetoothManager =
+                (BluetoothManager) context.getApplicationContext().getSystemService(Context.BLUETOOTH_SERVICE);
+            adapter = bluetoothManager != null ? bluetoothManager.getAdapter() : null;
+        }
+        if (adapter == null || !adapter.isEnabled()) {
+            return false;
+        }
+        if (scanner == null) {
+            scanner = adapter.getBluetoothLeScanner();
+        }
+        return scanner != null;
+    }
+    
+    private Client findClient(ScanListener listener) {
+        for (Client client : clients) {
+            if (client.listener == listener) {
+                return client;
+            }
+        }
+        return null;
+    }
+    
+    private void finish(Client client) {
+        if (clients.remove(client)) {
+            client.lastDelivery.clear();
+            updateHardwareScan();
+            client.listener.onScanFinished();
+        }
+    }
+    
+    // Un seul scan matériel, LOW_LATENCY dès qu'un client le demande
+    private boolean updateHardwareScan() {
+        Mode wanted = null;
+        for (Client client : clients) {
+            if (client.mode == Mode.LOW_LATENCY) {
+                wanted = Mode.LOW_LATENCY;
+                break;
+            }
+            wanted = Mode.BATCH;
+        }
+        if (wanted == activeMode) {
+            return true;
+        }
+        
+        stopHardwareScan();
+        if (wanted == null) {
+            return true;
+        }
+        
+        ScanSettings.Builder settings = new ScanSettings.Builder();
+        if (wanted == Mode.LOW_LATENCY) {
+            settings.setScanMode(ScanSettings.SCAN_MODE_LOW_LATENCY);
+        } else if (adapter.isOffloadedScanBatchingSupported()) {
+            settings.setScanMode(ScanSettings.SCAN_MODE_LOW_POWER).setReportDelay(BATCH_REPORT_DELAY_MS);
+        } else {
+            settings.setScanMode(ScanSettings.SCAN_MODE_BALANCED);
+        }
+        
+        try {
+            scanner.startScan(buildFilters(), settings.build(), scanCallback);
+            activeMode = wanted;
+            Log.d(TAG, "Scan BLE démarré (" + wanted + ")");
+            return true;
+        } catch (SecurityException | IllegalStateException e) {
+            Log.e(TAG, "Erreur démarrage scan: " + e.getMessage());
+            failAll(ScanCallback.SCAN_FAILED_INTERNAL_ERROR);
+            return false;
+        }
+    }
+    
+    private void stopHardwareScan() {
+        if (activeMode == null) {
+            return;
+        }
+        activeMode = null;
+        try {
+            scanner.stopScan(scanCallback);
+            Log.d(TAG, "Scan BLE arrêté");
+        } catch (SecurityException | IllegalStateException e) {
+            // IllegalStateException : Bluetooth coupé pendant le scan
+            Log.e(TAG, "Erreur arrêt scan: " + e.getMessage());
+        }
+    }
+    
+    // Filtres traités par le contrôleur : seuls les capteurs utiles réveillent l'application
+    private static List<ScanFilter> buildFilters() {
+        List<ScanFilter> filters = new ArrayList<>();
+        filters.add(serviceFilter(BluetoothConnectionManager.CYCLING_POWER_SERVICE_UUID));
+        filters.add(serviceFilter(BluetoothConnectionManager.HEART_RATE_SERVICE_UUID));
+        filters.add(serviceFilter(BluetoothConnectionManager.CSC_SERVICE_UUID));
+        return filters;
+    }
+    
+    private static ScanFilter serviceFilter(UUID serviceUuid) {
+        return new ScanFilter.Builder().setServiceUuid(new ParcelUuid(serviceUuid)).build();
+    }
+    
+    private void failAll(int errorCode) {
+        List<Client> failed = new ArrayList<>(clients);
+        for (Client client : failed) {
+            handler.removeCallbacks(client.timeout);
+            client.lastDelivery.clear();
+        }
+        clients.clear();
+        stopHardwareScan();
+        scanner = null;
+        for (Client client : failed) {
+            client.listener.onScanFailed(errorCode);
+        }
+    }
+    
+    private void onResult(ScanResult result) {
+        BluetoothDevice device = result.getDevice();
+        String name = null;
+        try {
+            ScanRecord record = result.getScanRecord();
+            name = record != null && record.getDeviceName() != null ? record.getDeviceName() : device.getName();
+        } catch (SecurityException e) {
+            Log.e(TAG, "Erreur permission device: " + e.getMessage());
+        }
+        
+        long now = SystemClock.elapsedRealtime();
+        DiscoveredDevice discovered = new DiscoveredDevice(device, name, result.getRssi(),
+            now, sensorKindOf(result));
+        // Réinsertion pour garder le cache trié par dernière apparition
+        cache.remove(device.getAddress());
+        cache.put(device.getAddress(), discovered);
+        pruneCache(now);
+        
+        for (Client client : new ArrayList<>(clients)) {
+            // Un client peut s'être désinscrit depuis un callback précédent
+            if (clients.contains(client)) {
+                deliver(client, discovered);
+            }
+        }
+    }
+    
+    // Le cache est trié par dernière apparition : les entrées expirées sont en tête
+    private void pruneCache(long now) {
+        Iterator<DiscoveredDevice> it = cache.values().iterator();
+        while (it.hasNext() && now - it.next().getLastSeenMillis() > CACHE_EXPIRY_MS) {
+            it.remove();
+        }
+    }
+    
+    // Limite les annonces répétées d'un même appareil pour chaque client
+    private void deliver(Client client, DiscoveredDevice device) {
+        long now = SystemClock.elapsedRealtime();
+        // Une entrée plus vieille que l'intervalle ne bloque plus rien : on l'oublie
+        Iterator<Long> it = client.lastDelivery.values().iterator();
+        while (it.hasNext() && now - it.next() >= client.minIntervalMs) {
+            it.remove();
+        }
+        if (client.lastDelivery.containsKey(device.getAddress())) {
+            return;
+        }
+        client.lastDelivery.put(device.getAddress(), now);
+        client.listener.onDeviceFound(device);
+    }
+    
+    // Type de capteur d'après les services annoncés (la puissance prime)
+    private static int sensorKindOf(ScanResult result) {
+        ScanRecord record = result.getScanRecord();
+        List<ParcelUuid> uuids = record != null ? record.getServiceUuids() : null;
+        if (uuids == null) {
+            return -1;
+        }
+        if (uuids.contains(new ParcelUuid(BluetoothConnectionManager.CYCLING_POWER_SERVICE_UUID))) {
+            return SensorParser.KIND_POWER;
+        }
+        if (uuids.contains(new ParcelUuid(BluetoothConnectionManager.HEART_RATE_SERVICE_UUID))) {
+            return SensorParser.KIND_HEART_RATE;
+        }
+        if (uuids.contains(new ParcelUuid(BluetoothConnectionManager.CSC_SERVICE_UUID))) {
+            return SensorParser.KIND_SPEED_CADENCE;
+        }
+        return -1;
+    }
+    
+    private final ScanCallback scanCallback = new ScanCallback() {
+        @Override
+        public void onScanResult(int callbackType, ScanResult result) {
+            onResult(result);
+        }
+        
+        @Override
+        public void onBatchScanResults(List<ScanResult> results) {
+            // Un lot contient souvent plusieurs annonces d'un même appareil : seule la dernière compte
+            Map<String, ScanResult> latest = new LinkedHashMap<>();
+            for (ScanResult result : results) {
+                latest.put(result.getDevice().getAddress(), result);
+            }
+            for (ScanResult result : latest.values()) {
+                onResult(result);
+            }
+        }
+        
+        @Override
+        public void onScanFailed(int errorCode) {
+            Log.e(TAG, "Scan failed: " + errorCode);
+            activeMode = null;
+            failAll(errorCode);
+        }
+    };
+}
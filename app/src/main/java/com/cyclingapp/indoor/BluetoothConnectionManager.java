@@ -7,35 +7,60 @@ import android.bluetooth.BluetoothGattCharacteristic;
 import android.bluetooth.BluetoothGattDescriptor;
 import android.bluetooth.BluetoothGattService;
 import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.util.Log;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
-public class BluetoothConnectionManager {
+public class BluetoothConnectionManager implements SensorSource {
     
     private static final String TAG = "BTConnectionManager";
     private static BluetoothConnectionManager instance;
     
-    private static final UUID CYCLING_POWER_SERVICE_UUID = UUID.fromString("00001818-0000-1000-8000-00805f9b34fb");
-    private static final UUID CYCLING_POWER_MEASUREMENT_UUID = UUID.fromString("00002A63-0000-1000-8000-00805f9b34fb");
+    static final UUID CYCLING_POWER_SERVICE_UUID = UUID.fromString("00001818-0000-1000-8000-00805f9b34fb");
+    static final UUID CYCLING_POWER_MEASUREMENT_UUID = UUID.fromString("00002A63-0000-1000-8000-00805f9b34fb");
+    static final UUID HEART_RATE_SERVICE_UUID = UUID.fromString("0000180D-0000-1000-8000-00805f9b34fb");
+    static final UUID HEART_RATE_MEASUREMENT_UUID = UUID.fromString("00002A37-0000-1000-8000-00805f9b34fb");
+    static final UUID CSC_SERVICE_UUID = UUID.fromString("00001816-0000-1000-8000-00805f9b34fb");
+    static final UUID CSC_MEASUREMENT_UUID = UUID.fromString("00002A5B-0000-1000-8000-00805f9b34fb");
     private static final UUID CLIENT_CHARACTERISTIC_CONFIG_UUID = UUID.fromString("00002902-0000-1000-8000-00805f9b34fb");
     
-    private BluetoothGatt bluetoothGatt;
-    private boolean isConnected = false;
-    private List<BluetoothDataListener> listeners = new ArrayList<>();
+    // Dernier capteur de puissance connecté, pour s'y reconnecter sans scan
+    private static final String PREFS_NAME = "CyclingAppPrefs";
+    private static final String PREF_LAST_DEVICE_ADDRESS = "last_device_address";
     
-    // Pour calcul de la cadence
-    private int lastCrankRevolutions = -1;
-    private int lastCrankTime = -1;
+    // Nombre maximal de capteurs connectés simultanément
+    private static final int MAX_CONNECTIONS = 4;
     
-    public interface BluetoothDataListener {
-        void onDataReceived(int power, int cadence);
-        void onConnectionStateChanged(boolean connected);
+    // Connexions actives, indexées par emplacement (le canal de la file en dérive)
+    private final AtomicReferenceArray<SensorConnection> connections =
+        new AtomicReferenceArray<>(MAX_CONNECTIONS);
+    
+    // File, parsers, fusion et listeners ; canal = emplacement * KIND_COUNT + type
+    private static final int INGESTION_CAPACITY = 256;
+    private final SensorPipeline pipeline;
+    
+    // Thread des files d'opérations GATT (une file par connexion)
+    private final Handler gattHandler;
+    
+    private volatile Context appContext;
+    
+    // Conservé pour les écrans existants ; tout SensorDataListener convient
+    public interface BluetoothDataListener extends SensorDataListener {
     }
     
-    private BluetoothConnectionManager() {}
+    private BluetoothConnectionManager() {
+        pipeline = new SensorPipeline(this::parserFor, INGESTION_CAPACITY,
+            NotificationRingBuffer.DropPolicy.DROP_OLDEST);
+        
+        HandlerThread gattThread = new HandlerThread("gatt-operations");
+        gattThread.start();
+        gattHandler = new Handler(gattThread.getLooper());
+    }
     
     public static synchronized BluetoothConnectionManager getInstance() {
         if (instance == null) {
@@ -44,210 +69,307 @@ public class BluetoothConnectionManager {
         return instance;
     }
     
-    public void addListener(BluetoothDataListener listener) {
-        if (!listeners.contains(listener)) {
-            listeners.add(listener);
-        }
+    @Override
+    public void addListener(SensorDataListener listener) {
+        pipeline.addListener(listener, ListenerRegistry.DispatchMode.INLINE, null);
+    }
+    
+    // Un listener lent peut être servi sur son propre executor (EXECUTOR),
+    // ou ne recevoir que le dernier échantillon disponible (LATEST)
+    @Override
+    public void addListener(SensorDataListener listener, ListenerRegistry.DispatchMode mode,
+                            Executor executor) {
+        pipeline.addListener(listener, mode, executor);
     }
     
-    public void removeListener(BluetoothDataListener listener) {
-        listeners.remove(listener);
+    @Override
+    public void removeListener(SensorDataListener listener) {
+        pipeline.removeListener(listener);
     }
     
+    // Latences de distribution d'un listener (null s'il n'est pas inscrit)
+    public ListenerRegistry.Stats getDispatchStats(SensorDataListener listener) {
+        return pipeline.getDispatchStats(listener);
+    }
+    
+    // Connecté si au moins un capteur l'est
+    @Override
     public boolean isConnected() {
-        return isConnected;
+        for (int i = 0; i < MAX_CONNECTIONS; i++) {
+            SensorConnection connection = connections.get(i);
+            if (connection != null && connection.connected) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    // Un capteur de ce type est-il déjà connecté ?
+    public boolean hasSensor(int kind) {
+        for (int i = 0; i < MAX_CONNECTIONS; i++) {
+            SensorConnection connection = connections.get(i);
+            if (connection != null && (connection.expectedKind == kind || connection.parsers[kind] != null)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    // Remplace la file d'ingestion (à appeler hors connexion : les paquets en attente sont perdus)
+    public void configureIngestion(int capacity, NotificationRingBuffer.DropPolicy dropPolicy) {
+        pipeline.configureIngestion(capacity, dropPolicy);
+    }
+    
+    // Nombre de paquets perdus parce que la file était pleine
+    public long getDroppedPacketCount() {
+        return pipeline.getDroppedPacketCount();
+    }
+    
+    // Filtre des pics et trous de puissance (null pour le désactiver)
+    public void setPowerFilter(HampelFilter filter) {
+        pipeline.setPowerFilter(filter);
+    }
+    
+    // Nombre de valeurs de puissance corrigées par le filtre
+    @Override
+    public long getCorrectedSampleCount() {
+        return pipeline.getCorrectedSampleCount();
+    }
+    
+    // Adresse du dernier capteur de puissance connecté (null si aucun)
+    public String getLastDeviceAddress(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        return prefs.getString(PREF_LAST_DEVICE_ADDRESS, null);
+    }
+    
+    private void saveLastDeviceAddress(String address) {
+        Context context = appContext;
+        if (context == null) {
+            return;
+        }
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if (!address.equals(prefs.getString(PREF_LAST_DEVICE_ADDRESS, null))) {
+            prefs.edit().putString(PREF_LAST_DEVICE_ADDRESS, address).apply();
+        }
+    }
+    
+    // Démarre la mesure du délai jusqu'au premier échantillon de puissance
+    public void startTimeToFirstSample() {
+        pipeline.startTimeToFirstSample(System.nanoTime());
+    }
+    
+    // Dernier délai mesuré en ms (-1 si aucun échantillon reçu depuis le début de la mesure)
+    public long getTimeToFirstSampleMillis() {
+        long nanos = pipeline.getTimeToFirstSampleNanos();
+        return nanos >= 0 ? nanos / 1_000_000 : -1;
     }
     
     public void connect(Context context, BluetoothDevice device) {
+        connect(context, device, -1);
+    }
+    
+    // expectedKind : type annoncé par le scan, connu avant la découverte des services (-1 sinon)
+    public synchronized void connect(Context context, BluetoothDevice device, int expectedKind) {
+        int freeSlot = -1;
+        for (int i = 0; i < MAX_CONNECTIONS; i++) {
+            SensorConnection connection = connections.get(i);
+            if (connection == null) {
+                if (freeSlot == -1) freeSlot = i;
+            } else if (connection.address.equals(device.getAddress())) {
+                Log.d(TAG, "Déjà connecté à " + device.getAddress());
+                return;
+            }
+        }
+        if (freeSlot == -1) {
+            Log.w(TAG, "Trop de capteurs connectés, " + device.getAddress() + " ignoré");
+            return;
+        }
+        
+        appContext = context.getApplicationContext();
+        SensorConnection connection = new SensorConnection(freeSlot, device.getAddress(), expectedKind);
+        connections.set(freeSlot, connection);
         try {
-            bluetoothGatt = device.connectGatt(context, false, gattCallback);
-            Log.d(TAG, "Connexion GATT initiée");
+            connection.gatt = device.connectGatt(context, false, connection);
+            Log.d(TAG, "Connexion GATT initiée: " + device.getAddress());
         } catch (SecurityException e) {
+            connections.compareAndSet(freeSlot, connection, null);
             Log.e(TAG, "Erreur permission: " + e.getMessage());
         }
     }
     
-    public void disconnect() {
-        if (bluetoothGatt != null) {
-            try {
-                bluetoothGatt.disconnect();
-                bluetoothGatt.close();
-                bluetoothGatt = null;
-                isConnected = false;
-                
-                // Réinitialiser les compteurs de cadence
-                lastCrankRevolutions = -1;
-                lastCrankTime = -1;
-                lastCalculatedCadence = 0;
-                
-                notifyConnectionStateChanged(false);
-                Log.d(TAG, "Déconnexion");
-            } catch (SecurityException e) {
-                Log.e(TAG, "Erreur déconnexion: " + e.getMessage());
+    public synchronized void disconnect() {
+        boolean wasConnected = isConnected();
+        for (int i = 0; i < MAX_CONNECTIONS; i++) {
+            SensorConnection connection = connections.get(i);
+            if (connection != null) {
+                connection.close();
             }
         }
+        // Réinitialiser la fusion (fait par le thread d'ingestion)
+        pipeline.reset();
+        
+        if (wasConnected) {
+            notifyConnectionStateChanged(false);
+        }
+        Log.d(TAG, "Déconnexion");
     }
     
-    private BluetoothGattCallback gattCallback = new BluetoothGattCallback() {
+    /** Une connexion GATT vers un capteur, avec ses propres parsers. */
+    private class SensorConnection extends BluetoothGattCallback {
+        final int slot;
+        final String address;
+        final int expectedKind;
+        final SensorParser[] parsers = new SensorParser[SensorParser.KIND_COUNT];
+        volatile BluetoothGatt gatt;
+        volatile GattOperationQueue operations;
+        volatile boolean connected = false;
+        
+        SensorConnection(int slot, String address, int expectedKind) {
+            this.slot = slot;
+            this.address = address;
+            this.expectedKind = expectedKind;
+        }
+        
+        void close() {
+            connected = false;
+            if (connections.compareAndSet(slot, this, null)) {
+                // Les valeurs de ce capteur ne doivent pas rester « fraîches » après son départ
+                for (int kind = 0; kind < SensorParser.KIND_COUNT; kind++) {
+                    if (parsers[kind] != null) {
+                        pipeline.removeSensor(kind);
+                    }
+                }
+            }
+            BluetoothGatt current = gatt;
+            gatt = null;
+            GattOperationQueue queue = operations;
+            operations = null;
+            if (queue != null) {
+                queue.close();
+            }
+            if (current != null) {
+                try {
+                    current.disconnect();
+                    current.close();
+                } catch (SecurityException e) {
+                    Log.e(TAG, "Erreur déconnexion: " + e.getMessage());
+                }
+            }
+        }
+        
         @Override
         public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
             if (newState == BluetoothGatt.STATE_CONNECTED) {
-                Log.d(TAG, "Connecté au GATT");
-                isConnected = true;
+                Log.d(TAG, "Connecté au GATT: " + address);
+                connected = true;
                 notifyConnectionStateChanged(true);
                 
-                try {
-                    gatt.discoverServices();
-                } catch (SecurityException e) {
-                    Log.e(TAG, "Erreur découverte services: " + e.getMessage());
-                }
+                operations = new GattOperationQueue(gattHandler, gatt);
+                operations.enqueue(GattOperationQueue.discoverServices());
                 
             } else if (newState == BluetoothGatt.STATE_DISCONNECTED) {
-                Log.d(TAG, "Déconnecté du GATT");
-                isConnected = false;
-                notifyConnectionStateChanged(false);
-                bluetoothGatt = null;
+                Log.d(TAG, "Déconnecté du GATT: " + address);
+                close();
+                notifyConnectionStateChanged(isConnected());
             }
         }
         
         @Override
         public void onServicesDiscovered(BluetoothGatt gatt, int status) {
-            if (status == BluetoothGatt.GATT_SUCCESS) {
-                Log.d(TAG, "Services découverts");
-                BluetoothGattService service = gatt.getService(CYCLING_POWER_SERVICE_UUID);
-                if (service != null) {
-                    BluetoothGattCharacteristic characteristic = 
-                        service.getCharacteristic(CYCLING_POWER_MEASUREMENT_UUID);
-                    if (characteristic != null) {
-                        try {
-                            gatt.setCharacteristicNotification(characteristic, true);
-                            
-                            BluetoothGattDescriptor descriptor = 
-                                characteristic.getDescriptor(CLIENT_CHARACTERISTIC_CONFIG_UUID);
-                            if (descriptor != null) {
-                                descriptor.setValue(BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
-                                gatt.writeDescriptor(descriptor);
-                                Log.d(TAG, "Notifications activées");
-                            }
-                        } catch (SecurityException e) {
-                            Log.e(TAG, "Erreur notification: " + e.getMessage());
-                        }
-                    }
-                }
+            GattOperationQueue queue = operations;
+            if (queue == null) {
+                return;
             }
+            queue.onCompletion(GattOperationQueue.Completion.SERVICES_DISCOVERED, null, status);
+            if (status != BluetoothGatt.GATT_SUCCESS) {
+                return;
+            }
+            Log.d(TAG, "Services découverts: " + address);
+            if (gatt.getService(CYCLING_POWER_SERVICE_UUID) != null) {
+                saveLastDeviceAddress(address);
+            }
+            
+            // Les écritures de descripteurs passent par la file : tous les services sont activés
+            enable(queue, gatt, CYCLING_POWER_SERVICE_UUID, CYCLING_POWER_MEASUREMENT_UUID, new PowerSensorParser());
+            enable(queue, gatt, CSC_SERVICE_UUID, CSC_MEASUREMENT_UUID, new CscSensorParser());
+            enable(queue, gatt, HEART_RATE_SERVICE_UUID, HEART_RATE_MEASUREMENT_UUID, new HeartRateSensorParser());
         }
         
-        @Override
-        public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
-            Log.d(TAG, "onCharacteristicChanged appelé!");
-            
-            if (CYCLING_POWER_MEASUREMENT_UUID.equals(characteristic.getUuid())) {
-                byte[] data = characteristic.getValue();
-                Log.d(TAG, "Data length: " + (data != null ? data.length : 0));
-                
-                if (data != null && data.length >= 4) {
-                    // Log des données brutes
-                    StringBuilder hex = new StringBuilder();
-                    for (byte b : data) {
-                        hex.append(String.format("%02X ", b));
-                    }
-                    Log.d(TAG, "Data brute: " + hex.toString());
-                    
-                    // Parser les données selon le format Cycling Power Measurement
-                    int flags = (data[0] & 0xFF) | ((data[1] & 0xFF) << 8);
-                    Log.d(TAG, "Flags: 0x" + Integer.toHexString(flags));
-                    
-                    // Puissance instantanée (bytes 2-3)
-                    int power = (data[2] & 0xFF) | ((data[3] & 0xFF) << 8);
-                    if (power > 32767) power -= 65536;
-                    power = Math.max(0, power);
-                    Log.d(TAG, "Power parsé: " + power + " W");
-                    
-                    // Cadence depuis Crank Revolution Data (si présent)
-                    int cadence = 0;
-                    int offset = 4;
-                    
-                    // Bit 5 du flags indique la présence de Crank Revolution Data
-                    boolean hasCrankData = (flags & 0x20) != 0;
-                    Log.d(TAG, "Has crank data: " + hasCrankData + ", data length: " + data.length + ", need: " + (offset + 4));
-                    
-                    if (hasCrankData && data.length >= offset + 4) {
-                        int currentRevolutions = (data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8);
-                        int currentTime = (data[offset + 2] & 0xFF) | ((data[offset + 3] & 0xFF) << 8);
-                        Log.d(TAG, String.format("Revolutions: %d, Time: %d", currentRevolutions, currentTime));
-                        
-                        // Calculer la cadence (RPM) depuis les révolutions
-                        cadence = calculateCadence(currentRevolutions, currentTime);
-                    }
-                    
-                    Log.d(TAG, String.format("=== Données finales - Power: %d W, Cadence: %d RPM ===", power, cadence));
-                    notifyDataReceived(power, cadence);
-                } else {
-                    Log.w(TAG, "Données trop courtes ou nulles");
-                }
-            } else {
-                Log.w(TAG, "UUID incorrect: " + characteristic.getUuid());
+        private void enable(GattOperationQueue queue, BluetoothGatt gatt, UUID serviceUuid,
+                            UUID characteristicUuid, SensorParser parser) {
+            BluetoothGattService service = gatt.getService(serviceUuid);
+            if (service == null) {
+                return;
             }
-        }
-    };
-    
-    private int lastCalculatedCadence = 0;
-    
-    private int calculateCadence(int currentRevolutions, int currentTime) {
-        // Première mesure : initialiser sans calculer
-        if (lastCrankRevolutions == -1 || lastCrankTime == -1) {
-            lastCrankRevolutions = currentRevolutions;
-            lastCrankTime = currentTime;
-            return lastCalculatedCadence; // Retourner la dernière cadence connue
+            BluetoothGattCharacteristic characteristic = service.getCharacteristic(characteristicUuid);
+            if (characteristic == null) {
+                return;
+            }
+            BluetoothGattDescriptor descriptor = characteristic.getDescriptor(CLIENT_CHARACTERISTIC_CONFIG_UUID);
+            if (descriptor == null) {
+                return;
+            }
+            // Le parser doit exister avant la première notification
+            parsers[parser.getKind()] = parser;
+            queue.enqueue(GattOperationQueue.enableNotifications(characteristic, descriptor));
         }
         
-        int revDelta = currentRevolutions - lastCrankRevolutions;
-        int timeDelta = currentTime - lastCrankTime;
-        
-        // Gérer le rollover (dépassement de 65535)
-        if (revDelta < 0) {
-            revDelta += 65536;
-        }
-        if (timeDelta < 0) {
-            timeDelta += 65536;
+        @Override
+        public void onDescriptorWrite(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
+            GattOperationQueue queue = operations;
+            if (queue != null) {
+                queue.onCompletion(GattOperationQueue.Completion.DESCRIPTOR_WRITE,
+                    descriptor.getCharacteristic().getUuid(), status);
+            }
         }
         
-        // Si pas de changement, retourner la dernière cadence
-        if (revDelta == 0 || timeDelta == 0) {
-            return lastCalculatedCadence;
+        @Override
+        public void onCharacteristicRead(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
+            GattOperationQueue queue = operations;
+            if (queue != null) {
+                queue.onCompletion(GattOperationQueue.Completion.CHARACTERISTIC_READ,
+                    characteristic.getUuid(), status);
+            }
         }
         
-        // Calculer RPM seulement si les données sont cohérentes
-        // timeDelta est en 1/1024 secondes
-        double timeInSeconds = timeDelta / 1024.0;
-        double rpm = (revDelta / timeInSeconds) * 60.0;
-        
-        // Filtrer les valeurs aberrantes (> 200 RPM impossible, < 20 RPM = arrêt)
-        if (rpm > 0 && rpm <= 200) {
-            lastCalculatedCadence = (int) Math.round(rpm);
-        } else if (rpm < 20) {
-            lastCalculatedCadence = 0; // Arrêt détecté
+        @Override
+        public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
+            onNotification(characteristic.getUuid(), characteristic.getValue());
         }
-        // Sinon, on garde la dernière valeur valide
         
-        lastCrankRevolutions = currentRevolutions;
-        lastCrankTime = currentTime;
-        
-        Log.d(TAG, String.format("Cadence calc - revDelta: %d, timeDelta: %d, RPM: %.1f, Final: %d", 
-            revDelta, timeDelta, rpm, lastCalculatedCadence));
+        @Override
+        public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic,
+                                            byte[] value) {
+            // Android 13+ : la valeur est fournie directement, sans copie supplémentaire
+            onNotification(characteristic.getUuid(), value);
+        }
         
-        return lastCalculatedCadence;
+        private void onNotification(UUID uuid, byte[] data) {
+            int kind = kindOf(uuid);
+            if (kind < 0 || data == null) {
+                return;
+            }
+            // Chemin chaud : simple copie dans la file, le décodage se fait sur le thread d'ingestion
+            long now = System.nanoTime();
+            FlightRecorder.getInstance().record(FlightRecorder.shortId(uuid), data, data.length, now);
+            pipeline.publish(slot * SensorParser.KIND_COUNT + kind, data, data.length, now);
+        }
     }
     
-    private void notifyDataReceived(int power, int cadence) {
-        for (BluetoothDataListener listener : listeners) {
-            listener.onDataReceived(power, cadence);
-        }
+    private static int kindOf(UUID characteristicUuid) {
+        if (CYCLING_POWER_MEASUREMENT_UUID.equals(characteristicUuid)) return SensorParser.KIND_POWER;
+        if (HEART_RATE_MEASUREMENT_UUID.equals(characteristicUuid)) return SensorParser.KIND_HEART_RATE;
+        if (CSC_MEASUREMENT_UUID.equals(characteristicUuid)) return SensorParser.KIND_SPEED_CADENCE;
+        return -1;
+    }
+    
+    // Thread d'ingestion : parser de la connexion et du type correspondant au canal
+    private SensorParser parserFor(int channel) {
+        SensorConnection connection = connections.get(channel / SensorParser.KIND_COUNT);
+        return connection != null ? connection.parsers[channel % SensorParser.KIND_COUNT] : null;
     }
     
     private void notifyConnectionStateChanged(boolean connected) {
-        for (BluetoothDataListener listener : listeners) {
-            listener.onConnectionStateChanged(connected);
-        }
+        pipeline.dispatchConnectionState(connected);
     }
 }
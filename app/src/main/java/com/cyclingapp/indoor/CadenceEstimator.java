@@ -0,0 +1,155 @@
+package com.cyclingapp.indoor;
+
+/**
+ * Estimation de la cadence à partir des événements de pédalier
+ * (révolutions cumulées, date du dernier événement en 1/1024 s).
+ *
+ * Les couples (révolutions, temps) sont dépliés (rollover 16 bits) et gardés
+ * dans un petit anneau de primitives ; la cadence est la pente sur la fenêtre
+ * de temps configurée. Chaque appel est en O(1) amorti, sans allocation.
+ */
+public class CadenceEstimator {
+    
+    public static final int DEFAULT_WINDOW_MS = 3000;
+    public static final int DEFAULT_COAST_MS = 3000;
+    public static final double DEFAULT_MAX_RPM = 250.0;
+    
+    private static final int CAPACITY = 64; // puissance de 2
+    private static final int MASK = CAPACITY - 1;
+    private static final double TICKS_PER_SECOND = 1024.0;
+    
+    private final long windowTicks;
+    private final long coastNanos;
+    private final double maxRpm;
+    
+    // Anneau des événements dépliés
+    private final long[] revolutions = new long[CAPACITY];
+    private final long[] eventTimes = new long[CAPACITY];
+    private int first = 0;
+    private int count = 0;
+    
+    // Dernières valeurs brutes reçues (16 bits)
+    private int lastRawRevolutions = -1;
+    private int lastRawEventTime = -1;
+    private long unwrappedRevolutions;
+    private long unwrappedEventTime;
+    private long lastEventReceiveNanos;
+    
+    private double windowCadence = 0.0;
+    
+    public CadenceEstimator() {
+        this(DEFAULT_WINDOW_MS, DEFAULT_COAST_MS);
+    }
+    
+    public CadenceEstimator(int windowMillis, int coastMillis) {
+        this(windowMillis, coastMillis, DEFAULT_MAX_RPM);
+    }
+    
+    // maxRpm : au-delà, l'intervalle est jugé aberrant (plus élevé pour une roue)
+    public CadenceEstimator(int windowMillis, int coastMillis, double maxRpm) {
+        this.windowTicks = Math.max(1, Math.round(windowMillis * TICKS_PER_SECOND / 1000.0));
+        this.coastNanos = coastMillis * 1_000_000L;
+        this.maxRpm = maxRpm;
+    }
+    
+    public void reset() {
+        first = 0;
+        count = 0;
+        lastRawRevolutions = -1;
+        lastRawEventTime = -1;
+        unwrappedRevolutions = 0;
+        unwrappedEventTime = 0;
+        lastEventReceiveNanos = 0;
+        windowCadence = 0.0;
+    }
+    
+    /**
+     * @param cumulativeRevolutions compteur 16 bits du capteur
+     * @param lastEventTime date 16 bits du dernier événement (1/1024 s)
+     * @param receiveNanos horloge monotone de réception du paquet
+     * @return cadence en RPM (fractionnaire)
+     */
+    public double update(int cumulativeRevolutions, int lastEventTime, long receiveNanos) {
+        cumulativeRevolutions &= 0xFFFF;
+        lastEventTime &= 0xFFFF;
+        
+        // Premier paquet : point de départ sans cadence
+        if (lastRawRevolutions == -1) {
+            lastRawRevolutions = cumulativeRevolutions;
+            lastRawEventTime = lastEventTime;
+            lastEventReceiveNanos = receiveNanos;
+            push(0, 0);
+            return 0.0;
+        }
+        
+        int revDelta = (cumulativeRevolutions - lastRawRevolutions) & 0xFFFF;
+        int timeDelta = (lastEventTime - lastRawEventTime) & 0xFFFF;
+        lastRawRevolutions = cumulativeRevolutions;
+        lastRawEventTime = lastEventTime;
+        
+        if (revDelta == 0 || timeDelta == 0) {
+            // Pas de nouvel événement : la cadence décroît avec le temps écoulé
+            return currentCadence(receiveNanos);
+        }
+        
+        unwrappedRevolutions += revDelta;
+        unwrappedEventTime += timeDelta;
+        lastEventReceiveNanos = receiveNanos;
+        
+        double intervalRpm = revDelta * 60.0 * TICKS_PER_SECOND / timeDelta;
+        if (timeDelta > windowTicks || intervalRpm > maxRpm) {
+            // Reprise après une roue libre ou valeur aberrante : on repart de ce point
+            first = 0;
+            count = 0;
+            push(unwrappedRevolutions, unwrappedEventTime);
+            windowCadence = intervalRpm > maxRpm ? windowCadence : 0.0;
+            return windowCadence;
+        }
+        
+        push(unwrappedRevolutions, unwrappedEventTime);
+        
+        // Retirer les événements sortis de la fenêtre (toujours au moins deux points)
+        while (count > 2 && unwrappedEventTime - eventTimes[(first + 1) & MASK] >= windowTicks) {
+            first = (first + 1) & MASK;
+            count--;
+        }
+        
+        int oldest = first;
+        long spanTicks = unwrappedEventTime - eventTimes[oldest];
+        long spanRevolutions = unwrappedRevolutions - revolutions[oldest];
+        windowCadence = spanTicks > 0 ? spanRevolutions * 60.0 * TICKS_PER_SECOND / spanTicks : 0.0;
+        return windowCadence;
+    }
+    
+    /** Cadence courante sans nouveau paquet (permet de détecter la roue libre). */
+    public double currentCadence(long nowNanos) {
+        if (count < 2) {
+            return 0.0;
+        }
+        long sinceEvent = nowNanos - lastEventReceiveNanos;
+        if (sinceEvent > coastNanos) {
+            count = 0;
+            windowCadence = 0.0;
+            return 0.0;
+        }
+        // Aucun tour depuis sinceEvent : la cadence ne peut excéder 60 / sinceEvent
+        if (sinceEvent > 0) {
+            double bound = 60.0e9 / sinceEvent;
+            if (bound < windowCadence) {
+                return bound;
+            }
+        }
+        return windowCadence;
+    }
+    
+    private void push(long revs, long time) {
+        if (count == CAPACITY) {
+            first = (first + 1) & MASK;
+            count--;
+        }
+        int index = (first + count) & MASK;
+        revolutions[index] = revs;
+        eventTimes[index] = time;
+        count++;
+    }
+}
@@ -0,0 +1,67 @@
+package com.cyclingapp.indoor;
+
+/**
+ * Capteur de vitesse/cadence (CSC Measurement 0x2A5B) : vitesse de roue
+ * et cadence, toutes deux en 1/1024 s.
+ */
+public class CscSensorParser implements SensorParser {
+    
+    private static final int FLAG_WHEEL_REVOLUTION_DATA = 1;
+    private static final int FLAG_CRANK_REVOLUTION_DATA = 1 << 1;
+    
+    // Circonférence d'une roue 700x25c
+    public static final double DEFAULT_WHEEL_CIRCUMFERENCE_M = 2.105;
+    // Une roue dépasse largement les 250 tr/min d'un pédalier
+    private static final double MAX_WHEEL_RPM = 1500.0;
+    
+    private final double wheelCircumference;
+    private final CadenceEstimator wheelEstimator = new CadenceEstimator(
+        CadenceEstimator.DEFAULT_WINDOW_MS, CadenceEstimator.DEFAULT_COAST_MS, MAX_WHEEL_RPM);
+    private final CadenceEstimator crankEstimator = new CadenceEstimator();
+    
+    public CscSensorParser() {
+        this(DEFAULT_WHEEL_CIRCUMFERENCE_M);
+    }
+    
+    public CscSensorParser(double wheelCircumferenceMeters) {
+        this.wheelCircumference = wheelCircumferenceMeters;
+    }
+    
+    @Override
+    public int getKind() {
+        return KIND_SPEED_CADENCE;
+    }
+    
+    @Override
+    public boolean onPacket(byte[] data, int length, long timestampNanos, SensorFusion fusion) {
+        if (data == null || length < 1 || length > data.length) {
+            return false;
+        }
+        int flags = data[0] & 0xFF;
+        int offset = 1;
+        
+        if ((flags & FLAG_WHEEL_REVOLUTION_DATA) != 0) {
+            if (offset + 6 > length) return false;
+            // Compteur 32 bits : les 16 bits de poids faible suffisent pour les deltas
+            int revolutions = CyclingPowerDecoder.uint16(data, offset);
+            int eventTime = CyclingPowerDecoder.uint16(data, offset + 4);
+            double wheelRpm = wheelEstimator.update(revolutions, eventTime, timestampNanos);
+            fusion.updateWheelSpeed(timestampNanos, wheelRpm * wheelCircumference * 60.0 / 1000.0);
+            offset += 6;
+        }
+        
+        if ((flags & FLAG_CRANK_REVOLUTION_DATA) != 0) {
+            if (offset + 4 > length) return false;
+            double cadence = crankEstimator.update(CyclingPowerDecoder.uint16(data, offset),
+                CyclingPowerDecoder.uint16(data, offset + 2), timestampNanos);
+            fusion.updateCadence(timestampNanos, cadence);
+        }
+        return true;
+    }
+    
+    @Override
+    public void reset() {
+        wheelEstimator.reset();
+        crankEstimator.reset();
+    }
+}
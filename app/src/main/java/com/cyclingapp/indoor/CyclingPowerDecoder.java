@@ -0,0 +1,133 @@
+package com.cyclingapp.indoor;
+
+import static com.cyclingapp.indoor.CyclingPowerMeasurement.*;
+
+/**
+ * Décodeur de la caractéristique Cycling Power Measurement (0x2A63).
+ * Parcourt tous les champs optionnels dans l'ordre imposé par la spécification
+ * et remplit une {@link CyclingPowerMeasurement} fournie par l'appelant.
+ * Pas d'allocation, pas de log : appelable sur le thread Binder.
+ */
+public final class CyclingPowerDecoder {
+    
+    // Flags (2) + puissance instantanée (2)
+    public static final int MIN_LENGTH = 4;
+    
+    private CyclingPowerDecoder() {}
+    
+    /**
+     * @return false si le paquet est plus court que l'en-tête obligatoire.
+     * Un champ optionnel tronqué arrête le décodage sans être marqué présent.
+     */
+    public static boolean decode(byte[] data, int length, CyclingPowerMeasurement out) {
+        out.clear();
+        if (data == null || length < MIN_LENGTH || length > data.length) {
+            return false;
+        }
+        
+        int flags = uint16(data, 0);
+        out.flags = flags;
+        out.instantaneousPower = sint16(data, 2);
+        int offset = 4;
+        int present = 0;
+        
+        if ((flags & FLAG_PEDAL_POWER_BALANCE) != 0) {
+            if (offset + 1 > length) return truncated(out, present);
+            out.pedalPowerBalance = data[offset] & 0xFF;
+            offset += 1;
+            present |= FLAG_PEDAL_POWER_BALANCE;
+        }
+        
+        if ((flags & FLAG_ACCUMULATED_TORQUE) != 0) {
+            if (offset + 2 > length) return truncated(out, present);
+            out.accumulatedTorque = uint16(data, offset);
+            offset += 2;
+            present |= FLAG_ACCUMULATED_TORQUE;
+        }
+        
+        if ((flags & FLAG_WHEEL_REVOLUTION_DATA) != 0) {
+            if (offset + 6 > length) return truncated(out, present);
+            out.cumulativeWheelRevolutions = uint32(data, offset);
+            out.lastWheelEventTime = uint16(data, offset + 4);
+            offset += 6;
+            present |= FLAG_WHEEL_REVOLUTION_DATA;
+        }
+        
+        if ((flags & FLAG_CRANK_REVOLUTION_DATA) != 0) {
+            if (offset + 4 > length) return truncated(out, present);
+            out.cumulativeCrankRevolutions = uint16(data, offset);
+            out.lastCrankEventTime = uint16(data, offset + 2);
+            offset += 4;
+            present |= FLAG_CRANK_REVOLUTION_DATA;
+        }
+        
+        if ((flags & FLAG_EXTREME_FORCE_MAGNITUDES) != 0) {
+            if (offset + 4 > length) return truncated(out, present);
+            out.maxForceMagnitude = sint16(data, offset);
+            out.minForceMagnitude = sint16(data, offset + 2);
+            offset += 4;
+            present |= FLAG_EXTREME_FORCE_MAGNITUDES;
+        }
+        
+        if ((flags & FLAG_EXTREME_TORQUE_MAGNITUDES) != 0) {
+            if (offset + 4 > length) return truncated(out, present);
+            out.maxTorqueMagnitude = sint16(data, offset);
+            out.minTorqueMagnitude = sint16(data, offset + 2);
+            offset += 4;
+            present |= FLAG_EXTREME_TORQUE_MAGNITUDES;
+        }
+        
+        if ((flags & FLAG_EXTREME_ANGLES) != 0) {
+            // Deux uint12 empaquetés sur 3 octets : max sur les 12 bits de poids faible
+            if (offset + 3 > length) return truncated(out, present);
+            int packed = (data[offset] & 0xFF)
+                    | ((data[offset + 1] & 0xFF) << 8)
+                    | ((data[offset + 2] & 0xFF) << 16);
+            out.maxAngle = packed & 0xFFF;
+            out.minAngle = (packed >>> 12) & 0xFFF;
+            offset += 3;
+            present |= FLAG_EXTREME_ANGLES;
+        }
+        
+        if ((flags & FLAG_TOP_DEAD_SPOT_ANGLE) != 0) {
+            if (offset + 2 > length) return truncated(out, present);
+            out.topDeadSpotAngle = uint16(data, offset);
+            offset += 2;
+            present |= FLAG_TOP_DEAD_SPOT_ANGLE;
+        }
+        
+        if ((flags & FLAG_BOTTOM_DEAD_SPOT_ANGLE) != 0) {
+            if (offset + 2 > length) return truncated(out, present);
+            out.bottomDeadSpotAngle = uint16(data, offset);
+            offset += 2;
+            present |= FLAG_BOTTOM_DEAD_SPOT_ANGLE;
+        }
+        
+        if ((flags & FLAG_ACCUMULATED_ENERGY) != 0) {
+            if (offset + 2 > length) return truncated(out, present);
+            out.accumulatedEnergy = uint16(data, offset);
+            present |= FLAG_ACCUMULATED_ENERGY;
+        }
+        
+        out.presentFields = present;
+        return true;
+    }
+    
+    private static boolean truncated(CyclingPowerMeasurement out, int present) {
+        // L'en-tête est valide : on garde les champs lus jusqu'ici
+        out.presentFields = present;
+        return true;
+    }
+    
+    static int uint16(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8);
+    }
+    
+    static int sint16(byte[] data, int offset) {
+        return (short) uint16(data, offset);
+    }
+    
+    static long uint32(byte[] data, int offset) {
+        return ((long) uint16(data, offset)) | (((long) uint16(data, offset + 2)) << 16);
+    }
+}
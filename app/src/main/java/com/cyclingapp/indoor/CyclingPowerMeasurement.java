@@ -0,0 +1,94 @@
+package com.cyclingapp.indoor;
+
+/**
+ * Contenu décodé d'une notification Cycling Power Measurement (0x2A63).
+ * Instance mutable réutilisée d'un paquet à l'autre : aucune allocation
+ * n'est faite par le décodeur.
+ */
+public class CyclingPowerMeasurement {
+    
+    // Bits du champ flags (Bluetooth SIG, Cycling Power Service 1.1)
+    public static final int FLAG_PEDAL_POWER_BALANCE = 1;
+    public static final int FLAG_PEDAL_POWER_BALANCE_REFERENCE = 1 << 1;
+    public static final int FLAG_ACCUMULATED_TORQUE = 1 << 2;
+    public static final int FLAG_ACCUMULATED_TORQUE_SOURCE = 1 << 3;
+    public static final int FLAG_WHEEL_REVOLUTION_DATA = 1 << 4;
+    public static final int FLAG_CRANK_REVOLUTION_DATA = 1 << 5;
+    public static final int FLAG_EXTREME_FORCE_MAGNITUDES = 1 << 6;
+    public static final int FLAG_EXTREME_TORQUE_MAGNITUDES = 1 << 7;
+    public static final int FLAG_EXTREME_ANGLES = 1 << 8;
+    public static final int FLAG_TOP_DEAD_SPOT_ANGLE = 1 << 9;
+    public static final int FLAG_BOTTOM_DEAD_SPOT_ANGLE = 1 << 10;
+    public static final int FLAG_ACCUMULATED_ENERGY = 1 << 11;
+    public static final int FLAG_OFFSET_COMPENSATION = 1 << 12;
+    
+    // Flags annoncés par le capteur
+    int flags;
+    // Champs effectivement présents dans le paquet (sous-ensemble de flags)
+    int presentFields;
+    
+    int instantaneousPower;          // W (sint16)
+    int pedalPowerBalance;           // 1/2 %
+    int accumulatedTorque;           // 1/32 N.m
+    long cumulativeWheelRevolutions; // uint32
+    int lastWheelEventTime;          // 1/2048 s
+    int cumulativeCrankRevolutions;  // uint16
+    int lastCrankEventTime;          // 1/1024 s
+    int maxForceMagnitude;           // N (sint16)
+    int minForceMagnitude;           // N (sint16)
+    int maxTorqueMagnitude;          // 1/32 N.m (sint16)
+    int minTorqueMagnitude;          // 1/32 N.m (sint16)
+    int maxAngle;                    // degrés (uint12)
+    int minAngle;                    // degrés (uint12)
+    int topDeadSpotAngle;            // degrés
+    int bottomDeadSpotAngle;         // degrés
+    int accumulatedEnergy;           // kJ
+    
+    void clear() {
+        flags = 0;
+        presentFields = 0;
+        instantaneousPower = 0;
+        pedalPowerBalance = 0;
+        accumulatedTorque = 0;
+        cumulativeWheelRevolutions = 0;
+        lastWheelEventTime = 0;
+        cumulativeCrankRevolutions = 0;
+        lastCrankEventTime = 0;
+        maxForceMagnitude = 0;
+        minForceMagnitude = 0;
+        maxTorqueMagnitude = 0;
+        minTorqueMagnitude = 0;
+        maxAngle = 0;
+        minAngle = 0;
+        topDeadSpotAngle = 0;
+        bottomDeadSpotAngle = 0;
+        accumulatedEnergy = 0;
+    }
+    
+    public boolean has(int field) {
+        return (presentFields & field) != 0;
+    }
+    
+    // Getters
+    public int getFlags() { return flags; }
+    public int getPresentFields() { return presentFields; }
+    public int getInstantaneousPower() { return instantaneousPower; }
+    public int getPedalPowerBalance() { return pedalPowerBalance; }
+    public boolean isPedalPowerBalanceLeft() { return (flags & FLAG_PEDAL_POWER_BALANCE_REFERENCE) != 0; }
+    public int getAccumulatedTorque() { return accumulatedTorque; }
+    public boolean isAccumulatedTorqueCrankBased() { return (flags & FLAG_ACCUMULATED_TORQUE_SOURCE) != 0; }
+    public long getCumulativeWheelRevolutions() { return cumulativeWheelRevolutions; }
+    public int getLastWheelEventTime() { return lastWheelEventTime; }
+    public int getCumulativeCrankRevolutions() { return cumulativeCrankRevolutions; }
+    public int getLastCrankEventTime() { return lastCrankEventTime; }
+    public int getMaxForceMagnitude() { return maxForceMagnitude; }
+    public int getMinForceMagnitude() { return minForceMagnitude; }
+    public int getMaxTorqueMagnitude() { return maxTorqueMagnitude; }
+    public int getMinTorqueMagnitude() { return minTorqueMagnitude; }
+    public int getMaxAngle() { return maxAngle; }
+    public int getMinAngle() { return minAngle; }
+    public int getTopDeadSpotAngle() { return topDeadSpotAngle; }
+    public int getBottomDeadSpotAngle() { return bottomDeadSpotAngle; }
+    public int getAccumulatedEnergy() { return accumulatedEnergy; }
+    public boolean isOffsetCompensated() { return (flags & FLAG_OFFSET_COMPENSATION) != 0; }
+}
@@ -0,0 +1,103 @@
+package com.cyclingapp.indoor;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Lecture séquentielle d'un fichier de {@link FlightRecorder}, mappé en
+ * mémoire. Les octets d'une notification sont exposés par une vue sur le
+ * fichier, sans copie ; la vue n'est valable que jusqu'au prochain {@link #next()}.
+ */
+public class FlightRecordReader implements Closeable {
+    
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final ByteBuffer payloadView;
+    private final long sessionStartMillis;
+    
+    private long timestampNanos;
+    private int characteristicId;
+    private int length;
+    
+    private FlightRecordReader(RandomAccessFile file, MappedByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < FlightRecorder.FILE_HEADER_SIZE
+                || buffer.getInt() != FlightRecorder.MAGIC) {
+            throw new IOException("Fichier d'enregistrement invalide");
+        }
+        int version = buffer.getInt();
+        if (version != FlightRecorder.VERSION) {
+            throw new IOException("Version d'enregistrement non gérée: " + version);
+        }
+        sessionStartMillis = buffer.getLong();
+        payloadView = buffer.asReadOnlyBuffer();
+    }
+    
+    public static FlightRecordReader open(File path) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new FlightRecordReader(file, buffer);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+    
+    /** Avance à l'enregistrement suivant ; false à la fin du fichier. */
+    public boolean next() {
+        if (buffer.remaining() < FlightRecorder.RECORD_HEADER_SIZE) {
+            return false;
+        }
+        int start = buffer.position();
+        long nanos = buffer.getLong();
+        int id = buffer.getShort() & 0xFFFF;
+        int len = buffer.getShort() & 0xFFFF;
+        // Zone préallouée non écrite, ou enregistrement tronqué par un arrêt brutal
+        if (id == 0 || len > buffer.remaining()) {
+            buffer.position(start);
+            return false;
+        }
+        
+        timestampNanos = nanos;
+        characteristicId = id;
+        length = len;
+        payloadView.limit(buffer.position() + len);
+        payloadView.position(buffer.position());
+        buffer.position(buffer.position() + len);
+        return true;
+    }
+    
+    public long getSessionStartMillis() { return sessionStartMillis; }
+    public long getTimestampNanos() { return timestampNanos; }
+    public int getCharacteristicId() { return characteristicId; }
+    public int getLength() { return length; }
+    
+    // Vue en lecture seule sur les octets de l'enregistrement courant
+    public ByteBuffer getPayload() {
+        return payloadView;
+    }
+    
+    // Copie les octets de l'enregistrement courant, retourne leur nombre
+    public int copyPayload(byte[] destination) {
+        int count = Math.min(length, destination.length);
+        int start = payloadView.position();
+        payloadView.get(destination, 0, count);
+        payloadView.position(start);
+        return count;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
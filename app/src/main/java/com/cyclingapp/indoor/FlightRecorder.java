@@ -0,0 +1,193 @@
+package com.cyclingapp.indoor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enregistreur binaire de toutes les notifications GATT reçues, un fichier par
+ * session. Les écritures se font dans une fenêtre mappée en mémoire (pas
+ * d'appel système sur le chemin chaud) ; un thread la force sur disque
+ * périodiquement.
+ *
+ * Format (little-endian) : en-tête {@code magic, version, début de session en ms},
+ * puis des enregistrements {@code horodatage ns (8), caractéristique 16 bits (2),
+ * longueur (2), octets}. Un identifiant de caractéristique nul marque la fin
+ * (zone préallouée jamais écrite, y compris après un arrêt brutal).
+ */
+public class FlightRecorder {
+    
+    static final int MAGIC = 0x31524643; // "CFR1"
+    static final int VERSION = 1;
+    static final int FILE_HEADER_SIZE = 16;
+    static final int RECORD_HEADER_SIZE = 12;
+    
+    public static final String FILE_PREFIX = "flight-";
+    public static final String FILE_SUFFIX = ".bin";
+    
+    // Taille d'une fenêtre mappée (environ 200 000 notifications)
+    private static final int WINDOW_SIZE = 4 * 1024 * 1024;
+    private static final long FLUSH_INTERVAL_MS = 5000;
+    // Fichiers conservés, les plus anciens sont supprimés
+    private static final int MAX_FILES = 20;
+    
+    private static FlightRecorder instance;
+    
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "flight-recorder-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private volatile boolean recording = false;
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private MappedByteBuffer window;
+    // Position de la fenêtre dans le fichier
+    private long windowStart;
+    private File currentFile;
+    
+    private volatile long recordCount = 0;
+    private volatile long droppedCount = 0;
+    
+    private FlightRecorder() {
+        flusher.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+    
+    public static synchronized FlightRecorder getInstance() {
+        if (instance == null) {
+            instance = new FlightRecorder();
+        }
+        return instance;
+    }
+    
+    // Identifiant 16 bits d'une UUID Bluetooth SIG (0x2A63 pour 00002A63-0000-1000-8000-00805f9b34fb)
+    public static int shortId(UUID uuid) {
+        return (int) (uuid.getMostSignificantBits() >>> 32) & 0xFFFF;
+    }
+    
+    /** Ferme le fichier en cours et en ouvre un nouveau dans le répertoire donné. */
+    public synchronized File startSession(File directory) throws IOException {
+        stopSession();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Impossible de créer " + directory);
+        }
+        pruneOldFiles(directory);
+        
+        long now = System.currentTimeMillis();
+        currentFile = new File(directory, FILE_PREFIX + now + FILE_SUFFIX);
+        file = new RandomAccessFile(currentFile, "rw");
+        channel = file.getChannel();
+        windowStart = 0;
+        window = map(0);
+        window.putInt(MAGIC).putInt(VERSION).putLong(now);
+        recordCount = 0;
+        droppedCount = 0;
+        recording = true;
+        return currentFile;
+    }
+    
+    /** Termine le fichier en cours (tronqué à la taille réellement écrite). */
+    public synchronized void stopSession() {
+        recording = false;
+        if (channel == null) {
+            return;
+        }
+        try {
+            window.force();
+            channel.truncate(windowStart + window.position());
+        } catch (IOException e) {
+            // Le fichier reste lisible : la zone non écrite se termine par des zéros
+        } finally {
+            window = null;
+            channel = null;
+            try {
+                file.close();
+            } catch (IOException ignored) {
+            }
+            file = null;
+        }
+    }
+    
+    /**
+     * Chemin chaud (threads GATT) : quelques écritures dans la fenêtre mappée.
+     */
+    public void record(int characteristicId, byte[] data, int length, long timestampNanos) {
+        if (!recording) {
+            return;
+        }
+        synchronized (this) {
+            MappedByteBuffer buffer = window;
+            if (buffer == null) {
+                return;
+            }
+            if (buffer.remaining() < RECORD_HEADER_SIZE + length) {
+                buffer = nextWindow();
+                if (buffer == null) {
+                    droppedCount++;
+                    return;
+                }
+            }
+            buffer.putLong(timestampNanos)
+                .putShort((short) characteristicId)
+                .putShort((short) length)
+                .put(data, 0, length);
+            recordCount++;
+        }
+    }
+    
+    // Force les écritures sur disque (thread de flush)
+    public void flush() {
+        MappedByteBuffer buffer;
+        synchronized (this) {
+            buffer = window;
+        }
+        if (buffer != null) {
+            buffer.force();
+        }
+    }
+    
+    public boolean isRecording() { return recording; }
+    public synchronized File getCurrentFile() { return currentFile; }
+    public long getRecordCount() { return recordCount; }
+    public long getDroppedCount() { return droppedCount; }
+    
+    private MappedByteBuffer map(long position) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, WINDOW_SIZE);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+    
+    // Fenêtre suivante, juste après la dernière écriture (appelé sous verrou)
+    private MappedByteBuffer nextWindow() {
+        try {
+            window.force();
+            windowStart += window.position();
+            window = map(windowStart);
+            return window;
+        } catch (IOException e) {
+            recording = false;
+            return null;
+        }
+    }
+    
+    private static void pruneOldFiles(File directory) {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX));
+        if (files == null || files.length < MAX_FILES) {
+            return;
+        }
+        // Le nom contient l'heure de début : l'ordre alphabétique est chronologique
+        Arrays.sort(files);
+        for (int i = 0; i <= files.length - MAX_FILES; i++) {
+            files[i].delete();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.cyclingapp.indoor;
+
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.os.Handler;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.UUID;
+
+/**
+ * File des opérations GATT d'une connexion. Android n'accepte qu'une opération
+ * en cours par BluetoothGatt et ignore silencieusement les suivantes : chaque
+ * opération attend donc le callback correspondant (ou son timeout) avant de
+ * lancer la suivante. Tout l'état est confiné au thread du Handler.
+ */
+public class GattOperationQueue {
+    
+    private static final String TAG = "GattOperationQueue";
+    
+    public static final long DEFAULT_TIMEOUT_MS = 5000;
+    public static final int DEFAULT_MAX_RETRIES = 2;
+    
+    // Callback attendu pour terminer une opération
+    public enum Completion {
+        SERVICES_DISCOVERED,
+        DESCRIPTOR_WRITE,
+        CHARACTERISTIC_READ
+    }
+    
+    /** Une opération GATT et la façon de reconnaître sa fin. */
+    public abstract static class Operation {
+        final String name;
+        final Completion completion;
+        final UUID target;
+        final long timeoutMs;
+        final int maxRetries;
+        int attempts = 0;
+        long enqueueNanos;
+        
+        protected Operation(String name, Completion completion, UUID target, long timeoutMs, int maxRetries) {
+            this.name = name;
+            this.completion = completion;
+            this.target = target;
+            this.timeoutMs = timeoutMs;
+            this.maxRetries = maxRetries;
+        }
+        
+        /** @return false si la pile Bluetooth a refusé la requête */
+        protected abstract boolean execute(BluetoothGatt gatt);
+        
+        boolean matches(Completion type, UUID uuid) {
+            return completion == type && (target == null || target.equals(uuid));
+        }
+    }
+    
+    public static Operation discoverServices() {
+        return new Operation("discoverServices", Completion.SERVICES_DISCOVERED, null,
+                DEFAULT_TIMEOUT_MS * 2, DEFAULT_MAX_RETRIES) {
+            @Override
+            protected boolean execute(BluetoothGatt gatt) {
+                return gatt.discoverServices();
+            }
+        };
+    }
+    
+    public static Operation enableNotifications(BluetoothGattCharacteristic characteristic,
+                                                BluetoothGattDescriptor descriptor) {
+        return new Operation("enableNotifications " + characteristic.getUuid(), Completion.DESCRIPTOR_WRITE,
+                characteristic.getUuid(), DEFAULT_TIMEOUT_MS, DEFAULT_MAX_RETRIES) {
+            @Override
+            protected boolean execute(BluetoothGatt gatt) {
+                if (!gatt.setCharacteristicNotification(characteristic, true)) {
+                    return false;
+                }
+                descriptor.setValue(BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
+                return gatt.writeDescriptor(descriptor);
+            }
+        };
+    }
+    
+    public static Operation readCharacteristic(BluetoothGattCharacteristic characteristic) {
+        return new Operation("read " + characteristic.getUuid(), Completion.CHARACTERISTIC_READ,
+                characteristic.getUuid(), DEFAULT_TIMEOUT_MS, DEFAULT_MAX_RETRIES) {
+            @Override
+            protected boolean execute(BluetoothGatt gatt) {
+                return gatt.readCharacteristic(characteristic);
+            }
+        };
+    }
+    
+    private final Handler handler;
+    private final BluetoothGatt gatt;
+    private final ArrayDeque<Operation> pending = new ArrayDeque<>();
+    private Operation current;
+    private boolean closed = false;
+    
+    // Latence mise en file -> fin d'opération
+    // (écrites par le thread du Handler, lisibles depuis n'importe quel thread)
+    private volatile int completedCount = 0;
+    private volatile long totalLatencyNanos = 0;
+    private volatile long maxLatencyNanos = 0;
+    
+    private final Runnable timeoutRunnable = this::onTimeout;
+    
+    public GattOperationQueue(Handler handler, BluetoothGatt gatt) {
+        this.handler = handler;
+        this.gatt = gatt;
+    }
+    
+    public void enqueue(Operation operation) {
+        long now = System.nanoTime();
+        handler.post(() -> {
+            if (closed) {
+                return;
+            }
+            operation.enqueueNanos = now;
+            pending.add(operation);
+            if (current == null) {
+                next();
+            }
+        });
+    }
+    
+    /** À appeler depuis les callbacks GATT (n'importe quel thread). */
+    public void onCompletion(Completion type, UUID uuid, int status) {
+        handler.post(() -> {
+            Operation operation = current;
+            if (operation == null || !operation.matches(type, uuid)) {
+                return;
+            }
+            handler.removeCallbacks(timeoutRunnable);
+            if (status == BluetoothGatt.GATT_SUCCESS) {
+                recordCompletion(operation);
+                current = null;
+                next();
+            } else {
+                Log.w(TAG, operation.name + " a échoué (status " + status + ")");
+                retryOrDrop(operation);
+            }
+        });
+    }
+    
+    public void close() {
+        handler.post(() -> {
+            closed = true;
+            handler.removeCallbacks(timeoutRunnable);
+            pending.clear();
+            current = null;
+        });
+    }
+    
+    private void next() {
+        if (closed || current != null) {
+            return;
+        }
+        current = pending.poll();
+        if (current != null) {
+            start(current);
+        }
+    }
+    
+    private void start(Operation operation) {
+        operation.attempts++;
+        boolean accepted;
+        try {
+            accepted = operation.execute(gatt);
+        } catch (SecurityException e) {
+            Log.e(TAG, "Erreur permission: " + e.getMessage());
+            accepted = false;
+        }
+        if (accepted) {
+            handler.postDelayed(timeoutRunnable, operation.timeoutMs);
+        } else {
+            Log.w(TAG, operation.name + " refusée (essai " + operation.attempts + ")");
+            retryOrDrop(operation);
+        }
+    }
+    
+    private void onTimeout() {
+        Operation operation = current;
+        if (operation != null) {
+            Log.w(TAG, operation.name + " : timeout après " + operation.timeoutMs + " ms");
+            retryOrDrop(operation);
+        }
+    }
+    
+    private void retryOrDrop(Operation operation) {
+        if (operation.attempts <= operation.maxRetries) {
+            // Relance après un court délai pour laisser la pile se libérer
+            handler.postDelayed(() -> {
+                if (current == operation && !closed) {
+                    start(operation);
+                }
+            }, 100L * operation.attempts);
+            return;
+        }
+        Log.e(TAG, operation.name + " abandonnée après " + operation.attempts + " essais");
+        current = null;
+        next();
+    }
+    
+    private void recordCompletion(Operation operation) {
+        long latency = System.nanoTime() - operation.enqueueNanos;
+        completedCount++;
+        totalLatencyNanos += latency;
+        maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+        Log.d(TAG, operation.name + " terminée en " + (latency / 1_000_000) + " ms");
+    }
+    
+    // Statistiques
+    public int getCompletedCount() { return completedCount; }
+    public long getMaxLatencyNanos() { return maxLatencyNanos; }
+    
+    public long getAverageLatencyNanos() {
+        return completedCount > 0 ? totalLatencyNanos / completedCount : 0;
+    }
+}
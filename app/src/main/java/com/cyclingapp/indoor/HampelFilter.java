@@ -0,0 +1,140 @@
+package com.cyclingapp.indoor;
+
+/**
+ * Filtre de Hampel en continu : une valeur trop éloignée de la médiane des
+ * dernières valeurs (au-delà de k × 1,4826 × MAD, et d'un écart minimal) est
+ * remplacée par cette médiane. Corrige les pics isolés (paquet à 2 000 W) et
+ * les trous d'un paquet à 0 W ; un vrai changement de niveau passe dès qu'il
+ * occupe la moitié de la fenêtre.
+ *
+ * La fenêtre est un arbre de Fenwick (comptes par valeur) : médiane en
+ * O(log V) et MAD par recherche dichotomique, sans tri ni allocation.
+ * Non thread-safe, à l'exception du compteur de corrections.
+ */
+public class HampelFilter {
+    
+    public static final int DEFAULT_WINDOW = 9;
+    public static final double DEFAULT_THRESHOLD = 3.0;
+    public static final int DEFAULT_MIN_DEVIATION = 150;
+    
+    // Facteur d'échelle MAD → écart-type pour une loi normale
+    private static final double MAD_SCALE = 1.4826;
+    // Les valeurs supérieures sont comptées à cette valeur dans la fenêtre
+    private static final int MAX_VALUE = 4095;
+    
+    private final double threshold;
+    private final int minDeviation;
+    
+    // Fenêtre : ordre d'arrivée (tampon circulaire) et comptes par valeur
+    private final int[] window;
+    private int head = 0;
+    private int size = 0;
+    private final int[] tree = new int[MAX_VALUE + 2];
+    private final int highestBit = Integer.highestOneBit(MAX_VALUE + 1);
+    
+    private volatile long correctedCount = 0;
+    
+    public HampelFilter() {
+        this(DEFAULT_WINDOW, DEFAULT_THRESHOLD, DEFAULT_MIN_DEVIATION);
+    }
+    
+    /**
+     * @param windowSize nombre de valeurs précédentes prises en compte
+     * @param threshold nombre d'écarts-types robustes tolérés (k)
+     * @param minDeviation écart toujours accepté, même si la fenêtre est constante
+     */
+    public HampelFilter(int windowSize, double threshold, int minDeviation) {
+        if (windowSize < 3) {
+            throw new IllegalArgumentException("Fenêtre trop petite: " + windowSize);
+        }
+        this.window = new int[windowSize];
+        this.threshold = threshold;
+        this.minDeviation = minDeviation;
+    }
+    
+    /** Retourne la valeur à utiliser (la médiane si {@code value} est aberrante). */
+    public int filter(int value) {
+        int clamped = Math.max(0, Math.min(value, MAX_VALUE));
+        int result = value;
+        // Pas de décision tant que la fenêtre n'est pas à moitié pleine
+        if (size > window.length / 2) {
+            int half = (size + 1) / 2;
+            int median = kth(half);
+            int mad = medianAbsoluteDeviation(median, half);
+            double limit = Math.max(threshold * MAD_SCALE * mad, minDeviation);
+            if (Math.abs(clamped - median) > limit) {
+                result = median;
+                correctedCount++;
+            }
+        }
+        // La fenêtre garde les valeurs brutes : un changement de niveau finit par être accepté
+        push(clamped);
+        return result;
+    }
+    
+    public long getCorrectedCount() {
+        return correctedCount;
+    }
+    
+    public void reset() {
+        java.util.Arrays.fill(tree, 0);
+        head = 0;
+        size = 0;
+    }
+    
+    private void push(int value) {
+        if (size == window.length) {
+            add(window[head], -1);
+        } else {
+            size++;
+        }
+        window[head] = value;
+        head = (head + 1) % window.length;
+        add(value, 1);
+    }
+    
+    // Plus petit d tel qu'au moins {@code half} valeurs soient dans [median - d, median + d]
+    private int medianAbsoluteDeviation(int median, int half) {
+        int low = 0;
+        int high = Math.max(median, MAX_VALUE - median);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int count = prefix(Math.min(MAX_VALUE, median + middle)) - prefix(median - middle - 1);
+            if (count >= half) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+    
+    // Arbre de Fenwick indexé à partir de 1 (valeur v à l'indice v + 1)
+    private void add(int value, int delta) {
+        for (int i = value + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+    
+    // Nombre de valeurs <= value (0 si value < 0)
+    private int prefix(int value) {
+        int sum = 0;
+        for (int i = value + 1; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+    
+    // k-ième plus petite valeur (k à partir de 1), par descente dans l'arbre
+    private int kth(int k) {
+        int position = 0;
+        for (int step = highestBit; step > 0; step >>= 1) {
+            int next = position + step;
+            if (next < tree.length && tree[next] < k) {
+                position = next;
+                k -= tree[next];
+            }
+        }
+        return position;
+    }
+}
@@ -0,0 +1,41 @@
+package com.cyclingapp.indoor;
+
+/**
+ * Ceinture cardio (Heart Rate Measurement 0x2A37).
+ */
+public class HeartRateSensorParser implements SensorParser {
+    
+    // Bit 0 des flags : fréquence cardiaque sur 16 bits au lieu de 8
+    private static final int FLAG_HEART_RATE_UINT16 = 1;
+    
+    @Override
+    public int getKind() {
+        return KIND_HEART_RATE;
+    }
+    
+    @Override
+    public boolean onPacket(byte[] data, int length, long timestampNanos, SensorFusion fusion) {
+        int bpm = decodeHeartRate(data, length);
+        if (bpm < 0) {
+            return false;
+        }
+        fusion.updateHeartRate(timestampNanos, bpm);
+        return true;
+    }
+    
+    /** @return la fréquence cardiaque en bpm, ou -1 si le paquet est invalide */
+    public static int decodeHeartRate(byte[] data, int length) {
+        if (data == null || length < 2 || length > data.length) {
+            return -1;
+        }
+        if ((data[0] & FLAG_HEART_RATE_UINT16) != 0) {
+            return length >= 3 ? CyclingPowerDecoder.uint16(data, 1) : -1;
+        }
+        return data[1] & 0xFF;
+    }
+    
+    @Override
+    public void reset() {
+        // Aucun état
+    }
+}
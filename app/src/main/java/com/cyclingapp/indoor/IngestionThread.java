@@ -0,0 +1,104 @@
+package com.cyclingapp.indoor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Thread consommateur de la {@link NotificationRingBuffer} : décode et
+ * distribue les paquets hors du thread Binder. Le producteur ne fait
+ * qu'une copie dans la file et, si besoin, réveille ce thread.
+ */
+public class IngestionThread extends Thread {
+    
+    public interface PacketHandler {
+        void onPacket(int channel, byte[] data, int length, long timestampNanos);
+    }
+    
+    // Délai maximal de sommeil si un réveil est manqué
+    private static final long PARK_NANOS = 50_000_000L;
+    
+    private final NotificationRingBuffer buffer;
+    private final PacketHandler handler;
+    private final NotificationRingBuffer.Packet packet;
+    
+    private volatile boolean running = true;
+    private volatile boolean parked = false;
+    
+    // Producteurs en attente d'un emplacement libre, réveillés après chaque paquet lu
+    private final Object spaceLock = new Object();
+    private final AtomicInteger spaceWaiters = new AtomicInteger();
+    
+    public IngestionThread(NotificationRingBuffer buffer, PacketHandler handler) {
+        super("ble-ingestion");
+        setDaemon(true);
+        this.buffer = buffer;
+        this.handler = handler;
+        this.packet = new NotificationRingBuffer.Packet(buffer.getSlotSize());
+    }
+    
+    /** Appelé par le producteur (thread GATT). */
+    public boolean publish(int channel, byte[] data, int length, long timestampNanos) {
+        boolean accepted = buffer.offer(channel, data, length, timestampNanos);
+        if (parked) {
+            LockSupport.unpark(this);
+        }
+        return accepted;
+    }
+    
+    /**
+     * Attend qu'un emplacement se libère dans la file, ou que ce thread soit arrêté.
+     * N'écrit rien : l'appelant publie ensuite, la place a pu être reprise entre-temps.
+     */
+    public void awaitSpace() throws InterruptedException {
+        spaceWaiters.incrementAndGet();
+        try {
+            synchronized (spaceLock) {
+                // Annoncé avant la vérification : un paquet lu ensuite verra l'attente
+                while (running && buffer.size() >= buffer.getCapacity()) {
+                    spaceLock.wait(PARK_NANOS / 1_000_000);
+                }
+            }
+        } finally {
+            spaceWaiters.decrementAndGet();
+        }
+    }
+    
+    public boolean isRunning() {
+        return running;
+    }
+    
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(this);
+        signalSpace();
+    }
+    
+    private void signalSpace() {
+        if (spaceWaiters.get() > 0) {
+            synchronized (spaceLock) {
+                spaceLock.notifyAll();
+            }
+        }
+    }
+    
+    @Override
+    public void run() {
+        while (running) {
+            if (buffer.poll(packet)) {
+                signalSpace();
+                handler.onPacket(packet.channel, packet.data, packet.length, packet.timestampNanos);
+                continue;
+            }
+            parked = true;
+            // Re-vérifier après avoir annoncé le sommeil pour ne pas manquer un paquet
+            if (buffer.isEmpty() && running) {
+                LockSupport.parkNanos(this, PARK_NANOS);
+            }
+            parked = false;
+        }
+    }
+    
+    public NotificationRingBuffer getBuffer() {
+        return buffer;
+    }
+}
@@ -0,0 +1,178 @@
+package com.cyclingapp.indoor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Registre des SensorDataListener en copie sur écriture : l'ajout et le
+ * retrait (thread UI) remplacent le tableau, la distribution (thread
+ * d'ingestion) parcourt un instantané sans verrou.
+ */
+public class ListenerRegistry {
+    
+    public enum DispatchMode {
+        // Appel direct sur le thread d'ingestion
+        INLINE,
+        // Chaque échantillon est posté sur l'executor du listener
+        EXECUTOR,
+        // Posté sur l'executor, mais seul le dernier échantillon en attente est livré
+        LATEST
+    }
+    
+    /** Compteurs de latence de distribution d'un listener. */
+    public static class Stats {
+        private final AtomicLong deliveries = new AtomicLong();
+        private final AtomicLong totalLatencyNanos = new AtomicLong();
+        private final AtomicLong maxLatencyNanos = new AtomicLong();
+        private final AtomicLong coalesced = new AtomicLong();
+        
+        void record(long latencyNanos) {
+            deliveries.incrementAndGet();
+            totalLatencyNanos.addAndGet(latencyNanos);
+            long max;
+            while (latencyNanos > (max = maxLatencyNanos.get())) {
+                if (maxLatencyNanos.compareAndSet(max, latencyNanos)) {
+                    break;
+                }
+            }
+        }
+        
+        public long getDeliveries() { return deliveries.get(); }
+        public long getMaxLatencyNanos() { return maxLatencyNanos.get(); }
+        // Échantillons remplacés avant livraison (mode LATEST)
+        public long getCoalesced() { return coalesced.get(); }
+        
+        public long getAverageLatencyNanos() {
+            long count = deliveries.get();
+            return count > 0 ? totalLatencyNanos.get() / count : 0;
+        }
+    }
+    
+    private static final class Subscription {
+        final SensorDataListener listener;
+        final DispatchMode mode;
+        final Executor executor;
+        final Stats stats = new Stats();
+        
+        // Mode LATEST : dernier échantillon en attente et sa date de dispatch
+        final AtomicReference<SensorSample> pendingSample = new AtomicReference<>();
+        volatile long pendingSinceNanos;
+        final AtomicBoolean drainScheduled = new AtomicBoolean();
+        final Runnable drainLatest = this::drainLatest;
+        
+        Subscription(SensorDataListener listener,
+                     DispatchMode mode, Executor executor) {
+            this.listener = listener;
+            this.mode = mode;
+            this.executor = executor;
+        }
+        
+        void deliver(SensorSample sample, long dispatchNanos) {
+            listener.onDataReceived(sample);
+            stats.record(System.nanoTime() - dispatchNanos);
+        }
+        
+        // L'échantillon est pris avant de libérer le drapeau : une livraison
+        // planifiée entre-temps ne peut pas relivrer le même
+        private void drainLatest() {
+            SensorSample sample = pendingSample.getAndSet(null);
+            if (sample != null) {
+                deliver(sample, pendingSinceNanos);
+            }
+            drainScheduled.set(false);
+            // Échantillon arrivé pendant la livraison, fusionné sans planifier de nouvelle livraison
+            if (pendingSample.get() != null && drainScheduled.compareAndSet(false, true)) {
+                pendingSinceNanos = System.nanoTime();
+                executor.execute(drainLatest);
+            }
+        }
+    }
+    
+    private static final Subscription[] EMPTY = new Subscription[0];
+    
+    private volatile Subscription[] subscriptions = EMPTY;
+    
+    public synchronized void add(SensorDataListener listener,
+                                 DispatchMode mode, Executor executor) {
+        if (mode != DispatchMode.INLINE && executor == null) {
+            throw new IllegalArgumentException("Un executor est requis pour le mode " + mode);
+        }
+        Subscription[] current = subscriptions;
+        for (Subscription s : current) {
+            if (s.listener == listener) {
+                return;
+            }
+        }
+        Subscription[] next = new Subscription[current.length + 1];
+        System.arraycopy(current, 0, next, 0, current.length);
+        next[current.length] = new Subscription(listener, mode, executor);
+        subscriptions = next;
+    }
+    
+    public synchronized void remove(SensorDataListener listener) {
+        Subscription[] current = subscriptions;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].listener == listener) {
+                if (current.length == 1) {
+                    subscriptions = EMPTY;
+                    return;
+                }
+                Subscription[] next = new Subscription[current.length - 1];
+                System.arraycopy(current, 0, next, 0, i);
+                System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                subscriptions = next;
+                return;
+            }
+        }
+    }
+    
+    public boolean isEmpty() {
+        return subscriptions.length == 0;
+    }
+    
+    public Stats getStats(SensorDataListener listener) {
+        for (Subscription s : subscriptions) {
+            if (s.listener == listener) {
+                return s.stats;
+            }
+        }
+        return null;
+    }
+    
+    public void dispatchData(SensorSample sample) {
+        long now = System.nanoTime();
+        for (Subscription s : subscriptions) {
+            switch (s.mode) {
+                case INLINE:
+                    s.deliver(sample, now);
+                    break;
+                case EXECUTOR:
+                    s.executor.execute(() -> s.deliver(sample, now));
+                    break;
+                case LATEST:
+                    s.pendingSample.set(sample);
+                    if (s.drainScheduled.compareAndSet(false, true)) {
+                        s.pendingSinceNanos = now;
+                        s.executor.execute(s.drainLatest);
+                    } else {
+                        // Une livraison est déjà en attente : elle prendra cet échantillon
+                        s.stats.coalesced.incrementAndGet();
+                    }
+                    break;
+            }
+        }
+    }
+    
+    public void dispatchConnectionState(boolean connected) {
+        for (Subscription s : subscriptions) {
+            if (s.mode == DispatchMode.INLINE) {
+                s.listener.onConnectionStateChanged(connected);
+            } else {
+                // Les changements d'état ne sont jamais fusionnés
+                s.executor.execute(() -> s.listener.onConnectionStateChanged(connected));
+            }
+        }
+    }
+}
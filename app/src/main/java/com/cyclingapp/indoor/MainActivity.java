@@ -2,13 +2,10 @@ package com.cyclingapp.indoor;
 
 import android.Manifest;
 import android.bluetooth.BluetoothAdapter;
-import android.bluetooth.BluetoothDevice;
 import android.bluetooth.BluetoothManager;
-import android.bluetooth.le.BluetoothLeScanner;
-import android.bluetooth.le.ScanCallback;
-import android.bluetooth.le.ScanResult;
 import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Bundle;
@@ -27,8 +24,14 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class MainActivity extends AppCompatActivity implements BluetoothConnectionManager.BluetoothDataListener {
     private boolean pendingBluetoothActivation = false;
@@ -36,15 +39,27 @@ public class MainActivity extends AppCompatActivity implements BluetoothConnecti
     private static final String TAG = "CyclingApp";
     private static final int REQUEST_BLUETOOTH_PERMISSIONS = 100;
     private static final long SCAN_PERIOD = 10000; // 10 secondes
+    // Au-delà, le capteur mémorisé est considéré absent et on scanne
+    private static final long DIRECT_CONNECT_TIMEOUT = 4000;
+    // Intervalle minimal entre deux rafraîchissements de l'affichage
+    private static final long UI_REFRESH_NANOS = 250_000_000L;
+    
+    // Fichier de notifications à rejouer à la place des capteurs (tests de charge, rejeu de sorties)
+    public static final String EXTRA_REPLAY_FILE = "replay_file";
+    public static final String EXTRA_REPLAY_SPEED = "replay_speed";
     
     // Composants UI
     private TextView statusText;
+    private TextView powerTitle;
     private TextView powerValue;
     private TextView cadenceValue;
     private TextView speedValue;
     private TextView distanceValue;
     private TextView caloriesValue;
     private TextView avgSpeedValue;
+    private TextView trainingLoadText;
+    private TextView meanMaxText;
+    private TextView wPrimeBalanceText;
     private Switch bluetoothSwitch;
     private Button sessionButton;
     private Button historyButton;
@@ -52,37 +67,59 @@ public class MainActivity extends AppCompatActivity implements BluetoothConnecti
     
     // Bluetooth
     private BluetoothAdapter bluetoothAdapter;
-    private BluetoothLeScanner bluetoothLeScanner;
-    private boolean scanning = false;
+    private SensorSource sensorSource;
+    private long correctedAtSessionStart = 0;
     private Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable directConnectTimeoutRunnable = this::onDirectConnectTimeout;
     
-    // Données de cyclisme
-    private int currentPower = 0;
-    private int currentCadence = 0;
-    private double currentSpeed = 0.0;
-    private double totalDistance = 0.0;
-    private double totalCalories = 0.0;
-    private double averageSpeed = 0.0;
-    private long lastUpdateTime = 0;
-    private long sessionStartTime = 0;
+    // Données de cyclisme (mises à jour sur le thread d'ingestion, verrou sur l'instance)
+    private final MetricsEngine metrics = new MetricsEngine();
+    // Dernier instantané envoyé à l'affichage (System.nanoTime(), gardé par metrics)
+    private long lastUiRefreshNanos = 0;
+    private int userWeight = SpeedModel.DEFAULT_RIDER_WEIGHT_KG;
     
-    // Gestion de la persistance des valeurs (éviter sauts à 0)
-    private long lastValidDataTime = 0;
-    private static final long DATA_TIMEOUT_MS = 3000; // 3 secondes
+    // Valeur de la carte Puissance : instantanée ou moyenne glissante (toucher pour changer)
+    private static final String PREFS_NAME = "CyclingAppPrefs";
+    private static final String PREF_POWER_DISPLAY_MODE = "power_display_mode";
+    static final String PREF_CUSTOM_POWER_WINDOW = "custom_power_window_s";
+    static final String PREF_FTP = "user_ftp";
+    static final String PREF_MAX_HEART_RATE = "user_max_hr";
+    static final String PREF_CRITICAL_POWER = "user_cp";
+    static final String PREF_W_PRIME = "user_w_prime";
+    static final String PREF_WEIGHT = "user_weight";
+    static final String PREF_VIRTUAL_GRADE = "virtual_grade";
+    static final String PREF_CADENCE_ZONES = "cadence_zone_bounds";
+    private static final int POWER_INSTANT = 0;
+    private static final int POWER_3S = 1;
+    private static final int POWER_10S = 2;
+    private static final int POWER_30S = 3;
+    private static final int POWER_CUSTOM = 4;
+    private static final int POWER_MODE_COUNT = 5;
+    private volatile int powerDisplayMode = POWER_INSTANT;
     
     // Gestion de session
     private Session currentSession = null;
     private boolean isRecording = false;
-    private SessionDatabaseHelper dbHelper;
-    private double totalPower = 0.0;
-    private int powerSampleCount = 0;
+    private SessionRepository repository;
+    // Échantillons par seconde de la session en cours (null hors session)
+    private volatile SampleRecorder sampleRecorder;
+    // Journal de la session en cours, pour la récupérer après un arrêt brutal (verrou sur metrics)
+    private SessionJournal journal;
+    private static final String JOURNAL_DIR = "journal";
+    // Ouverture et fermeture du fichier de notifications, dans l'ordre et hors du thread UI
+    private final ExecutorService flightFiles = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "flight-files");
+        thread.setDaemon(true);
+        return thread;
+    });
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
         
-        dbHelper = new SessionDatabaseHelper(this);
+        repository = SessionRepository.getInstance(this);
+        recoverUnfinishedSessions();
         initializeViews();
         initializeBluetooth();
         setupClickListeners();
@@ -90,8 +127,13 @@ public class MainActivity extends AppCompatActivity implements BluetoothConnecti
         // Charger la calibration du capteur
         BluetoothConnectionManager.getInstance().loadCalibration(this);
         
-        // S'enregistrer comme listener pour les données Bluetooth
-        BluetoothConnectionManager.getInstance().addListener(this);
+        // S'enregistrer comme listener de la source de données (capteurs ou rejeu)
+        sensorSource = createSensorSource();
+        sensorSource.addListener(this);
+        if (sensorSource instanceof ReplaySensorSource) {
+            ((ReplaySensorSource) sensorSource).start();
+            return;
+        }
         
         // Connexion automatique si Bluetooth activé
         if (bluetoothSwitch.isChecked()) {
@@ -99,14 +141,33 @@ public class MainActivity extends AppCompatActivity implements BluetoothConnecti
     }
     }
 
+    private SensorSource createSensorSource() {
+        String replayPath = getIntent().getStringExtra(EXTRA_REPLAY_FILE);
+        if (replayPath != null) {
+            double speed = getIntent().getDoubleExtra(EXTRA_REPLAY_SPEED, ReplaySensorSource.SPEED_REAL_TIME);
+            try {
+                ReplaySensorSource replay = ReplaySensorSource.fromFile(new File(replayPath), speed);
+                Log.i(TAG, "Rejeu de " + replay.getPacketCount() + " paquets depuis " + replayPath);
+                return replay;
+            } catch (IOException e) {
+                Log.e(TAG, "Rejeu impossible: " + e.getMessage());
+            }
+        }
+        return BluetoothConnectionManager.getInstance();
+    }
+    
     private void initializeViews() {
         statusText = findViewById(R.id.statusText);
+        powerTitle = findViewById(R.id.powerTitle);
         powerValue = findViewById(R.id.powerValue);
         cadenceValue = findViewById(R.id.cadenceValue);
         speedValue = findViewById(R.id.speedValue);
         distanceValue = findViewById(R.id.distanceValue);
         caloriesValue = findViewById(R.id.caloriesValue);
         avgSpeedValue = findViewById(R.id.avgSpeedValue);
+        trainingLoadText = findViewById(R.id.trainingLoadText);
+        meanMaxText = findViewById(R.id.meanMaxText);
+        wPrimeBalanceText = findViewById(R.id.wPrimeBalanceText);
         bluetoothSwitch = findViewById(R.id.bluetoothSwitch);
         sessionButton = findViewById(R.id.sessionButton);
         historyButton = findViewById(R.id.historyButton);
@@ -138,8 +199,6 @@ public class MainActivity extends AppCompatActivity implements BluetoothConnecti
             bluetoothSwitch.setEnabled(false);
             return;
         }
-
-        bluetoothLeScanner = bluetoothAdapter.getBluetoothLeScanner();
     }
     
     private void setupClickListeners() {
@@ -161,6 +220,7 @@ public class MainActivity extends AppCompatActivity implements BluetoothConnecti
                 }
                 startAutoConnect();
             } else {
+                handler.removeCallbacks(directConnectTimeoutRunnable);
                 BluetoothConnectionManager.getInstance().disconnect();
                 stopScan();
             }
@@ -178,6 +238,14 @@ public class MainActivity extends AppCompatActivity implements BluetoothConnecti
             }
         });
 
+        // Carte Puissance : passer à la moyenne suivante
+        powerValue.setOnClickListener(v -> {
+            powerDisplayMode = (powerDisplayMode + 1) % POWER_MODE_COUNT;
+            getSharedPreferences(PREFS_NAME, MODE_PRIVATE).edit()
+                .putInt(PREF_POWER_DISPLAY_MODE, powerDisplayMode).apply();
+            updatePowerTitle();
+        });
+        
         // Bouton Historique
         historyButton.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -264,161 +332,121 @@ public class MainActivity extends AppCompatActivity implements BluetoothConnecti
             return;
         }
         
-        if (BluetoothConnectionManager.getInstance().isConnected()) {
+        BluetoothConnectionManager manager = BluetoothConnectionManager.getInstance();
+        if (manager.isConnected()) {
             updateConnectionStatus(true);
             return;
         }
+        manager.startTimeToFirstSample();
+        
+        // Connexion directe au dernier capteur connu, sans scan
+        String lastAddress = manager.getLastDeviceAddress(this);
+        if (lastAddress != null && BluetoothAdapter.checkBluetoothAddress(lastAddress)) {
+            Log.i(TAG, "Connexion directe à " + lastAddress);
+            updateConnectionStatus(false, "Connexion...");
+            manager.connect(this, bluetoothAdapter.getRemoteDevice(lastAddress), SensorParser.KIND_POWER);
+            handler.postDelayed(directConnectTimeoutRunnable, DIRECT_CONNECT_TIMEOUT);
+            return;
+        }
         
         updateConnectionStatus(false, "Recherche...");
         startScan();
     }
     
-    private void startScan() {
-        if (scanning) return;
-        
-        if (bluetoothLeScanner == null) {
-            bluetoothLeScanner = bluetoothAdapter.getBluetoothLeScanner();
-            if (bluetoothLeScanner == null) {
-                showToast("Scanner Bluetooth non disponible");
-                bluetoothSwitch.setChecked(false);
-                return;
-            }
+    private void onDirectConnectTimeout() {
+        BluetoothConnectionManager manager = BluetoothConnectionManager.getInstance();
+        if (manager.hasSensor(SensorParser.KIND_POWER) && manager.isConnected()) {
+            return;
         }
-        
-        // Arrêter le scan après SCAN_PERIOD
-        handler.postDelayed(() -> {
-            stopScan();
-            if (!BluetoothConnectionManager.getInstance().isConnected()) {
-                showToast("Aucun capteur Stages trouvé");
-                bluetoothSwitch.setChecked(false);
-            }
-        }, SCAN_PERIOD);
-        
-        scanning = true;
-        try {
-            bluetoothLeScanner.startScan(leScanCallback);
-            Log.d(TAG, "Scan BLE démarré");
-        } catch (SecurityException e) {
-            Log.e(TAG, "Erreur permission scan: " + e.getMessage());
-            showToast("Erreur permission Bluetooth");
-            scanning = false;
+        Log.i(TAG, "Capteur mémorisé injoignable, scan");
+        manager.disconnect();
+        updateConnectionStatus(false, "Recherche...");
+        startScan();
+    }
+    
+    private void startScan() {
+        // Scan partagé : recherche rapide tant que le capteur de puissance manque
+        if (!BleScanEngine.getInstance().startScan(this, scanListener,
+                BleScanEngine.Mode.LOW_LATENCY, SCAN_PERIOD)) {
+            showToast("Scanner Bluetooth non disponible");
             bluetoothSwitch.setChecked(false);
         }
     }
     
     private void stopScan() {
-        if (!scanning) return;
-        
-        scanning = false;
-        try {
-            if (bluetoothLeScanner != null) {
-                bluetoothLeScanner.stopScan(leScanCallback);
-                Log.d(TAG, "Scan BLE arrêté");
-            }
-        } catch (SecurityException e) {
-            Log.e(TAG, "Erreur arrêt scan: " + e.getMessage());
-        }
+        BleScanEngine.getInstance().stopScan(scanListener);
     }
     
-    private ScanCallback leScanCallback = new ScanCallback() {
+    private final BleScanEngine.ScanListener scanListener = new BleScanEngine.ScanListener() {
         @Override
-        public void onScanResult(int callbackType, ScanResult result) {
-            BluetoothDevice device = result.getDevice();
-            try {
-                String deviceName = device.getName();
-                
-                if (deviceName != null && deviceName.toLowerCase().contains("stages")) {
-                    Log.i(TAG, "Capteur Stages trouvé: " + deviceName);
-                    stopScan();
-                    
-                    // Connecter via le BluetoothConnectionManager
-                    BluetoothConnectionManager.getInstance().connect(MainActivity.this, device);
-                    
-                    // Attendre connexion
-                    handler.postDelayed(() -> {
-                        if (BluetoothConnectionManager.getInstance().isConnected()) {
-                            updateConnectionStatus(true);
-                            showToast("Connecté à " + deviceName);
-                        }
-                    }, 2000);
-                }
-            } catch (SecurityException e) {
-                Log.e(TAG, "Erreur permission device: " + e.getMessage());
+        public void onDeviceFound(BleScanEngine.DiscoveredDevice device) {
+            BluetoothConnectionManager manager = BluetoothConnectionManager.getInstance();
+            int kind = device.getSensorKind();
+            if (kind < 0 || manager.hasSensor(kind)) {
+                return;
+            }
+            
+            if (kind == SensorParser.KIND_POWER) {
+                Log.i(TAG, "Capteur de puissance trouvé: " + device.getName());
+                manager.connect(MainActivity.this, device.getDevice(), kind);
+                // La recherche de la ceinture cardio ou du capteur de vitesse peut continuer en fond
+                BleScanEngine.getInstance().startScan(MainActivity.this, this,
+                    BleScanEngine.Mode.BATCH, SCAN_PERIOD);
+            } else {
+                // Ceinture cardio ou capteur vitesse/cadence : connectés en plus du capteur de puissance
+                Log.i(TAG, "Capteur additionnel trouvé: " + device.getAddress());
+                manager.connect(MainActivity.this, device.getDevice(), kind);
+            }
+        }
+        
+        @Override
+        public void onScanFinished() {
+            if (!BluetoothConnectionManager.getInstance().hasSensor(SensorParser.KIND_POWER)) {
+                showToast("Aucun capteur de puissance trouvé");
+                bluetoothSwitch.setChecked(false);
             }
         }
         
         @Override
         public void onScanFailed(int errorCode) {
             Log.e(TAG, "Scan failed: " + errorCode);
-            scanning = false;
             showToast("Erreur scan Bluetooth");
             bluetoothSwitch.setChecked(false);
         }
     };
+    
     @Override
-    public void onDataReceived(int power, int cadence) {
-        long currentTime = System.currentTimeMillis();
+    public void onDataReceived(SensorSample sample) {
+        int power = sample.getPower();
+        int cadence = (int) Math.round(sample.getCadence());
         
-        // Vérifier si on a des données valides
-        boolean hasValidData = (power > 0 || cadence > 0);
-        
-        if (hasValidData) {
-            lastValidDataTime = currentTime;
-            
-            // Mettre à jour seulement les valeurs > 0
-            if (power > 0) {
-                currentPower = power;
+        int heartRate = sample.hasHeartRate() ? sample.getHeartRate() : 0;
+        // Instantané complet seulement au rythme de l'affichage, pas à chaque échantillon
+        long now = System.nanoTime();
+        MetricsSnapshot snapshot = null;
+        int currentPower;
+        int currentCadence;
+        double currentSpeed;
+        synchronized (metrics) {
+            metrics.update(sample.getTimestampNanos(), power, cadence, heartRate);
+            if (journal != null) {
+                journal.appendSample(sample.getTimestampNanos(), power, cadence, heartRate);
             }
-            if (cadence > 0) {
-                currentCadence = cadence;
+            currentPower = metrics.getCurrentPower();
+            currentCadence = metrics.getCurrentCadence();
+            currentSpeed = metrics.getCurrentSpeed();
+            if (now - lastUiRefreshNanos >= UI_REFRESH_NANOS) {
+                lastUiRefreshNanos = now;
+                snapshot = metrics.snapshot();
             }
-        } else {
-            // Aucune donnée valide : vérifier le timeout
-            if (currentTime - lastValidDataTime > DATA_TIMEOUT_MS) {
-                // Timeout : considérer comme arrêt
-                currentPower = 0;
-                currentCadence = 0;
-                currentSpeed = 0.0;
-            }
-            // Sinon, garder les dernières valeurs
         }
-        
-        if (lastUpdateTime > 0) {
-            double deltaTime = (currentTime - lastUpdateTime) / 1000.0;
-            
-            // Calculer vitesse (ne retournera 0 que si timeout atteint)
-            if (currentPower > 0 || currentCadence > 0) {
-                currentSpeed = calculateSpeed(currentPower, currentCadence);
-            }
-            
-            // Calcul distance
-            double distance = currentSpeed * deltaTime / 3600.0;
-            totalDistance += distance;
-            
-            // Calcul calories
-            double calories = calculateCalories(currentPower, deltaTime);
-            totalCalories += calories;
-            
-            // Calcul vitesse moyenne
-            if (sessionStartTime > 0) {
-                double sessionDuration = (currentTime - sessionStartTime) / 3600000.0;
-                if (sessionDuration > 0) {
-                    averageSpeed = totalDistance / sessionDuration;
-                }
-            }
-            
-            // Mise à jour session si enregistrement actif
-            if (isRecording && currentSession != null) {
-                totalPower += currentPower;
-                powerSampleCount++;
-            }
-        } else {
-            // Première mise à jour
-            lastValidDataTime = currentTime;
+        SampleRecorder recorder = sampleRecorder;
+        if (recorder != null) {
+            recorder.offer(sample.getTimestampNanos(), currentPower, currentCadence, currentSpeed, heartRate);
+        }
+        if (snapshot != null) {
+            updateUI(snapshot);
         }
-        
-        lastUpdateTime = currentTime;
-        updateUI();
     }
     
     @Override
@@ -429,6 +457,10 @@ public class MainActivity extends AppCompatActivity implements BluetoothConnecti
                 if (isConnected) {
                     statusText.setText("Connecté");
                     statusText.setTextColor(getResources().getColor(android.R.color.holo_green_dark));
+                    // Capteur de puissance joint : plus besoin du délai de repli
+                    if (BluetoothConnectionManager.getInstance().hasSensor(SensorParser.KIND_POWER)) {
+                        handler.removeCallbacks(directConnectTimeoutRunnable);
+                    }
                 } else {
                     statusText.setText("Déconnecté");
                     statusText.setTextColor(getResources().getColor(android.R.color.holo_red_dark));
@@ -437,54 +469,97 @@ public class MainActivity extends AppCompatActivity implements BluetoothConnecti
         });
     }
     
-    private double calculateSpeed(int power, int cadence) {
-        if (cadence == 0 || power == 0) {
-            return 0.0;
-        }
-        
-        // Formule simplifiée basée uniquement sur puissance et cadence
-        // Estimation: vitesse ≈ racine cubique de la puissance × facteur de cadence
-        double speedFromPower = Math.pow(power / 3.0, 1.0 / 3.0);
-        double cadenceInfluence = Math.min(cadence / 90.0, 1.2);
-        return speedFromPower * cadenceInfluence;
-    }
-    
-    private double calculateCalories(int power, double deltaTime) {
-        // Calories = Puissance (watts) × temps (secondes) × 0.0002388
-        return power * deltaTime * 0.2388;
-    }
-    
-    private void updateUI() {
+    private void updateUI(MetricsSnapshot snapshot) {
         runOnUiThread(new Runnable() {
             @Override
             public void run() {
                 // Limiter les valeurs pour l'affichage
-                int displayCadence = Math.min(currentCadence, 200); // Max 200 RPM
-                double displaySpeed = Math.max(0, currentSpeed); // Jamais négatif
+                int displayCadence = Math.min(snapshot.getCadence(), 200); // Max 200 RPM
+                double displaySpeed = Math.max(0, snapshot.getSpeed()); // Jamais négatif
                 
-                powerValue.setText(String.format("%d W", currentPower));
+                powerValue.setText(String.format("%d W", displayedPower(snapshot)));
                 cadenceValue.setText(String.format("%d RPM", displayCadence));
                 speedValue.setText(String.format("%.1f km/h", displaySpeed));
-                distanceValue.setText(String.format("%.2f km", totalDistance));
-                caloriesValue.setText(String.format("%.0f kcal", totalCalories));
-                avgSpeedValue.setText(String.format("%.1f km/h", averageSpeed));
+                distanceValue.setText(String.format("%.2f km", snapshot.getDistance()));
+                caloriesValue.setText(String.format("%.0f kcal", snapshot.getCalories()));
+                avgSpeedValue.setText(String.format("%.1f km/h", snapshot.getAverageSpeed()));
+                trainingLoadText.setText(String.format("NP %.0f W · IF %.2f · TSS %.0f",
+                    snapshot.getNormalizedPower(), snapshot.getIntensityFactor(),
+                    snapshot.getTrainingStressScore()));
+                meanMaxText.setText(snapshot.formatMeanMax());
+                wPrimeBalanceText.setText(String.format("W'bal %.1f kJ (%.0f %%)",
+                    snapshot.getWPrimeBalance() / 1000.0,
+                    100.0 * snapshot.getWPrimeBalance() / snapshot.getWPrime()));
             }
         });
     }
     
+    private int displayedPower(MetricsSnapshot snapshot) {
+        switch (powerDisplayMode) {
+            case POWER_3S: return (int) Math.round(snapshot.getPower3s());
+            case POWER_10S: return (int) Math.round(snapshot.getPower10s());
+            case POWER_30S: return (int) Math.round(snapshot.getPower30s());
+            case POWER_CUSTOM: return (int) Math.round(snapshot.getPowerCustom());
+            default: return snapshot.getPower();
+        }
+    }
+    
+    private void updatePowerTitle() {
+        switch (powerDisplayMode) {
+            case POWER_3S: powerTitle.setText("Puissance 3 s :"); break;
+            case POWER_10S: powerTitle.setText("Puissance 10 s :"); break;
+            case POWER_30S: powerTitle.setText("Puissance 30 s :"); break;
+            case POWER_CUSTOM:
+                long seconds;
+                synchronized (metrics) {
+                    seconds = metrics.getCustomWindowMillis() / 1000;
+                }
+                powerTitle.setText("Puissance " + seconds + " s :");
+                break;
+            default: powerTitle.setText(R.string.power_label);
+        }
+    }
+    
     private void startSession() {
+        correctedAtSessionStart = sensorSource.getCorrectedSampleCount();
         currentSession = new Session();
         currentSession.setStartTime(System.currentTimeMillis());
-        sessionStartTime = System.currentTimeMillis();
+        currentSession.setUserWeight(userWeight);
         isRecording = true;
         
+        // Journal de la session : chaque échantillon intégré y est ajouté à partir d'ici
+        // (fichier créé par son propre thread d'écriture)
+        SessionJournal sessionJournal = SessionJournal.create(new File(getFilesDir(), JOURNAL_DIR),
+            0, currentSession.getStartTime());
+        
+        // La ligne de session est créée en arrière-plan : les échantillons y sont rattachés
+        currentSession.setEndTime(currentSession.getStartTime());
+        Future<Long> sessionId = repository.insertSession(null, currentSession, id -> {
+            if (id == null || id == -1) {
+                Log.e(TAG, "Impossible de créer la session, échantillons non enregistrés");
+            } else {
+                sessionJournal.appendSessionId(id);
+            }
+        });
+        sampleRecorder = new SampleRecorder(repository, sessionId, SampleRecorder.DEFAULT_FLUSH_INTERVAL_MS);
+        
+        // Un fichier de notifications brutes par session
+        File flightDirectory = new File(getFilesDir(), "flight");
+        flightFiles.execute(() -> {
+            try {
+                File flightFile = FlightRecorder.getInstance().startSession(flightDirectory);
+                Log.d(TAG, "Enregistrement des notifications: " + flightFile.getName());
+            } catch (IOException e) {
+                Log.e(TAG, "Enregistreur de notifications indisponible: " + e.getMessage());
+            }
+        });
+        
         // Réinitialiser les métriques
-        totalDistance = 0.0;
-        totalCalories = 0.0;
-        averageSpeed = 0.0;
-        totalPower = 0.0;
-        powerSampleCount = 0;
-        lastUpdateTime = 0;
+        synchronized (metrics) {
+            journal = sessionJournal;
+            appendSettings(journal, getSharedPreferences(PREFS_NAME, MODE_PRIVATE));
+            metrics.startSession();
+        }
         
         runOnUiThread(() -> {
             sessionButton.setText("Arrêter Session");
@@ -494,28 +569,61 @@ public class MainActivity extends AppCompatActivity implements BluetoothConnecti
     }
     
     private void stopSession() {
+        SessionJournal sessionJournal;
+        synchronized (metrics) {
+            metrics.stopSession();
+            if (currentSession != null) {
+                metrics.writeSummary(currentSession);
+            }
+            sessionJournal = journal;
+            journal = null;
+        }
+        
         if (currentSession != null) {
             currentSession.setEndTime(System.currentTimeMillis());
-            currentSession.setDistance(totalDistance);
-            currentSession.setCalories(totalCalories);
+            // Pics et trous de puissance remplacés par la médiane pendant la session
+            long corrected = sensorSource.getCorrectedSampleCount() - correctedAtSessionStart;
+            Log.i(TAG, "Valeurs de puissance corrigées par le filtre: " + corrected);
             
-            // Calculer puissance moyenne
-            if (powerSampleCount > 0) {
-                double avgPower = totalPower / powerSampleCount;
-                currentSession.setAvgPower(avgPower);
-            }
-            
-            currentSession.setAvgSpeed(averageSpeed);
-            
-            // Sauvegarder dans la base de données
-            long id = dbHelper.saveSession(currentSession);
-            if (id != -1) {
-                showToast("Session enregistrée");
+            // Derniers échantillons, puis le résumé de la session, hors du thread UI
+            Session session = currentSession;
+            Runnable save = () -> {
+                boolean saved;
+                try {
+                    saved = repository.saveSession(null, session, null).get();
+                } catch (ExecutionException | InterruptedException e) {
+                    saved = false;
+                }
+                // Le journal n'est plus utile qu'en cas d'échec : il sera rejoué au prochain lancement
+                if (sessionJournal != null) {
+                    if (sessionJournal.getFailure() != null) {
+                        Log.e(TAG, "Journal de session incomplet: " + sessionJournal.getFailure().getMessage());
+                    }
+                    if (saved) {
+                        sessionJournal.delete();
+                    } else {
+                        sessionJournal.close();
+                    }
+                }
+                String message = !saved ? "Erreur d'enregistrement"
+                    : corrected > 0 ? "Session enregistrée (" + corrected + " valeurs de puissance corrigées)"
+                    : "Session enregistrée";
+                runOnUiThread(() -> {
+                    if (!isDestroyed()) {
+                        showToast(message);
+                    }
+                });
+            };
+            SampleRecorder recorder = sampleRecorder;
+            sampleRecorder = null;
+            if (recorder != null) {
+                recorder.stop(save);
             } else {
-                showToast("Erreur d'enregistrement");
+                new Thread(save, "session-save").start();
             }
         }
         
+        flightFiles.execute(() -> FlightRecorder.getInstance().stopSession());
         isRecording = false;
         currentSession = null;
         runOnUiThread(() -> {
@@ -529,22 +637,119 @@ public class MainActivity extends AppCompatActivity implements BluetoothConnecti
         super.onDestroy();
         
         // Se désinscrire comme listener
-        BluetoothConnectionManager.getInstance().removeListener(this);
+        sensorSource.removeListener(this);
+        if (sensorSource instanceof ReplaySensorSource) {
+            ((ReplaySensorSource) sensorSource).stop();
+        }
+        
+        handler.removeCallbacks(directConnectTimeoutRunnable);
         
         // Arrêter le scan Bluetooth si actif
-        if (scanning) {
-            stopScan();
-        }
+        stopScan();
         
-        // Fermer la base de données
-        if (dbHelper != null) {
-            dbHelper.close();
-        }
+        // Les fermetures déjà demandées s'exécutent encore
+        flightFiles.shutdown();
     }
     
     @Override
     protected void onResume() {
         super.onResume();
+        
+        // Préférences d'affichage (la fenêtre personnalisée se règle dans les paramètres)
+        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        int customWindowSeconds = prefs.getInt(PREF_CUSTOM_POWER_WINDOW,
+            (int) (MetricsEngine.DEFAULT_CUSTOM_WINDOW_MS / 1000));
+        int ftp = prefs.getInt(PREF_FTP, MetricsEngine.DEFAULT_FTP);
+        int maxHeartRate = prefs.getInt(PREF_MAX_HEART_RATE, MetricsEngine.DEFAULT_MAX_HEART_RATE);
+        int criticalPower = prefs.getInt(PREF_CRITICAL_POWER, WPrimeBalance.DEFAULT_CP);
+        int wPrime = prefs.getInt(PREF_W_PRIME, WPrimeBalance.DEFAULT_W_PRIME);
+        userWeight = prefs.getInt(PREF_WEIGHT, SpeedModel.DEFAULT_RIDER_WEIGHT_KG);
+        float grade = prefs.getFloat(PREF_VIRTUAL_GRADE, 0f);
+        int[] cadenceBounds = getCadenceBounds(prefs);
+        synchronized (metrics) {
+            metrics.setCustomWindowMillis(customWindowSeconds * 1000L);
+            metrics.setFtp(ftp);
+            metrics.setMaxHeartRate(maxHeartRate);
+            metrics.setCadenceBounds(cadenceBounds);
+            metrics.setCriticalPower(criticalPower, wPrime);
+            metrics.setRider(userWeight, grade);
+            // Réglages modifiés pendant la session : le rejeu doit les appliquer au même moment
+            if (journal != null) {
+                appendSettings(journal, prefs);
+            }
+        }
+        powerDisplayMode = Math.max(0, Math.min(prefs.getInt(PREF_POWER_DISPLAY_MODE, POWER_INSTANT),
+            POWER_MODE_COUNT - 1));
+        updatePowerTitle();
+    }
+    
+    // Réglages du moteur de métriques, lus comme dans onResume()
+    private void appendSettings(SessionJournal sessionJournal, SharedPreferences prefs) {
+        sessionJournal.appendSettings(
+            prefs.getInt(PREF_FTP, MetricsEngine.DEFAULT_FTP),
+            prefs.getInt(PREF_MAX_HEART_RATE, MetricsEngine.DEFAULT_MAX_HEART_RATE),
+            prefs.getInt(PREF_CRITICAL_POWER, WPrimeBalance.DEFAULT_CP),
+            prefs.getInt(PREF_W_PRIME, WPrimeBalance.DEFAULT_W_PRIME),
+            prefs.getInt(PREF_WEIGHT, SpeedModel.DEFAULT_RIDER_WEIGHT_KG),
+            prefs.getFloat(PREF_VIRTUAL_GRADE, 0f),
+            prefs.getInt(PREF_CUSTOM_POWER_WINDOW, (int) (MetricsEngine.DEFAULT_CUSTOM_WINDOW_MS / 1000)) * 1000L,
+            getCadenceBounds(prefs));
+    }
+    
+    // Bandes de cadence des paramètres, ou celles par défaut si rien de valide n'est enregistré
+    static int[] getCadenceBounds(SharedPreferences prefs) {
+        int[] bounds = ZoneHistogram.parseCadenceBounds(prefs.getString(PREF_CADENCE_ZONES, null));
+        return bounds != null ? bounds : ZoneHistogram.getDefaultCadenceBounds();
+    }
+    
+    // Sessions interrompues par un arrêt brutal : rejouées depuis leur journal puis enregistrées
+    private void recoverUnfinishedSessions() {
+        // Liste prise avant qu'une nouvelle session puisse créer son journal
+        File[] journals = SessionJournal.findUnfinished(new File(getFilesDir(), JOURNAL_DIR));
+        if (journals.length == 0) {
+            return;
+        }
+        new Thread(() -> {
+            int recovered = 0;
+            for (File file : journals) {
+                if (recoverSession(file)) {
+                    recovered++;
+                }
+            }
+            if (recovered > 0) {
+                String message = recovered == 1 ? "Session interrompue récupérée"
+                    : recovered + " sessions interrompues récupérées";
+                runOnUiThread(() -> showToast(message));
+            }
+        }, "session-recovery").start();
+    }
+    
+    private boolean recoverSession(File file) {
+        SampleBuffer samples = new SampleBuffer(SampleChunkCodec.CHUNK_SECONDS);
+        Session session;
+        try (SessionJournalReader reader = SessionJournalReader.open(file)) {
+            session = SessionRecovery.replay(reader, samples);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Journal illisible, supprimé: " + file.getName() + " (" + e.getMessage() + ")");
+            file.delete();
+            return false;
+        }
+        
+        // Les blocs déjà écrits par SampleRecorder sont remplacés par ceux du rejeu
+        boolean saved;
+        try {
+            saved = repository.saveRecoveredSession(session, samples).get();
+        } catch (ExecutionException | InterruptedException e) {
+            saved = false;
+        }
+        if (!saved) {
+            // Journal conservé pour le prochain lancement
+            Log.e(TAG, "Récupération de " + file.getName() + " impossible");
+            return false;
+        }
+        file.delete();
+        Log.i(TAG, "Session récupérée depuis " + file.getName() + ": " + samples.size() + " s");
+        return true;
     }
     
     // Méthodes utilitaires
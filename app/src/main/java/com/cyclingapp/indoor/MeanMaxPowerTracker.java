@@ -0,0 +1,128 @@
+package com.cyclingapp.indoor;
+
+import java.util.Locale;
+
+/**
+ * Meilleures puissances moyennes d'une session (courbe mean-max) pour un
+ * ensemble de durées, sur la série à 1 Hz. Les sommes cumulées des dernières
+ * secondes sont gardées dans un tampon circulaire dimensionné par la plus
+ * longue durée : chaque seconde coûte O(1) par durée suivie, quelle que soit
+ * la longueur de la sortie.
+ */
+public class MeanMaxPowerTracker implements SecondResampler.Listener {
+    
+    // 5 s, 1 min, 5 min, 20 min
+    public static final int[] DEFAULT_DURATIONS = {5, 60, 300, 1200};
+    
+    private final int[] durations;
+    private final double[] best;
+    
+    // prefix[i % length] = somme des puissances des i premières secondes
+    private final double[] prefix;
+    private long seconds = 0;
+    // Incrémenté à chaque changement d'une meilleure moyenne
+    private long version = 0;
+    
+    public MeanMaxPowerTracker(int... durationsSeconds) {
+        if (durationsSeconds.length == 0) {
+            throw new IllegalArgumentException("Aucune durée");
+        }
+        int longest = 0;
+        for (int duration : durationsSeconds) {
+            if (duration <= 0) {
+                throw new IllegalArgumentException("Durée invalide: " + duration);
+            }
+            longest = Math.max(longest, duration);
+        }
+        this.durations = durationsSeconds.clone();
+        this.best = new double[durations.length];
+        this.prefix = new double[longest + 1];
+    }
+    
+    @Override
+    public void onSecond(double watts) {
+        int length = prefix.length;
+        double total = prefix[(int) (seconds % length)] + watts;
+        seconds++;
+        prefix[(int) (seconds % length)] = total;
+        
+        for (int i = 0; i < durations.length; i++) {
+            int duration = durations[i];
+            if (seconds >= duration) {
+                double mean = (total - prefix[(int) ((seconds - duration) % length)]) / duration;
+                if (mean > best[i]) {
+                    best[i] = mean;
+                    version++;
+                }
+            }
+        }
+    }
+    
+    public int getDurationCount() {
+        return durations.length;
+    }
+    
+    public int getDuration(int index) {
+        return durations[index];
+    }
+    
+    // Meilleure moyenne (W) pour la durée d'indice donné, 0 tant que la session est plus courte
+    public double getBest(int index) {
+        return best[index];
+    }
+    
+    // Permet de ne recopier les meilleures moyennes que lorsqu'elles ont changé
+    public long getVersion() {
+        return version;
+    }
+    
+    public int[] getDurations() {
+        return durations.clone();
+    }
+    
+    public double[] getBests() {
+        return best.clone();
+    }
+    
+    public void reset() {
+        java.util.Arrays.fill(prefix, 0.0);
+        java.util.Arrays.fill(best, 0.0);
+        seconds = 0;
+        version++;
+    }
+    
+    /** Format de stockage : "durée en s:puissance en W" séparés par des virgules (ex. "5:412,60:335"). */
+    public static String encode(int[] durations, double[] bests) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < durations.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(durations[i]).append(':').append(Math.round(bests[i]));
+        }
+        return builder.toString();
+    }
+    
+    // Libellé court d'une durée : "5 s", "1 min", "20 min", "1 h"
+    public static String formatDuration(int seconds) {
+        if (seconds % 3600 == 0) {
+            return (seconds / 3600) + " h";
+        }
+        if (seconds % 60 == 0) {
+            return (seconds / 60) + " min";
+        }
+        return seconds + " s";
+    }
+    
+    public static String format(int[] durations, double[] bests) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < durations.length; i++) {
+            if (i > 0) {
+                builder.append(" · ");
+            }
+            builder.append(String.format(Locale.getDefault(), "%s %.0f W",
+                formatDuration(durations[i]), bests[i]));
+        }
+        return builder.toString();
+    }
+}
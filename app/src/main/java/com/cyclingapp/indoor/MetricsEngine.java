@@ -0,0 +1,323 @@
+package com.cyclingapp.indoor;
+
+import java.util.Arrays;
+
+/**
+ * Calcul incrémental des métriques d'une sortie (vitesse, distance, calories,
+ * moyennes) à partir d'échantillons (puissance, cadence) horodatés.
+ * Chaque mise à jour est en O(1) et sans allocation ; seul {@link #snapshot()}
+ * crée un objet (la courbe mean-max n'est recopiée que si elle a changé).
+ * Indépendant d'Android et non thread-safe : l'appelant sérialise les accès.
+ */
+public class MetricsEngine {
+    
+    // Sans donnée valide pendant ce délai, le cycliste est considéré à l'arrêt
+    public static final long DATA_TIMEOUT_MS = 3000;
+    
+    // Fenêtres des moyennes glissantes de puissance
+    public static final long SHORT_WINDOW_MS = 3000;
+    public static final long MEDIUM_WINDOW_MS = 10000;
+    public static final long LONG_WINDOW_MS = 30000;
+    public static final long DEFAULT_CUSTOM_WINDOW_MS = 60000;
+    
+    public static final int DEFAULT_FTP = 200;
+    public static final int DEFAULT_MAX_HEART_RATE = 190;
+    
+    private static final long NANOS_PER_MILLI = 1000000L;
+    // Au-delà de cet écart entre deux échantillons, l'intervalle n'est pas intégré
+    private static final long MAX_GAP_NANOS = DATA_TIMEOUT_MS * NANOS_PER_MILLI;
+    
+    private int currentPower = 0;
+    private int currentCadence = 0;
+    // 0 : pas de ceinture cardio (ou valeur trop ancienne)
+    private int currentHeartRate = 0;
+    private double currentSpeed = 0.0;
+    private double totalDistance = 0.0;
+    private double totalCalories = 0.0;
+    private double averageSpeed = 0.0;
+    // Horloge des échantillons (ns, monotone), pas l'heure de réception du callback
+    private boolean hasLastUpdate = false;
+    private long lastUpdateNanos = 0;
+    private long lastValidDataTime = 0;
+    private boolean sessionStartPending = false;
+    private boolean hasSessionStart = false;
+    private long sessionStartNanos = 0;
+    
+    // Puissance moyenne de la session en cours
+    private boolean recording = false;
+    private double totalPower = 0.0;
+    private int powerSampleCount = 0;
+    
+    private final RollingPowerAverage shortAverage = new RollingPowerAverage(SHORT_WINDOW_MS);
+    private final RollingPowerAverage mediumAverage = new RollingPowerAverage(MEDIUM_WINDOW_MS);
+    private final RollingPowerAverage longAverage = new RollingPowerAverage(LONG_WINDOW_MS);
+    private RollingPowerAverage customAverage = new RollingPowerAverage(DEFAULT_CUSTOM_WINDOW_MS);
+    
+    // Normalized Power de la session, sur la puissance rééchantillonnée à 1 Hz
+    private final NormalizedPowerCalculator normalizedPower = new NormalizedPowerCalculator();
+    // Meilleures puissances moyennes de la session
+    private final MeanMaxPowerTracker meanMax = new MeanMaxPowerTracker(MeanMaxPowerTracker.DEFAULT_DURATIONS);
+    // Courbe publiée dans les instantanés, partagée tant que le tracker n'a pas changé
+    private final int[] meanMaxDurations = meanMax.getDurations();
+    private double[] meanMaxBests = meanMax.getBests();
+    private long meanMaxVersion = meanMax.getVersion();
+    private final SecondResampler resampler = new SecondResampler(DATA_TIMEOUT_MS, this::onSecond);
+    private int ftp = DEFAULT_FTP;
+    private int maxHeartRate = DEFAULT_MAX_HEART_RATE;
+    // W' balance de la session (modèle recréé si CP ou W' change)
+    private WPrimeBalance wPrimeBalance = new WPrimeBalance(WPrimeBalance.DEFAULT_CP, WPrimeBalance.DEFAULT_W_PRIME);
+    
+    // Temps par zone de la session (bornes recalculées quand le FTP ou la FC max change)
+    private ZoneHistogram powerZones = ZoneHistogram.forPower(DEFAULT_FTP);
+    private ZoneHistogram cadenceZones = ZoneHistogram.forCadence();
+    private int[] cadenceBounds = ZoneHistogram.getDefaultCadenceBounds();
+    private ZoneHistogram heartRateZones = ZoneHistogram.forHeartRate(DEFAULT_MAX_HEART_RATE);
+    
+    // Vitesse virtuelle (table recalculée seulement quand le poids ou la pente change)
+    private SpeedModel speedModel = new SpeedModel(SpeedModel.DEFAULT_RIDER_WEIGHT_KG, 0.0);
+    
+    /**
+     * Intègre un échantillon horodaté par l'horloge du capteur (réception GATT
+     * ou fichier rejoué) : les cumuls ne dépendent que des échantillons, pas de
+     * l'instant où ce code s'exécute.
+     */
+    public void update(long timestampNanos, int power, int cadence, int heartRate) {
+        long timeMillis = timestampNanos / NANOS_PER_MILLI;
+        if (sessionStartPending) {
+            sessionStartPending = false;
+            hasSessionStart = true;
+            sessionStartNanos = timestampNanos;
+        }
+        
+        // Valeurs tenues depuis l'échantillon précédent
+        int previousPower = currentPower;
+        int previousCadence = currentCadence;
+        int previousHeartRate = currentHeartRate;
+        double previousSpeed = currentSpeed;
+        currentHeartRate = Math.max(0, heartRate);
+        
+        // Vérifier si on a des données valides
+        boolean hasValidData = (power > 0 || cadence > 0);
+        
+        if (!hasLastUpdate) {
+            // Première mise à jour
+            lastValidDataTime = timeMillis;
+        }
+        if (hasValidData) {
+            lastValidDataTime = timeMillis;
+            
+            // Mettre à jour seulement les valeurs > 0 (éviter les sauts à 0)
+            if (power > 0) {
+                currentPower = power;
+            }
+            if (cadence > 0) {
+                currentCadence = cadence;
+            }
+        } else if (timeMillis - lastValidDataTime > DATA_TIMEOUT_MS) {
+            // Timeout : considérer comme arrêt, sinon garder les dernières valeurs
+            currentPower = 0;
+            currentCadence = 0;
+        }
+        // Sans pédalage, pas de vitesse : en descente, le modèle donnerait la vitesse de roue libre
+        currentSpeed = currentPower > 0 ? speedModel.speedKmh(currentPower) : 0.0;
+        
+        long deltaNanos = timestampNanos - lastUpdateNanos;
+        if (hasLastUpdate && deltaNanos <= 0) {
+            // Échantillon en retard ou dupliqué : rien à intégrer
+            return;
+        }
+        
+        if (hasLastUpdate && deltaNanos <= MAX_GAP_NANOS) {
+            // Méthode des trapèzes entre l'échantillon précédent et celui-ci
+            double deltaTime = deltaNanos / 1e9;
+            totalDistance += (previousSpeed + currentSpeed) * 0.5 * deltaTime / 3600.0;
+            totalCalories += calculateCalories(previousPower + currentPower, deltaTime) * 0.5;
+            
+            if (recording) {
+                // Valeurs tenues pendant l'intervalle, en ns pour ne rien tronquer
+                powerZones.add(previousPower, deltaNanos);
+                cadenceZones.add(previousCadence, deltaNanos);
+                if (previousHeartRate > 0) {
+                    heartRateZones.add(previousHeartRate, deltaNanos);
+                }
+            }
+        }
+        // Sinon (trou dans les données) : capteur muet, l'intervalle n'est pas compté
+        
+        if (hasSessionStart) {
+            double sessionDuration = (timestampNanos - sessionStartNanos) / 3.6e12;
+            if (sessionDuration > 0) {
+                averageSpeed = totalDistance / sessionDuration;
+            }
+        }
+        
+        if (recording && hasLastUpdate) {
+            totalPower += currentPower;
+            powerSampleCount++;
+        }
+        
+        shortAverage.add(timeMillis, currentPower);
+        mediumAverage.add(timeMillis, currentPower);
+        longAverage.add(timeMillis, currentPower);
+        customAverage.add(timeMillis, currentPower);
+        if (recording) {
+            resampler.add(timeMillis, currentPower);
+        }
+        
+        hasLastUpdate = true;
+        lastUpdateNanos = timestampNanos;
+    }
+    
+    // Valeurs courantes, sans créer d'instantané (enregistrement par seconde)
+    public int getCurrentPower() { return currentPower; }
+    public int getCurrentCadence() { return currentCadence; }
+    public double getCurrentSpeed() { return currentSpeed; }
+    
+    public long getCustomWindowMillis() {
+        return customAverage.getWindowMillis();
+    }
+    
+    // Fenêtre de la moyenne personnalisée (repart de zéro si elle change)
+    public void setCustomWindowMillis(long windowMillis) {
+        if (windowMillis != customAverage.getWindowMillis()) {
+            customAverage = new RollingPowerAverage(windowMillis);
+        }
+    }
+    
+    public int getFtp() {
+        return ftp;
+    }
+    
+    public void setFtp(int ftp) {
+        if (ftp <= 0) {
+            throw new IllegalArgumentException("FTP invalide: " + ftp);
+        }
+        if (ftp != this.ftp) {
+            this.ftp = ftp;
+            // Le temps déjà compté dans la session est conservé
+            ZoneHistogram zones = ZoneHistogram.forPower(ftp);
+            zones.copyTimesFrom(powerZones);
+            powerZones = zones;
+        }
+    }
+    
+    public void setMaxHeartRate(int maxHeartRate) {
+        if (maxHeartRate <= 0) {
+            throw new IllegalArgumentException("FC max invalide: " + maxHeartRate);
+        }
+        if (maxHeartRate != this.maxHeartRate) {
+            this.maxHeartRate = maxHeartRate;
+            ZoneHistogram zones = ZoneHistogram.forHeartRate(maxHeartRate);
+            zones.copyTimesFrom(heartRateZones);
+            heartRateZones = zones;
+        }
+    }
+    
+    // Bandes de cadence réglées par l'utilisateur (bornes basses des zones 2 à 6, en rpm)
+    public void setCadenceBounds(int[] bounds) {
+        if (!Arrays.equals(bounds, cadenceBounds)) {
+            ZoneHistogram zones = ZoneHistogram.forCadence(bounds);
+            zones.copyTimesFrom(cadenceZones);
+            cadenceZones = zones;
+            cadenceBounds = bounds.clone();
+        }
+    }
+    
+    public void setCriticalPower(int criticalPower, int wPrime) {
+        if (criticalPower != wPrimeBalance.getCriticalPower() || wPrime != wPrimeBalance.getWPrime()) {
+            WPrimeBalance model = new WPrimeBalance(criticalPower, wPrime);
+            model.copyFrom(wPrimeBalance);
+            wPrimeBalance = model;
+        }
+    }
+    
+    // W'bal de chaque seconde de la session, voir WPrimeBalance.encodeSeries()
+    public byte[] getWPrimeBalanceSeries() {
+        return wPrimeBalance.encodeSeries();
+    }
+    
+    // Temps par zone de la session, au format de ZoneHistogram.encode()
+    public String getPowerZones() { return powerZones.encode(); }
+    public String getCadenceZones() { return cadenceZones.encode(); }
+    public String getHeartRateZones() { return heartRateZones.encode(); }
+    
+    public void setRider(int weightKg, double gradePercent) {
+        if (weightKg != speedModel.getRiderWeightKg() || gradePercent != speedModel.getGradePercent()) {
+            speedModel = new SpeedModel(weightKg, gradePercent);
+        }
+    }
+    
+    /**
+     * Remet les cumuls à zéro et commence une session ; elle démarre à
+     * l'horodatage du prochain échantillon.
+     */
+    public void startSession() {
+        sessionStartPending = true;
+        hasSessionStart = false;
+        recording = true;
+        totalDistance = 0.0;
+        totalCalories = 0.0;
+        averageSpeed = 0.0;
+        totalPower = 0.0;
+        powerSampleCount = 0;
+        hasLastUpdate = false;
+        resampler.reset();
+        normalizedPower.reset();
+        meanMax.reset();
+        powerZones.reset();
+        cadenceZones.reset();
+        heartRateZones.reset();
+        wPrimeBalance.reset();
+    }
+    
+    public void stopSession() {
+        recording = false;
+    }
+    
+    public MetricsSnapshot snapshot() {
+        double averagePower = powerSampleCount > 0 ? totalPower / powerSampleCount : 0.0;
+        if (meanMax.getVersion() != meanMaxVersion) {
+            meanMaxVersion = meanMax.getVersion();
+            meanMaxBests = meanMax.getBests();
+        }
+        return new MetricsSnapshot(lastUpdateNanos, currentPower, currentCadence, currentSpeed,
+            totalDistance, totalCalories, averageSpeed, averagePower, powerSampleCount,
+            shortAverage.getAverage(), mediumAverage.getAverage(), longAverage.getAverage(),
+            customAverage.getAverage(), customAverage.getWindowMillis(),
+            normalizedPower.getNormalizedPower(), normalizedPower.getIntensityFactor(ftp),
+            normalizedPower.getTrainingStressScore(ftp),
+            meanMaxDurations, meanMaxBests,
+            wPrimeBalance.getBalance(), wPrimeBalance.getWPrime());
+    }
+    
+    /** Copie le résumé de la session dans la session à enregistrer. */
+    public void writeSummary(Session session) {
+        MetricsSnapshot snapshot = snapshot();
+        session.setDistance(snapshot.getDistance());
+        session.setCalories(snapshot.getCalories());
+        if (snapshot.getPowerSampleCount() > 0) {
+            session.setAvgPower(snapshot.getAveragePower());
+        }
+        session.setAvgSpeed(snapshot.getAverageSpeed());
+        session.setNormalizedPower(snapshot.getNormalizedPower());
+        session.setIntensityFactor(snapshot.getIntensityFactor());
+        session.setTrainingStressScore(snapshot.getTrainingStressScore());
+        session.setMeanMaxCurve(snapshot.getMeanMaxCurve());
+        session.setPowerZones(getPowerZones());
+        session.setCadenceZones(getCadenceZones());
+        session.setHeartRateZones(getHeartRateZones());
+        session.setWPrimeBalanceSeries(getWPrimeBalanceSeries());
+    }
+    
+    // Chaque seconde complète de la série rééchantillonnée
+    private void onSecond(double watts) {
+        normalizedPower.onSecond(watts);
+        meanMax.onSecond(watts);
+        wPrimeBalance.onSecond(watts);
+    }
+    
+    static double calculateCalories(int power, double deltaTime) {
+        // Calories = Puissance (watts) × temps (secondes) × 0.0002388
+        return power * deltaTime * 0.2388;
+    }
+}
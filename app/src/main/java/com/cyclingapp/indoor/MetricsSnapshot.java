@@ -0,0 +1,106 @@
+package com.cyclingapp.indoor;
+
+/**
+ * Valeurs calculées par le {@link MetricsEngine} à un instant donné (immuable).
+ */
+public final class MetricsSnapshot {
+    
+    private final long timestampNanos;
+    private final int power;
+    private final int cadence;
+    private final double speed;
+    private final double distance;
+    private final double calories;
+    private final double averageSpeed;
+    private final double averagePower;
+    private final int powerSampleCount;
+    private final double power3s;
+    private final double power10s;
+    private final double power30s;
+    private final double powerCustom;
+    private final long customWindowMillis;
+    private final double normalizedPower;
+    private final double intensityFactor;
+    private final double trainingStressScore;
+    // Courbe mean-max : durées (s) et meilleures moyennes (W), tableaux partagés
+    // entre instantanés mais jamais modifiés
+    private final int[] meanMaxDurations;
+    private final double[] meanMaxPower;
+    private final double wPrimeBalance;
+    private final int wPrime;
+    
+    MetricsSnapshot(long timestampNanos, int power, int cadence, double speed, double distance,
+                    double calories, double averageSpeed, double averagePower, int powerSampleCount,
+                    double power3s, double power10s, double power30s,
+                    double powerCustom, long customWindowMillis,
+                    double normalizedPower, double intensityFactor, double trainingStressScore,
+                    int[] meanMaxDurations, double[] meanMaxPower,
+                    double wPrimeBalance, int wPrime) {
+        this.timestampNanos = timestampNanos;
+        this.power = power;
+        this.cadence = cadence;
+        this.speed = speed;
+        this.distance = distance;
+        this.calories = calories;
+        this.averageSpeed = averageSpeed;
+        this.averagePower = averagePower;
+        this.powerSampleCount = powerSampleCount;
+        this.power3s = power3s;
+        this.power10s = power10s;
+        this.power30s = power30s;
+        this.powerCustom = powerCustom;
+        this.customWindowMillis = customWindowMillis;
+        this.normalizedPower = normalizedPower;
+        this.intensityFactor = intensityFactor;
+        this.trainingStressScore = trainingStressScore;
+        this.meanMaxDurations = meanMaxDurations;
+        this.meanMaxPower = meanMaxPower;
+        this.wPrimeBalance = wPrimeBalance;
+        this.wPrime = wPrime;
+    }
+    
+    // Horodatage (horloge des capteurs) du dernier échantillon intégré
+    public long getTimestampNanos() { return timestampNanos; }
+    public int getPower() { return power; }
+    public int getCadence() { return cadence; }
+    // km/h
+    public double getSpeed() { return speed; }
+    // km
+    public double getDistance() { return distance; }
+    // kcal
+    public double getCalories() { return calories; }
+    // km/h depuis le début de la session
+    public double getAverageSpeed() { return averageSpeed; }
+    // W, sur les échantillons de la session (0 si aucun)
+    public double getAveragePower() { return averagePower; }
+    public int getPowerSampleCount() { return powerSampleCount; }
+    
+    // Moyennes glissantes de puissance (W)
+    public double getPower3s() { return power3s; }
+    public double getPower10s() { return power10s; }
+    public double getPower30s() { return power30s; }
+    public double getPowerCustom() { return powerCustom; }
+    public long getCustomWindowMillis() { return customWindowMillis; }
+    
+    // Normalized Power (W), Intensity Factor et TSS de la session
+    public double getNormalizedPower() { return normalizedPower; }
+    public double getIntensityFactor() { return intensityFactor; }
+    public double getTrainingStressScore() { return trainingStressScore; }
+    
+    // Meilleures puissances moyennes de la session (W, 0 si la session est plus courte)
+    public int getMeanMaxCount() { return meanMaxDurations.length; }
+    public int getMeanMaxDuration(int index) { return meanMaxDurations[index]; }
+    public double getMeanMaxPower(int index) { return meanMaxPower[index]; }
+    
+    // W' balance (J) et W' du modèle (J)
+    public double getWPrimeBalance() { return wPrimeBalance; }
+    public int getWPrime() { return wPrime; }
+    
+    public String getMeanMaxCurve() {
+        return MeanMaxPowerTracker.encode(meanMaxDurations, meanMaxPower);
+    }
+    
+    public String formatMeanMax() {
+        return MeanMaxPowerTracker.format(meanMaxDurations, meanMaxPower);
+    }
+}
@@ -0,0 +1,66 @@
+package com.cyclingapp.indoor;
+
+/**
+ * Normalized Power en continu, à partir de la série à 1 Hz : moyenne glissante
+ * sur 30 s, puis moyenne courante de sa puissance 4. Mémoire constante
+ * (30 valeurs) et coût constant par seconde.
+ * Intensity Factor et Training Stress Score sont calculés par rapport au FTP.
+ */
+public class NormalizedPowerCalculator implements SecondResampler.Listener {
+    
+    private static final int ROLLING_SECONDS = 30;
+    
+    private final double[] window = new double[ROLLING_SECONDS];
+    private int index = 0;
+    private double rollingSum = 0.0;
+    private long seconds = 0;
+    
+    private double sumFourth = 0.0;
+    private long fourthCount = 0;
+    
+    @Override
+    public void onSecond(double watts) {
+        rollingSum += watts - window[index];
+        window[index] = watts;
+        index = (index + 1) % ROLLING_SECONDS;
+        seconds++;
+        
+        // La moyenne glissante n'est définie qu'après 30 s
+        if (seconds >= ROLLING_SECONDS) {
+            double rolling = Math.max(0.0, rollingSum / ROLLING_SECONDS);
+            double squared = rolling * rolling;
+            sumFourth += squared * squared;
+            fourthCount++;
+        }
+    }
+    
+    public double getNormalizedPower() {
+        return fourthCount > 0 ? Math.sqrt(Math.sqrt(sumFourth / fourthCount)) : 0.0;
+    }
+    
+    public double getIntensityFactor(int ftp) {
+        return ftp > 0 ? getNormalizedPower() / ftp : 0.0;
+    }
+    
+    // TSS = durée (s) × NP × IF / (FTP × 3600) × 100
+    public double getTrainingStressScore(int ftp) {
+        if (ftp <= 0) {
+            return 0.0;
+        }
+        double np = getNormalizedPower();
+        return seconds * np * (np / ftp) / (ftp * 3600.0) * 100.0;
+    }
+    
+    public long getSeconds() {
+        return seconds;
+    }
+    
+    public void reset() {
+        java.util.Arrays.fill(window, 0.0);
+        index = 0;
+        rollingSum = 0.0;
+        seconds = 0;
+        sumFourth = 0.0;
+        fourthCount = 0;
+    }
+}
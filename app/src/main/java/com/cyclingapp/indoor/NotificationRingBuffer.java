@@ -0,0 +1,149 @@
+package com.cyclingapp.indoor;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * File circulaire sans verrou, un seul producteur (callback GATT) et un seul
+ * consommateur (thread d'ingestion). Chaque emplacement contient les octets
+ * bruts d'une notification, son canal (capteur et caractéristique) et son
+ * horodatage de réception.
+ */
+public class NotificationRingBuffer {
+    
+    public enum DropPolicy {
+        // File pleine : le paquet entrant est rejeté
+        DROP_NEWEST,
+        // File pleine : le plus ancien paquet non lu est écrasé
+        DROP_OLDEST
+    }
+    
+    // Plus longue notification attendue : une Cycling Power Measurement avec tous
+    // ses champs fait 34 octets, une Heart Rate Measurement 5 octets plus 2 par
+    // intervalle RR. Android négocie un MTU plus grand que le minimum (20 octets
+    // utiles), ces paquets arrivent donc entiers
+    public static final int DEFAULT_SLOT_SIZE = 64;
+    
+    private final int capacity;
+    private final int mask;
+    private final int slotSize;
+    private final DropPolicy dropPolicy;
+    
+    private final byte[] payloads;
+    private final int[] lengths;
+    private final int[] channels;
+    private final long[] timestamps;
+    
+    // head : prochain emplacement à écrire (producteur uniquement)
+    // tail : prochain emplacement à lire (consommateur, ou producteur en DROP_OLDEST)
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong overflowCount = new AtomicLong();
+    // Paquets mal formés (taille négative ou plus grande qu'un emplacement), hors débordement
+    private final AtomicLong rejectedCount = new AtomicLong();
+    
+    /** Paquet lu, réutilisé par le consommateur. */
+    public static class Packet {
+        public final byte[] data;
+        public int length;
+        public int channel;
+        public long timestampNanos;
+        
+        public Packet(int slotSize) {
+            this.data = new byte[slotSize];
+        }
+    }
+    
+    public NotificationRingBuffer(int capacity, DropPolicy dropPolicy) {
+        this(capacity, DEFAULT_SLOT_SIZE, dropPolicy);
+    }
+    
+    public NotificationRingBuffer(int capacity, int slotSize, DropPolicy dropPolicy) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("La capacité doit être une puissance de 2: " + capacity);
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.slotSize = slotSize;
+        this.dropPolicy = dropPolicy;
+        this.payloads = new byte[capacity * slotSize];
+        this.lengths = new int[capacity];
+        this.channels = new int[capacity];
+        this.timestamps = new long[capacity];
+    }
+    
+    /**
+     * Côté producteur. Retourne false si le paquet a été rejeté
+     * (file pleine en DROP_NEWEST, ou paquet plus grand qu'un emplacement).
+     */
+    public boolean offer(int channel, byte[] data, int length, long timestampNanos) {
+        if (length < 0 || length > slotSize) {
+            rejectedCount.incrementAndGet();
+            return false;
+        }
+        
+        long h = head.get();
+        while (true) {
+            long t = tail.get();
+            if (h - t < capacity) {
+                break;
+            }
+            if (dropPolicy == DropPolicy.DROP_NEWEST) {
+                overflowCount.incrementAndGet();
+                return false;
+            }
+            // DROP_OLDEST : on réclame l'emplacement le plus ancien avant de l'écraser
+            if (tail.compareAndSet(t, t + 1)) {
+                overflowCount.incrementAndGet();
+            }
+        }
+        
+        int index = (int) (h & mask);
+        System.arraycopy(data, 0, payloads, index * slotSize, length);
+        lengths[index] = length;
+        channels[index] = channel;
+        timestamps[index] = timestampNanos;
+        // Publication ordonnée du contenu de l'emplacement
+        head.lazySet(h + 1);
+        return true;
+    }
+    
+    /** Côté consommateur. Retourne false si la file est vide. */
+    public boolean poll(Packet out) {
+        while (true) {
+            long t = tail.get();
+            if (t >= head.get()) {
+                return false;
+            }
+            
+            int index = (int) (t & mask);
+            int length = lengths[index];
+            System.arraycopy(payloads, index * slotSize, out.data, 0, length);
+            out.length = length;
+            out.channel = channels[index];
+            out.timestampNanos = timestamps[index];
+            
+            if (dropPolicy == DropPolicy.DROP_NEWEST) {
+                tail.lazySet(t + 1);
+                return true;
+            }
+            // Si le producteur a écrasé l'emplacement pendant la copie, on recommence
+            if (tail.compareAndSet(t, t + 1)) {
+                return true;
+            }
+        }
+    }
+    
+    public boolean isEmpty() {
+        return tail.get() >= head.get();
+    }
+    
+    public int size() {
+        return (int) Math.max(0, head.get() - tail.get());
+    }
+    
+    public int getCapacity() { return capacity; }
+    public int getSlotSize() { return slotSize; }
+    public DropPolicy getDropPolicy() { return dropPolicy; }
+    public long getOverflowCount() { return overflowCount.get(); }
+    public long getRejectedCount() { return rejectedCount.get(); }
+}
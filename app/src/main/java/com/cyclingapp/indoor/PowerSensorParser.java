@@ -0,0 +1,38 @@
+package com.cyclingapp.indoor;
+
+/**
+ * Capteur de puissance (Cycling Power Measurement 0x2A63) : puissance
+ * instantanée et cadence depuis les données de pédalier.
+ */
+public class PowerSensorParser implements SensorParser {
+    
+    private final CyclingPowerMeasurement measurement = new CyclingPowerMeasurement();
+    private final CadenceEstimator cadenceEstimator = new CadenceEstimator();
+    
+    @Override
+    public int getKind() {
+        return KIND_POWER;
+    }
+    
+    @Override
+    public boolean onPacket(byte[] data, int length, long timestampNanos, SensorFusion fusion) {
+        if (!CyclingPowerDecoder.decode(data, length, measurement)) {
+            return false;
+        }
+        
+        fusion.updatePower(timestampNanos, Math.max(0, measurement.getInstantaneousPower()));
+        
+        // Cadence depuis Crank Revolution Data (si présent)
+        if (measurement.has(CyclingPowerMeasurement.FLAG_CRANK_REVOLUTION_DATA)) {
+            double cadence = cadenceEstimator.update(measurement.getCumulativeCrankRevolutions(),
+                measurement.getLastCrankEventTime(), timestampNanos);
+            fusion.updateCadence(timestampNanos, cadence);
+        }
+        return true;
+    }
+    
+    @Override
+    public void reset() {
+        cadenceEstimator.reset();
+    }
+}
@@ -0,0 +1,205 @@
+package com.cyclingapp.indoor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Rejoue les notifications d'un fichier de {@link FlightRecorder} (puissance,
+ * cardio, vitesse/cadence) à vitesse réelle, accélérée ou maximale. Les
+ * horodatages publiés sont ceux du fichier : deux lectures du même fichier
+ * produisent exactement les mêmes échantillons, quelle que soit la vitesse.
+ */
+public class ReplaySensorSource implements SensorSource {
+    
+    public static final double SPEED_REAL_TIME = 1.0;
+    public static final double SPEED_10X = 10.0;
+    // Aucune attente entre les paquets
+    public static final double SPEED_MAX = 0.0;
+    
+    private static final int INGESTION_CAPACITY = 256;
+    
+    private final long[] timestamps;
+    // Canal = type de capteur (SensorParser.KIND_*)
+    private final int[] channels;
+    private final byte[][] payloads;
+    private final double speed;
+    
+    private final SensorParser[] parsers = {
+        new PowerSensorParser(), new HeartRateSensorParser(), new CscSensorParser()
+    };
+    private final SensorPipeline pipeline;
+    
+    private Thread thread;
+    private volatile boolean connected = false;
+    
+    public ReplaySensorSource(long[] timestamps, int[] channels, byte[][] payloads, double speed) {
+        if (timestamps.length != payloads.length || channels.length != payloads.length) {
+            throw new IllegalArgumentException("Horodatages, canaux et paquets de tailles différentes");
+        }
+        this.timestamps = timestamps;
+        this.channels = channels;
+        this.payloads = payloads;
+        this.speed = speed;
+        // Aucune perte : le rejeu attend le thread d'ingestion si la file est pleine
+        this.pipeline = new SensorPipeline(
+            channel -> channel >= 0 && channel < parsers.length ? parsers[channel] : null,
+            INGESTION_CAPACITY, NotificationRingBuffer.DropPolicy.DROP_NEWEST);
+    }
+    
+    public static ReplaySensorSource fromFile(File file, double speed) throws IOException {
+        List<Long> timestamps = new ArrayList<>();
+        List<Integer> channels = new ArrayList<>();
+        List<byte[]> payloads = new ArrayList<>();
+        try (FlightRecordReader reader = FlightRecordReader.open(file)) {
+            while (reader.next()) {
+                int kind = kindOf(reader.getCharacteristicId());
+                if (kind < 0) {
+                    continue;
+                }
+                byte[] payload = new byte[reader.getLength()];
+                reader.copyPayload(payload);
+                timestamps.add(reader.getTimestampNanos());
+                channels.add(kind);
+                payloads.add(payload);
+            }
+        }
+        
+        long[] times = new long[timestamps.size()];
+        int[] kinds = new int[times.length];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = timestamps.get(i);
+            kinds[i] = channels.get(i);
+        }
+        return new ReplaySensorSource(times, kinds, payloads.toArray(new byte[0][]), speed);
+    }
+    
+    // Caractéristiques 16 bits (indépendant des UUID Android pour rester utilisable hors appareil)
+    private static int kindOf(int characteristicId) {
+        switch (characteristicId) {
+            case 0x2A63: return SensorParser.KIND_POWER;
+            case 0x2A37: return SensorParser.KIND_HEART_RATE;
+            case 0x2A5B: return SensorParser.KIND_SPEED_CADENCE;
+            default: return -1;
+        }
+    }
+    
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        if (!pipeline.isRunning()) {
+            // Relance après stop()
+            pipeline.configureIngestion(INGESTION_CAPACITY, NotificationRingBuffer.DropPolicy.DROP_NEWEST);
+        }
+        thread = new Thread(this::replay, "sensor-replay");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    // Arrête le rejeu et le thread d'ingestion
+    public synchronized void stop() {
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+        pipeline.shutdown();
+    }
+    
+    // Attend la fin du rejeu ; false si le délai est écoulé avant
+    public boolean awaitCompletion(long timeoutMillis) throws InterruptedException {
+        Thread current;
+        synchronized (this) {
+            current = thread;
+        }
+        if (current == null) {
+            return true;
+        }
+        current.join(timeoutMillis);
+        return !current.isAlive();
+    }
+    
+    private void replay() {
+        pipeline.reset();
+        for (SensorParser parser : parsers) {
+            parser.reset();
+        }
+        connected = true;
+        pipeline.dispatchConnectionState(true);
+        
+        long published = pipeline.getProcessedPacketCount();
+        long startNanos = System.nanoTime();
+        long firstTimestamp = timestamps.length > 0 ? timestamps[0] : 0;
+        try {
+            for (int i = 0; i < timestamps.length; i++) {
+                if (speed > 0) {
+                    long due = startNanos + (long) ((timestamps[i] - firstTimestamp) / speed);
+                    long wait;
+                    while ((wait = due - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(wait);
+                        if (Thread.interrupted()) {
+                            throw new InterruptedException();
+                        }
+                    }
+                }
+                byte[] payload = payloads[i];
+                // Un paquet refusé par la file ne sera jamais traité : il ne compte pas
+                if (pipeline.publishBlocking(channels[i], payload, payload.length, timestamps[i])) {
+                    published++;
+                }
+            }
+            // Attendre que le dernier paquet ait été distribué (ou que le pipeline soit arrêté)
+            while (pipeline.getProcessedPacketCount() < published && pipeline.isRunning()) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                Thread.yield();
+            }
+        } catch (InterruptedException e) {
+            // Rejeu arrêté
+        } finally {
+            connected = false;
+            pipeline.dispatchConnectionState(false);
+        }
+    }
+    
+    public int getPacketCount() {
+        return timestamps.length;
+    }
+    
+    public long getInvalidPacketCount() {
+        return pipeline.getInvalidPacketCount();
+    }
+    
+    public void setPowerFilter(HampelFilter filter) {
+        pipeline.setPowerFilter(filter);
+    }
+    
+    @Override
+    public long getCorrectedSampleCount() {
+        return pipeline.getCorrectedSampleCount();
+    }
+    
+    @Override
+    public void addListener(SensorDataListener listener) {
+        pipeline.addListener(listener, ListenerRegistry.DispatchMode.INLINE, null);
+    }
+    
+    @Override
+    public void addListener(SensorDataListener listener, ListenerRegistry.DispatchMode mode, Executor executor) {
+        pipeline.addListener(listener, mode, executor);
+    }
+    
+    @Override
+    public void removeListener(SensorDataListener listener) {
+        pipeline.removeListener(listener);
+    }
+    
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+}
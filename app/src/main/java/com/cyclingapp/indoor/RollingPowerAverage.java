@@ -0,0 +1,127 @@
+package com.cyclingapp.indoor;
+
+/**
+ * Moyenne glissante de puissance pondérée par le temps : chaque valeur compte
+ * pour la durée pendant laquelle elle a été la dernière reçue, ce qui corrige
+ * les intervalles irréguliers des notifications BLE.
+ * Les segments (durée, puissance) sont dans un tampon circulaire de primitives
+ * avec des sommes courantes : le coût d'une mise à jour ne dépend pas de la
+ * largeur de la fenêtre.
+ */
+public class RollingPowerAverage {
+    
+    private final long windowMillis;
+    
+    // Segments à puissance constante, du plus ancien (tail) au plus récent
+    private long[] ends;
+    private long[] durations;
+    private int[] watts;
+    private int mask;
+    private int tail = 0;
+    private int size = 0;
+    
+    // Sommes sur les segments présents (énergie en W·ms)
+    private long sumEnergy = 0;
+    private long sumDuration = 0;
+    
+    private long lastTime = -1;
+    private int lastPower = 0;
+    
+    public RollingPowerAverage(long windowMillis) {
+        if (windowMillis <= 0) {
+            throw new IllegalArgumentException("Fenêtre invalide: " + windowMillis);
+        }
+        this.windowMillis = windowMillis;
+        // Dimensionné pour une notification toutes les 250 ms ; agrandi si besoin
+        int capacity = Integer.highestOneBit((int) Math.min(windowMillis / 250 + 1, 1 << 16)) << 1;
+        allocate(capacity);
+    }
+    
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+    
+    public void add(long timeMillis, int power) {
+        if (lastTime >= 0 && timeMillis > lastTime) {
+            // La valeur précédente a tenu jusqu'à maintenant (au plus une fenêtre)
+            push(timeMillis, Math.min(timeMillis - lastTime, windowMillis), lastPower);
+            evict(timeMillis - windowMillis);
+        }
+        if (lastTime < 0 || timeMillis >= lastTime) {
+            lastTime = timeMillis;
+        }
+        lastPower = power;
+    }
+    
+    /** Moyenne sur la fenêtre (ou sur la durée couverte tant qu'elle n'est pas pleine). */
+    public double getAverage() {
+        if (size == 0) {
+            return lastPower;
+        }
+        long energy = sumEnergy;
+        long duration = sumDuration;
+        // Le plus ancien segment peut déborder du début de la fenêtre
+        long windowStart = lastTime - windowMillis;
+        long oldestStart = ends[tail] - durations[tail];
+        if (oldestStart < windowStart) {
+            long excess = windowStart - oldestStart;
+            energy -= excess * watts[tail];
+            duration -= excess;
+        }
+        return duration > 0 ? (double) energy / duration : lastPower;
+    }
+    
+    public void reset() {
+        tail = 0;
+        size = 0;
+        sumEnergy = 0;
+        sumDuration = 0;
+        lastTime = -1;
+        lastPower = 0;
+    }
+    
+    private void push(long end, long duration, int power) {
+        if (size == ends.length) {
+            grow();
+        }
+        int index = (tail + size) & mask;
+        ends[index] = end;
+        durations[index] = duration;
+        watts[index] = power;
+        size++;
+        sumEnergy += duration * power;
+        sumDuration += duration;
+    }
+    
+    // Retire les segments entièrement sortis de la fenêtre
+    private void evict(long windowStart) {
+        while (size > 0 && ends[tail] <= windowStart) {
+            sumEnergy -= durations[tail] * watts[tail];
+            sumDuration -= durations[tail];
+            tail = (tail + 1) & mask;
+            size--;
+        }
+    }
+    
+    private void allocate(int capacity) {
+        ends = new long[capacity];
+        durations = new long[capacity];
+        watts = new int[capacity];
+        mask = capacity - 1;
+    }
+    
+    private void grow() {
+        long[] oldEnds = ends;
+        long[] oldDurations = durations;
+        int[] oldWatts = watts;
+        int oldMask = mask;
+        allocate(oldEnds.length << 1);
+        for (int i = 0; i < size; i++) {
+            int from = (tail + i) & oldMask;
+            ends[i] = oldEnds[from];
+            durations[i] = oldDurations[from];
+            watts[i] = oldWatts[from];
+        }
+        tail = 0;
+    }
+}
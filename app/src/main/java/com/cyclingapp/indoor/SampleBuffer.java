@@ -0,0 +1,57 @@
+package com.cyclingapp.indoor;
+
+import java.util.Arrays;
+
+/**
+ * Échantillons d'une session à 1 Hz, en colonnes de primitives (pas d'objet
+ * par échantillon). Sert de tampon d'écriture et de résultat de lecture.
+ */
+public class SampleBuffer {
+    
+    // Seconde depuis le début de la session
+    private int[] seconds;
+    private int[] power;
+    private int[] cadence;
+    // km/h
+    private float[] speed;
+    // 0 : pas de fréquence cardiaque
+    private int[] heartRate;
+    private int size = 0;
+    
+    public SampleBuffer(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 16);
+        seconds = new int[capacity];
+        power = new int[capacity];
+        cadence = new int[capacity];
+        speed = new float[capacity];
+        heartRate = new int[capacity];
+    }
+    
+    public void add(int second, int watts, int rpm, float kmh, int bpm) {
+        if (size == seconds.length) {
+            int capacity = size * 2;
+            seconds = Arrays.copyOf(seconds, capacity);
+            power = Arrays.copyOf(power, capacity);
+            cadence = Arrays.copyOf(cadence, capacity);
+            speed = Arrays.copyOf(speed, capacity);
+            heartRate = Arrays.copyOf(heartRate, capacity);
+        }
+        seconds[size] = second;
+        power[size] = watts;
+        cadence[size] = rpm;
+        speed[size] = kmh;
+        heartRate[size] = bpm;
+        size++;
+    }
+    
+    public void clear() {
+        size = 0;
+    }
+    
+    public int size() { return size; }
+    public int getSecond(int index) { return seconds[index]; }
+    public int getPower(int index) { return power[index]; }
+    public int getCadence(int index) { return cadence[index]; }
+    public float getSpeed(int index) { return speed[index]; }
+    public int getHeartRate(int index) { return heartRate[index]; }
+}
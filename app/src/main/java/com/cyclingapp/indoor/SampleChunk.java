@@ -0,0 +1,41 @@
+package com.cyclingapp.indoor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bloc d'échantillons encodé, tel que stocké en base (voir {@link SampleChunkCodec}).
+ */
+public final class SampleChunk {
+    
+    private final int index;
+    private final int sampleCount;
+    private final byte[] data;
+    
+    public SampleChunk(int index, int sampleCount, byte[] data) {
+        this.index = index;
+        this.sampleCount = sampleCount;
+        this.data = data;
+    }
+    
+    /** Découpe des échantillons triés par seconde en blocs de CHUNK_SECONDS. */
+    public static List<SampleChunk> split(SampleBuffer samples) {
+        List<SampleChunk> chunks = new ArrayList<>();
+        int from = 0;
+        while (from < samples.size()) {
+            int index = samples.getSecond(from) / SampleChunkCodec.CHUNK_SECONDS;
+            int to = from + 1;
+            while (to < samples.size() && samples.getSecond(to) / SampleChunkCodec.CHUNK_SECONDS == index) {
+                to++;
+            }
+            chunks.add(new SampleChunk(index, to - from, SampleChunkCodec.encode(samples, from, to)));
+            from = to;
+        }
+        return chunks;
+    }
+    
+    // Numéro du bloc : secondes [index × CHUNK_SECONDS, (index + 1) × CHUNK_SECONDS)
+    public int getIndex() { return index; }
+    public int getSampleCount() { return sampleCount; }
+    public byte[] getData() { return data; }
+}
@@ -0,0 +1,81 @@
+package com.cyclingapp.indoor;
+
+/**
+ * Encodage en colonnes d'un bloc d'échantillons (seconde, puissance,
+ * cadence, vitesse, fréquence cardiaque). Chaque colonne est codée en
+ * delta + zigzag + varint : une seconde consécutive ou une puissance
+ * stable tient en un octet.
+ *
+ * Format : {@code version, nombre d'échantillons, taille en octets de chaque
+ * colonne} (varints), puis les colonnes l'une après l'autre. La vitesse est
+ * stockée en centièmes de km/h. Lecture : {@link SampleChunkDecoder}.
+ */
+public final class SampleChunkCodec {
+    
+    static final int VERSION = 1;
+    static final int COLUMN_COUNT = 5;
+    // Durée d'un bloc : les échantillons de la seconde s vont dans le bloc s / CHUNK_SECONDS
+    public static final int CHUNK_SECONDS = 60;
+    
+    private SampleChunkCodec() {
+    }
+    
+    /** Encode les échantillons [from, to) du tampon. */
+    public static byte[] encode(SampleBuffer samples, int from, int to) {
+        int count = to - from;
+        // Au pire 5 octets par valeur : les colonnes sont écrites à la suite
+        // dans un seul tableau, puis recopiées derrière l'en-tête
+        byte[] body = new byte[count * COLUMN_COUNT * 5];
+        int[] lengths = new int[COLUMN_COUNT];
+        int position = 0;
+        for (int c = 0; c < COLUMN_COUNT; c++) {
+            int start = position;
+            int previous = 0;
+            for (int i = from; i < to; i++) {
+                int value = column(samples, c, i);
+                position = putVarint(body, position, zigzag(value - previous));
+                previous = value;
+            }
+            lengths[c] = position - start;
+        }
+        
+        byte[] header = new byte[(2 + COLUMN_COUNT) * 5];
+        int headerSize = putVarint(header, 0, VERSION);
+        headerSize = putVarint(header, headerSize, count);
+        for (int length : lengths) {
+            headerSize = putVarint(header, headerSize, length);
+        }
+        byte[] chunk = new byte[headerSize + position];
+        System.arraycopy(header, 0, chunk, 0, headerSize);
+        System.arraycopy(body, 0, chunk, headerSize, position);
+        return chunk;
+    }
+    
+    private static int column(SampleBuffer samples, int column, int index) {
+        switch (column) {
+            case 0: return samples.getSecond(index);
+            case 1: return samples.getPower(index);
+            case 2: return samples.getCadence(index);
+            case 3: return Math.round(samples.getSpeed(index) * 100f);
+            default: return samples.getHeartRate(index);
+        }
+    }
+    
+    // Varint non signé : 7 bits par octet, bit de poids fort = suite
+    private static int putVarint(byte[] out, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            out[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[position++] = (byte) value;
+        return position;
+    }
+    
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+    
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,99 @@
+package com.cyclingapp.indoor;
+
+/**
+ * Lecture échantillon par échantillon d'un bloc de {@link SampleChunkCodec},
+ * sans matérialiser les colonnes : un curseur par colonne avance en même
+ * temps. Réutilisable d'un bloc à l'autre via {@link #reset(byte[])}.
+ */
+public class SampleChunkDecoder {
+    
+    private byte[] data;
+    private int remaining;
+    // Taille, position de lecture, fin et dernière valeur de chaque colonne
+    private final int[] lengths = new int[SampleChunkCodec.COLUMN_COUNT];
+    private final int[] positions = new int[SampleChunkCodec.COLUMN_COUNT];
+    private final int[] ends = new int[SampleChunkCodec.COLUMN_COUNT];
+    private final int[] values = new int[SampleChunkCodec.COLUMN_COUNT];
+    private int readPosition;
+    
+    /** Prépare la lecture d'un bloc ; IllegalArgumentException s'il est invalide. */
+    public void reset(byte[] chunk) {
+        data = chunk;
+        remaining = 0;
+        readPosition = 0;
+        int version = readVarint(chunk.length);
+        if (version != SampleChunkCodec.VERSION) {
+            throw new IllegalArgumentException("Version de bloc non gérée: " + version);
+        }
+        int count = readVarint(chunk.length);
+        for (int c = 0; c < lengths.length; c++) {
+            lengths[c] = readVarint(chunk.length);
+        }
+        int position = readPosition;
+        for (int c = 0; c < lengths.length; c++) {
+            int length = lengths[c];
+            // Varint de 5 octets : la taille peut être négative
+            if (length < 0 || length > chunk.length - position) {
+                throw new IllegalArgumentException("Bloc tronqué (colonne " + c + ")");
+            }
+            // Au moins un octet par valeur
+            if (count < 0 || count > length) {
+                throw new IllegalArgumentException("Nombre d'échantillons invalide: " + count);
+            }
+            positions[c] = position;
+            values[c] = 0;
+            position += length;
+            ends[c] = position;
+        }
+        remaining = count;
+    }
+    
+    public int getSampleCount() {
+        return remaining;
+    }
+    
+    /** Avance à l'échantillon suivant ; false à la fin du bloc. */
+    public boolean next() {
+        if (remaining == 0) {
+            return false;
+        }
+        for (int c = 0; c < SampleChunkCodec.COLUMN_COUNT; c++) {
+            readPosition = positions[c];
+            // Une valeur ne déborde jamais sur la colonne suivante
+            values[c] += SampleChunkCodec.unzigzag(readVarint(ends[c]));
+            positions[c] = readPosition;
+        }
+        remaining--;
+        return true;
+    }
+    
+    public int getSecond() { return values[0]; }
+    public int getPower() { return values[1]; }
+    public int getCadence() { return values[2]; }
+    public float getSpeed() { return values[3] / 100f; }
+    public int getHeartRate() { return values[4]; }
+    
+    /** Ajoute tous les échantillons (restants) du bloc au tampon. */
+    public void decodeInto(SampleBuffer out) {
+        while (next()) {
+            out.add(getSecond(), getPower(), getCadence(), getSpeed(), getHeartRate());
+        }
+    }
+    
+    // Lit un varint qui doit se terminer avant limit
+    private int readVarint(int limit) {
+        int result = 0;
+        int shift = 0;
+        while (true) {
+            if (readPosition >= limit || shift > 28) {
+                throw new IllegalArgumentException("Varint invalide");
+            }
+            byte b = data[readPosition++];
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+            shift += 7;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.cyclingapp.indoor;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enregistre un échantillon par seconde de la session, en blocs compressés
+ * de {@link SampleChunkCodec#CHUNK_SECONDS} secondes. Les échantillons
+ * s'accumulent en mémoire et sont regroupés toutes les flushIntervalMillis
+ * sur un thread dédié, puis écrits en une transaction par le thread
+ * d'écriture de {@link SessionRepository} : le thread d'ingestion ne fait
+ * qu'une copie dans le tampon.
+ */
+public class SampleRecorder {
+    
+    private static final String TAG = "SampleRecorder";
+    
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 10000;
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    
+    private final SessionRepository repository;
+    // Ligne de la session, créée en parallèle du démarrage (-1 si échec)
+    private final Future<Long> sessionId;
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "sample-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    // Tampon rempli par offer() (verrou sur l'instance) ; l'autre appartient au thread d'écriture
+    private SampleBuffer pending = new SampleBuffer(64);
+    private SampleBuffer spare = new SampleBuffer(64);
+    private boolean hasOrigin = false;
+    private long originNanos;
+    private int lastSecond = -1;
+    
+    // Bloc en cours et blocs fermés pas encore écrits (thread d'écriture uniquement)
+    private final SampleBuffer openChunk = new SampleBuffer(SampleChunkCodec.CHUNK_SECONDS);
+    private int openChunkIndex = -1;
+    private final List<SampleChunk> unwritten = new ArrayList<>();
+    
+    private volatile long writtenCount = 0;
+    
+    public SampleRecorder(SessionRepository repository, Future<Long> sessionId, long flushIntervalMillis) {
+        this.repository = repository;
+        this.sessionId = sessionId;
+        writer.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /** Garde au plus un échantillon par seconde, sur l'horloge des capteurs. */
+    public synchronized void offer(long timestampNanos, int power, int cadence, double speed, int heartRate) {
+        if (!hasOrigin) {
+            hasOrigin = true;
+            originNanos = timestampNanos;
+        }
+        long second = (timestampNanos - originNanos) / NANOS_PER_SECOND;
+        if (second <= lastSecond) {
+            return;
+        }
+        lastSecond = (int) second;
+        pending.add(lastSecond, power, cadence, (float) speed, heartRate);
+    }
+    
+    /**
+     * Écrit les derniers échantillons puis exécute onStopped (peut être null)
+     * sur le thread de l'enregistreur. Ne bloque pas.
+     */
+    public void stop(Runnable onStopped) {
+        writer.execute(this::flush);
+        if (onStopped != null) {
+            writer.execute(onStopped);
+        }
+        writer.shutdown();
+    }
+    
+    public long getWrittenCount() {
+        return writtenCount;
+    }
+    
+    // Thread d'écriture : regroupe les échantillons en blocs de CHUNK_SECONDS
+    private void flush() {
+        SampleBuffer batch;
+        synchronized (this) {
+            if (pending.size() == 0) {
+                return;
+            }
+            batch = pending;
+            pending = spare;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            int index = batch.getSecond(i) / SampleChunkCodec.CHUNK_SECONDS;
+            if (index != openChunkIndex) {
+                if (openChunk.size() > 0) {
+                    unwritten.add(encode(openChunk, openChunkIndex));
+                }
+                openChunk.clear();
+                openChunkIndex = index;
+            }
+            openChunk.add(batch.getSecond(i), batch.getPower(i), batch.getCadence(i),
+                batch.getSpeed(i), batch.getHeartRate(i));
+        }
+        int received = batch.size();
+        batch.clear();
+        spare = batch;
+        
+        // Le bloc en cours est écrit aussi (remplacé au lot suivant) : au plus un intervalle perdu
+        List<SampleChunk> chunks = new ArrayList<>(unwritten);
+        chunks.add(encode(openChunk, openChunkIndex));
+        try {
+            long id = sessionId.get();
+            if (id == -1) {
+                // Pas de ligne de session à laquelle rattacher les échantillons
+                unwritten.clear();
+                return;
+            }
+            repository.writeChunks(id, chunks).get();
+            unwritten.clear();
+            writtenCount += received;
+        } catch (ExecutionException e) {
+            // Les blocs fermés sont gardés pour le prochain lot
+            Log.e(TAG, "Échec d'écriture de " + chunks.size() + " blocs: " + e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private static SampleChunk encode(SampleBuffer samples, int index) {
+        return new SampleChunk(index, samples.size(), SampleChunkCodec.encode(samples, 0, samples.size()));
+    }
+}
@@ -0,0 +1,59 @@
+package com.cyclingapp.indoor;
+
+/**
+ * Rééchantillonne des mesures de puissance irrégulières en une série à 1 Hz :
+ * chaque seconde vaut la moyenne, pondérée par le temps, des valeurs tenues
+ * pendant cette seconde. Une valeur n'est pas tenue plus de {@code maxHoldMillis} ;
+ * au-delà (capteur muet), la puissance est considérée nulle.
+ */
+public class SecondResampler {
+    
+    public interface Listener {
+        void onSecond(double watts);
+    }
+    
+    private final long maxHoldMillis;
+    private final Listener listener;
+    
+    private long lastTime = -1;
+    private int lastWatts = 0;
+    // Début de la seconde en cours et énergie accumulée (W·ms)
+    private long secondStart;
+    private long energy = 0;
+    
+    public SecondResampler(long maxHoldMillis, Listener listener) {
+        this.maxHoldMillis = maxHoldMillis;
+        this.listener = listener;
+    }
+    
+    public void add(long timeMillis, int watts) {
+        if (lastTime < 0) {
+            lastTime = timeMillis;
+            secondStart = timeMillis;
+        } else if (timeMillis > lastTime) {
+            long holdEnd = Math.min(timeMillis, lastTime + maxHoldMillis);
+            accumulate(lastTime, holdEnd, lastWatts);
+            accumulate(holdEnd, timeMillis, 0);
+            lastTime = timeMillis;
+        }
+        lastWatts = watts;
+    }
+    
+    public void reset() {
+        lastTime = -1;
+        lastWatts = 0;
+        energy = 0;
+    }
+    
+    private void accumulate(long from, long to, int watts) {
+        while (to >= secondStart + 1000) {
+            long secondEnd = secondStart + 1000;
+            energy += watts * (secondEnd - from);
+            listener.onSecond(energy / 1000.0);
+            energy = 0;
+            from = secondEnd;
+            secondStart = secondEnd;
+        }
+        energy += watts * (to - from);
+    }
+}
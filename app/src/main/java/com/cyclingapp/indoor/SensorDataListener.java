@@ -0,0 +1,9 @@
+package com.cyclingapp.indoor;
+
+/**
+ * Consommateur des échantillons d'une {@link SensorSource}.
+ */
+public interface SensorDataListener {
+    void onDataReceived(SensorSample sample);
+    void onConnectionStateChanged(boolean connected);
+}
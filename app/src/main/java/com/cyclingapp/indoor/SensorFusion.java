@@ -0,0 +1,130 @@
+package com.cyclingapp.indoor;
+
+/**
+ * Jointure « dernière valeur » des capteurs sur une horloge monotone commune.
+ *
+ * Chaque parser publie ses valeurs avec leur date de réception ; un échantillon
+ * fusionné est produit à chaque mise à jour de la source principale (le
+ * capteur de puissance s'il y en a un), ou au plus tous les tickNanos sinon.
+ * Les valeurs plus anciennes que staleNanos sont considérées absentes.
+ * Utilisé uniquement par le thread d'ingestion : pas de synchronisation.
+ */
+public class SensorFusion {
+    
+    public static final long DEFAULT_TICK_NANOS = 250_000_000L;
+    public static final long DEFAULT_STALE_NANOS = 3_000_000_000L;
+    
+    private final long tickNanos;
+    private final long staleNanos;
+    
+    private int power;
+    private long powerNanos = Long.MIN_VALUE;
+    private double cadence;
+    private long cadenceNanos = Long.MIN_VALUE;
+    private int heartRate;
+    private long heartRateNanos = Long.MIN_VALUE;
+    private double wheelSpeed;
+    private long wheelSpeedNanos = Long.MIN_VALUE;
+    
+    private long lastEmitNanos = Long.MIN_VALUE;
+    
+    // Filtre des valeurs de puissance aberrantes (null : aucun)
+    private HampelFilter powerFilter;
+    
+    public SensorFusion() {
+        this(DEFAULT_TICK_NANOS, DEFAULT_STALE_NANOS);
+    }
+    
+    public SensorFusion(long tickNanos, long staleNanos) {
+        this.tickNanos = tickNanos;
+        this.staleNanos = staleNanos;
+    }
+    
+    public void reset() {
+        powerNanos = Long.MIN_VALUE;
+        cadenceNanos = Long.MIN_VALUE;
+        heartRateNanos = Long.MIN_VALUE;
+        wheelSpeedNanos = Long.MIN_VALUE;
+        lastEmitNanos = Long.MIN_VALUE;
+        if (powerFilter != null) {
+            powerFilter.reset();
+        }
+    }
+    
+    /**
+     * Oublie tout de suite les valeurs d'un type de capteur retiré, sans
+     * attendre staleNanos. Sans puissance, le flux repasse aussitôt au rythme
+     * de tickNanos. La cadence est oubliée avec la puissance ou le capteur
+     * vitesse/cadence : un autre capteur qui la fournit la republie au paquet suivant.
+     */
+    public void clear(int kind) {
+        switch (kind) {
+            case SensorParser.KIND_POWER:
+                powerNanos = Long.MIN_VALUE;
+                cadenceNanos = Long.MIN_VALUE;
+                if (powerFilter != null) {
+                    powerFilter.reset();
+                }
+                break;
+            case SensorParser.KIND_HEART_RATE:
+                heartRateNanos = Long.MIN_VALUE;
+                break;
+            case SensorParser.KIND_SPEED_CADENCE:
+                wheelSpeedNanos = Long.MIN_VALUE;
+                cadenceNanos = Long.MIN_VALUE;
+                break;
+        }
+    }
+    
+    public void setPowerFilter(HampelFilter filter) {
+        powerFilter = filter;
+    }
+    
+    public void updatePower(long nanos, int watts) {
+        power = powerFilter != null ? powerFilter.filter(watts) : watts;
+        powerNanos = nanos;
+    }
+    
+    public void updateCadence(long nanos, double rpm) {
+        cadence = rpm;
+        cadenceNanos = nanos;
+    }
+    
+    public void updateHeartRate(long nanos, int bpm) {
+        heartRate = bpm;
+        heartRateNanos = nanos;
+    }
+    
+    public void updateWheelSpeed(long nanos, double kmh) {
+        wheelSpeed = kmh;
+        wheelSpeedNanos = nanos;
+    }
+    
+    /**
+     * À appeler après chaque paquet traité.
+     * @param primaryUpdate true si le paquet venait du capteur de puissance
+     * @return l'échantillon fusionné, ou null si ce n'est pas encore l'heure
+     */
+    public SensorSample poll(long nowNanos, boolean primaryUpdate) {
+        boolean powerFresh = isFresh(powerNanos, nowNanos);
+        boolean tickElapsed = lastEmitNanos == Long.MIN_VALUE || nowNanos - lastEmitNanos >= tickNanos;
+        // Avec un capteur de puissance actif, c'est lui qui cadence le flux
+        if (powerFresh ? !primaryUpdate : !tickElapsed) {
+            return null;
+        }
+        lastEmitNanos = nowNanos;
+        return snapshot(nowNanos);
+    }
+    
+    public SensorSample snapshot(long nowNanos) {
+        return new SensorSample(nowNanos,
+            isFresh(powerNanos, nowNanos), power,
+            isFresh(cadenceNanos, nowNanos), cadence,
+            isFresh(heartRateNanos, nowNanos), heartRate,
+            isFresh(wheelSpeedNanos, nowNanos), wheelSpeed);
+    }
+    
+    private boolean isFresh(long valueNanos, long nowNanos) {
+        return valueNanos != Long.MIN_VALUE && nowNanos - valueNanos <= staleNanos;
+    }
+}
@@ -0,0 +1,25 @@
+package com.cyclingapp.indoor;
+
+/**
+ * Parser d'une caractéristique de capteur. Chaque connexion GATT a ses propres
+ * instances (l'état de cadence ou de vitesse est propre au capteur) ; elles
+ * publient leurs valeurs dans la {@link SensorFusion} commune.
+ * Appelé uniquement depuis le thread d'ingestion.
+ */
+public interface SensorParser {
+    
+    // Types de capteurs gérés (aussi utilisés comme numéro de canal)
+    int KIND_POWER = 0;
+    int KIND_HEART_RATE = 1;
+    int KIND_SPEED_CADENCE = 2;
+    int KIND_COUNT = 3;
+    
+    int getKind();
+    
+    /**
+     * @return false si le paquet est invalide
+     */
+    boolean onPacket(byte[] data, int length, long timestampNanos, SensorFusion fusion);
+    
+    void reset();
+}
@@ -0,0 +1,231 @@
+package com.cyclingapp.indoor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chaîne commune à toutes les sources : file d'ingestion, parsers, fusion et
+ * distribution aux listeners. Indépendante d'Android : une source n'a qu'à
+ * publier les paquets bruts et indiquer le parser de chaque canal.
+ */
+public class SensorPipeline {
+    
+    /** Parser associé à un canal (null si le canal n'est pas, ou plus, actif). */
+    public interface ParserLookup {
+        SensorParser parserFor(int channel);
+    }
+    
+    private final ParserLookup parsers;
+    private final ListenerRegistry listeners = new ListenerRegistry();
+    
+    // Fusion des capteurs (thread d'ingestion uniquement)
+    private final SensorFusion fusion = new SensorFusion();
+    private volatile boolean fusionResetPending = false;
+    // Types de capteurs retirés (bits 1 << kind), oubliés par la fusion au prochain paquet
+    private final AtomicInteger removedKinds = new AtomicInteger();
+    // Filtre de puissance, installé dans la fusion par le thread d'ingestion
+    private volatile HampelFilter powerFilter = new HampelFilter();
+    private volatile boolean powerFilterPending = true;
+    
+    private volatile IngestionThread ingestion;
+    // Plusieurs threads peuvent produire (un par BluetoothGatt) :
+    // ils sont sérialisés pour garder une file mono-producteur
+    private final Object producerLock = new Object();
+    
+    // Paquets entièrement traités, et paquets rejetés par leur parser
+    private volatile long processedCount = 0;
+    private volatile long invalidCount = 0;
+    
+    // Délai entre le début de la mesure et le traitement du premier échantillon
+    // de puissance, en horloge System.nanoTime() (0 : aucune mesure en cours)
+    private volatile long firstSampleStartNanos = 0;
+    private volatile long timeToFirstSampleNanos = -1;
+    
+    public SensorPipeline(ParserLookup parsers, int capacity, NotificationRingBuffer.DropPolicy dropPolicy) {
+        this.parsers = parsers;
+        configureIngestion(capacity, dropPolicy);
+    }
+    
+    // Remplace la file d'ingestion (les paquets en attente sont perdus).
+    // L'ancien thread est arrêté et attendu avant de démarrer le suivant :
+    // la fusion et les parsers ne sont jamais utilisés par deux threads à la fois
+    public synchronized void configureIngestion(int capacity, NotificationRingBuffer.DropPolicy dropPolicy) {
+        IngestionThread previous = ingestion;
+        if (previous != null && previous != Thread.currentThread()) {
+            previous.shutdown();
+            boolean interrupted = false;
+            while (previous.isAlive()) {
+                try {
+                    previous.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        } else if (previous != null) {
+            // Appel depuis un listener DIRECT : le thread s'arrête au retour de ce paquet
+            previous.shutdown();
+        }
+        IngestionThread next = new IngestionThread(
+            new NotificationRingBuffer(capacity, dropPolicy), this::onPacket);
+        next.start();
+        ingestion = next;
+    }
+    
+    public void shutdown() {
+        ingestion.shutdown();
+    }
+    
+    // false après shutdown() : plus aucun paquet ne sera traité
+    public boolean isRunning() {
+        return ingestion.isRunning();
+    }
+    
+    /** Côté producteur : simple copie dans la file. */
+    public boolean publish(int channel, byte[] data, int length, long timestampNanos) {
+        synchronized (producerLock) {
+            return ingestion.publish(channel, data, length, timestampNanos);
+        }
+    }
+    
+    /**
+     * Comme {@link #publish}, mais attend qu'un emplacement se libère plutôt que
+     * de perdre un paquet (sources rejouées plus vite que le temps réel).
+     * L'attente se fait hors du verrou : les autres producteurs ne sont pas bloqués.
+     * Retourne false si le paquet est perdu (mal formé, ou pipeline arrêté).
+     */
+    public boolean publishBlocking(int channel, byte[] data, int length, long timestampNanos)
+            throws InterruptedException {
+        while (true) {
+            IngestionThread current = ingestion;
+            NotificationRingBuffer buffer = current.getBuffer();
+            if (buffer.size() >= buffer.getCapacity()) {
+                if (!current.isRunning() && current == ingestion) {
+                    // Pipeline arrêté ou file en cours de remplacement : le paquet est perdu
+                    return false;
+                }
+                current.awaitSpace();
+                continue;
+            }
+            synchronized (producerLock) {
+                // Un autre producteur a pu reprendre la place, ou la file a été remplacée :
+                // en DROP_OLDEST, publier dans une file pleine écraserait un paquet
+                if (current == ingestion && buffer.size() < buffer.getCapacity()) {
+                    return current.publish(channel, data, length, timestampNanos);
+                }
+            }
+        }
+    }
+    
+    /** Remplace le filtre de puissance (null pour le désactiver), pris en compte au prochain paquet. */
+    public void setPowerFilter(HampelFilter filter) {
+        powerFilter = filter;
+        powerFilterPending = true;
+    }
+    
+    // Nombre de valeurs de puissance corrigées par le filtre actuel
+    public long getCorrectedSampleCount() {
+        HampelFilter filter = powerFilter;
+        return filter != null ? filter.getCorrectedCount() : 0;
+    }
+    
+    // Réinitialise la fusion au prochain paquet (fait par le thread d'ingestion)
+    public void reset() {
+        fusionResetPending = true;
+    }
+    
+    // Un capteur de ce type vient d'être retiré : ses dernières valeurs ne sont plus publiées
+    public void removeSensor(int kind) {
+        int mask;
+        do {
+            mask = removedKinds.get();
+        } while (!removedKinds.compareAndSet(mask, mask | 1 << kind));
+    }
+    
+    public void addListener(SensorDataListener listener, ListenerRegistry.DispatchMode mode, Executor executor) {
+        listeners.add(listener, mode, executor);
+    }
+    
+    public void removeListener(SensorDataListener listener) {
+        listeners.remove(listener);
+    }
+    
+    public ListenerRegistry.Stats getDispatchStats(SensorDataListener listener) {
+        return listeners.getStats(listener);
+    }
+    
+    public void dispatchConnectionState(boolean connected) {
+        listeners.dispatchConnectionState(connected);
+    }
+    
+    // Nombre de paquets perdus parce que la file était pleine
+    public long getDroppedPacketCount() {
+        return ingestion.getBuffer().getOverflowCount();
+    }
+    
+    public long getProcessedPacketCount() { return processedCount; }
+    
+    // Paquets rejetés par leur parser, ou refusés par la file parce que mal formés
+    public long getInvalidPacketCount() {
+        return invalidCount + ingestion.getBuffer().getRejectedCount();
+    }
+    
+    // Démarre la mesure du délai jusqu'au premier échantillon de puissance
+    // (nowNanos : System.nanoTime(), pas l'horodatage des paquets)
+    public void startTimeToFirstSample(long nowNanos) {
+        timeToFirstSampleNanos = -1;
+        firstSampleStartNanos = nowNanos;
+    }
+    
+    // Dernier délai mesuré en ns (-1 si aucun échantillon reçu depuis le début de la mesure)
+    public long getTimeToFirstSampleNanos() {
+        return timeToFirstSampleNanos;
+    }
+    
+    // Thread d'ingestion : décodage, fusion et distribution aux listeners
+    private void onPacket(int channel, byte[] data, int length, long timestampNanos) {
+        if (powerFilterPending) {
+            powerFilterPending = false;
+            fusion.setPowerFilter(powerFilter);
+        }
+        if (fusionResetPending) {
+            fusionResetPending = false;
+            fusion.reset();
+        }
+        if (removedKinds.get() != 0) {
+            int removed = removedKinds.getAndSet(0);
+            for (int kind = 0; kind < SensorParser.KIND_COUNT; kind++) {
+                if ((removed & 1 << kind) != 0) {
+                    fusion.clear(kind);
+                }
+            }
+        }
+        try {
+            SensorParser parser = parsers.parserFor(channel);
+            if (parser == null) {
+                return;
+            }
+            if (!parser.onPacket(data, length, timestampNanos, fusion)) {
+                invalidCount++;
+                return;
+            }
+            
+            SensorSample sample = fusion.poll(timestampNanos,
+                parser.getKind() == SensorParser.KIND_POWER);
+            if (sample != null) {
+                long start = firstSampleStartNanos;
+                if (start != 0 && sample.hasPower()) {
+                    firstSampleStartNanos = 0;
+                    // Heure d'arrivée sur ce thread : l'horodatage d'un paquet rejoué ne veut rien dire ici
+                    timeToFirstSampleNanos = System.nanoTime() - start;
+                }
+                listeners.dispatchData(sample);
+            }
+        } finally {
+            // Seul le thread d'ingestion écrit ce compteur
+            processedCount++;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.cyclingapp.indoor;
+
+/**
+ * Échantillon fusionné de tous les capteurs connectés, daté sur l'horloge
+ * monotone commune (System.nanoTime au moment de la réception).
+ * Une valeur absente ou périmée vaut 0 et son indicateur has...() est faux.
+ */
+public final class SensorSample {
+    
+    private final long timestampNanos;
+    private final int power;
+    private final double cadence;
+    private final int heartRate;
+    private final double wheelSpeed;
+    private final boolean hasPower;
+    private final boolean hasCadence;
+    private final boolean hasHeartRate;
+    private final boolean hasWheelSpeed;
+    
+    public SensorSample(long timestampNanos,
+                        boolean hasPower, int power,
+                        boolean hasCadence, double cadence,
+                        boolean hasHeartRate, int heartRate,
+                        boolean hasWheelSpeed, double wheelSpeed) {
+        this.timestampNanos = timestampNanos;
+        this.hasPower = hasPower;
+        this.power = hasPower ? power : 0;
+        this.hasCadence = hasCadence;
+        this.cadence = hasCadence ? cadence : 0.0;
+        this.hasHeartRate = hasHeartRate;
+        this.heartRate = hasHeartRate ? heartRate : 0;
+        this.hasWheelSpeed = hasWheelSpeed;
+        this.wheelSpeed = hasWheelSpeed ? wheelSpeed : 0.0;
+    }
+    
+    // Getters
+    public long getTimestampNanos() { return timestampNanos; }
+    public int getPower() { return power; }
+    public double getCadence() { return cadence; }
+    public int getHeartRate() { return heartRate; }
+    public double getWheelSpeed() { return wheelSpeed; }   // km/h
+    public boolean hasPower() { return hasPower; }
+    public boolean hasCadence() { return hasCadence; }
+    public boolean hasHeartRate() { return hasHeartRate; }
+    public boolean hasWheelSpeed() { return hasWheelSpeed; }
+    
+    @Override
+    public String toString() {
+        return "SensorSample{t=" + timestampNanos + ", power=" + power + ", cadence=" + cadence
+            + ", hr=" + heartRate + ", speed=" + wheelSpeed + "}";
+    }
+}
@@ -0,0 +1,23 @@
+package com.cyclingapp.indoor;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Source d'échantillons capteurs : les capteurs BLE
+ * ({@link BluetoothConnectionManager}) ou un enregistrement rejoué
+ * ({@link ReplaySensorSource}). Les consommateurs ne dépendent que de cette interface.
+ */
+public interface SensorSource {
+    
+    void addListener(SensorDataListener listener);
+    
+    void addListener(SensorDataListener listener, ListenerRegistry.DispatchMode mode, Executor executor);
+    
+    void removeListener(SensorDataListener listener);
+    
+    // Au moins un capteur fournit des données
+    boolean isConnected();
+    
+    // Valeurs de puissance remplacées par le filtre de Hampel depuis le démarrage
+    long getCorrectedSampleCount();
+}
@@ -13,6 +13,18 @@ public class Session {
     private double avgSpeed;
     private double avgPower;
     private int userWeight;
+    // Normalized Power, Intensity Factor et TSS (0 pour les anciennes sessions)
+    private double normalizedPower;
+    private double intensityFactor;
+    private double trainingStressScore;
+    // Courbe mean-max ("5:412,60:335,..."), vide pour les anciennes sessions
+    private String meanMaxCurve = "";
+    // Secondes par zone ("120,340,..."), voir ZoneHistogram ; vide si non mesuré
+    private String powerZones = "";
+    private String cadenceZones = "";
+    private String heartRateZones = "";
+    // W'bal par seconde (voir WPrimeBalance.encodeSeries), chargé seulement à la demande
+    private byte[] wPrimeBalanceSeries;
     
     public Session() {
         this.startTime = System.currentTimeMillis();
@@ -39,6 +51,14 @@ public class Session {
     public double getAvgSpeed() { return avgSpeed; }
     public double getAvgPower() { return avgPower; }
     public int getUserWeight() { return userWeight; }
+    public double getNormalizedPower() { return normalizedPower; }
+    public double getIntensityFactor() { return intensityFactor; }
+    public double getTrainingStressScore() { return trainingStressScore; }
+    public String getMeanMaxCurve() { return meanMaxCurve; }
+    public String getPowerZones() { return powerZones; }
+    public String getCadenceZones() { return cadenceZones; }
+    public String getHeartRateZones() { return heartRateZones; }
+    public byte[] getWPrimeBalanceSeries() { return wPrimeBalanceSeries; }
     
     // Setters
     public void setId(long id) { this.id = id; }
@@ -49,6 +69,14 @@ public class Session {
     public void setAvgSpeed(double avgSpeed) { this.avgSpeed = avgSpeed; }
     public void setAvgPower(double avgPower) { this.avgPower = avgPower; }
     public void setUserWeight(int userWeight) { this.userWeight = userWeight; }
+    public void setNormalizedPower(double normalizedPower) { this.normalizedPower = normalizedPower; }
+    public void setIntensityFactor(double intensityFactor) { this.intensityFactor = intensityFactor; }
+    public void setTrainingStressScore(double trainingStressScore) { this.trainingStressScore = trainingStressScore; }
+    public void setMeanMaxCurve(String meanMaxCurve) { this.meanMaxCurve = meanMaxCurve; }
+    public void setPowerZones(String powerZones) { this.powerZones = powerZones; }
+    public void setCadenceZones(String cadenceZones) { this.cadenceZones = cadenceZones; }
+    public void setHeartRateZones(String heartRateZones) { this.heartRateZones = heartRateZones; }
+    public void setWPrimeBalanceSeries(byte[] wPrimeBalanceSeries) { this.wPrimeBalanceSeries = wPrimeBalanceSeries; }
     
     // Méthodes utilitaires
     public long getDuration() {
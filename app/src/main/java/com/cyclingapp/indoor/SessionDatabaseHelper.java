@@ -1,20 +1,22 @@
 package com.cyclingapp.indoor;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
 import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class SessionDatabaseHelper extends SQLiteOpenHelper {
     
     private static final String TAG = "SessionDB";
     private static final String DATABASE_NAME = "cycling_sessions.db";
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = 8;
     
     // Table et colonnes
     private static final String TABLE_SESSIONS = "sessions";
@@ -26,6 +28,18 @@ public class SessionDatabaseHelper extends SQLiteOpenHelper {
     private static final String COLUMN_AVG_SPEED = "avg_speed";
     private static final String COLUMN_AVG_POWER = "avg_power";
     private static final String COLUMN_USER_WEIGHT = "user_weight";
+    // Version 2
+    private static final String COLUMN_NP = "np";
+    private static final String COLUMN_INTENSITY_FACTOR = "intensity_factor";
+    private static final String COLUMN_TSS = "tss";
+    // Version 3
+    private static final String COLUMN_MEAN_MAX = "mean_max";
+    // Version 4 : secondes par zone, voir ZoneHistogram.encode()
+    private static final String COLUMN_POWER_ZONES = "power_zones";
+    private static final String COLUMN_CADENCE_ZONES = "cadence_zones";
+    private static final String COLUMN_HR_ZONES = "hr_zones";
+    // Version 5 : W'bal par seconde (BLOB, lu seulement à la demande)
+    private static final String COLUMN_W_PRIME_BALANCE = "w_prime_balance";
     
     private static final String CREATE_TABLE = 
         "CREATE TABLE " + TABLE_SESSIONS + " (" +
@@ -36,103 +50,483 @@ public class SessionDatabaseHelper extends SQLiteOpenHelper {
         COLUMN_CALORIES + " REAL NOT NULL, " +
         COLUMN_AVG_SPEED + " REAL NOT NULL, " +
         COLUMN_AVG_POWER + " REAL NOT NULL, " +
-        COLUMN_USER_WEIGHT + " INTEGER NOT NULL" +
+        COLUMN_USER_WEIGHT + " INTEGER NOT NULL, " +
+        COLUMN_NP + " REAL NOT NULL DEFAULT 0, " +
+        COLUMN_INTENSITY_FACTOR + " REAL NOT NULL DEFAULT 0, " +
+        COLUMN_TSS + " REAL NOT NULL DEFAULT 0, " +
+        COLUMN_MEAN_MAX + " TEXT NOT NULL DEFAULT '', " +
+        COLUMN_POWER_ZONES + " TEXT NOT NULL DEFAULT '', " +
+        COLUMN_CADENCE_ZONES + " TEXT NOT NULL DEFAULT '', " +
+        COLUMN_HR_ZONES + " TEXT NOT NULL DEFAULT '', " +
+        COLUMN_W_PRIME_BALANCE + " BLOB" +
         ")";
     
-    public SessionDatabaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    // Version 6 : une ligne par seconde de session (remplacée par les blocs en version 7)
+    private static final String LEGACY_TABLE_SAMPLES = "session_samples";
+    
+    // Version 7 : échantillons en blocs compressés (SampleChunkCodec)
+    private static final String TABLE_CHUNKS = "session_chunks";
+    private static final String COLUMN_SESSION_ID = "session_id";
+    private static final String COLUMN_CHUNK_INDEX = "chunk_index";
+    private static final String COLUMN_SAMPLE_COUNT = "sample_count";
+    private static final String COLUMN_DATA = "data";
+    
+    private static final String CREATE_CHUNKS_TABLE =
+        "CREATE TABLE " + TABLE_CHUNKS + " (" +
+        COLUMN_SESSION_ID + " INTEGER NOT NULL, " +
+        COLUMN_CHUNK_INDEX + " INTEGER NOT NULL, " +
+        COLUMN_SAMPLE_COUNT + " INTEGER NOT NULL, " +
+        COLUMN_DATA + " BLOB NOT NULL, " +
+        "PRIMARY KEY (" + COLUMN_SESSION_ID + ", " + COLUMN_CHUNK_INDEX + ")" +
+        ") WITHOUT ROWID";
+    
+    // Le dernier bloc d'une session en cours est réécrit à chaque lot
+    private static final String INSERT_CHUNK =
+        "INSERT OR REPLACE INTO " + TABLE_CHUNKS + " (" +
+        COLUMN_SESSION_ID + ", " + COLUMN_CHUNK_INDEX + ", " +
+        COLUMN_SAMPLE_COUNT + ", " + COLUMN_DATA + ") VALUES (?, ?, ?, ?)";
+    
+    // Version 8 : historique trié par date. L'id (rowid) fait partie de chaque
+    // entrée de l'index : il sert aussi la clé de pagination (start_time, id)
+    private static final String CREATE_START_TIME_INDEX =
+        "CREATE INDEX IF NOT EXISTS idx_sessions_start_time ON " + TABLE_SESSIONS +
+        " (" + COLUMN_START_TIME + ")";
+    
+    // Colonnes écrites par saveSession / updateSession, dans l'ordre des paramètres
+    private static final String[] SESSION_COLUMNS = {
+        COLUMN_START_TIME, COLUMN_END_TIME, COLUMN_DISTANCE, COLUMN_CALORIES,
+        COLUMN_AVG_SPEED, COLUMN_AVG_POWER, COLUMN_USER_WEIGHT, COLUMN_NP,
+        COLUMN_INTENSITY_FACTOR, COLUMN_TSS, COLUMN_MEAN_MAX, COLUMN_POWER_ZONES,
+        COLUMN_CADENCE_ZONES, COLUMN_HR_ZONES, COLUMN_W_PRIME_BALANCE
+    };
+    private static final String INSERT_SESSION =
+        "INSERT INTO " + TABLE_SESSIONS + " (" + TextUtils.join(", ", SESSION_COLUMNS) + ") VALUES (" +
+        placeholders(SESSION_COLUMNS.length) + ")";
+    private static final String UPDATE_SESSION =
+        "UPDATE " + TABLE_SESSIONS + " SET " + TextUtils.join(" = ?, ", SESSION_COLUMNS) + " = ? WHERE " +
+        COLUMN_ID + " = ?";
+    private static final String DELETE_SESSION =
+        "DELETE FROM " + TABLE_SESSIONS + " WHERE " + COLUMN_ID + " = ?";
+    private static final String DELETE_SESSION_CHUNKS =
+        "DELETE FROM " + TABLE_CHUNKS + " WHERE " + COLUMN_SESSION_ID + " = ?";
+    private static final String COUNT_SESSIONS = "SELECT COUNT(*) FROM " + TABLE_SESSIONS;
+    
+    private static SessionDatabaseHelper instance;
+    
+    // Requêtes compilées une fois pour la connexion partagée (jamais fermée) ;
+    // utilisées seulement dans les méthodes synchronized
+    private SQLiteDatabase compiledFor;
+    private SQLiteStatement sessionInsert;
+    private SQLiteStatement sessionUpdate;
+    private SQLiteStatement sessionDelete;
+    private SQLiteStatement sessionChunksDelete;
+    private SQLiteStatement sessionCount;
+    private SQLiteStatement chunkInsert;
+    
+    // Colonnes de la liste des sessions (sans les séries, qui peuvent être volumineuses)
+    private static final String SUMMARY_COLUMNS =
+        COLUMN_ID + ", " + COLUMN_START_TIME + ", " + COLUMN_END_TIME + ", " +
+        COLUMN_DISTANCE + ", " + COLUMN_CALORIES + ", " + COLUMN_AVG_SPEED + ", " +
+        COLUMN_AVG_POWER + ", " + COLUMN_USER_WEIGHT + ", " + COLUMN_NP + ", " +
+        COLUMN_INTENSITY_FACTOR + ", " + COLUMN_TSS + ", " + COLUMN_MEAN_MAX + ", " +
+        COLUMN_POWER_ZONES + ", " + COLUMN_CADENCE_ZONES + ", " + COLUMN_HR_ZONES;
+    
+    private SessionDatabaseHelper(Context context) {
+        this(context, DATABASE_NAME);
+    }
+    
+    // Base sous un autre nom, pour les benchmarks sur l'appareil : celle de l'utilisateur n'est pas touchée
+    SessionDatabaseHelper(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+        // Les lectures (historique) ne sont plus bloquées par l'écriture des échantillons
+        setWriteAheadLoggingEnabled(true);
+    }
+    
+    /**
+     * Connexion partagée par toute l'application : ouverte une fois, jamais
+     * fermée (elle se ferme avec le processus).
+     */
+    public static synchronized SessionDatabaseHelper getInstance(Context context) {
+        if (instance == null) {
+            instance = new SessionDatabaseHelper(context.getApplicationContext());
+        }
+        return instance;
     }
     
     @Override
     public void onCreate(SQLiteDatabase db) {
         db.execSQL(CREATE_TABLE);
+        db.execSQL(CREATE_CHUNKS_TABLE);
+        db.execSQL(CREATE_START_TIME_INDEX);
         Log.d(TAG, "Base de données créée");
     }
     
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_SESSIONS);
-        onCreate(db);
+        // Migrations successives : les sessions existantes sont conservées
+        if (oldVersion < 2) {
+            addColumn(db, COLUMN_NP);
+            addColumn(db, COLUMN_INTENSITY_FACTOR);
+            addColumn(db, COLUMN_TSS);
+        }
+        if (oldVersion < 3) {
+            addTextColumn(db, COLUMN_MEAN_MAX);
+        }
+        if (oldVersion < 4) {
+            addTextColumn(db, COLUMN_POWER_ZONES);
+            addTextColumn(db, COLUMN_CADENCE_ZONES);
+            addTextColumn(db, COLUMN_HR_ZONES);
+        }
+        if (oldVersion < 5) {
+            db.execSQL("ALTER TABLE " + TABLE_SESSIONS + " ADD COLUMN " + COLUMN_W_PRIME_BALANCE + " BLOB");
+        }
+        if (oldVersion < 7) {
+            db.execSQL(CREATE_CHUNKS_TABLE);
+            if (oldVersion == 6) {
+                migrateSamplesToChunks(db);
+            }
+        }
+        if (oldVersion < 8) {
+            db.execSQL(CREATE_START_TIME_INDEX);
+        }
+        Log.d(TAG, "Base de données migrée de " + oldVersion + " à " + newVersion);
     }
     
-    // Sauvegarder une session
-    public long saveSession(Session session) {
+    private static void addColumn(SQLiteDatabase db, String column) {
+        db.execSQL("ALTER TABLE " + TABLE_SESSIONS + " ADD COLUMN " + column + " REAL NOT NULL DEFAULT 0");
+    }
+    
+    private static void addTextColumn(SQLiteDatabase db, String column) {
+        db.execSQL("ALTER TABLE " + TABLE_SESSIONS + " ADD COLUMN " + column + " TEXT NOT NULL DEFAULT ''");
+    }
+    
+    private static String placeholders(int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append(i == 0 ? "?" : ", ?");
+        }
+        return builder.toString();
+    }
+    
+    // Connexion en écriture, avec les requêtes compilées pour elle (appelé sous verrou)
+    private SQLiteDatabase writableDatabase() {
         SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        
-        values.put(COLUMN_START_TIME, session.getStartTime());
-        values.put(COLUMN_END_TIME, session.getEndTime());
-        values.put(COLUMN_DISTANCE, session.getDistance());
-        values.put(COLUMN_CALORIES, session.getCalories());
-        values.put(COLUMN_AVG_SPEED, session.getAvgSpeed());
-        values.put(COLUMN_AVG_POWER, session.getAvgPower());
-        values.put(COLUMN_USER_WEIGHT, session.getUserWeight());
-        
-        long id = db.insert(TABLE_SESSIONS, null, values);
-        db.close();
+        if (compiledFor != db) {
+            sessionInsert = db.compileStatement(INSERT_SESSION);
+            sessionUpdate = db.compileStatement(UPDATE_SESSION);
+            sessionDelete = db.compileStatement(DELETE_SESSION);
+            sessionChunksDelete = db.compileStatement(DELETE_SESSION_CHUNKS);
+            sessionCount = db.compileStatement(COUNT_SESSIONS);
+            chunkInsert = db.compileStatement(INSERT_CHUNK);
+            compiledFor = db;
+        }
+        return db;
+    }
+    
+    // Sauvegarder une session
+    public synchronized long saveSession(Session session) {
+        writableDatabase();
+        bindSession(sessionInsert, session);
+        long id = sessionInsert.executeInsert();
         
         Log.d(TAG, "Session sauvegardée avec ID: " + id);
         return id;
     }
     
+    // Mettre à jour une session déjà enregistrée (créée au démarrage)
+    public synchronized boolean updateSession(Session session) {
+        writableDatabase();
+        bindSession(sessionUpdate, session);
+        sessionUpdate.bindLong(SESSION_COLUMNS.length + 1, session.getId());
+        int rows = sessionUpdate.executeUpdateDelete();
+        
+        Log.d(TAG, "Session mise à jour: " + session.getId());
+        return rows == 1;
+    }
+    
+    // Paramètres 1 à SESSION_COLUMNS.length
+    private static void bindSession(SQLiteStatement statement, Session session) {
+        statement.bindLong(1, session.getStartTime());
+        statement.bindLong(2, session.getEndTime());
+        statement.bindDouble(3, session.getDistance());
+        statement.bindDouble(4, session.getCalories());
+        statement.bindDouble(5, session.getAvgSpeed());
+        statement.bindDouble(6, session.getAvgPower());
+        statement.bindLong(7, session.getUserWeight());
+        statement.bindDouble(8, session.getNormalizedPower());
+        statement.bindDouble(9, session.getIntensityFactor());
+        statement.bindDouble(10, session.getTrainingStressScore());
+        statement.bindString(11, session.getMeanMaxCurve());
+        statement.bindString(12, session.getPowerZones());
+        statement.bindString(13, session.getCadenceZones());
+        statement.bindString(14, session.getHeartRateZones());
+        byte[] wPrimeBalance = session.getWPrimeBalanceSeries();
+        if (wPrimeBalance != null) {
+            statement.bindBlob(15, wPrimeBalance);
+        } else {
+            statement.bindNull(15);
+        }
+    }
+    
+    /**
+     * Écrit des blocs d'échantillons en une transaction, avec une requête
+     * compilée réutilisée d'un lot à l'autre (thread d'écriture des échantillons).
+     */
+    public synchronized void writeChunks(long sessionId, List<SampleChunk> chunks) {
+        SQLiteDatabase db = writableDatabase();
+        SQLiteStatement statement = chunkInsert;
+        db.beginTransaction();
+        try {
+            for (SampleChunk chunk : chunks) {
+                statement.bindLong(1, sessionId);
+                statement.bindLong(2, chunk.getIndex());
+                statement.bindLong(3, chunk.getSampleCount());
+                statement.bindBlob(4, chunk.getData());
+                statement.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+    
+    // Échantillons d'une session, par seconde croissante (une ligne lue par bloc)
+    public SampleBuffer getSamples(long sessionId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(TABLE_CHUNKS, new String[]{COLUMN_DATA},
+            COLUMN_SESSION_ID + " = ?", new String[]{String.valueOf(sessionId)},
+            null, null, COLUMN_CHUNK_INDEX);
+        SampleBuffer samples = new SampleBuffer(cursor.getCount() * SampleChunkCodec.CHUNK_SECONDS);
+        SampleChunkDecoder decoder = new SampleChunkDecoder();
+        while (cursor.moveToNext()) {
+            try {
+                decoder.reset(cursor.getBlob(0));
+                decoder.decodeInto(samples);
+            } catch (IllegalArgumentException e) {
+                Log.e(TAG, "Bloc illisible pour la session " + sessionId + ": " + e.getMessage());
+            }
+        }
+        cursor.close();
+        return samples;
+    }
+    
+    // Sessions terminées : la ligne créée au démarrage garde end_time = start_time
+    // jusqu'à l'enregistrement final. Masquée de l'historique, elle ne peut pas être
+    // supprimée pendant l'enregistrement (échantillons orphelins, mise à jour finale en échec).
+    private static final String FINISHED = COLUMN_END_TIME + " > " + COLUMN_START_TIME;
+    
     // Récupérer toutes les sessions (triées par date décroissante)
     public List<Session> getAllSessions() {
         List<Session> sessions = new ArrayList<>();
         SQLiteDatabase db = this.getReadableDatabase();
         
-        String query = "SELECT * FROM " + TABLE_SESSIONS + 
-                      " ORDER BY " + COLUMN_START_TIME + " DESC";
+        String query = "SELECT " + SUMMARY_COLUMNS + " FROM " + TABLE_SESSIONS + 
+                      " WHERE " + FINISHED + " ORDER BY " + COLUMN_START_TIME + " DESC";
         
         Cursor cursor = db.rawQuery(query, null);
-        
-        if (cursor.moveToFirst()) {
-            do {
-                Session session = new Session(
-                    cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_ID)),
-                    cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_START_TIME)),
-                    cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_END_TIME)),
-                    cursor.getDouble(cursor.getColumnIndexOrThrow(COLUMN_DISTANCE)),
-                    cursor.getDouble(cursor.getColumnIndexOrThrow(COLUMN_CALORIES)),
-                    cursor.getDouble(cursor.getColumnIndexOrThrow(COLUMN_AVG_SPEED)),
-                    cursor.getDouble(cursor.getColumnIndexOrThrow(COLUMN_AVG_POWER)),
-                    cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_USER_WEIGHT))
-                );
-                sessions.add(session);
-            } while (cursor.moveToNext());
+        SummaryColumns columns = new SummaryColumns(cursor);
+        while (cursor.moveToNext()) {
+            sessions.add(columns.read(cursor));
         }
-        
         cursor.close();
-        db.close();
         
         Log.d(TAG, "Récupéré " + sessions.size() + " sessions");
         return sessions;
     }
     
-    // Supprimer une session
-    public void deleteSession(long id) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        db.delete(TABLE_SESSIONS, COLUMN_ID + " = ?", 
-                 new String[]{String.valueOf(id)});
-        db.close();
+    /**
+     * Page de l'historique : au plus limit sessions plus anciennes que
+     * (startTime, id), des plus récentes aux plus anciennes. La première page
+     * s'obtient avec Long.MAX_VALUE pour les deux. Parcours de l'index à partir
+     * de la clé, sans OFFSET : le coût d'une page ne dépend pas de sa position.
+     * La session en cours n'y figure pas (voir FINISHED).
+     */
+    public List<Session> getSessionsBefore(long startTime, long id, int limit) {
+        // start_time <= ? borne le parcours de l'index ; le reste départage les égalités
+        String query = "SELECT " + SUMMARY_COLUMNS + " FROM " + TABLE_SESSIONS +
+            " WHERE " + COLUMN_START_TIME + " <= ? AND (" + COLUMN_START_TIME + " < ? OR " +
+            COLUMN_ID + " < ?) AND " + FINISHED +
+            " ORDER BY " + COLUMN_START_TIME + " DESC, " + COLUMN_ID + " DESC LIMIT ?";
+        return readPage(query, startTime, id, limit, false);
+    }
+    
+    /** Au plus limit sessions plus récentes que (startTime, id), dans l'ordre de l'historique. */
+    public List<Session> getSessionsAfter(long startTime, long id, int limit) {
+        String query = "SELECT " + SUMMARY_COLUMNS + " FROM " + TABLE_SESSIONS +
+            " WHERE " + COLUMN_START_TIME + " >= ? AND (" + COLUMN_START_TIME + " > ? OR " +
+            COLUMN_ID + " > ?) AND " + FINISHED +
+            " ORDER BY " + COLUMN_START_TIME + " ASC, " + COLUMN_ID + " ASC LIMIT ?";
+        return readPage(query, startTime, id, limit, true);
+    }
+    
+    private List<Session> readPage(String query, long startTime, long id, int limit, boolean reversed) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        String time = String.valueOf(startTime);
+        Cursor cursor = db.rawQuery(query, new String[]{time, time, String.valueOf(id), String.valueOf(limit)});
+        List<Session> sessions = new ArrayList<>(cursor.getCount());
+        SummaryColumns columns = new SummaryColumns(cursor);
+        while (cursor.moveToNext()) {
+            sessions.add(columns.read(cursor));
+        }
+        cursor.close();
+        if (reversed) {
+            Collections.reverse(sessions);
+        }
+        return sessions;
+    }
+    
+    // Index des colonnes de SUMMARY_COLUMNS, résolus une fois par requête
+    private static final class SummaryColumns {
+        private final int id;
+        private final int startTime;
+        private final int endTime;
+        private final int distance;
+        private final int calories;
+        private final int avgSpeed;
+        private final int avgPower;
+        private final int userWeight;
+        private final int np;
+        private final int intensityFactor;
+        private final int tss;
+        private final int meanMax;
+        private final int powerZones;
+        private final int cadenceZones;
+        private final int heartRateZones;
+        
+        SummaryColumns(Cursor cursor) {
+            id = cursor.getColumnIndexOrThrow(COLUMN_ID);
+            startTime = cursor.getColumnIndexOrThrow(COLUMN_START_TIME);
+            endTime = cursor.getColumnIndexOrThrow(COLUMN_END_TIME);
+            distance = cursor.getColumnIndexOrThrow(COLUMN_DISTANCE);
+            calories = cursor.getColumnIndexOrThrow(COLUMN_CALORIES);
+            avgSpeed = cursor.getColumnIndexOrThrow(COLUMN_AVG_SPEED);
+            avgPower = cursor.getColumnIndexOrThrow(COLUMN_AVG_POWER);
+            userWeight = cursor.getColumnIndexOrThrow(COLUMN_USER_WEIGHT);
+            np = cursor.getColumnIndexOrThrow(COLUMN_NP);
+            intensityFactor = cursor.getColumnIndexOrThrow(COLUMN_INTENSITY_FACTOR);
+            tss = cursor.getColumnIndexOrThrow(COLUMN_TSS);
+            meanMax = cursor.getColumnIndexOrThrow(COLUMN_MEAN_MAX);
+            powerZones = cursor.getColumnIndexOrThrow(COLUMN_POWER_ZONES);
+            cadenceZones = cursor.getColumnIndexOrThrow(COLUMN_CADENCE_ZONES);
+            heartRateZones = cursor.getColumnIndexOrThrow(COLUMN_HR_ZONES);
+        }
+        
+        Session read(Cursor cursor) {
+            Session session = new Session(
+                cursor.getLong(id),
+                cursor.getLong(startTime),
+                cursor.getLong(endTime),
+                cursor.getDouble(distance),
+                cursor.getDouble(calories),
+                cursor.getDouble(avgSpeed),
+                cursor.getDouble(avgPower),
+                cursor.getInt(userWeight)
+            );
+            session.setNormalizedPower(cursor.getDouble(np));
+            session.setIntensityFactor(cursor.getDouble(intensityFactor));
+            session.setTrainingStressScore(cursor.getDouble(tss));
+            session.setMeanMaxCurve(cursor.getString(meanMax));
+            session.setPowerZones(cursor.getString(powerZones));
+            session.setCadenceZones(cursor.getString(cadenceZones));
+            session.setHeartRateZones(cursor.getString(heartRateZones));
+            return session;
+        }
+    }
+    
+    // Conversion des lignes de la version 6 en blocs, session par session
+    private static void migrateSamplesToChunks(SQLiteDatabase db) {
+        SQLiteStatement insert = db.compileStatement(INSERT_CHUNK);
+        Cursor cursor = db.rawQuery("SELECT session_id, t, power, cadence, speed, heart_rate FROM " +
+            LEGACY_TABLE_SAMPLES + " ORDER BY session_id, t", null);
+        SampleBuffer chunk = new SampleBuffer(SampleChunkCodec.CHUNK_SECONDS);
+        long chunkSession = -1;
+        int chunkIndex = -1;
+        while (cursor.moveToNext()) {
+            long sessionId = cursor.getLong(0);
+            int second = cursor.getInt(1);
+            int index = second / SampleChunkCodec.CHUNK_SECONDS;
+            if (sessionId != chunkSession || index != chunkIndex) {
+                insertChunk(insert, chunkSession, chunkIndex, chunk);
+                chunkSession = sessionId;
+                chunkIndex = index;
+            }
+            chunk.add(second, cursor.getInt(2), cursor.getInt(3), cursor.getFloat(4), cursor.getInt(5));
+        }
+        insertChunk(insert, chunkSession, chunkIndex, chunk);
+        cursor.close();
+        insert.close();
+        db.execSQL("DROP TABLE IF EXISTS " + LEGACY_TABLE_SAMPLES);
+    }
+    
+    private static void insertChunk(SQLiteStatement insert, long sessionId, int index, SampleBuffer chunk) {
+        if (chunk.size() == 0) {
+            return;
+        }
+        insert.bindLong(1, sessionId);
+        insert.bindLong(2, index);
+        insert.bindLong(3, chunk.size());
+        insert.bindBlob(4, SampleChunkCodec.encode(chunk, 0, chunk.size()));
+        insert.executeInsert();
+        chunk.clear();
+    }
+    
+    // Session commencée à cet instant (-1 si aucune) : retrouve la ligne d'une session
+    // dont le journal n'a pas eu le temps d'enregistrer l'identifiant
+    public long findSessionIdByStartTime(long startTime) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(TABLE_SESSIONS, new String[]{COLUMN_ID},
+            COLUMN_START_TIME + " = ?", new String[]{String.valueOf(startTime)}, null, null, COLUMN_ID, "1");
+        long id = cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        cursor.close();
+        return id;
+    }
+    
+    // Série W'bal d'une session (null si absente), voir WPrimeBalance.decodeSeries()
+    public byte[] getWPrimeBalanceSeries(long sessionId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(TABLE_SESSIONS, new String[]{COLUMN_W_PRIME_BALANCE},
+            COLUMN_ID + " = ?", new String[]{String.valueOf(sessionId)}, null, null, null);
+        byte[] series = null;
+        if (cursor.moveToFirst()) {
+            series = cursor.getBlob(0);
+        }
+        cursor.close();
+        return series;
+    }
+    
+    // Supprimer une session et ses échantillons
+    public synchronized void deleteSession(long id) {
+        SQLiteDatabase db = writableDatabase();
+        db.beginTransaction();
+        try {
+            sessionDelete.bindLong(1, id);
+            sessionDelete.executeUpdateDelete();
+            sessionChunksDelete.bindLong(1, id);
+            sessionChunksDelete.executeUpdateDelete();
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
         Log.d(TAG, "Session supprimée: " + id);
     }
     
     // Supprimer toutes les sessions
-    public void deleteAllSessions() {
-        SQLiteDatabase db = this.getWritableDatabase();
-        db.delete(TABLE_SESSIONS, null, null);
-        db.close();
+    public synchronized void deleteAllSessions() {
+        SQLiteDatabase db = writableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete(TABLE_SESSIONS, null, null);
+            db.delete(TABLE_CHUNKS, null, null);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
         Log.d(TAG, "Toutes les sessions supprimées");
     }
     
     // Obtenir le nombre de sessions
-    public int getSessionCount() {
-        SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + TABLE_SESSIONS, null);
-        cursor.moveToFirst();
-        int count = cursor.getInt(0);
-        cursor.close();
-        db.close();
-        return count;
+    public synchronized int getSessionCount() {
+        writableDatabase();
+        return (int) sessionCount.simpleQueryForLong();
     }
 }
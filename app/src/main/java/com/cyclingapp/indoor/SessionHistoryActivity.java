@@ -9,13 +9,14 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.List;
+import java.util.ArrayList;
 
 public class SessionHistoryActivity extends AppCompatActivity {
     
     private RecyclerView recyclerView;
     private SessionHistoryAdapter adapter;
-    private SessionDatabaseHelper dbHelper;
+    private SessionRepository repository;
+    private SessionPageLoader pageLoader;
     private TextView emptyView;
     
     @Override
@@ -29,34 +30,39 @@ public class SessionHistoryActivity extends AppCompatActivity {
             getSupportActionBar().setTitle("Historique des sessions");
         }
         
-        dbHelper = new SessionDatabaseHelper(this);
+        repository = SessionRepository.getInstance(this);
         
         recyclerView = findViewById(R.id.sessionsRecyclerView);
         emptyView = findViewById(R.id.emptyView);
         
-        recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        recyclerView.setLayoutManager(layoutManager);
+        adapter = new SessionHistoryAdapter(new ArrayList<>(), new SessionHistoryAdapter.OnSessionClickListener() {
+            @Override
+            public void onDeleteClick(Session session) {
+                // Retirée de la liste une fois supprimée, sans relire l'historique
+                repository.deleteSession(SessionHistoryActivity.this, session.getId(), deleted -> {
+                    if (Boolean.TRUE.equals(deleted)) {
+                        pageLoader.remove(session);
+                    }
+                });
+            }
+        });
+        recyclerView.setAdapter(adapter);
         
-        loadSessions();
+        // Historique lu par pages en arrière-plan, à mesure du défilement
+        pageLoader = new SessionPageLoader(repository, this, adapter, this::updateEmptyView);
+        pageLoader.attach(recyclerView, layoutManager);
+        pageLoader.reload();
     }
     
-    private void loadSessions() {
-        List<Session> sessions = dbHelper.getAllSessions();
-        
-        if (sessions.isEmpty()) {
+    private void updateEmptyView() {
+        if (pageLoader.isEmpty()) {
             recyclerView.setVisibility(View.GONE);
             emptyView.setVisibility(View.VISIBLE);
         } else {
             recyclerView.setVisibility(View.VISIBLE);
             emptyView.setVisibility(View.GONE);
-            
-            adapter = new SessionHistoryAdapter(sessions, new SessionHistoryAdapter.OnSessionClickListener() {
-                @Override
-                public void onDeleteClick(Session session) {
-                    dbHelper.deleteSession(session.getId());
-                    loadSessions(); // Recharger la liste
-                }
-            });
-            recyclerView.setAdapter(adapter);
         }
     }
     
@@ -72,8 +78,7 @@ public class SessionHistoryActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (dbHelper != null) {
-            dbHelper.close();
-        }
+        // Plus de livraison vers cette activité
+        repository.cancelAll(this);
     }
 }
@@ -9,12 +9,14 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 
 public class SessionHistoryAdapter extends RecyclerView.Adapter<SessionHistoryAdapter.SessionViewHolder> {
     
-    private List<Session> sessions;
+    // Fenêtre de l'historique actuellement chargée (voir SessionPageLoader)
+    private final List<Session> sessions;
     private OnSessionClickListener listener;
     
     public interface OnSessionClickListener {
@@ -22,10 +24,59 @@ public class SessionHistoryAdapter extends RecyclerView.Adapter<SessionHistoryAd
     }
     
     public SessionHistoryAdapter(List<Session> sessions, OnSessionClickListener listener) {
-        this.sessions = sessions;
+        this.sessions = new ArrayList<>(sessions);
         this.listener = listener;
     }
     
+    // Première et dernière session de la fenêtre (null si vide)
+    public Session getFirst() {
+        return sessions.isEmpty() ? null : sessions.get(0);
+    }
+    
+    public Session getLast() {
+        return sessions.isEmpty() ? null : sessions.get(sessions.size() - 1);
+    }
+    
+    public Session getItem(int position) {
+        return sessions.get(position);
+    }
+    
+    public void append(List<Session> page) {
+        int start = sessions.size();
+        sessions.addAll(page);
+        notifyItemRangeInserted(start, page.size());
+    }
+    
+    public void prepend(List<Session> page) {
+        sessions.addAll(0, page);
+        notifyItemRangeInserted(0, page.size());
+    }
+    
+    public void removeFirst(int count) {
+        sessions.subList(0, count).clear();
+        notifyItemRangeRemoved(0, count);
+    }
+    
+    public void removeLast(int count) {
+        int start = sessions.size() - count;
+        sessions.subList(start, sessions.size()).clear();
+        notifyItemRangeRemoved(start, count);
+    }
+    
+    public void remove(Session session) {
+        int position = sessions.indexOf(session);
+        if (position >= 0) {
+            sessions.remove(position);
+            notifyItemRemoved(position);
+        }
+    }
+    
+    public void clear() {
+        int count = sessions.size();
+        sessions.clear();
+        notifyItemRangeRemoved(0, count);
+    }
+    
     @NonNull
     @Override
     public SessionViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -45,6 +96,13 @@ public class SessionHistoryAdapter extends RecyclerView.Adapter<SessionHistoryAd
         holder.avgSpeedText.setText(String.format(Locale.getDefault(), "%.1f km/h", session.getAvgSpeed()));
         holder.avgPowerText.setText(String.format(Locale.getDefault(), "%.0f W", session.getAvgPower()));
         
+        // Zones : lues depuis la ligne de session, sans charger d'échantillons
+        holder.powerZoneBar.setZoneSeconds(ZoneHistogram.decode(session.getPowerZones()));
+        holder.cadenceZoneBar.setZoneSeconds(ZoneHistogram.decode(session.getCadenceZones()));
+        int[] heartRateZones = ZoneHistogram.decode(session.getHeartRateZones());
+        holder.heartRateZoneLayout.setVisibility(heartRateZones.length > 0 ? View.VISIBLE : View.GONE);
+        holder.heartRateZoneBar.setZoneSeconds(heartRateZones);
+        
         holder.deleteButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
@@ -67,6 +125,10 @@ public class SessionHistoryAdapter extends RecyclerView.Adapter<SessionHistoryAd
         TextView caloriesText;
         TextView avgSpeedText;
         TextView avgPowerText;
+        ZoneBarView powerZoneBar;
+        ZoneBarView cadenceZoneBar;
+        View heartRateZoneLayout;
+        ZoneBarView heartRateZoneBar;
         Button deleteButton;
         
         public SessionViewHolder(@NonNull View itemView) {
@@ -77,6 +139,10 @@ public class SessionHistoryAdapter extends RecyclerView.Adapter<SessionHistoryAd
             caloriesText = itemView.findViewById(R.id.sessionCalories);
             avgSpeedText = itemView.findViewById(R.id.sessionAvgSpeed);
             avgPowerText = itemView.findViewById(R.id.sessionAvgPower);
+            powerZoneBar = itemView.findViewById(R.id.powerZoneBar);
+            cadenceZoneBar = itemView.findViewById(R.id.cadenceZoneBar);
+            heartRateZoneLayout = itemView.findViewById(R.id.heartRateZoneLayout);
+            heartRateZoneBar = itemView.findViewById(R.id.heartRateZoneBar);
             deleteButton = itemView.findViewById(R.id.deleteButton);
         }
     }
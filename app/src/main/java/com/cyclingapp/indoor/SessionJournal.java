@@ -0,0 +1,253 @@
+package com.cyclingapp.indoor;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Journal en ajout seul de la session en cours : les entrées de
+ * {@link MetricsEngine#update} et les réglages qui l'influencent, pour que la
+ * session puisse être recalculée à l'identique après un arrêt brutal
+ * (voir {@link SessionRecovery}).
+ *
+ * Les ajouts ne font qu'une copie en mémoire. Un thread écrit le lot en
+ * attente toutes les {@link #COMMIT_INTERVAL_MS}, suivi d'un point de contrôle
+ * (heure murale, CRC32 du lot), puis un seul fsync pour le tout. Ce même
+ * thread crée le fichier : aucun accès disque pour l'appelant.
+ *
+ * Format (little-endian) : en-tête {@code magic, version, identifiant de
+ * session (0 si pas encore connu), début en ms}, puis des enregistrements {@code type (1), données}
+ * de taille fixe selon le type. Seuls les lots suivis d'un point de contrôle
+ * valide sont relus.
+ */
+public class SessionJournal {
+    
+    static final int MAGIC = 0x314A5343; // "CSJ1"
+    static final int VERSION = 1;
+    static final int FILE_HEADER_SIZE = 24;
+    
+    static final byte TYPE_SAMPLE = 1;
+    static final byte TYPE_SETTINGS = 2;
+    static final byte TYPE_CHECKPOINT = 3;
+    static final byte TYPE_SESSION_ID = 4;
+    static final byte TYPE_CADENCE_BOUNDS = 5;
+    // Horodatage (8), puissance, cadence, fréquence cardiaque (2 chacune)
+    static final int SAMPLE_SIZE = 1 + 8 + 2 + 2 + 2;
+    // FTP, FC max, CP, W', poids (4 chacun), pente (4), fenêtre personnalisée (8)
+    static final int SETTINGS_SIZE = 1 + 4 * 5 + 4 + 8;
+    // Heure murale (8), taille du lot (4), CRC32 du lot (4)
+    static final int CHECKPOINT_SIZE = 1 + 8 + 4 + 4;
+    // Identifiant de la ligne de session, connu après le démarrage (8)
+    static final int SESSION_ID_SIZE = 1 + 8;
+    // Bandes de cadence (2 chacune), écrites juste avant les réglages qu'elles complètent
+    static final int CADENCE_BOUNDS_SIZE = 1 + 2 * 5;
+    
+    public static final String FILE_PREFIX = "journal-";
+    public static final String FILE_SUFFIX = ".bin";
+    
+    // Au plus cet intervalle d'échantillons perdu en cas d'arrêt brutal
+    public static final long COMMIT_INTERVAL_MS = 2000;
+    private static final long CLOSE_TIMEOUT_MS = 5000;
+    
+    private final File file;
+    // Ouvert par le thread d'écriture ; null si la création a échoué
+    private volatile FileChannel channel;
+    private final ScheduledExecutorService committer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "session-journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    // Lot rempli par les ajouts (verrou sur l'instance) ; l'autre appartient au thread d'écriture
+    private ByteBuffer pending = allocate(16 * 1024);
+    private ByteBuffer spare = allocate(16 * 1024);
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer checkpoint = allocate(CHECKPOINT_SIZE);
+    
+    private volatile IOException failure;
+    
+    private SessionJournal(File directory, long sessionId, long startTimeMillis) {
+        this.file = new File(directory, FILE_PREFIX + startTimeMillis + FILE_SUFFIX);
+        // Avant le premier lot : le thread exécute ses tâches dans l'ordre
+        committer.execute(() -> open(directory, sessionId, startTimeMillis));
+        committer.scheduleWithFixedDelay(this::commit, COMMIT_INTERVAL_MS, COMMIT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Journal d'une session qui vient de démarrer. Le fichier est créé et son
+     * en-tête synchronisé par le thread d'écriture ; un échec est rendu par
+     * {@link #getFailure()}.
+     */
+    public static SessionJournal create(File directory, long sessionId, long startTimeMillis) {
+        return new SessionJournal(directory, sessionId, startTimeMillis);
+    }
+    
+    /** Journaux laissés par des sessions non terminées, du plus ancien au plus récent. */
+    public static File[] findUnfinished(File directory) {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX));
+        if (files == null) {
+            return new File[0];
+        }
+        // Le nom contient l'heure de début : l'ordre alphabétique est chronologique
+        Arrays.sort(files);
+        return files;
+    }
+    
+    /** Entrées d'un appel à {@link MetricsEngine#update} (thread d'ingestion). */
+    public synchronized void appendSample(long timestampNanos, int power, int cadence, int heartRate) {
+        ensureCapacity(SAMPLE_SIZE);
+        pending.put(TYPE_SAMPLE)
+            .putLong(timestampNanos)
+            .putShort((short) power)
+            .putShort((short) cadence)
+            .putShort((short) heartRate);
+    }
+    
+    /** Réglages appliqués au moteur de métriques à partir de maintenant. */
+    public synchronized void appendSettings(int ftp, int maxHeartRate, int criticalPower, int wPrime,
+                                            int weightKg, float gradePercent, long customWindowMillis,
+                                            int[] cadenceBounds) {
+        if (cadenceBounds.length != (CADENCE_BOUNDS_SIZE - 1) / 2) {
+            throw new IllegalArgumentException("Bandes de cadence: " + cadenceBounds.length);
+        }
+        ensureCapacity(CADENCE_BOUNDS_SIZE + SETTINGS_SIZE);
+        pending.put(TYPE_CADENCE_BOUNDS);
+        for (int bound : cadenceBounds) {
+            pending.putShort((short) bound);
+        }
+        pending.put(TYPE_SETTINGS)
+            .putInt(ftp)
+            .putInt(maxHeartRate)
+            .putInt(criticalPower)
+            .putInt(wPrime)
+            .putInt(weightKg)
+            .putFloat(gradePercent)
+            .putLong(customWindowMillis);
+    }
+    
+    /** Identifiant de la ligne de session, s'il n'était pas connu à la création. */
+    public synchronized void appendSessionId(long sessionId) {
+        ensureCapacity(SESSION_ID_SIZE);
+        pending.put(TYPE_SESSION_ID).putLong(sessionId);
+    }
+    
+    public File getFile() {
+        return file;
+    }
+    
+    /** Écrit le dernier lot et ferme le fichier, qui reste sur disque (bloquant). */
+    public void close() {
+        committer.execute(this::commit);
+        committer.shutdown();
+        try {
+            committer.awaitTermination(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException ignored) {
+        }
+    }
+    
+    /** Ferme et supprime le journal, une fois la session enregistrée en base. */
+    public void delete() {
+        close();
+        file.delete();
+    }
+    
+    // Erreur d'écriture, le cas échéant : le journal ne couvre plus la suite de la session
+    public IOException getFailure() {
+        return failure;
+    }
+    
+    // Thread d'écriture : création du fichier et de son en-tête
+    private void open(File directory, long sessionId, long startTimeMillis) {
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Impossible de créer " + directory);
+            }
+            channel = new FileOutputStream(file).getChannel();
+            ByteBuffer header = allocate(FILE_HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(sessionId).putLong(startTimeMillis);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            failure = e;
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+                channel = null;
+            }
+            file.delete();
+        }
+    }
+    
+    // Thread d'écriture : lot en attente + point de contrôle, un seul fsync
+    private void commit() {
+        ByteBuffer batch;
+        synchronized (this) {
+            if (pending.position() == 0) {
+                return;
+            }
+            batch = pending;
+            pending = spare;
+        }
+        batch.flip();
+        try {
+            if (failure == null) {
+                crc.reset();
+                crc.update(batch.array(), batch.arrayOffset(), batch.limit());
+                checkpoint.clear();
+                checkpoint.put(TYPE_CHECKPOINT)
+                    .putLong(System.currentTimeMillis())
+                    .putInt(batch.limit())
+                    .putInt((int) crc.getValue());
+                checkpoint.flip();
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                while (checkpoint.hasRemaining()) {
+                    channel.write(checkpoint);
+                }
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            failure = e;
+        } finally {
+            batch.clear();
+            synchronized (this) {
+                spare = batch;
+            }
+        }
+    }
+    
+    // Appelé sous verrou : agrandit le lot si le thread d'écriture a pris du retard
+    private void ensureCapacity(int size) {
+        if (pending.remaining() < size) {
+            ByteBuffer larger = allocate(pending.capacity() * 2);
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+    }
+    
+    private static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
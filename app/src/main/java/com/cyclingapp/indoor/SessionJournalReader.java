@@ -0,0 +1,192 @@
+package com.cyclingapp.indoor;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Lecture d'un fichier de {@link SessionJournal}, mappé en mémoire. Seuls les
+ * enregistrements couverts par un point de contrôle valide sont rendus : un
+ * lot tronqué ou corrompu par un arrêt brutal est ignoré avec tout ce qui suit.
+ */
+public class SessionJournalReader implements Closeable {
+    
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private long sessionId;
+    private final long startTimeMillis;
+    // Fin du dernier lot validé, et heure murale de son point de contrôle
+    private int validEnd;
+    private long endTimeMillis;
+    
+    private int type;
+    private long timestampNanos;
+    private int power;
+    private int cadence;
+    private int heartRate;
+    private int ftp;
+    private int maxHeartRate;
+    private int criticalPower;
+    private int wPrime;
+    private int weightKg;
+    private float gradePercent;
+    private long customWindowMillis;
+    // Null tant qu'aucun enregistrement de bandes n'a été lu (journaux plus anciens)
+    private int[] cadenceBounds;
+    
+    private SessionJournalReader(RandomAccessFile file, MappedByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < SessionJournal.FILE_HEADER_SIZE
+                || buffer.getInt() != SessionJournal.MAGIC) {
+            throw new IOException("Journal de session invalide");
+        }
+        int version = buffer.getInt();
+        if (version != SessionJournal.VERSION) {
+            throw new IOException("Version de journal non gérée: " + version);
+        }
+        sessionId = buffer.getLong();
+        startTimeMillis = buffer.getLong();
+        endTimeMillis = startTimeMillis;
+        validEnd = buffer.position();
+        findValidEnd();
+        buffer.position(SessionJournal.FILE_HEADER_SIZE);
+    }
+    
+    public static SessionJournalReader open(File path) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new SessionJournalReader(file, buffer);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+    
+    // Parcourt les lots et s'arrête au premier dont le point de contrôle manque ou ne correspond pas
+    private void findValidEnd() {
+        CRC32 crc = new CRC32();
+        byte[] batch = new byte[0];
+        int batchStart = buffer.position();
+        while (buffer.hasRemaining()) {
+            int start = buffer.position();
+            int size = recordSize(buffer.get(start));
+            if (size < 0 || size > buffer.remaining()) {
+                return;
+            }
+            if (buffer.get(start) != SessionJournal.TYPE_CHECKPOINT) {
+                buffer.position(start + size);
+                continue;
+            }
+            buffer.get();
+            long wallClock = buffer.getLong();
+            int length = buffer.getInt();
+            int expected = buffer.getInt();
+            if (length != start - batchStart) {
+                return;
+            }
+            if (batch.length < length) {
+                batch = new byte[length];
+            }
+            buffer.position(batchStart);
+            buffer.get(batch, 0, length);
+            crc.reset();
+            crc.update(batch, 0, length);
+            if ((int) crc.getValue() != expected) {
+                return;
+            }
+            buffer.position(start + size);
+            batchStart = buffer.position();
+            validEnd = batchStart;
+            endTimeMillis = wallClock;
+        }
+    }
+    
+    private static int recordSize(byte type) {
+        switch (type) {
+            case SessionJournal.TYPE_SAMPLE: return SessionJournal.SAMPLE_SIZE;
+            case SessionJournal.TYPE_SETTINGS: return SessionJournal.SETTINGS_SIZE;
+            case SessionJournal.TYPE_CHECKPOINT: return SessionJournal.CHECKPOINT_SIZE;
+            case SessionJournal.TYPE_SESSION_ID: return SessionJournal.SESSION_ID_SIZE;
+            case SessionJournal.TYPE_CADENCE_BOUNDS: return SessionJournal.CADENCE_BOUNDS_SIZE;
+            default: return -1;
+        }
+    }
+    
+    /**
+     * Avance à l'échantillon ou aux réglages suivants (les points de contrôle
+     * sont sautés, l'identifiant de session et les bandes de cadence mis à
+     * jour) ; false à la fin de la partie validée.
+     */
+    public boolean next() {
+        while (buffer.position() < validEnd) {
+            type = buffer.get();
+            switch (type) {
+                case SessionJournal.TYPE_SAMPLE:
+                    timestampNanos = buffer.getLong();
+                    power = buffer.getShort();
+                    cadence = buffer.getShort();
+                    heartRate = buffer.getShort();
+                    return true;
+                case SessionJournal.TYPE_SETTINGS:
+                    ftp = buffer.getInt();
+                    maxHeartRate = buffer.getInt();
+                    criticalPower = buffer.getInt();
+                    wPrime = buffer.getInt();
+                    weightKg = buffer.getInt();
+                    gradePercent = buffer.getFloat();
+                    customWindowMillis = buffer.getLong();
+                    return true;
+                case SessionJournal.TYPE_SESSION_ID:
+                    sessionId = buffer.getLong();
+                    break;
+                case SessionJournal.TYPE_CADENCE_BOUNDS:
+                    // Rendues avec les réglages qui suivent
+                    cadenceBounds = new int[(SessionJournal.CADENCE_BOUNDS_SIZE - 1) / 2];
+                    for (int i = 0; i < cadenceBounds.length; i++) {
+                        cadenceBounds[i] = buffer.getShort();
+                    }
+                    break;
+                default:
+                    buffer.position(buffer.position() + SessionJournal.CHECKPOINT_SIZE - 1);
+            }
+        }
+        return false;
+    }
+    
+    public boolean isSample() { return type == SessionJournal.TYPE_SAMPLE; }
+    public boolean isSettings() { return type == SessionJournal.TYPE_SETTINGS; }
+    
+    // Définitif une fois tous les enregistrements lus
+    public long getSessionId() { return sessionId; }
+    public long getStartTimeMillis() { return startTimeMillis; }
+    // Heure du dernier point de contrôle (fin de session la plus tardive connue)
+    public long getEndTimeMillis() { return endTimeMillis; }
+    
+    public long getTimestampNanos() { return timestampNanos; }
+    public int getPower() { return power; }
+    public int getCadence() { return cadence; }
+    public int getHeartRate() { return heartRate; }
+    
+    public int getFtp() { return ftp; }
+    public int getMaxHeartRate() { return maxHeartRate; }
+    public int getCriticalPower() { return criticalPower; }
+    public int getWPrime() { return wPrime; }
+    public int getWeightKg() { return weightKg; }
+    public float getGradePercent() { return gradePercent; }
+    public long getCustomWindowMillis() { return customWindowMillis; }
+    public int[] getCadenceBounds() { return cadenceBounds; }
+    
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,176 @@
+package com.cyclingapp.indoor;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Historique chargé par pages à mesure du défilement. Les pages sont lues
+ * par clé (start_time, id) sur un thread de lecture de {@link SessionRepository},
+ * un peu avant d'atteindre le bord de la liste. Au plus {@link #MAX_WINDOW}
+ * sessions restent en mémoire : les plus éloignées de l'écran sont oubliées,
+ * puis relues si l'on revient vers elles. Le premier affichage ne lit qu'une
+ * page, quelle que soit la taille de l'historique.
+ *
+ * Un seul chargement à la fois : la page suivante part toujours de la
+ * fenêtre à jour. Thread principal uniquement.
+ */
+public class SessionPageLoader {
+    
+    public static final int PAGE_SIZE = 30;
+    public static final int MAX_WINDOW = 5 * PAGE_SIZE;
+    // Chargement de la page suivante quand il reste moins de sessions que ça avant le bord
+    public static final int PREFETCH_DISTANCE = 10;
+    
+    /** Fenêtre modifiée, ou chargement terminé. */
+    public interface Listener {
+        void onWindowChanged();
+    }
+    
+    private final SessionRepository repository;
+    private final Object owner;
+    private final SessionHistoryAdapter adapter;
+    private final Listener listener;
+    private RecyclerView recyclerView;
+    private LinearLayoutManager layoutManager;
+    
+    private boolean loading = false;
+    private boolean hasOlder = true;
+    private boolean hasNewer = false;
+    // Résultats d'avant un reload() ignorés
+    private int generation = 0;
+    
+    private final Runnable checkPrefetch = this::checkPrefetch;
+    
+    public SessionPageLoader(SessionRepository repository, Object owner,
+                             SessionHistoryAdapter adapter, Listener listener) {
+        this.repository = repository;
+        this.owner = owner;
+        this.adapter = adapter;
+        this.listener = listener;
+    }
+    
+    public void attach(RecyclerView view, LinearLayoutManager manager) {
+        recyclerView = view;
+        layoutManager = manager;
+        view.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                checkPrefetch();
+            }
+        });
+    }
+    
+    /** Repart des sessions les plus récentes. */
+    public void reload() {
+        generation++;
+        loading = false;
+        hasOlder = true;
+        hasNewer = false;
+        adapter.clear();
+        loadOlder();
+    }
+    
+    /** Tout l'historique est chargé ou consulté et la fenêtre est vide. */
+    public boolean isEmpty() {
+        return adapter.getItemCount() == 0 && !loading && !hasOlder && !hasNewer;
+    }
+    
+    // Page en cours de lecture (tests sur l'appareil)
+    boolean isLoading() {
+        return loading;
+    }
+    
+    /** Session supprimée : retirée de la fenêtre, qui sera complétée si besoin. */
+    public void remove(Session session) {
+        adapter.remove(session);
+        listener.onWindowChanged();
+        schedulePrefetchCheck();
+    }
+    
+    private void checkPrefetch() {
+        if (loading || layoutManager == null) {
+            return;
+        }
+        int count = adapter.getItemCount();
+        if (count == 0 && hasNewer) {
+            // Fenêtre vidée par des suppressions, sans repère : on repart du début
+            reload();
+            return;
+        }
+        int last = layoutManager.findLastVisibleItemPosition();
+        int first = layoutManager.findFirstVisibleItemPosition();
+        if (hasOlder && last >= count - PREFETCH_DISTANCE) {
+            loadOlder();
+        } else if (hasNewer && first != RecyclerView.NO_POSITION && first < PREFETCH_DISTANCE) {
+            loadNewer();
+        }
+    }
+    
+    private void loadOlder() {
+        Session last = adapter.getLast();
+        long startTime = last != null ? last.getStartTime() : Long.MAX_VALUE;
+        long id = last != null ? last.getId() : Long.MAX_VALUE;
+        int requested = generation;
+        loading = true;
+        repository.loadSessionsBefore(owner, startTime, id, PAGE_SIZE, page -> {
+            if (requested != generation) {
+                return;
+            }
+            loading = false;
+            if (page == null) {
+                onPageFailed();
+                return;
+            }
+            hasOlder = page.size() == PAGE_SIZE;
+            adapter.append(page);
+            int excess = adapter.getItemCount() - MAX_WINDOW;
+            if (excess > 0) {
+                adapter.removeFirst(excess);
+                hasNewer = true;
+            }
+            onPageLoaded();
+        });
+    }
+    
+    private void loadNewer() {
+        Session first = adapter.getFirst();
+        int requested = generation;
+        loading = true;
+        repository.loadSessionsAfter(owner, first.getStartTime(), first.getId(), PAGE_SIZE, page -> {
+            if (requested != generation) {
+                return;
+            }
+            loading = false;
+            if (page == null) {
+                onPageFailed();
+                return;
+            }
+            hasNewer = page.size() == PAGE_SIZE;
+            adapter.prepend(page);
+            int excess = adapter.getItemCount() - MAX_WINDOW;
+            if (excess > 0) {
+                adapter.removeLast(excess);
+                hasOlder = true;
+            }
+            onPageLoaded();
+        });
+    }
+    
+    private void onPageLoaded() {
+        listener.onWindowChanged();
+        // La page peut ne pas remplir l'écran : pas de défilement pour relancer le chargement
+        schedulePrefetchCheck();
+    }
+    
+    // Lecture en échec : pas de nouvel essai immédiat (il échouerait en boucle), le prochain défilement relance
+    private void onPageFailed() {
+        listener.onWindowChanged();
+    }
+    
+    private void schedulePrefetchCheck() {
+        if (recyclerView != null) {
+            recyclerView.post(checkPrefetch);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.cyclingapp.indoor;
+
+/**
+ * Reconstitution d'une session interrompue à partir de son journal : les
+ * échantillons journalisés repassent dans un {@link MetricsEngine} neuf avec
+ * les mêmes réglages. Le moteur ne dépend que des horodatages des capteurs,
+ * le résumé obtenu est donc celui qu'aurait donné l'arrêt de la session au
+ * dernier point de contrôle.
+ */
+public final class SessionRecovery {
+    
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    
+    private SessionRecovery() {
+    }
+    
+    /**
+     * Rejoue le journal ; les échantillons par seconde (comme ceux de
+     * {@link SampleRecorder}) sont ajoutés à samples.
+     */
+    public static Session replay(SessionJournalReader reader, SampleBuffer samples) {
+        MetricsEngine metrics = new MetricsEngine();
+        Session session = new Session();
+        session.setStartTime(reader.getStartTimeMillis());
+        session.setEndTime(reader.getEndTimeMillis());
+        session.setUserWeight(SpeedModel.DEFAULT_RIDER_WEIGHT_KG);
+        metrics.startSession();
+        
+        boolean hasSettings = false;
+        boolean hasOrigin = false;
+        long originNanos = 0;
+        long lastSecond = -1;
+        while (reader.next()) {
+            if (reader.isSettings()) {
+                // Un réglage invalide (saisie à 0, journal d'une autre version) reprend sa valeur
+                // par défaut : les setters le refuseraient et la sortie serait perdue
+                int weightKg = positiveOr(reader.getWeightKg(), SpeedModel.DEFAULT_RIDER_WEIGHT_KG);
+                float gradePercent = reader.getGradePercent();
+                metrics.setCustomWindowMillis(reader.getCustomWindowMillis() > 0
+                    ? reader.getCustomWindowMillis() : MetricsEngine.DEFAULT_CUSTOM_WINDOW_MS);
+                metrics.setFtp(positiveOr(reader.getFtp(), MetricsEngine.DEFAULT_FTP));
+                metrics.setMaxHeartRate(positiveOr(reader.getMaxHeartRate(), MetricsEngine.DEFAULT_MAX_HEART_RATE));
+                metrics.setCriticalPower(positiveOr(reader.getCriticalPower(), WPrimeBalance.DEFAULT_CP),
+                    positiveOr(reader.getWPrime(), WPrimeBalance.DEFAULT_W_PRIME));
+                int[] cadenceBounds = reader.getCadenceBounds();
+                metrics.setCadenceBounds(ZoneHistogram.isValidCadenceBounds(cadenceBounds)
+                    ? cadenceBounds : ZoneHistogram.getDefaultCadenceBounds());
+                metrics.setRider(weightKg,
+                    Float.isNaN(gradePercent) || Float.isInfinite(gradePercent) ? 0.0 : gradePercent);
+                if (!hasSettings) {
+                    hasSettings = true;
+                    session.setUserWeight(weightKg);
+                }
+                continue;
+            }
+            
+            long timestampNanos = reader.getTimestampNanos();
+            metrics.update(timestampNanos, reader.getPower(), reader.getCadence(), reader.getHeartRate());
+            // Même règle que SampleRecorder.offer : le premier échantillon de chaque seconde
+            if (!hasOrigin) {
+                hasOrigin = true;
+                originNanos = timestampNanos;
+            }
+            long second = (timestampNanos - originNanos) / NANOS_PER_SECOND;
+            if (second > lastSecond) {
+                lastSecond = second;
+                samples.add((int) second, metrics.getCurrentPower(), metrics.getCurrentCadence(),
+                    (float) metrics.getCurrentSpeed(), reader.getHeartRate());
+            }
+        }
+        
+        session.setId(Math.max(0, reader.getSessionId()));
+        metrics.stopSession();
+        metrics.writeSummary(session);
+        return session;
+    }
+    
+    private static int positiveOr(int value, int fallback) {
+        return value > 0 ? value : fallback;
+    }
+}
@@ -0,0 +1,324 @@
+package com.cyclingapp.indoor;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Accès asynchrone aux sessions : aucune requête SQLite sur le thread UI.
+ * Les écritures passent par un seul thread, dans l'ordre de soumission ; les
+ * lectures par un petit pool (la base est en WAL, elles ne bloquent pas les
+ * écritures). Chaque appel rend un {@link Future} et livre son résultat sur
+ * le thread principal.
+ *
+ * Le propriétaire d'un appel (une activité, ou null) permet d'annuler ses
+ * livraisons avec {@link #cancelAll(Object)} : les lectures pas encore
+ * commencées ne s'exécutent pas, les écritures s'exécutent mais leur callback
+ * n'est pas appelé.
+ */
+public class SessionRepository {
+    
+    private static final String TAG = "SessionRepository";
+    private static final int READER_COUNT = 2;
+    
+    /** Résultat livré sur le thread principal ; null si l'accès à la base a échoué. */
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+    
+    private static SessionRepository instance;
+    
+    private final SessionDatabaseHelper database;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "db-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService readers;
+    
+    // Tâches dont une livraison est encore possible (verrou sur l'instance)
+    private final List<Task<?>> pending = new ArrayList<>();
+    // Enregistrements en file d'attente par session, pour regrouper les suivants
+    private final Map<Session, Task<Boolean>> queuedSaves = new IdentityHashMap<>();
+    
+    // Dépôt sur une autre base (tests sur l'appareil)
+    SessionRepository(SessionDatabaseHelper database) {
+        this.database = database;
+        AtomicInteger readerCount = new AtomicInteger();
+        readers = Executors.newFixedThreadPool(READER_COUNT, r -> {
+            Thread thread = new Thread(r, "db-reader-" + readerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    public static synchronized SessionRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new SessionRepository(SessionDatabaseHelper.getInstance(context));
+        }
+        return instance;
+    }
+    
+    /** Crée la ligne d'une session qui démarre ; l'identifiant (-1 en cas d'échec) est aussi affecté à la session. */
+    public Future<Long> insertSession(Object owner, Session session, Callback<Long> callback) {
+        return submitWrite(owner, callback, () -> {
+            long id = insertOrFail(session);
+            if (id != -1) {
+                session.setId(id);
+            }
+            return id;
+        });
+    }
+    
+    /**
+     * Enregistre le résumé d'une session (mise à jour de sa ligne, ou création
+     * si elle n'en a pas). Tant qu'un enregistrement de la même session attend
+     * son tour, les suivants s'y joignent : une seule écriture, avec l'état le
+     * plus récent, et le même résultat pour tous.
+     */
+    public Future<Boolean> saveSession(Object owner, Session session, Callback<Boolean> callback) {
+        synchronized (this) {
+            Task<Boolean> queued = queuedSaves.get(session);
+            if (queued != null) {
+                queued.addDelivery(owner, callback);
+                return queued;
+            }
+            Task<Boolean> task = new Task<>(false, () -> {
+                synchronized (SessionRepository.this) {
+                    queuedSaves.remove(session);
+                }
+                return session.getId() > 0 ? updateOrFail(session) : insertOrFail(session) != -1;
+            });
+            queuedSaves.put(session, task);
+            return enqueue(writer, task, owner, callback);
+        }
+    }
+    
+    /**
+     * Session reconstituée depuis son journal : résumé et échantillons en un
+     * seul passage du thread d'écriture. Sans identifiant journalisé, la ligne
+     * créée au démarrage est retrouvée par son heure de début ; elle est
+     * recréée si elle a été supprimée entre-temps.
+     */
+    public Future<Boolean> saveRecoveredSession(Session session, SampleBuffer samples) {
+        return submitWrite(null, null, () -> {
+            try {
+                if (session.getId() <= 0) {
+                    // Arrêt entre la création de la ligne et le point de contrôle suivant du journal
+                    long existing = database.findSessionIdByStartTime(session.getStartTime());
+                    if (existing != -1) {
+                        session.setId(existing);
+                    }
+                }
+                if (session.getId() <= 0 || !database.updateSession(session)) {
+                    long id = database.saveSession(session);
+                    if (id == -1) {
+                        return false;
+                    }
+                    session.setId(id);
+                }
+                database.writeChunks(session.getId(), SampleChunk.split(samples));
+                return true;
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Échec d'enregistrement de la session récupérée: " + e.getMessage());
+                return false;
+            }
+        });
+    }
+    
+    /** Blocs d'échantillons d'une session en cours (thread de {@link SampleRecorder}). */
+    public Future<Void> writeChunks(long sessionId, List<SampleChunk> chunks) {
+        return submitWrite(null, null, () -> {
+            database.writeChunks(sessionId, chunks);
+            return null;
+        });
+    }
+    
+    public Future<Boolean> deleteSession(Object owner, long id, Callback<Boolean> callback) {
+        return submitWrite(owner, callback, () -> {
+            try {
+                database.deleteSession(id);
+                return true;
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Échec de suppression de la session " + id + ": " + e.getMessage());
+                return false;
+            }
+        });
+    }
+    
+    /** Page de l'historique plus ancienne que (startTime, id), voir SessionDatabaseHelper.getSessionsBefore. */
+    public Future<List<Session>> loadSessionsBefore(Object owner, long startTime, long id, int limit,
+                                                    Callback<List<Session>> callback) {
+        return submitRead(owner, callback, () -> database.getSessionsBefore(startTime, id, limit));
+    }
+    
+    /** Page de l'historique plus récente que (startTime, id). */
+    public Future<List<Session>> loadSessionsAfter(Object owner, long startTime, long id, int limit,
+                                                   Callback<List<Session>> callback) {
+        return submitRead(owner, callback, () -> database.getSessionsAfter(startTime, id, limit));
+    }
+    
+    /** Échantillons par seconde d'une session enregistrée, décodés hors du thread UI. */
+    public Future<SampleBuffer> loadSamples(Object owner, long sessionId, Callback<SampleBuffer> callback) {
+        return submitRead(owner, callback, () -> database.getSamples(sessionId));
+    }
+    
+        /** Série W'bal d'une session (null si absente), voir WPrimeBalance.decodeSeries(). */
+    public Future<byte[]> loadWPrimeBalanceSeries(Object owner, long sessionId, Callback<byte[]> callback) {
+        return submitRead(owner, callback, () -> database.getWPrimeBalanceSeries(sessionId));
+    }
+    
+        /** Annule les livraisons des appels de ce propriétaire (à appeler dans onDestroy). */
+    public void cancelAll(Object owner) {
+        List<Task<?>> idle = new ArrayList<>();
+        synchronized (this) {
+            for (Task<?> task : pending) {
+                if (task.detach(owner)) {
+                    idle.add(task);
+                }
+            }
+        }
+        for (Task<?> task : idle) {
+            task.cancel(false);
+        }
+    }
+    
+    private long insertOrFail(Session session) {
+        try {
+            return database.saveSession(session);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Échec de création de la session: " + e.getMessage());
+            return -1;
+        }
+    }
+    
+    private boolean updateOrFail(Session session) {
+        try {
+            return database.updateSession(session);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Échec d'enregistrement de la session " + session.getId() + ": " + e.getMessage());
+            return false;
+        }
+    }
+    
+    private <T> Future<T> submitWrite(Object owner, Callback<T> callback, Callable<T> work) {
+        synchronized (this) {
+            return enqueue(writer, new Task<>(false, work), owner, callback);
+        }
+    }
+    
+    private <T> Future<T> submitRead(Object owner, Callback<T> callback, Callable<T> work) {
+        synchronized (this) {
+            return enqueue(readers, new Task<>(true, work), owner, callback);
+        }
+    }
+    
+    // Appelé sous verrou
+    private <T> Task<T> enqueue(ExecutorService executor, Task<T> task, Object owner, Callback<T> callback) {
+        task.addDelivery(owner, callback);
+        pending.add(task);
+        executor.execute(task);
+        return task;
+    }
+    
+    private static final class Delivery<T> {
+        final Object owner;
+        final Callback<T> callback;
+        volatile boolean cancelled = false;
+        
+        Delivery(Object owner, Callback<T> callback) {
+            this.owner = owner;
+            this.callback = callback;
+        }
+    }
+    
+    private final class Task<T> extends FutureTask<T> {
+        // Une lecture sans plus personne à livrer n'a pas besoin de s'exécuter
+        private final boolean cancellable;
+        // Verrou sur le dépôt
+        private final List<Delivery<T>> deliveries = new ArrayList<>(1);
+        
+        Task(boolean cancellable, Callable<T> work) {
+            super(work);
+            this.cancellable = cancellable;
+        }
+        
+        // Appelé sous verrou
+        void addDelivery(Object owner, Callback<T> callback) {
+            if (callback != null) {
+                deliveries.add(new Delivery<>(owner, callback));
+            }
+        }
+        
+        // Appelé sous verrou ; true si la tâche ne livrait plus qu'à ce propriétaire et peut être annulée
+        boolean detach(Object owner) {
+            boolean detached = false;
+            boolean remaining = false;
+            for (Delivery<T> delivery : deliveries) {
+                if (delivery.owner != null && delivery.owner == owner) {
+                    delivery.cancelled = true;
+                    detached = true;
+                } else if (!delivery.cancelled) {
+                    remaining = true;
+                }
+            }
+            return cancellable && detached && !remaining;
+        }
+        
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                release();
+                return;
+            }
+            T value;
+            try {
+                value = get();
+            } catch (ExecutionException e) {
+                // Livré quand même : l'appelant ne doit pas attendre un résultat qui ne viendra pas
+                Log.e(TAG, "Accès à la base en échec", e.getCause());
+                value = null;
+            } catch (InterruptedException e) {
+                release();
+                return;
+            }
+            List<Delivery<T>> targets;
+            synchronized (SessionRepository.this) {
+                targets = new ArrayList<>(deliveries);
+            }
+            if (targets.isEmpty()) {
+                release();
+                return;
+            }
+            T result = value;
+            mainHandler.post(() -> {
+                for (Delivery<T> delivery : targets) {
+                    if (!delivery.cancelled) {
+                        delivery.callback.onResult(result);
+                    }
+                }
+                release();
+            });
+        }
+        
+        private void release() {
+            synchronized (SessionRepository.this) {
+                pending.remove(this);
+            }
+        }
+    }
+}
@@ -2,24 +2,13 @@ package com.cyclingapp.indoor;
 
 import android.Manifest;
 import android.bluetooth.BluetoothAdapter;
-import android.bluetooth.BluetoothDevice;
-import android.bluetooth.BluetoothGatt;
-import android.bluetooth.BluetoothGattCallback;
-import android.bluetooth.BluetoothGattCharacteristic;
-import android.bluetooth.BluetoothGattDescriptor;
-import android.bluetooth.BluetoothGattService;
 import android.bluetooth.BluetoothManager;
-import android.bluetooth.le.BluetoothLeScanner;
-import android.bluetooth.le.ScanCallback;
-import android.bluetooth.le.ScanResult;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.util.Log;
 import android.view.MenuItem;
 import android.view.View;
@@ -34,35 +23,46 @@ import androidx.core.content.ContextCompat;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
-public class SettingsActivity extends AppCompatActivity {
+public class SettingsActivity extends AppCompatActivity implements BluetoothConnectionManager.BluetoothDataListener {
     
     private static final String TAG = "SettingsActivity";
     private static final int REQUEST_ENABLE_BT = 1;
     private static final int REQUEST_LOCATION_PERMISSION = 2;
     private static final long SCAN_PERIOD = 10000;
     
-    private static final UUID CYCLING_POWER_SERVICE_UUID = UUID.fromString("00001818-0000-1000-8000-00805f9b34fb");
-    private static final UUID CYCLING_POWER_MEASUREMENT_UUID = UUID.fromString("00002A63-0000-1000-8000-00805f9b34fb");
-    private static final UUID CLIENT_CHARACTERISTIC_CONFIG_UUID = UUID.fromString("00002902-0000-1000-8000-00805f9b34fb");
-    
     // UI
     private TextView statusText;
     private Button connectButton;
     private EditText weightInput;
     private Button saveWeightButton;
+    private EditText criticalPowerInput;
+    private EditText wPrimeInput;
+    private Button saveCriticalPowerButton;
+    private EditText customPowerWindowInput;
+    private Button saveCustomPowerWindowButton;
+    private EditText ftpInput;
+    private Button saveFtpButton;
+    private EditText maxHeartRateInput;
+    private Button saveMaxHeartRateButton;
+    private EditText cadenceZonesInput;
+    private Button saveCadenceZonesButton;
+    private EditText gradeInput;
+    private Button saveGradeButton;
     
     // Bluetooth
     private BluetoothAdapter bluetoothAdapter;
-    private BluetoothLeScanner bluetoothLeScanner;
-    private boolean scanning = false;
-    private Handler handler = new Handler(Looper.getMainLooper());
     
     // Données
-    private int userWeight = 75;
+    private int userWeight = SpeedModel.DEFAULT_RIDER_WEIGHT_KG;
+    private int customPowerWindow = (int) (MetricsEngine.DEFAULT_CUSTOM_WINDOW_MS / 1000);
+    private int ftp = MetricsEngine.DEFAULT_FTP;
+    private int criticalPower = WPrimeBalance.DEFAULT_CP;
+    private int wPrime = WPrimeBalance.DEFAULT_W_PRIME;
+    private int maxHeartRate = MetricsEngine.DEFAULT_MAX_HEART_RATE;
+    private int[] cadenceBounds = ZoneHistogram.getDefaultCadenceBounds();
+    private float virtualGrade = 0f;
     private static final String PREFS_NAME = "CyclingAppPrefs";
-    private static final String PREF_WEIGHT = "user_weight";
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -84,23 +84,83 @@ public class SettingsActivity extends AppCompatActivity {
     
     private void loadUserWeight() {
         SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-        userWeight = prefs.getInt(PREF_WEIGHT, 75);
+        userWeight = prefs.getInt(MainActivity.PREF_WEIGHT, SpeedModel.DEFAULT_RIDER_WEIGHT_KG);
+        customPowerWindow = prefs.getInt(MainActivity.PREF_CUSTOM_POWER_WINDOW, customPowerWindow);
+        ftp = prefs.getInt(MainActivity.PREF_FTP, ftp);
+        criticalPower = prefs.getInt(MainActivity.PREF_CRITICAL_POWER, criticalPower);
+        wPrime = prefs.getInt(MainActivity.PREF_W_PRIME, wPrime);
+        maxHeartRate = prefs.getInt(MainActivity.PREF_MAX_HEART_RATE, maxHeartRate);
+        cadenceBounds = MainActivity.getCadenceBounds(prefs);
+        virtualGrade = prefs.getFloat(MainActivity.PREF_VIRTUAL_GRADE, virtualGrade);
     }
     
     private void saveUserWeight() {
         SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
         SharedPreferences.Editor editor = prefs.edit();
-        editor.putInt(PREF_WEIGHT, userWeight);
+        editor.putInt(MainActivity.PREF_WEIGHT, userWeight);
         editor.apply();
     }
     
+    private void saveCustomPowerWindow() {
+        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        prefs.edit().putInt(MainActivity.PREF_CUSTOM_POWER_WINDOW, customPowerWindow).apply();
+    }
+    
+    private void saveCriticalPower() {
+        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        prefs.edit()
+            .putInt(MainActivity.PREF_CRITICAL_POWER, criticalPower)
+            .putInt(MainActivity.PREF_W_PRIME, wPrime)
+            .apply();
+    }
+    
+    private void saveFtp() {
+        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        prefs.edit().putInt(MainActivity.PREF_FTP, ftp).apply();
+    }
+    
+    private void saveMaxHeartRate() {
+        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        prefs.edit().putInt(MainActivity.PREF_MAX_HEART_RATE, maxHeartRate).apply();
+    }
+    
+    private void saveCadenceBounds() {
+        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        prefs.edit().putString(MainActivity.PREF_CADENCE_ZONES, ZoneHistogram.formatBounds(cadenceBounds)).apply();
+    }
+    
+    private void saveVirtualGrade() {
+        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        prefs.edit().putFloat(MainActivity.PREF_VIRTUAL_GRADE, virtualGrade).apply();
+    }
+    
     private void initializeViews() {
         statusText = findViewById(R.id.statusText);
         connectButton = findViewById(R.id.connectButton);
         weightInput = findViewById(R.id.weightInput);
         saveWeightButton = findViewById(R.id.saveWeightButton);
+        criticalPowerInput = findViewById(R.id.criticalPowerInput);
+        wPrimeInput = findViewById(R.id.wPrimeInput);
+        saveCriticalPowerButton = findViewById(R.id.saveCriticalPowerButton);
+        customPowerWindowInput = findViewById(R.id.customPowerWindowInput);
+        saveCustomPowerWindowButton = findViewById(R.id.saveCustomPowerWindowButton);
+        ftpInput = findViewById(R.id.ftpInput);
+        saveFtpButton = findViewById(R.id.saveFtpButton);
+        maxHeartRateInput = findViewById(R.id.maxHeartRateInput);
+        saveMaxHeartRateButton = findViewById(R.id.saveMaxHeartRateButton);
+        cadenceZonesInput = findViewById(R.id.cadenceZonesInput);
+        saveCadenceZonesButton = findViewById(R.id.saveCadenceZonesButton);
+        gradeInput = findViewById(R.id.gradeInput);
+        saveGradeButton = findViewById(R.id.saveGradeButton);
         
         weightInput.setText(String.valueOf(userWeight));
+        criticalPowerInput.setText(String.valueOf(criticalPower));
+        wPrimeInput.setText(String.valueOf(wPrime));
+        customPowerWindowInput.setText(String.valueOf(customPowerWindow));
+        ftpInput.setText(String.valueOf(ftp));
+        maxHeartRateInput.setText(String.valueOf(maxHeartRate));
+        cadenceZonesInput.setText(ZoneHistogram.formatBounds(cadenceBounds));
+        gradeInput.setText(String.valueOf(virtualGrade));
     }
     
     private void initializeBluetooth() {
@@ -121,10 +181,7 @@ public class SettingsActivity extends AppCompatActivity {
         if (!bluetoothAdapter.isEnabled()) {
             Intent enableBtIntent = new Intent(BluetoothAdapter.ACTION_REQUEST_ENABLE);
             startActivityForResult(enableBtIntent, REQUEST_ENABLE_BT);
-            return;
         }
-        
-        bluetoothLeScanner = bluetoothAdapter.getBluetoothLeScanner();
     }
     
     private boolean hasRequiredPermissions() {
@@ -202,10 +259,134 @@ public class SettingsActivity extends AppCompatActivity {
                 }
             }
         });
+        
+        saveCriticalPowerButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                try {
+                    int newCriticalPower = Integer.parseInt(criticalPowerInput.getText().toString());
+                    int newWPrime = Integer.parseInt(wPrimeInput.getText().toString());
+                    if (newCriticalPower < 50 || newCriticalPower > 600) {
+                        showToast("CP doit être entre 50 et 600 W");
+                    } else if (newWPrime < 2000 || newWPrime > 60000) {
+                        showToast("W' doit être entre 2000 et 60000 J");
+                    } else {
+                        criticalPower = newCriticalPower;
+                        wPrime = newWPrime;
+                        saveCriticalPower();
+                        showToast("CP " + criticalPower + " W, W' " + wPrime + " J sauvegardés");
+                        return;
+                    }
+                } catch (NumberFormatException e) {
+                    showToast("CP ou W' invalide");
+                }
+                criticalPowerInput.setText(String.valueOf(criticalPower));
+                wPrimeInput.setText(String.valueOf(wPrime));
+            }
+        });
+        
+        saveCustomPowerWindowButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                try {
+                    int seconds = Integer.parseInt(customPowerWindowInput.getText().toString());
+                    if (seconds >= 5 && seconds <= 3600) {
+                        customPowerWindow = seconds;
+                        saveCustomPowerWindow();
+                        showToast("Moyenne personnalisée: " + seconds + " s");
+                    } else {
+                        showToast("Durée doit être entre 5 et 3600 s");
+                        customPowerWindowInput.setText(String.valueOf(customPowerWindow));
+                    }
+                } catch (NumberFormatException e) {
+                    showToast("Durée invalide");
+                    customPowerWindowInput.setText(String.valueOf(customPowerWindow));
+                }
+            }
+        });
+        
+        saveFtpButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                try {
+                    int watts = Integer.parseInt(ftpInput.getText().toString());
+                    if (watts >= 50 && watts <= 600) {
+                        ftp = watts;
+                        saveFtp();
+                        showToast("FTP sauvegardé: " + ftp + " W");
+                    } else {
+                        showToast("FTP doit être entre 50 et 600 W");
+                        ftpInput.setText(String.valueOf(ftp));
+                    }
+                } catch (NumberFormatException e) {
+                    showToast("FTP invalide");
+                    ftpInput.setText(String.valueOf(ftp));
+                }
+            }
+        });
+        
+        saveMaxHeartRateButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                try {
+                    int bpm = Integer.parseInt(maxHeartRateInput.getText().toString());
+                    if (bpm >= 120 && bpm <= 230) {
+                        maxHeartRate = bpm;
+                        saveMaxHeartRate();
+                        showToast("FC max sauvegardée: " + maxHeartRate + " bpm");
+                    } else {
+                        showToast("FC max doit être entre 120 et 230 bpm");
+                        maxHeartRateInput.setText(String.valueOf(maxHeartRate));
+                    }
+                } catch (NumberFormatException e) {
+                    showToast("FC max invalide");
+                    maxHeartRateInput.setText(String.valueOf(maxHeartRate));
+                }
+            }
+        });
+        
+        saveCadenceZonesButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                int[] bounds = ZoneHistogram.parseCadenceBounds(cadenceZonesInput.getText().toString());
+                if (bounds != null) {
+                    cadenceBounds = bounds;
+                    saveCadenceBounds();
+                    showToast("Zones de cadence sauvegardées: " + ZoneHistogram.formatBounds(cadenceBounds) + " rpm");
+                } else {
+                    showToast("5 bornes croissantes entre 1 et 255 rpm, séparées par des virgules");
+                    cadenceZonesInput.setText(ZoneHistogram.formatBounds(cadenceBounds));
+                }
+            }
+        });
+        
+        saveGradeButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                try {
+                    float grade = Float.parseFloat(gradeInput.getText().toString().replace(',', '.'));
+                    if (grade >= -10f && grade <= 20f) {
+                        virtualGrade = grade;
+                        saveVirtualGrade();
+                        showToast("Pente sauvegardée: " + virtualGrade + " %");
+                    } else {
+                        showToast("Pente doit être entre -10 et 20 %");
+                        gradeInput.setText(String.valueOf(virtualGrade));
+                    }
+                } catch (NumberFormatException e) {
+                    showToast("Pente invalide");
+                    gradeInput.setText(String.valueOf(virtualGrade));
+                }
+            }
+        });
     }
     
     private void updateConnectionStatus() {
-        if (BluetoothConnectionManager.getInstance().isConnected()) {
+        if (BleScanEngine.getInstance().isScanning(scanListener)) {
+            statusText.setText("Recherche...");
+            statusText.setTextColor(ContextCompat.getColor(this, android.R.color.holo_orange_dark));
+            connectButton.setText("Arrêter");
+        } else if (BluetoothConnectionManager.getInstance().isConnected()) {
             statusText.setText("Connecté");
             statusText.setTextColor(ContextCompat.getColor(this, R.color.green));
             connectButton.setText("Déconnecter");
@@ -230,99 +411,67 @@ public class SettingsActivity extends AppCompatActivity {
             return;
         }
         
-        if (bluetoothLeScanner == null) {
-            bluetoothLeScanner = bluetoothAdapter.getBluetoothLeScanner();
-            if (bluetoothLeScanner == null) {
-                showToast("Scanner Bluetooth non disponible");
-                return;
-            }
+        BleScanEngine engine = BleScanEngine.getInstance();
+        if (engine.isScanning(scanListener)) {
+            engine.stopScan(scanListener);
+            updateConnectionStatus();
+            return;
         }
         
-        if (!scanning) {
-            handler.postDelayed(new Runnable() {
-                @Override
-                public void run() {
-                    scanning = false;
-                    try {
-                        bluetoothLeScanner.stopScan(leScanCallback);
-                    } catch (Exception e) {
-                        Log.e(TAG, "Erreur arrêt scan: " + e.getMessage());
-                    }
-                    updateConnectionStatus();
-                }
-            }, SCAN_PERIOD);
-            
-            scanning = true;
-            statusText.setText("Recherche...");
-            statusText.setTextColor(ContextCompat.getColor(this, android.R.color.holo_orange_dark));
-            connectButton.setText("Arrêter");
-            
-            try {
-                bluetoothLeScanner.startScan(leScanCallback);
-                Log.d(TAG, "Scan BLE démarré");
-            } catch (SecurityException e) {
-                Log.e(TAG, "Erreur permission: " + e.getMessage());
-                showToast("Erreur de permission");
-                scanning = false;
-            }
-        } else {
-            scanning = false;
-            try {
-                bluetoothLeScanner.stopScan(leScanCallback);
-            } catch (Exception e) {
-                Log.e(TAG, "Erreur arrêt scan: " + e.getMessage());
-            }
-            updateConnectionStatus();
+        // Capteur déjà vu par un scan récent (ici ou sur l'écran principal) : connexion immédiate
+        BleScanEngine.DiscoveredDevice cached = engine.findCachedDevice(SensorParser.KIND_POWER);
+        if (cached != null) {
+            connectTo(cached);
+            return;
+        }
+        
+        if (!engine.startScan(this, scanListener, BleScanEngine.Mode.LOW_LATENCY, SCAN_PERIOD)) {
+            showToast("Scanner Bluetooth non disponible");
+            return;
         }
+        updateConnectionStatus();
+    }
+    
+    private void connectTo(BleScanEngine.DiscoveredDevice device) {
+        Log.d(TAG, "Capteur de puissance trouvé: " + device.getName() + " (" + device.getRssi() + " dBm)");
+        statusText.setText("Connexion...");
+        statusText.setTextColor(ContextCompat.getColor(this, android.R.color.holo_orange_dark));
+        BluetoothConnectionManager.getInstance().connect(this, device.getDevice(), SensorParser.KIND_POWER);
     }
     
-    private ScanCallback leScanCallback = new ScanCallback() {
+    private final BleScanEngine.ScanListener scanListener = new BleScanEngine.ScanListener() {
         @Override
-        public void onScanResult(int callbackType, ScanResult result) {
-            BluetoothDevice device = result.getDevice();
-            try {
-                String deviceName = device.getName();
-                
-                if (deviceName != null && deviceName.toLowerCase().contains("stages")) {
-                    Log.d(TAG, "Capteur Stages trouvé: " + deviceName);
-                    scanning = false;
-                    try {
-                        bluetoothLeScanner.stopScan(leScanCallback);
-                    } catch (Exception e) {
-                        Log.e(TAG, "Erreur arrêt scan: " + e.getMessage());
-                    }
-                    
-                    // Connecter via le BluetoothConnectionManager
-                    BluetoothConnectionManager.getInstance().connect(SettingsActivity.this, device);
-                    
-                    // Attendre un peu puis mettre à jour le statut
-                    handler.postDelayed(new Runnable() {
-                        @Override
-                        public void run() {
-                            updateConnectionStatus();
-                            showToast("Connexion réussie !");
-                        }
-                    }, 2000);
-                }
-            } catch (SecurityException e) {
-                Log.e(TAG, "Erreur permission: " + e.getMessage());
+        public void onDeviceFound(BleScanEngine.DiscoveredDevice device) {
+            if (device.getSensorKind() != SensorParser.KIND_POWER) {
+                return;
             }
+            BleScanEngine.getInstance().stopScan(this);
+            connectTo(device);
+        }
+        
+        @Override
+        public void onScanFinished() {
+            updateConnectionStatus();
         }
         
         @Override
         public void onScanFailed(int errorCode) {
             Log.e(TAG, "Erreur scan: " + errorCode);
-            scanning = false;
-            runOnUiThread(new Runnable() {
-                @Override
-                public void run() {
-                    updateConnectionStatus();
-                    showToast("Erreur de scan Bluetooth");
-                }
-            });
+            updateConnectionStatus();
+            showToast("Erreur de scan Bluetooth");
         }
     };
     
+    @Override
+    public void onDataReceived(SensorSample sample) {
+        // Seul l'état de connexion est affiché ici
+    }
+    
+    @Override
+    public void onConnectionStateChanged(boolean connected) {
+        runOnUiThread(this::updateConnectionStatus);
+    }
+    
     private void showToast(String message) {
         Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
     }
@@ -339,6 +488,14 @@ public class SettingsActivity extends AppCompatActivity {
     @Override
     protected void onResume() {
         super.onResume();
+        BluetoothConnectionManager.getInstance().addListener(this);
         updateConnectionStatus();
     }
+    
+    @Override
+    protected void onPause() {
+        super.onPause();
+        BluetoothConnectionManager.getInstance().removeListener(this);
+        BleScanEngine.getInstance().stopScan(scanListener);
+    }
 }
@@ -0,0 +1,91 @@
+package com.cyclingapp.indoor;
+
+/**
+ * Vitesse virtuelle sur route à partir de la puissance : traînée
+ * aérodynamique, résistance au roulement et pente, pour le poids du cycliste.
+ * L'équation P = v·(m·g·(Crr·cos θ + sin θ) + ½·ρ·CdA·v²) / η est résolue une
+ * seule fois par watt dans une table ; une vitesse coûte ensuite une lecture
+ * et une interpolation. Immuable : un changement de réglage crée un nouveau modèle.
+ */
+public final class SpeedModel {
+    
+    public static final int DEFAULT_RIDER_WEIGHT_KG = 75;
+    // Au-delà, la vitesse est extrapolée à partir du dernier point de la table
+    public static final int MAX_TABLE_WATTS = 2000;
+    
+    private static final double GRAVITY = 9.81;
+    private static final double AIR_DENSITY = 1.225;      // kg/m³, niveau de la mer à 15 °C
+    private static final double DRAG_AREA = 0.32;         // CdA (m²), position sur les cocottes
+    private static final double ROLLING_RESISTANCE = 0.005;
+    private static final double DRIVETRAIN_EFFICIENCY = 0.976;
+    private static final double BIKE_WEIGHT_KG = 9.0;
+    
+    private final int riderWeightKg;
+    private final double gradePercent;
+    // Vitesse en km/h pour chaque watt de 0 à MAX_TABLE_WATTS
+    private final float[] speedByWatt = new float[MAX_TABLE_WATTS + 1];
+    
+    public SpeedModel(int riderWeightKg, double gradePercent) {
+        if (riderWeightKg <= 0) {
+            throw new IllegalArgumentException("Poids invalide: " + riderWeightKg);
+        }
+        this.riderWeightKg = riderWeightKg;
+        this.gradePercent = gradePercent;
+        
+        double theta = Math.atan(gradePercent / 100.0);
+        double mass = riderWeightKg + BIKE_WEIGHT_KG;
+        // Forces indépendantes de la vitesse (N) et coefficient de la traînée
+        double resistance = mass * GRAVITY * (ROLLING_RESISTANCE * Math.cos(theta) + Math.sin(theta));
+        double drag = 0.5 * AIR_DENSITY * DRAG_AREA;
+        
+        double previous = 0.0;
+        for (int watts = 0; watts <= MAX_TABLE_WATTS; watts++) {
+            previous = solve(watts * DRIVETRAIN_EFFICIENCY, resistance, drag, previous);
+            speedByWatt[watts] = (float) (previous * 3.6);
+        }
+    }
+    
+    // Newton sur f(v) = drag·v³ + resistance·v - P, croissante pour v >= 0 si resistance >= 0 ;
+    // en descente, la racine positive existe toujours (roue libre)
+    private static double solve(double power, double resistance, double drag, double guess) {
+        double v = Math.max(guess, 1.0);
+        // Départ à droite de la racine : Newton converge de manière monotone (f convexe)
+        while (drag * v * v * v + resistance * v < power || 3 * drag * v * v + resistance <= 0) {
+            v *= 2;
+        }
+        for (int i = 0; i < 50; i++) {
+            double f = drag * v * v * v + resistance * v - power;
+            double slope = 3 * drag * v * v + resistance;
+            double next = v - f / slope;
+            if (Math.abs(next - v) < 1e-9) {
+                return Math.max(0.0, next);
+            }
+            v = next;
+        }
+        return Math.max(0.0, v);
+    }
+    
+    /** Vitesse en km/h pour une puissance en watts (interpolation linéaire). */
+    public double speedKmh(double watts) {
+        if (watts <= 0) {
+            return speedByWatt[0];
+        }
+        if (watts >= MAX_TABLE_WATTS) {
+            // Traînée dominante : v proportionnelle à la racine cubique de P
+            return speedByWatt[MAX_TABLE_WATTS] * Math.cbrt(watts / MAX_TABLE_WATTS);
+        }
+        int index = (int) watts;
+        float low = speedByWatt[index];
+        return low + (speedByWatt[index + 1] - low) * (watts - index);
+    }
+    
+    public double speedKmh(int watts) {
+        if (watts >= 0 && watts <= MAX_TABLE_WATTS) {
+            return speedByWatt[watts];
+        }
+        return speedKmh((double) watts);
+    }
+    
+    public int getRiderWeightKg() { return riderWeightKg; }
+    public double getGradePercent() { return gradePercent; }
+}
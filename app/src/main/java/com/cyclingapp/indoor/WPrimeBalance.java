@@ -0,0 +1,94 @@
+package com.cyclingapp.indoor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * W' balance (modèle différentiel de Skiba) sur la série à 1 Hz :
+ * au-dessus de CP, W'bal diminue de (P - CP) joules par seconde ; en dessous,
+ * il remonte vers W' selon dW'bal/dt = (W' - W'bal)(CP - P)/W', intégré
+ * exactement sur chaque seconde. Coût constant par seconde ; la valeur de
+ * chaque seconde est gardée pour la session.
+ */
+public class WPrimeBalance implements SecondResampler.Listener {
+    
+    public static final int DEFAULT_CP = 250;
+    public static final int DEFAULT_W_PRIME = 20000;
+    
+    private final int criticalPower;
+    private final int wPrime;
+    
+    private double balance;
+    private double minimum;
+    // W'bal en joules à la fin de chaque seconde
+    private int[] series = new int[3600];
+    private int seconds = 0;
+    
+    public WPrimeBalance(int criticalPower, int wPrime) {
+        if (criticalPower <= 0 || wPrime <= 0) {
+            throw new IllegalArgumentException("CP ou W' invalide: " + criticalPower + ", " + wPrime);
+        }
+        this.criticalPower = criticalPower;
+        this.wPrime = wPrime;
+        reset();
+    }
+    
+    @Override
+    public void onSecond(double watts) {
+        if (watts > criticalPower) {
+            balance -= watts - criticalPower;
+        } else {
+            // Solution exacte de l'équation de récupération sur une seconde
+            balance = wPrime - (wPrime - balance) * Math.exp(-(criticalPower - watts) / wPrime);
+        }
+        minimum = Math.min(minimum, balance);
+        
+        if (seconds == series.length) {
+            series = Arrays.copyOf(series, seconds * 2);
+        }
+        series[seconds++] = (int) Math.round(balance);
+    }
+    
+    public int getCriticalPower() { return criticalPower; }
+    public int getWPrime() { return wPrime; }
+    // Joules (négatif si le modèle est dépassé)
+    public double getBalance() { return balance; }
+    public double getMinimum() { return minimum; }
+    public int getSeconds() { return seconds; }
+    
+    public void reset() {
+        balance = wPrime;
+        minimum = wPrime;
+        seconds = 0;
+    }
+    
+    // Reprend l'état d'un autre modèle (changement de CP ou W' en cours de session)
+    public void copyFrom(WPrimeBalance other) {
+        balance = Math.min(other.balance, wPrime);
+        minimum = Math.min(other.minimum, wPrime);
+        series = Arrays.copyOf(other.series, Math.max(other.series.length, 16));
+        seconds = other.seconds;
+    }
+    
+    /** Série par seconde, entiers 32 bits little-endian en joules. */
+    public byte[] encodeSeries() {
+        ByteBuffer buffer = ByteBuffer.allocate(seconds * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < seconds; i++) {
+            buffer.putInt(series[i]);
+        }
+        return buffer.array();
+    }
+    
+    public static int[] decodeSeries(byte[] encoded) {
+        if (encoded == null) {
+            return new int[0];
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(encoded).order(ByteOrder.LITTLE_ENDIAN);
+        int[] values = new int[encoded.length / 4];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = buffer.getInt();
+        }
+        return values;
+    }
+}
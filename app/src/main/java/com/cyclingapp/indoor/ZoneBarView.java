@@ -0,0 +1,58 @@
+package com.cyclingapp.indoor;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.View;
+
+/**
+ * Barre horizontale empilée du temps par zone (historique des sessions).
+ */
+public class ZoneBarView extends View {
+    
+    // Du plus facile (gris) au plus intense (violet)
+    private static final int[] ZONE_COLORS = {
+        0xFF9E9E9E, 0xFF2196F3, 0xFF4CAF50, 0xFFFFC107, 0xFFFF9800, 0xFFF44336, 0xFF9C27B0
+    };
+    
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private int[] seconds = new int[0];
+    private long total = 0;
+    
+    public ZoneBarView(Context context) {
+        super(context);
+    }
+    
+    public ZoneBarView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+    
+    public void setZoneSeconds(int[] zoneSeconds) {
+        seconds = zoneSeconds;
+        total = 0;
+        for (int value : zoneSeconds) {
+            total += value;
+        }
+        invalidate();
+    }
+    
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (total <= 0) {
+            return;
+        }
+        float width = getWidth() - getPaddingLeft() - getPaddingRight();
+        float top = getPaddingTop();
+        float bottom = getHeight() - getPaddingBottom();
+        float left = getPaddingLeft();
+        for (int i = 0; i < seconds.length; i++) {
+            float right = left + width * seconds[i] / total;
+            // Les zones au-delà de la palette reprennent la dernière couleur
+            paint.setColor(ZONE_COLORS[Math.min(i, ZONE_COLORS.length - 1)]);
+            canvas.drawRect(left, top, right, bottom, paint);
+            left = right;
+        }
+    }
+}
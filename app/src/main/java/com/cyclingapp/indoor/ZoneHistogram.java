@@ -0,0 +1,185 @@
+package com.cyclingapp.indoor;
+
+import java.util.Arrays;
+
+/**
+ * Temps passé par zone (puissance, cadence ou fréquence cardiaque).
+ * Les bornes sont converties une fois en table valeur → zone : classer un
+ * échantillon coûte une lecture de tableau, sans recherche ni comparaison
+ * en chaîne. Les durées sont des compteurs primitifs en nanosecondes,
+ * convertis seulement à la lecture : aucun intervalle n'est tronqué.
+ */
+public class ZoneHistogram {
+    
+    // Coggan : bornes hautes des zones 1 à 6 en % du FTP (Z7 au-delà)
+    private static final int[] POWER_ZONE_PERCENTS = {55, 75, 90, 105, 120, 150};
+    // Bornes hautes des zones 1 à 4 en % de la FC max (Z5 au-delà)
+    private static final int[] HEART_RATE_ZONE_PERCENTS = {60, 70, 80, 90};
+    // Bandes de cadence par défaut (rpm) : < 60, 60-74, 75-84, 85-94, 95-104, >= 105
+    private static final int[] DEFAULT_CADENCE_BOUNDS = {60, 75, 85, 95, 105};
+    
+    private static final int MAX_POWER = 2500;
+    private static final int MAX_CADENCE = 255;
+    private static final int MAX_HEART_RATE = 255;
+    
+    private static final long NANOS_PER_MILLI = 1000000L;
+    
+    // Zone de chaque valeur de 0 à la valeur maximale (les valeurs supérieures sont ramenées au maximum)
+    private final byte[] zoneByValue;
+    private final long[] nanos;
+    
+    /**
+     * @param bounds bornes basses des zones 2 à n, croissantes (valeur < bounds[0] : zone 1)
+     */
+    public ZoneHistogram(int[] bounds, int maxValue) {
+        if (bounds.length + 1 > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Trop de zones: " + (bounds.length + 1));
+        }
+        zoneByValue = new byte[maxValue + 1];
+        int zone = 0;
+        for (int value = 0; value <= maxValue; value++) {
+            while (zone < bounds.length && value >= bounds[zone]) {
+                zone++;
+            }
+            zoneByValue[value] = (byte) zone;
+        }
+        nanos = new long[bounds.length + 1];
+    }
+    
+    public static ZoneHistogram forPower(int ftp) {
+        return new ZoneHistogram(percentBounds(POWER_ZONE_PERCENTS, ftp), MAX_POWER);
+    }
+    
+    public static ZoneHistogram forCadence() {
+        return new ZoneHistogram(DEFAULT_CADENCE_BOUNDS, MAX_CADENCE);
+    }
+    
+    /** @param bounds bornes basses des zones 2 à 6 en rpm (voir {@link #isValidCadenceBounds}) */
+    public static ZoneHistogram forCadence(int[] bounds) {
+        if (!isValidCadenceBounds(bounds)) {
+            throw new IllegalArgumentException("Bandes de cadence invalides: " + Arrays.toString(bounds));
+        }
+        return new ZoneHistogram(bounds, MAX_CADENCE);
+    }
+    
+    public static int[] getDefaultCadenceBounds() {
+        return DEFAULT_CADENCE_BOUNDS.clone();
+    }
+    
+    // Toujours six zones : l'historique compare les sessions zone par zone
+    public static boolean isValidCadenceBounds(int[] bounds) {
+        if (bounds == null || bounds.length != DEFAULT_CADENCE_BOUNDS.length) {
+            return false;
+        }
+        int previous = 0;
+        for (int bound : bounds) {
+            if (bound <= previous || bound > MAX_CADENCE) {
+                return false;
+            }
+            previous = bound;
+        }
+        return true;
+    }
+    
+    /** Bornes saisies "60,75,85,95,105" ; null si la chaîne n'est pas un jeu de bandes valide. */
+    public static int[] parseCadenceBounds(String text) {
+        if (text == null) {
+            return null;
+        }
+        int[] bounds = decode(text);
+        return isValidCadenceBounds(bounds) ? bounds : null;
+    }
+    
+    public static String formatBounds(int[] bounds) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < bounds.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(bounds[i]);
+        }
+        return builder.toString();
+    }
+    
+    public static ZoneHistogram forHeartRate(int maxHeartRate) {
+        return new ZoneHistogram(percentBounds(HEART_RATE_ZONE_PERCENTS, maxHeartRate), MAX_HEART_RATE);
+    }
+    
+    private static int[] percentBounds(int[] percents, int reference) {
+        int[] bounds = new int[percents.length];
+        for (int i = 0; i < percents.length; i++) {
+            bounds[i] = (int) Math.round(reference * percents[i] / 100.0);
+        }
+        return bounds;
+    }
+    
+    public void add(int value, long durationNanos) {
+        int index = value < 0 ? 0 : Math.min(value, zoneByValue.length - 1);
+        nanos[zoneByValue[index]] += durationNanos;
+    }
+    
+    public int zoneOf(int value) {
+        return zoneByValue[value < 0 ? 0 : Math.min(value, zoneByValue.length - 1)];
+    }
+    
+    public int getZoneCount() {
+        return nanos.length;
+    }
+    
+    public long getMillis(int zone) {
+        return nanos[zone] / NANOS_PER_MILLI;
+    }
+    
+    public long getTotalMillis() {
+        return getTotalNanos() / NANOS_PER_MILLI;
+    }
+    
+    private long getTotalNanos() {
+        long total = 0;
+        for (long value : nanos) {
+            total += value;
+        }
+        return total;
+    }
+    
+    // Reprend les durées d'un histogramme au même nombre de zones (changement de bornes)
+    public void copyTimesFrom(ZoneHistogram other) {
+        System.arraycopy(other.nanos, 0, nanos, 0, Math.min(nanos.length, other.nanos.length));
+    }
+    
+    public void reset() {
+        Arrays.fill(nanos, 0);
+    }
+    
+    /** Secondes par zone séparées par des virgules ("120,340,..."), vide si aucun temps compté. */
+    public String encode() {
+        if (getTotalNanos() == 0) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < nanos.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(Math.round(nanos[i] / 1e9));
+        }
+        return builder.toString();
+    }
+    
+    // Inverse de encode() ; tableau vide si la chaîne est vide ou invalide
+    public static int[] decode(String encoded) {
+        if (encoded == null || encoded.isEmpty()) {
+            return new int[0];
+        }
+        String[] parts = encoded.split(",");
+        int[] seconds = new int[parts.length];
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                seconds[i] = Integer.parseInt(parts[i].trim());
+            }
+        } catch (NumberFormatException e) {
+            return new int[0];
+        }
+        return seconds;
+    }
+}
@@ -0,0 +1,165 @@
+package com.cyclingapp.indoor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Rejeu de séquences de pédalier : notifications toutes les 250 ms avec le
+ * dernier événement connu, comme les envoie un capteur de puissance.
+ */
+public class CadenceEstimatorTest {
+    
+    private static final long NOTIFY_NANOS = 250_000_000L;
+    
+    // Séquence relevée sur un capteur (révolutions, date en 1/1024 s,
+    // réception en ms) : ~80 tr/min autour du rollover des deux compteurs
+    private static final int[][] RECORDED = {
+        {65532, 63360, 0},
+        {65532, 63360, 250},
+        {65533, 64128, 500},
+        {65534, 64896, 1250},
+        {65535, 128, 1500},
+        {65535, 128, 1750},
+        {0, 896, 2250},
+        {1, 1664, 3000},
+        {1, 1664, 3250},
+        {2, 2432, 3500},
+        {3, 3200, 4250},
+    };
+    
+    @Test
+    public void steadyCadenceConvergesToTrueValue() {
+        CadenceEstimator estimator = new CadenceEstimator();
+        double cadence = replay(estimator, new CrankSensor(90.0, 0, 0), 0, 20_000_000_000L);
+        assertEquals(90.0, cadence, 0.5);
+    }
+    
+    @Test
+    public void recordedSequenceAcrossRolloverStaysSmooth() {
+        CadenceEstimator estimator = new CadenceEstimator();
+        double cadence = 0;
+        for (int[] packet : RECORDED) {
+            cadence = estimator.update(packet[0], packet[1], packet[2] * 1_000_000L);
+            assertTrue("Pic au rollover : " + cadence, cadence <= 81.0);
+        }
+        // 768 ticks par tour : 80 tr/min exactement
+        assertEquals(80.0, cadence, 0.01);
+    }
+    
+    @Test
+    public void handlesWrapOfBothCountersOverALongRide() {
+        // Le temps d'événement boucle toutes les 64 s, les révolutions partent près de 65535
+        CadenceEstimator estimator = new CadenceEstimator();
+        CrankSensor sensor = new CrankSensor(85.0, 65500, 60_000);
+        long now = 0;
+        for (int i = 0; i < 4 * 60 * 5; i++) {
+            now += NOTIFY_NANOS;
+            sensor.advanceTo(now);
+            double cadence = estimator.update(sensor.revolutions(), sensor.eventTime(), now);
+            if (now > 5_000_000_000L) {
+                assertEquals("à " + now / 1_000_000 + " ms", 85.0, cadence, 1.0);
+            }
+        }
+    }
+    
+    @Test
+    public void cadenceIsBoundedBySixtyOverTimeSinceLastEvent() {
+        CadenceEstimator estimator = new CadenceEstimator(3000, 10_000);
+        CrankSensor sensor = new CrankSensor(90.0, 0, 0);
+        replay(estimator, sensor, 0, 10_000_000_000L);
+        long lastEvent = sensor.lastEventReceiveNanos;
+        assertEquals(90.0, estimator.currentCadence(lastEvent + 500_000_000L), 0.5);
+        // Aucun tour depuis 1 s : au plus 60 tr/min, puis 30 après 2 s
+        assertEquals(60.0, estimator.currentCadence(lastEvent + 1_000_000_000L), 1e-9);
+        assertEquals(30.0, estimator.currentCadence(lastEvent + 2_000_000_000L), 1e-9);
+    }
+    
+    @Test
+    public void coastTimeoutDropsCadenceToZero() {
+        CadenceEstimator estimator = new CadenceEstimator(3000, 3000);
+        CrankSensor sensor = new CrankSensor(90.0, 0, 0);
+        replay(estimator, sensor, 0, 10_000_000_000L);
+        long lastEvent = sensor.lastEventReceiveNanos;
+        // Les paquets continuent d'arriver sans nouvel événement
+        double cadence = -1;
+        for (long now = lastEvent + NOTIFY_NANOS; now <= lastEvent + 3_500_000_000L; now += NOTIFY_NANOS) {
+            cadence = estimator.update(sensor.revolutions(), sensor.eventTime(), now);
+        }
+        assertEquals(0.0, cadence, 0.0);
+        
+        // Reprise : la cadence remonte à la nouvelle valeur
+        CrankSensor resumed = new CrankSensor(70.0, sensor.revolutions(), sensor.eventTime() + 4 * 1024);
+        resumed.offsetNanos = lastEvent + 4_000_000_000L;
+        double after = replay(estimator, resumed, resumed.offsetNanos, resumed.offsetNanos + 10_000_000_000L);
+        assertEquals(70.0, after, 0.5);
+    }
+    
+    @Test
+    public void outlierIntervalIsIgnored() {
+        CadenceEstimator estimator = new CadenceEstimator();
+        CrankSensor sensor = new CrankSensor(90.0, 0, 0);
+        long now = 10_000_000_000L;
+        double before = replay(estimator, sensor, 0, now);
+        // 10 tours en 100 ticks : plus de 6000 tr/min, valeur précédente conservée
+        double spike = estimator.update(sensor.revolutions() + 10, sensor.eventTime() + 100, now + NOTIFY_NANOS);
+        assertEquals(before, spike, 0.0);
+        assertTrue(spike < CadenceEstimator.DEFAULT_MAX_RPM);
+        // Les paquets suivants, cohérents, ramènent la vraie cadence
+        double after = replay(estimator, sensor, now + 2 * NOTIFY_NANOS, now + 10_000_000_000L);
+        assertEquals(90.0, after, 0.5);
+    }
+    
+    @Test
+    public void gapLongerThanWindowRestartsFromZero() {
+        CadenceEstimator estimator = new CadenceEstimator(3000, 10_000);
+        estimator.update(100, 1000, 0);
+        // Un tour en 5 s : au-delà de la fenêtre, pas de cadence à 12 tr/min
+        assertEquals(0.0, estimator.update(101, 1000 + 5 * 1024, 5_000_000_000L), 0.0);
+        assertEquals(60.0, estimator.update(102, 1000 + 6 * 1024, 6_000_000_000L), 1e-9);
+    }
+    
+    // Notifications toutes les 250 ms de from à to ; rend la dernière cadence
+    private static double replay(CadenceEstimator estimator, CrankSensor sensor, long from, long to) {
+        double cadence = 0;
+        for (long now = from; now <= to; now += NOTIFY_NANOS) {
+            sensor.advanceTo(now);
+            cadence = estimator.update(sensor.revolutions(), sensor.eventTime(), now);
+        }
+        return cadence;
+    }
+    
+    /** Capteur simulé : un événement de pédalier tous les 60 / rpm secondes. */
+    private static final class CrankSensor {
+        final double rpm;
+        final int startRevolutions;
+        final long startTicks;
+        long offsetNanos;
+        long events;
+        long lastEventReceiveNanos;
+        
+        CrankSensor(double rpm, int startRevolutions, long startTicks) {
+            this.rpm = rpm;
+            this.startRevolutions = startRevolutions;
+            this.startTicks = startTicks;
+        }
+        
+        void advanceTo(long nowNanos) {
+            long elapsed = nowNanos - offsetNanos;
+            long total = (long) Math.floor(elapsed * rpm / 60e9);
+            if (total > events) {
+                events = total;
+                lastEventReceiveNanos = nowNanos;
+            }
+        }
+        
+        int revolutions() {
+            return (int) ((startRevolutions + events) & 0xFFFF);
+        }
+        
+        int eventTime() {
+            return (int) ((startTicks + Math.round(events * 60.0 / rpm * 1024)) & 0xFFFF);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.cyclingapp.indoor;
+
+import static com.cyclingapp.indoor.CyclingPowerMeasurement.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Vecteurs de référence du décodeur 0x2A63 : paquets écrits à la main, puis
+ * toutes les combinaisons de champs optionnels, entières et tronquées.
+ */
+public class CyclingPowerDecoderTest {
+    
+    // Champs optionnels dans l'ordre du paquet, et leur taille en octets
+    private static final int[] FIELDS = {
+        FLAG_PEDAL_POWER_BALANCE, FLAG_ACCUMULATED_TORQUE, FLAG_WHEEL_REVOLUTION_DATA,
+        FLAG_CRANK_REVOLUTION_DATA, FLAG_EXTREME_FORCE_MAGNITUDES, FLAG_EXTREME_TORQUE_MAGNITUDES,
+        FLAG_EXTREME_ANGLES, FLAG_TOP_DEAD_SPOT_ANGLE, FLAG_BOTTOM_DEAD_SPOT_ANGLE, FLAG_ACCUMULATED_ENERGY
+    };
+    private static final int[] SIZES = {1, 2, 6, 4, 4, 4, 3, 2, 2, 2};
+    
+    private final CyclingPowerMeasurement out = new CyclingPowerMeasurement();
+    
+    @Test
+    public void decodesPowerOnly() {
+        byte[] packet = hex("00 00 2C 01");
+        assertTrue(CyclingPowerDecoder.decode(packet, packet.length, out));
+        assertEquals(300, out.getInstantaneousPower());
+        assertEquals(0, out.getPresentFields());
+    }
+    
+    @Test
+    public void decodesNegativePower() {
+        byte[] packet = hex("00 00 9C FF");
+        assertTrue(CyclingPowerDecoder.decode(packet, packet.length, out));
+        assertEquals(-100, out.getInstantaneousPower());
+    }
+    
+    @Test
+    public void decodesCrankOnlyPacket() {
+        // Format d'un capteur Stages : puissance + données de pédalier
+        byte[] packet = hex("20 00 FA 00 0A 00 00 08");
+        assertTrue(CyclingPowerDecoder.decode(packet, packet.length, out));
+        assertEquals(250, out.getInstantaneousPower());
+        assertEquals(FLAG_CRANK_REVOLUTION_DATA, out.getPresentFields());
+        assertEquals(10, out.getCumulativeCrankRevolutions());
+        assertEquals(2048, out.getLastCrankEventTime());
+    }
+    
+    @Test
+    public void decodesEveryField() {
+        byte[] packet = hex("FF 1F 90 01 64 34 12 03 02 01 00 00 08 FF FF 00 04"
+            + " F4 01 38 FF 40 01 E0 FF B4 00 00 0A 00 BE 00 02 01");
+        assertTrue(CyclingPowerDecoder.decode(packet, packet.length, out));
+        assertEquals(0x1FFF, out.getFlags());
+        assertEquals(allFields(), out.getPresentFields());
+        assertEquals(400, out.getInstantaneousPower());
+        assertEquals(100, out.getPedalPowerBalance());
+        assertTrue(out.isPedalPowerBalanceLeft());
+        assertEquals(0x1234, out.getAccumulatedTorque());
+        assertTrue(out.isAccumulatedTorqueCrankBased());
+        assertEquals(0x00010203L, out.getCumulativeWheelRevolutions());
+        assertEquals(2048, out.getLastWheelEventTime());
+        assertEquals(65535, out.getCumulativeCrankRevolutions());
+        assertEquals(1024, out.getLastCrankEventTime());
+        assertEquals(500, out.getMaxForceMagnitude());
+        assertEquals(-200, out.getMinForceMagnitude());
+        assertEquals(320, out.getMaxTorqueMagnitude());
+        assertEquals(-32, out.getMinTorqueMagnitude());
+        assertEquals(180, out.getMaxAngle());
+        assertEquals(0, out.getMinAngle());
+        assertEquals(10, out.getTopDeadSpotAngle());
+        assertEquals(190, out.getBottomDeadSpotAngle());
+        assertEquals(0x0102, out.getAccumulatedEnergy());
+        assertTrue(out.isOffsetCompensated());
+    }
+    
+    @Test
+    public void unpacksExtremeAngles() {
+        // max sur les 12 bits de poids faible, min sur les 12 suivants
+        assertAngles("BC 3A 12", 0xABC, 0x123);
+        assertAngles("FF FF FF", 4095, 4095);
+        assertAngles("FF 0F 00", 4095, 0);
+        assertAngles("00 F0 FF", 0, 4095);
+        assertAngles("68 01 00", 360, 0);
+    }
+    
+    @Test
+    public void decodesEveryFlagCombination() {
+        for (int combination = 0; combination < 1 << FIELDS.length; combination++) {
+            int flags = flagsOf(combination);
+            byte[] packet = encode(flags, combination);
+            assertTrue(CyclingPowerDecoder.decode(packet, packet.length, out));
+            assertEquals(flags, out.getFlags());
+            assertEquals(flags, out.getPresentFields());
+            assertEquals(-value(combination, 99), out.getInstantaneousPower());
+            assertValues(flags, combination);
+        }
+    }
+    
+    @Test
+    public void truncatedOptionalFieldKeepsPrecedingFields() {
+        // Contrat : l'en-tête suffit pour rendre true, et seuls les champs
+        // entièrement reçus sont marqués présents (les autres restent à 0)
+        for (int combination = 0; combination < 1 << FIELDS.length; combination++) {
+            int flags = flagsOf(combination);
+            byte[] packet = encode(flags, combination);
+            for (int length = CyclingPowerDecoder.MIN_LENGTH; length < packet.length; length++) {
+                assertTrue(CyclingPowerDecoder.decode(packet, length, out));
+                int complete = completeFields(flags, length);
+                assertEquals("flags " + flags + ", " + length + " octets", complete, out.getPresentFields());
+                assertEquals(flags, out.getFlags());
+                assertEquals(-value(combination, 99), out.getInstantaneousPower());
+                assertValues(complete, combination);
+            }
+        }
+    }
+    
+    @Test
+    public void truncationStopsAtFirstMissingField() {
+        // Couple manquant d'un octet : l'énergie qui suit n'est pas lue non plus
+        byte[] packet = hex("04 08 64 00 34");
+        assertTrue(CyclingPowerDecoder.decode(packet, packet.length, out));
+        assertEquals(0, out.getPresentFields());
+        assertEquals(100, out.getInstantaneousPower());
+        assertEquals(0, out.getAccumulatedTorque());
+    }
+    
+    @Test
+    public void rejectsShortOrInconsistentPackets() {
+        byte[] packet = hex("00 00 2C 01");
+        assertFalse(CyclingPowerDecoder.decode(packet, 3, out));
+        assertFalse(CyclingPowerDecoder.decode(packet, 0, out));
+        assertFalse(CyclingPowerDecoder.decode(packet, 5, out));
+        assertFalse(CyclingPowerDecoder.decode(null, 4, out));
+        assertEquals(0, out.getInstantaneousPower());
+    }
+    
+    @Test
+    public void reusedRecordIsClearedBetweenPackets() {
+        byte[] full = encode(allFields(), 7);
+        assertTrue(CyclingPowerDecoder.decode(full, full.length, out));
+        byte[] powerOnly = hex("00 00 2C 01");
+        assertTrue(CyclingPowerDecoder.decode(powerOnly, powerOnly.length, out));
+        assertEquals(300, out.getInstantaneousPower());
+        assertEquals(0, out.getPresentFields());
+        // Aucun champ du paquet précédent ne subsiste
+        assertValues(0, 0);
+    }
+    
+    private void assertAngles(String angleBytes, int max, int min) {
+        byte[] packet = hex("00 01 00 00 " + angleBytes);
+        assertTrue(CyclingPowerDecoder.decode(packet, packet.length, out));
+        assertTrue(out.has(FLAG_EXTREME_ANGLES));
+        assertEquals(max, out.getMaxAngle());
+        assertEquals(min, out.getMinAngle());
+    }
+    
+    // Valeurs propres à chaque combinaison, pour qu'un décalage d'offset se voie
+    private static int value(int combination, int field) {
+        return (combination * 31 + field * 7 + 1) & 0x7FF;
+    }
+    
+    private static int flagsOf(int combination) {
+        int flags = 0;
+        for (int i = 0; i < FIELDS.length; i++) {
+            if ((combination & (1 << i)) != 0) {
+                flags |= FIELDS[i];
+            }
+        }
+        return flags;
+    }
+    
+    private static int allFields() {
+        return flagsOf((1 << FIELDS.length) - 1);
+    }
+    
+    private static int completeFields(int flags, int length) {
+        int offset = CyclingPowerDecoder.MIN_LENGTH;
+        int complete = 0;
+        for (int i = 0; i < FIELDS.length; i++) {
+            if ((flags & FIELDS[i]) == 0) {
+                continue;
+            }
+            offset += SIZES[i];
+            if (offset > length) {
+                break;
+            }
+            complete |= FIELDS[i];
+        }
+        return complete;
+    }
+    
+    // Encodeur de référence, écrit d'après la spécification indépendamment du décodeur
+    private static byte[] encode(int flags, int combination) {
+        byte[] packet = new byte[40];
+        int offset = 0;
+        offset = put16(packet, offset, flags);
+        offset = put16(packet, offset, -value(combination, 99));
+        if ((flags & FLAG_PEDAL_POWER_BALANCE) != 0) {
+            packet[offset++] = (byte) (value(combination, 0) & 0xFF);
+        }
+        if ((flags & FLAG_ACCUMULATED_TORQUE) != 0) {
+            offset = put16(packet, offset, value(combination, 1));
+        }
+        if ((flags & FLAG_WHEEL_REVOLUTION_DATA) != 0) {
+            offset = put16(packet, offset, value(combination, 2));
+            offset = put16(packet, offset, 0x8001);
+            offset = put16(packet, offset, value(combination, 3));
+        }
+        if ((flags & FLAG_CRANK_REVOLUTION_DATA) != 0) {
+            offset = put16(packet, offset, value(combination, 4));
+            offset = put16(packet, offset, value(combination, 5));
+        }
+        if ((flags & FLAG_EXTREME_FORCE_MAGNITUDES) != 0) {
+            offset = put16(packet, offset, value(combination, 6));
+            offset = put16(packet, offset, -value(combination, 7));
+        }
+        if ((flags & FLAG_EXTREME_TORQUE_MAGNITUDES) != 0) {
+            offset = put16(packet, offset, value(combination, 8));
+            offset = put16(packet, offset, -value(combination, 9));
+        }
+        if ((flags & FLAG_EXTREME_ANGLES) != 0) {
+            int packed = value(combination, 10) | (value(combination, 11) << 12);
+            packet[offset++] = (byte) packed;
+            packet[offset++] = (byte) (packed >> 8);
+            packet[offset++] = (byte) (packed >> 16);
+        }
+        if ((flags & FLAG_TOP_DEAD_SPOT_ANGLE) != 0) {
+            offset = put16(packet, offset, value(combination, 12));
+        }
+        if ((flags & FLAG_BOTTOM_DEAD_SPOT_ANGLE) != 0) {
+            offset = put16(packet, offset, value(combination, 13));
+        }
+        if ((flags & FLAG_ACCUMULATED_ENERGY) != 0) {
+            offset = put16(packet, offset, value(combination, 14));
+        }
+        byte[] exact = new byte[offset];
+        System.arraycopy(packet, 0, exact, 0, offset);
+        return exact;
+    }
+    
+    private void assertValues(int present, int combination) {
+        assertEquals(expected(present, FLAG_PEDAL_POWER_BALANCE, value(combination, 0) & 0xFF), out.getPedalPowerBalance());
+        assertEquals(expected(present, FLAG_ACCUMULATED_TORQUE, value(combination, 1)), out.getAccumulatedTorque());
+        assertEquals(expected(present, FLAG_WHEEL_REVOLUTION_DATA, value(combination, 2) | 0x80010000L),
+            out.getCumulativeWheelRevolutions());
+        assertEquals(expected(present, FLAG_WHEEL_REVOLUTION_DATA, value(combination, 3)), out.getLastWheelEventTime());
+        assertEquals(expected(present, FLAG_CRANK_REVOLUTION_DATA, value(combination, 4)), out.getCumulativeCrankRevolutions());
+        assertEquals(expected(present, FLAG_CRANK_REVOLUTION_DATA, value(combination, 5)), out.getLastCrankEventTime());
+        assertEquals(expected(present, FLAG_EXTREME_FORCE_MAGNITUDES, value(combination, 6)), out.getMaxForceMagnitude());
+        assertEquals(expected(present, FLAG_EXTREME_FORCE_MAGNITUDES, -value(combination, 7)), out.getMinForceMagnitude());
+        assertEquals(expected(present, FLAG_EXTREME_TORQUE_MAGNITUDES, value(combination, 8)), out.getMaxTorqueMagnitude());
+        assertEquals(expected(present, FLAG_EXTREME_TORQUE_MAGNITUDES, -value(combination, 9)), out.getMinTorqueMagnitude());
+        assertEquals(expected(present, FLAG_EXTREME_ANGLES, value(combination, 10)), out.getMaxAngle());
+        assertEquals(expected(present, FLAG_EXTREME_ANGLES, value(combination, 11)), out.getMinAngle());
+        assertEquals(expected(present, FLAG_TOP_DEAD_SPOT_ANGLE, value(combination, 12)), out.getTopDeadSpotAngle());
+        assertEquals(expected(present, FLAG_BOTTOM_DEAD_SPOT_ANGLE, value(combination, 13)), out.getBottomDeadSpotAngle());
+        assertEquals(expected(present, FLAG_ACCUMULATED_ENERGY, value(combination, 14)), out.getAccumulatedEnergy());
+    }
+    
+    private static long expected(int present, int field, long value) {
+        return (present & field) != 0 ? value : 0;
+    }
+    
+    private static int put16(byte[] packet, int offset, int value) {
+        packet[offset] = (byte) value;
+        packet[offset + 1] = (byte) (value >> 8);
+        return offset + 2;
+    }
+    
+    static byte[] hex(String text) {
+        String[] parts = text.trim().split("\\s+");
+        byte[] bytes = new byte[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(parts[i], 16);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,126 @@
+package com.cyclingapp.indoor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+public class FlightRecorderTest {
+    
+    // Plus qu'une fenêtre mappée de 4 Mo : au moins un changement de fenêtre
+    private static final int ROLLOVER_RECORDS = 260_000;
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private final FlightRecorder recorder = FlightRecorder.getInstance();
+    
+    @After
+    public void tearDown() {
+        recorder.stopSession();
+    }
+    
+    @Test
+    public void roundTripAcrossWindowRollover() throws Exception {
+        File file = recorder.startSession(folder.newFolder("flight"));
+        byte[] data = new byte[NotificationRingBuffer.DEFAULT_SLOT_SIZE];
+        long expectedSize = FlightRecorder.FILE_HEADER_SIZE;
+        for (int i = 0; i < ROLLOVER_RECORDS; i++) {
+            int length = fill(data, i);
+            recorder.record(idOf(i), data, length, timestampOf(i));
+            expectedSize += FlightRecorder.RECORD_HEADER_SIZE + length;
+        }
+        assertEquals(ROLLOVER_RECORDS, recorder.getRecordCount());
+        assertEquals(0, recorder.getDroppedCount());
+        recorder.stopSession();
+        
+        assertTrue("Aucun changement de fenêtre : " + expectedSize, expectedSize > 4 * 1024 * 1024);
+        // Fichier tronqué à la taille écrite, sans zone préallouée
+        assertEquals(expectedSize, file.length());
+        assertEquals(ROLLOVER_RECORDS, readAll(file));
+    }
+    
+    @Test
+    public void readerStopsAtTheLastCompleteRecordOfACrashedFile() throws Exception {
+        File file = recorder.startSession(folder.newFolder("flight"));
+        byte[] data = new byte[NotificationRingBuffer.DEFAULT_SLOT_SIZE];
+        long written = FlightRecorder.FILE_HEADER_SIZE;
+        for (int i = 0; i < 1000; i++) {
+            int length = fill(data, i);
+            recorder.record(idOf(i), data, length, timestampOf(i));
+            written += FlightRecorder.RECORD_HEADER_SIZE + length;
+        }
+        recorder.flush();
+        // Image du fichier au moment d'un arrêt brutal : fenêtre préallouée, fin à zéro
+        File crashed = folder.newFile("crashed.bin");
+        Files.copy(file.toPath(), crashed.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        recorder.stopSession();
+        assertTrue(crashed.length() > written);
+        assertEquals(1000, readAll(crashed));
+        
+        // Dernier enregistrement coupé au milieu de ses octets, puis au milieu de son en-tête
+        int lastLength = fill(data, 999);
+        try (RandomAccessFile raf = new RandomAccessFile(crashed, "rw")) {
+            raf.setLength(written - lastLength / 2);
+        }
+        assertEquals(999, readAll(crashed));
+        try (RandomAccessFile raf = new RandomAccessFile(crashed, "rw")) {
+            raf.setLength(written - lastLength - FlightRecorder.RECORD_HEADER_SIZE / 2);
+        }
+        assertEquals(999, readAll(crashed));
+    }
+    
+    // Lit tout le fichier en vérifiant chaque enregistrement ; retourne leur nombre
+    private static int readAll(File file) throws Exception {
+        byte[] expected = new byte[NotificationRingBuffer.DEFAULT_SLOT_SIZE];
+        byte[] actual = new byte[NotificationRingBuffer.DEFAULT_SLOT_SIZE];
+        int count = 0;
+        try (FlightRecordReader reader = FlightRecordReader.open(file)) {
+            while (reader.next()) {
+                int length = fill(expected, count);
+                assertEquals("Horodatage " + count, timestampOf(count), reader.getTimestampNanos());
+                assertEquals("Caractéristique " + count, idOf(count), reader.getCharacteristicId());
+                assertEquals("Longueur " + count, length, reader.getLength());
+                assertEquals(length, reader.copyPayload(actual));
+                for (int b = 0; b < length; b++) {
+                    assertEquals("Octet " + b + " de " + count, expected[b], actual[b]);
+                }
+                // La vue sans copie montre les mêmes octets
+                assertEquals(expected[0], reader.getPayload().get(reader.getPayload().position()));
+                count++;
+            }
+            assertFalse(reader.next());
+        }
+        return count;
+    }
+    
+    // Longueurs de 1 à 34 octets (Cycling Power Measurement complète), contenu propre à chaque rang
+    private static int fill(byte[] data, int index) {
+        int length = 1 + index % 34;
+        for (int b = 0; b < length; b++) {
+            data[b] = (byte) (index * 31 + b);
+        }
+        return length;
+    }
+    
+    private static int idOf(int index) {
+        switch (index % 3) {
+            case 0: return 0x2A63;
+            case 1: return 0x2A37;
+            default: return 0x2A5B;
+        }
+    }
+    
+    private static long timestampOf(int index) {
+        return 1_000_000_000L + index * 2_500_000L;
+    }
+}
@@ -0,0 +1,178 @@
+package com.cyclingapp.indoor;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class HampelFilterTest {
+    
+    // Valeur à laquelle le filtre ramène les puissances plus grandes dans sa fenêtre
+    private static final int MAX_VALUE = 4095;
+    
+    @Test
+    public void isolatedSpikeIsReplacedByTheMedian() {
+        int[] values = steady(40);
+        values[20] = 2000;
+        int[] filtered = run(new HampelFilter(), values);
+        assertEquals(median(values, 20), filtered[20]);
+        assertEquals(1, countChanged(values, filtered));
+        assertMatchesReference(values);
+    }
+    
+    @Test
+    public void onePacketDropoutIsFilled() {
+        int[] values = steady(40);
+        values[25] = 0;
+        int[] filtered = run(new HampelFilter(), values);
+        assertEquals(median(values, 25), filtered[25]);
+        assertEquals(1, countChanged(values, filtered));
+        assertMatchesReference(values);
+    }
+    
+    @Test
+    public void levelChangePassesOnceItFillsHalfTheWindow() {
+        int[] values = new int[40];
+        Arrays.fill(values, 0, 20, 200);
+        Arrays.fill(values, 20, 40, 400);
+        int[] filtered = run(new HampelFilter(), values);
+        // Fenêtre de 9 : les 5 premières valeurs du nouveau palier sont prises pour des pics,
+        // la 6e trouve 5 valeurs à 400 W dans la fenêtre et passe
+        int half = HampelFilter.DEFAULT_WINDOW / 2 + 1;
+        for (int i = 20; i < 20 + half; i++) {
+            assertEquals("Valeur " + i, 200, filtered[i]);
+        }
+        for (int i = 20 + half; i < 40; i++) {
+            assertEquals("Valeur " + i, 400, filtered[i]);
+        }
+        assertMatchesReference(values);
+    }
+    
+    @Test
+    public void valuesAboveTheRangeAreCountedAtTheMaximum() {
+        int[] values = steady(40);
+        // Octets corrompus : puissance au-delà de toute valeur plausible
+        values[15] = 30000;
+        for (int i = 26; i < 40; i++) {
+            values[i] = 5000 + i;
+        }
+        int[] filtered = run(new HampelFilter(), values);
+        assertEquals(median(values, 15), filtered[15]);
+        // Une fois la fenêtre pleine de valeurs hors plage, elles passent telles quelles
+        assertEquals(values[39], filtered[39]);
+        assertMatchesReference(values);
+    }
+    
+    @Test
+    public void randomSequencesMatchSortedWindowReference() {
+        Random random = new Random(18);
+        for (int run = 0; run < 200; run++) {
+            int[] values = new int[300];
+            int level = 100 + random.nextInt(300);
+            for (int i = 0; i < values.length; i++) {
+                if (random.nextInt(60) == 0) {
+                    level = random.nextInt(600);
+                }
+                int roll = random.nextInt(40);
+                values[i] = roll == 0 ? 2000 + random.nextInt(8000)
+                    : roll == 1 ? 0
+                    : Math.max(0, level + random.nextInt(81) - 40);
+            }
+            assertMatchesReference(values);
+        }
+        // Fenêtre paire et seuil plus serré
+        int[] values = new int[2000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(700);
+        }
+        assertMatchesReference(values, new HampelFilter(10, 2.0, 50), 10, 2.0, 50);
+    }
+    
+    private static void assertMatchesReference(int[] values) {
+        assertMatchesReference(values, new HampelFilter(), HampelFilter.DEFAULT_WINDOW,
+            HampelFilter.DEFAULT_THRESHOLD, HampelFilter.DEFAULT_MIN_DEVIATION);
+    }
+    
+    private static void assertMatchesReference(int[] values, HampelFilter filter,
+                                               int windowSize, double threshold, int minDeviation) {
+        int[] expected = reference(values, windowSize, threshold, minDeviation);
+        int corrected = 0;
+        for (int i = 0; i < values.length; i++) {
+            assertEquals("Valeur " + i, expected[i], filter.filter(values[i]));
+            if (expected[i] != values[i]) {
+                corrected++;
+            }
+        }
+        assertEquals(corrected, filter.getCorrectedCount());
+    }
+    
+    // Même règle par tri de la fenêtre : médiane basse des valeurs précédentes (ramenées
+    // dans [0, MAX_VALUE]), MAD médiane basse des écarts à cette médiane
+    private static int[] reference(int[] values, int windowSize, double threshold, int minDeviation) {
+        int[] result = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            int from = Math.max(0, i - windowSize);
+            int size = i - from;
+            result[i] = values[i];
+            if (size > windowSize / 2) {
+                int[] window = new int[size];
+                for (int j = 0; j < size; j++) {
+                    window[j] = clamp(values[from + j]);
+                }
+                Arrays.sort(window);
+                int median = window[(size + 1) / 2 - 1];
+                int[] deviations = new int[size];
+                for (int j = 0; j < size; j++) {
+                    deviations[j] = Math.abs(window[j] - median);
+                }
+                Arrays.sort(deviations);
+                int mad = deviations[(size + 1) / 2 - 1];
+                double limit = Math.max(threshold * 1.4826 * mad, minDeviation);
+                if (Math.abs(clamp(values[i]) - median) > limit) {
+                    result[i] = median;
+                }
+            }
+        }
+        return result;
+    }
+    
+    // Médiane basse des valeurs de la fenêtre qui précède {@code index}
+    private static int median(int[] values, int index) {
+        int[] window = Arrays.copyOfRange(values, index - HampelFilter.DEFAULT_WINDOW, index);
+        Arrays.sort(window);
+        return window[(window.length + 1) / 2 - 1];
+    }
+    
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(value, MAX_VALUE));
+    }
+    
+    // Pédalage régulier autour de 200 W
+    private static int[] steady(int count) {
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = 195 + (i * 7) % 11;
+        }
+        return values;
+    }
+    
+    private static int[] run(HampelFilter filter, int[] values) {
+        int[] filtered = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            filtered[i] = filter.filter(values[i]);
+        }
+        return filtered;
+    }
+    
+    private static int countChanged(int[] values, int[] filtered) {
+        int count = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != filtered[i]) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
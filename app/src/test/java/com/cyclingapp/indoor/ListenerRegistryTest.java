@@ -0,0 +1,114 @@
+package com.cyclingapp.indoor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ListenerRegistryTest {
+    
+    @Test
+    public void latestCoalescesPendingSamples() {
+        ArrayDeque<Runnable> queue = new ArrayDeque<>();
+        List<SensorSample> received = new ArrayList<>();
+        ListenerRegistry registry = new ListenerRegistry();
+        registry.add(recorder(received), ListenerRegistry.DispatchMode.LATEST, queue::add);
+        
+        for (int i = 1; i <= 5; i++) {
+            registry.dispatchData(sample(i));
+        }
+        assertEquals(1, queue.size());
+        queue.poll().run();
+        assertEquals(1, received.size());
+        assertEquals(5, received.get(0).getTimestampNanos());
+        assertTrue(queue.isEmpty());
+    }
+    
+    @Test
+    public void sampleArrivingDuringDeliveryIsDeliveredOnce() {
+        ArrayDeque<Runnable> queue = new ArrayDeque<>();
+        List<SensorSample> received = new ArrayList<>();
+        ListenerRegistry registry = new ListenerRegistry();
+        SensorSample late = sample(2);
+        registry.add(new SensorDataListener() {
+            @Override
+            public void onDataReceived(SensorSample sample) {
+                received.add(sample);
+                if (received.size() == 1) {
+                    // Le thread d'ingestion publie pendant que l'UI traite le précédent
+                    registry.dispatchData(late);
+                }
+            }
+            
+            @Override
+            public void onConnectionStateChanged(boolean connected) {
+            }
+        }, ListenerRegistry.DispatchMode.LATEST, queue::add);
+        
+        registry.dispatchData(sample(1));
+        while (!queue.isEmpty()) {
+            queue.poll().run();
+        }
+        assertEquals(2, received.size());
+        assertSame(late, received.get(1));
+    }
+    
+    @Test
+    public void concurrentDispatchNeverDeliversASampleTwice() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        AtomicBoolean duplicate = new AtomicBoolean();
+        long[] last = {0};
+        ListenerRegistry registry = new ListenerRegistry();
+        registry.add(new SensorDataListener() {
+            @Override
+            public void onDataReceived(SensorSample sample) {
+                // Un seul thread de livraison : l'ordre doit être strictement croissant
+                if (sample.getTimestampNanos() <= last[0]) {
+                    duplicate.set(true);
+                }
+                last[0] = sample.getTimestampNanos();
+            }
+            
+            @Override
+            public void onConnectionStateChanged(boolean connected) {
+            }
+        }, ListenerRegistry.DispatchMode.LATEST, executor);
+        
+        int count = 1_000_000;
+        for (int i = 1; i <= count; i++) {
+            registry.dispatchData(sample(i));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertFalse("Échantillon livré deux fois", duplicate.get());
+        // Le dernier échantillon n'est jamais perdu
+        assertEquals(count, last[0]);
+    }
+    
+    private static SensorDataListener recorder(List<SensorSample> received) {
+        return new SensorDataListener() {
+            @Override
+            public void onDataReceived(SensorSample sample) {
+                received.add(sample);
+            }
+            
+            @Override
+            public void onConnectionStateChanged(boolean connected) {
+            }
+        };
+    }
+    
+    private static SensorSample sample(long timestampNanos) {
+        return new SensorSample(timestampNanos, true, 200, false, 0, false, 0, false, 0);
+    }
+}
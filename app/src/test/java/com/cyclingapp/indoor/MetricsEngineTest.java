@@ -0,0 +1,88 @@
+package com.cyclingapp.indoor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class MetricsEngineTest {
+    
+    @Test
+    public void zoneTimesKeepSubMillisecondRemainders() {
+        MetricsEngine engine = new MetricsEngine();
+        engine.startSession();
+        // Capteur à 3 Hz : 333 333 333 ns entre deux échantillons, 10 min tenues en zone 3
+        long periodNanos = 1_000_000_000L / 3;
+        int samples = 10 * 60 * 3;
+        for (int i = 0; i <= samples; i++) {
+            engine.update(i * periodNanos, 160, 80, 150);
+        }
+        // Tronqué à 333 ms par intervalle, le total perdait 0,6 s
+        assertEquals("0,0,600,0,0,0,0", engine.getPowerZones());
+        assertEquals("0,0,600,0,0,0", engine.getCadenceZones());
+        assertEquals("0,0,600,0,0", engine.getHeartRateZones());
+    }
+    
+    @Test
+    public void stoppedRiderOnADescentDoesNotMove() {
+        MetricsEngine engine = new MetricsEngine();
+        engine.setRider(75, -10);
+        engine.startSession();
+        long periodNanos = 250_000_000L;
+        int i = 0;
+        // 1 min à 200 W, puis plus de pédalage
+        for (; i < 240; i++) {
+            engine.update(i * periodNanos, 200, 85, 140);
+        }
+        assertTrue(engine.getCurrentSpeed() > 0);
+        for (; i < 240 + 4 * 5; i++) {
+            engine.update(i * periodNanos, 0, 0, 140);
+        }
+        // Délai DATA_TIMEOUT_MS dépassé : arrêt
+        assertEquals(0.0, engine.getCurrentSpeed(), 0.0);
+        double distance = engine.snapshot().getDistance();
+        for (; i < 480; i++) {
+            engine.update(i * periodNanos, 0, 0, 140);
+        }
+        assertEquals(0.0, engine.getCurrentSpeed(), 0.0);
+        // À -10 %, la roue libre donnerait encore environ 72 km/h, soit 1,1 km en 58 s
+        assertEquals(distance, engine.snapshot().getDistance(), 0.0);
+    }
+    
+    @Test
+    public void cadenceZonesFollowConfiguredBounds() {
+        MetricsEngine engine = new MetricsEngine();
+        engine.setCadenceBounds(new int[]{70, 80, 90, 100, 110});
+        engine.startSession();
+        long periodNanos = 250_000_000L;
+        int i = 0;
+        // 85 rpm : zone 4 avec les bandes par défaut, zone 3 avec celles-ci
+        for (; i <= 240; i++) {
+            engine.update(i * periodNanos, 200, 85, 140);
+        }
+        assertEquals("0,0,60,0,0,0", engine.getCadenceZones());
+        // Changement en cours de session : le temps déjà compté reste dans sa zone
+        engine.setCadenceBounds(ZoneHistogram.getDefaultCadenceBounds());
+        for (; i <= 480; i++) {
+            engine.update(i * periodNanos, 200, 85, 140);
+        }
+        assertEquals("0,0,60,60,0,0", engine.getCadenceZones());
+    }
+    
+    @Test
+    public void invalidCadenceBoundsAreRejected() {
+        assertEquals(null, ZoneHistogram.parseCadenceBounds("60,75,85,95"));
+        assertEquals(null, ZoneHistogram.parseCadenceBounds("60,75,75,95,105"));
+        assertEquals(null, ZoneHistogram.parseCadenceBounds("0,75,85,95,105"));
+        assertEquals(null, ZoneHistogram.parseCadenceBounds("60,75,85,95,300"));
+        assertEquals(null, ZoneHistogram.parseCadenceBounds("60;75"));
+        assertEquals("55,70,80,90,100",
+            ZoneHistogram.formatBounds(ZoneHistogram.parseCadenceBounds("55, 70,80,90,100")));
+        try {
+            new MetricsEngine().setCadenceBounds(new int[]{90, 80, 70, 60, 50});
+            fail("Bandes décroissantes acceptées");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.cyclingapp.indoor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Charge SPSC : un producteur et un consommateur sur des threads distincts,
+ * quelques millions de paquets dans une petite file pour forcer les
+ * débordements. Chaque paquet porte son numéro : le consommateur vérifie
+ * l'ordre et l'intégrité de chaque emplacement lu.
+ */
+public class NotificationRingBufferTest {
+    
+    private static final int PACKETS = 4_000_000;
+    private static final int CAPACITY = 64;
+    
+    @Test
+    public void dropNewestKeepsOrderAndAccountsForEveryPacket() throws Exception {
+        stress(NotificationRingBuffer.DropPolicy.DROP_NEWEST);
+    }
+    
+    @Test
+    public void dropOldestKeepsOrderAndAccountsForEveryPacket() throws Exception {
+        // Le producteur réclame la queue par CAS : un emplacement en cours de
+        // lecture et écrasé entre-temps ne doit jamais être livré
+        stress(NotificationRingBuffer.DropPolicy.DROP_OLDEST);
+    }
+    
+    @Test
+    public void dropNewestRejectsWhenFull() {
+        NotificationRingBuffer buffer = new NotificationRingBuffer(4, NotificationRingBuffer.DropPolicy.DROP_NEWEST);
+        byte[] data = new byte[4];
+        for (int seq = 0; seq < 6; seq++) {
+            fill(data, seq, 4);
+            assertEquals(seq < 4, buffer.offer(0, data, 4, seq));
+        }
+        assertEquals(2, buffer.getOverflowCount());
+        NotificationRingBuffer.Packet packet = new NotificationRingBuffer.Packet(buffer.getSlotSize());
+        assertTrue(buffer.poll(packet));
+        assertEquals(0, sequenceOf(packet));
+    }
+    
+    @Test
+    public void dropOldestOverwritesOldest() {
+        NotificationRingBuffer buffer = new NotificationRingBuffer(4, NotificationRingBuffer.DropPolicy.DROP_OLDEST);
+        byte[] data = new byte[4];
+        for (int seq = 0; seq < 6; seq++) {
+            fill(data, seq, 4);
+            assertTrue(buffer.offer(0, data, 4, seq));
+        }
+        assertEquals(2, buffer.getOverflowCount());
+        NotificationRingBuffer.Packet packet = new NotificationRingBuffer.Packet(buffer.getSlotSize());
+        for (int seq = 2; seq < 6; seq++) {
+            assertTrue(buffer.poll(packet));
+            assertEquals(seq, sequenceOf(packet));
+        }
+        assertFalse(buffer.poll(packet));
+    }
+    
+    @Test
+    public void malformedPacketsAreNotCountedAsOverflow() {
+        NotificationRingBuffer buffer = new NotificationRingBuffer(4, NotificationRingBuffer.DropPolicy.DROP_NEWEST);
+        byte[] data = new byte[buffer.getSlotSize() + 1];
+        assertFalse(buffer.offer(0, data, data.length, 0));
+        assertFalse(buffer.offer(0, data, -1, 0));
+        assertEquals(2, buffer.getRejectedCount());
+        assertEquals(0, buffer.getOverflowCount());
+        assertTrue(buffer.isEmpty());
+    }
+    
+    @Test
+    public void fullLengthPowerMeasurementFitsASlot() {
+        NotificationRingBuffer buffer = new NotificationRingBuffer(4, NotificationRingBuffer.DropPolicy.DROP_NEWEST);
+        // Cycling Power Measurement avec tous les champs optionnels : 34 octets
+        byte[] full = CyclingPowerDecoderTest.hex("FF 1F 90 01 64 34 12 03 02 01 00 00 08 FF FF 00 04"
+            + " F4 01 38 FF 40 01 E0 FF B4 00 00 0A 00 BE 00 02 01");
+        assertEquals(34, full.length);
+        assertTrue(buffer.offer(SensorParser.KIND_POWER, full, full.length, 7));
+        assertEquals(0, buffer.getRejectedCount());
+        
+        NotificationRingBuffer.Packet packet = new NotificationRingBuffer.Packet(buffer.getSlotSize());
+        assertTrue(buffer.poll(packet));
+        assertEquals(full.length, packet.length);
+        for (int i = 0; i < full.length; i++) {
+            assertEquals("Octet " + i, full[i], packet.data[i]);
+        }
+        CyclingPowerMeasurement out = new CyclingPowerMeasurement();
+        assertTrue(CyclingPowerDecoder.decode(packet.data, packet.length, out));
+        assertEquals(400, out.getInstantaneousPower());
+        assertEquals(190, out.getBottomDeadSpotAngle());
+    }
+    
+    private static void stress(NotificationRingBuffer.DropPolicy policy) throws Exception {
+        NotificationRingBuffer buffer = new NotificationRingBuffer(CAPACITY, policy);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long[] received = new long[1];
+        AtomicBoolean produced = new AtomicBoolean();
+        
+        Thread producer = new Thread(() -> {
+            byte[] data = new byte[buffer.getSlotSize()];
+            for (int seq = 0; seq < PACKETS; seq++) {
+                int length = lengthOf(seq);
+                fill(data, seq, length);
+                buffer.offer(seq % 3, data, length, seq * 1000L);
+            }
+            produced.set(true);
+        }, "producer");
+        Thread consumer = new Thread(() -> {
+            NotificationRingBuffer.Packet packet = new NotificationRingBuffer.Packet(buffer.getSlotSize());
+            int last = -1;
+            try {
+                while (true) {
+                    if (!buffer.poll(packet)) {
+                        if (produced.get() && buffer.isEmpty()) {
+                            return;
+                        }
+                        continue;
+                    }
+                    int seq = sequenceOf(packet);
+                    if (seq <= last) {
+                        fail("Paquet " + seq + " reçu après " + last);
+                    }
+                    assertPacket(packet, seq);
+                    last = seq;
+                    received[0]++;
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        }, "consumer");
+        
+        consumer.start();
+        producer.start();
+        producer.join();
+        consumer.join(60_000);
+        assertFalse("Consommateur bloqué", consumer.isAlive());
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        // Chaque paquet est soit livré, soit compté comme perdu, une seule fois
+        assertEquals(PACKETS, received[0] + buffer.getOverflowCount());
+        assertEquals(0, buffer.getRejectedCount());
+        assertTrue("Aucun débordement : la file n'a pas été saturée", buffer.getOverflowCount() > 0);
+    }
+    
+    private static int lengthOf(int seq) {
+        return 4 + seq % 17;
+    }
+    
+    // Numéro de séquence en tête, puis des octets qui en dépendent
+    private static void fill(byte[] data, int seq, int length) {
+        data[0] = (byte) seq;
+        data[1] = (byte) (seq >> 8);
+        data[2] = (byte) (seq >> 16);
+        data[3] = (byte) (seq >> 24);
+        for (int i = 4; i < length; i++) {
+            data[i] = (byte) (seq * 31 + i);
+        }
+    }
+    
+    private static int sequenceOf(NotificationRingBuffer.Packet packet) {
+        byte[] data = packet.data;
+        return (data[0] & 0xFF) | (data[1] & 0xFF) << 8 | (data[2] & 0xFF) << 16 | (data[3] & 0xFF) << 24;
+    }
+    
+    private static void assertPacket(NotificationRingBuffer.Packet packet, int seq) {
+        if (packet.length != lengthOf(seq) || packet.channel != seq % 3 || packet.timestampNanos != seq * 1000L) {
+            fail("Emplacement incohérent pour le paquet " + seq);
+        }
+        for (int i = 4; i < packet.length; i++) {
+            if (packet.data[i] != (byte) (seq * 31 + i)) {
+                fail("Contenu écrasé dans le paquet " + seq);
+            }
+        }
+    }
+}
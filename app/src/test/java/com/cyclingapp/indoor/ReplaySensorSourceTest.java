@@ -0,0 +1,106 @@
+package com.cyclingapp.indoor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ReplaySensorSourceTest {
+    
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void replayingAFileTwiceYieldsTheSameSamples() throws Exception {
+        File file = recordRide(folder.newFolder("flight"));
+        
+        List<String> first = replay(file);
+        List<String> second = replay(file);
+        
+        // Puissance à 4 Hz pendant 2 min : au moins un échantillon par paquet de puissance
+        assertTrue("Échantillons : " + first.size(), first.size() >= 480);
+        assertEquals(first, second);
+    }
+    
+    @Test
+    public void rejectedPacketDoesNotBlockCompletion() throws Exception {
+        byte[] heartRate = {0, 120};
+        // Plus grand qu'un emplacement de la file : refusé, jamais traité
+        byte[] oversized = new byte[NotificationRingBuffer.DEFAULT_SLOT_SIZE + 1];
+        ReplaySensorSource source = new ReplaySensorSource(
+            new long[]{NANOS_PER_SECOND, 2 * NANOS_PER_SECOND, 3 * NANOS_PER_SECOND},
+            new int[]{SensorParser.KIND_HEART_RATE, SensorParser.KIND_HEART_RATE, SensorParser.KIND_HEART_RATE},
+            new byte[][]{heartRate, oversized, heartRate},
+            ReplaySensorSource.SPEED_MAX);
+        source.start();
+        boolean completed = source.awaitCompletion(5000);
+        long invalid = source.getInvalidPacketCount();
+        source.stop();
+        
+        assertTrue("Le rejeu attend un paquet qui ne sera jamais traité", completed);
+        assertEquals(1, invalid);
+        assertFalse(source.isConnected());
+    }
+    
+    // Deux minutes de séance : puissance et cadence à 4 Hz, cardio à 1 Hz, plus une
+    // caractéristique inconnue que le rejeu doit ignorer
+    private static File recordRide(File directory) throws Exception {
+        FlightRecorder recorder = FlightRecorder.getInstance();
+        File file = recorder.startSession(directory);
+        int crankRevolutions = 0;
+        int crankTime = 0;
+        for (int i = 0; i < 480; i++) {
+            long timestamp = 5 * NANOS_PER_SECOND + i * NANOS_PER_SECOND / 4;
+            int watts = 180 + (i * 37) % 90;
+            if (i % 2 == 0) {
+                // Un tour de pédalier toutes les 0,5 s (90 rpm à peu près), temps en 1/1024 s
+                crankRevolutions++;
+                crankTime = (crankTime + 512 + i % 3 * 8) & 0xFFFF;
+            }
+            byte[] power = {0x20, 0, (byte) watts, (byte) (watts >> 8),
+                (byte) crankRevolutions, (byte) (crankRevolutions >> 8), (byte) crankTime, (byte) (crankTime >> 8)};
+            recorder.record(0x2A63, power, power.length, timestamp);
+            if (i % 4 == 0) {
+                byte[] heartRate = {0, (byte) (130 + i / 16)};
+                recorder.record(0x2A37, heartRate, heartRate.length, timestamp + 1000);
+            }
+            if (i % 40 == 0) {
+                byte[] battery = {87};
+                recorder.record(0x2A19, battery, battery.length, timestamp + 2000);
+            }
+        }
+        recorder.stopSession();
+        return file;
+    }
+    
+    private static List<String> replay(File file) throws Exception {
+        List<String> samples = Collections.synchronizedList(new ArrayList<>());
+        ReplaySensorSource source = ReplaySensorSource.fromFile(file, ReplaySensorSource.SPEED_MAX);
+        source.addListener(new SensorDataListener() {
+            @Override
+            public void onDataReceived(SensorSample sample) {
+                samples.add(sample.toString());
+            }
+            
+            @Override
+            public void onConnectionStateChanged(boolean connected) {
+            }
+        });
+        source.start();
+        assertTrue("Rejeu inachevé", source.awaitCompletion(10000));
+        source.stop();
+        synchronized (samples) {
+            return new ArrayList<>(samples);
+        }
+    }
+}
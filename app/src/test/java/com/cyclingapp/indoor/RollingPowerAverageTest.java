@@ -0,0 +1,107 @@
+package com.cyclingapp.indoor;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class RollingPowerAverageTest {
+    
+    private static final double EPSILON = 1e-9;
+    
+    @Test
+    public void eachValueCountsForTheTimeItHeld() {
+        RollingPowerAverage average = new RollingPowerAverage(3000);
+        average.add(0, 100);
+        assertEquals(100, average.getAverage(), EPSILON);
+        // Fenêtre pas encore pleine : 100 W pendant 1 s, 200 W pendant 1,5 s
+        average.add(1000, 200);
+        average.add(2500, 300);
+        assertEquals((1000 * 100 + 1500 * 200) / 2500.0, average.getAverage(), EPSILON);
+        // 100 W est sorti de la fenêtre, 200 W y reste 1,5 s et 300 W 1,5 s
+        average.add(4000, 300);
+        assertEquals(250, average.getAverage(), EPSILON);
+        // Notification rapprochée : 300 W gagne 100 ms, 200 W en perd autant
+        average.add(4100, 400);
+        assertEquals((1400 * 200 + 1600 * 300) / 3000.0, average.getAverage(), EPSILON);
+    }
+    
+    @Test
+    public void segmentsLeaveTheWindow() {
+        RollingPowerAverage average = new RollingPowerAverage(3000);
+        average.add(0, 100);
+        average.add(1000, 200);
+        average.add(2000, 300);
+        average.add(3000, 400);
+        assertEquals(200, average.getAverage(), EPSILON);
+        average.add(4000, 0);
+        assertEquals(300, average.getAverage(), EPSILON);
+        // Le segment à 200 W n'est plus qu'à moitié dans la fenêtre
+        average.add(4500, 0);
+        assertEquals((500 * 200 + 1000 * 300 + 1000 * 400) / 3000.0, average.getAverage(), EPSILON);
+        // Coupure plus longue que la fenêtre : seule la dernière valeur reste
+        average.add(20000, 150);
+        assertEquals(0, average.getAverage(), EPSILON);
+        average.add(21500, 150);
+        assertEquals((1500 * 0 + 1500 * 150) / 3000.0, average.getAverage(), EPSILON);
+    }
+    
+    @Test
+    public void irregularSpacingMatchesReference() {
+        Random random = new Random(12);
+        for (long window : new long[]{3000, 10000, 30000}) {
+            RollingPowerAverage average = new RollingPowerAverage(window);
+            int count = 600;
+            long[] times = new long[count];
+            int[] powers = new int[count];
+            long time = 0;
+            for (int i = 0; i < count; i++) {
+                // Entre 20 ms et 1,5 s, avec de temps en temps deux notifications au même instant
+                time += random.nextInt(8) == 0 ? 0 : 20 + random.nextInt(1480);
+                times[i] = time;
+                powers[i] = random.nextInt(600);
+                average.add(time, powers[i]);
+                assertEquals("Fenêtre " + window + ", échantillon " + i,
+                    reference(times, powers, i, window), average.getAverage(), EPSILON);
+            }
+        }
+    }
+    
+    @Test
+    public void growingWhileWrappedKeepsTheWindow() {
+        // Prévu pour une notification toutes les 250 ms : 256 segments au départ
+        RollingPowerAverage average = new RollingPowerAverage(60000);
+        int count = 600 + 12000;
+        long[] times = new long[count];
+        int[] powers = new int[count];
+        long time = 0;
+        for (int i = 0; i < count; i++) {
+            // 150 s à 4 Hz (le tampon tourne), puis 100 Hz : il grandit alors que sa tête n'est pas en 0
+            time += i < 600 ? 250 : 10;
+            times[i] = time;
+            powers[i] = 100 + (i * 7919) % 400;
+            average.add(time, powers[i]);
+            if (i % 97 == 0 || i == count - 1) {
+                assertEquals("Échantillon " + i, reference(times, powers, i, 60000), average.getAverage(), EPSILON);
+            }
+        }
+    }
+    
+    // Intégrale de la puissance, chaque valeur tenue jusqu'à la suivante, sur la fenêtre
+    // qui finit au dernier échantillon (ou sur la durée couverte si elle est plus courte)
+    private static double reference(long[] times, int[] powers, int last, long window) {
+        long start = times[last] - window;
+        double energy = 0;
+        long covered = 0;
+        for (int i = 0; i < last; i++) {
+            long from = Math.max(times[i], start);
+            long to = times[i + 1];
+            if (to > from) {
+                energy += (double) (to - from) * powers[i];
+                covered += to - from;
+            }
+        }
+        return covered > 0 ? energy / covered : powers[last];
+    }
+}
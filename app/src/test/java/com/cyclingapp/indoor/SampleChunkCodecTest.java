@@ -0,0 +1,163 @@
+package com.cyclingapp.indoor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class SampleChunkCodecTest {
+    
+    @Test
+    public void roundTripsARideChunkByChunk() {
+        Random random = new Random(7);
+        SampleBuffer ride = new SampleBuffer(16);
+        int second = 0;
+        for (int i = 0; i < 1000; i++) {
+            // Trous de quelques secondes, puissances et vitesses qui montent et descendent
+            second += random.nextInt(10) == 0 ? 1 + random.nextInt(30) : 1;
+            ride.add(second, random.nextInt(1500), random.nextInt(130), random.nextInt(6000) / 100f,
+                random.nextInt(5) == 0 ? 0 : 90 + random.nextInt(100));
+        }
+        
+        List<SampleChunk> chunks = SampleChunk.split(ride);
+        SampleBuffer decoded = new SampleBuffer(16);
+        // Un seul décodeur réutilisé, comme SessionDatabaseHelper.getSamples
+        SampleChunkDecoder decoder = new SampleChunkDecoder();
+        for (SampleChunk chunk : chunks) {
+            decoder.reset(chunk.getData());
+            assertEquals(chunk.getSampleCount(), decoder.getSampleCount());
+            decoder.decodeInto(decoded);
+        }
+        assertSameSamples(ride, decoded);
+    }
+    
+    @Test
+    public void roundTripsExtremeValues() {
+        SampleBuffer samples = new SampleBuffer(4);
+        samples.add(0, 0, 0, 0f, 0);
+        samples.add(1, Integer.MAX_VALUE, 255, 99.99f, 255);
+        // Delta maximal dans les deux sens
+        samples.add(2, Integer.MIN_VALUE + 1, 0, -12.5f, -1);
+        samples.add(Integer.MAX_VALUE, 0, 1, 0.01f, 0);
+        assertSameSamples(samples, decode(SampleChunkCodec.encode(samples, 0, samples.size())));
+    }
+    
+    @Test
+    public void emptyChunkHasNoSamples() {
+        SampleChunkDecoder decoder = new SampleChunkDecoder();
+        decoder.reset(SampleChunkCodec.encode(new SampleBuffer(1), 0, 0));
+        assertEquals(0, decoder.getSampleCount());
+        assertFalse(decoder.next());
+    }
+    
+    @Test
+    public void stableSecondsTakeOneBytePerValue() {
+        SampleBuffer samples = new SampleBuffer(SampleChunkCodec.CHUNK_SECONDS);
+        for (int i = 0; i < SampleChunkCodec.CHUNK_SECONDS; i++) {
+            samples.add(i, 250, 90, 35.2f, 150);
+        }
+        byte[] chunk = SampleChunkCodec.encode(samples, 0, samples.size());
+        // En-tête de 7 octets + 5 colonnes de 60 octets ; le premier delta de puissance,
+        // cadence, vitesse et FC (depuis 0) prend 2 octets
+        assertEquals(7 + 5 * 60 + 4, chunk.length);
+    }
+    
+    @Test
+    public void corruptedChunksAreRejected() {
+        SampleBuffer samples = new SampleBuffer(3);
+        samples.add(0, 200, 80, 30f, 140);
+        samples.add(1, 210, 82, 30.5f, 141);
+        samples.add(2, 190, 81, 29.8f, 142);
+        byte[] valid = SampleChunkCodec.encode(samples, 0, samples.size());
+        
+        // Tronqué dans l'en-tête, puis dans les colonnes
+        assertRejected(Arrays.copyOf(valid, 3));
+        assertRejected(Arrays.copyOf(valid, valid.length - 1));
+        // Version inconnue
+        assertRejected(patch(valid, 0, 2));
+        // Taille de colonne négative (varint de 5 octets, bit de signe)
+        assertRejected(withHeader(3, 0xFFFFFFF0, 3, 3, 3, 3));
+        // Taille plus grande que le bloc, et somme qui déborde en int
+        assertRejected(withHeader(1, 1000, 1, 1, 1, 1));
+        assertRejected(withHeader(1, Integer.MAX_VALUE, Integer.MAX_VALUE, 1, 1, 1));
+        // Plus d'échantillons annoncés que d'octets dans une colonne
+        assertRejected(withHeader(4, 3, 3, 3, 3, 3));
+    }
+    
+    @Test
+    public void readsNeverCrossIntoTheNextColumn() {
+        // Colonne des secondes d'un octet dont la valeur continue (bit de suite) :
+        // la lecture s'arrêtait dans la colonne des puissances
+        byte[] chunk = {1, 1, 1, 1, 1, 1, 1, (byte) 0x81, 0x02, 0, 0, 0};
+        SampleChunkDecoder decoder = new SampleChunkDecoder();
+        decoder.reset(chunk);
+        try {
+            decoder.next();
+            fail("Lecture hors de la colonne acceptée");
+        } catch (IllegalArgumentException expected) {
+            // attendu
+        }
+    }
+    
+    private static SampleBuffer decode(byte[] chunk) {
+        SampleChunkDecoder decoder = new SampleChunkDecoder();
+        decoder.reset(chunk);
+        SampleBuffer out = new SampleBuffer(decoder.getSampleCount() + 1);
+        decoder.decodeInto(out);
+        return out;
+    }
+    
+    private static void assertSameSamples(SampleBuffer expected, SampleBuffer actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals("seconde " + i, expected.getSecond(i), actual.getSecond(i));
+            assertEquals("puissance " + i, expected.getPower(i), actual.getPower(i));
+            assertEquals("cadence " + i, expected.getCadence(i), actual.getCadence(i));
+            // Vitesse stockée au centième de km/h
+            assertEquals("vitesse " + i, expected.getSpeed(i), actual.getSpeed(i), 0.005f);
+            assertEquals("FC " + i, expected.getHeartRate(i), actual.getHeartRate(i));
+        }
+    }
+    
+    private static void assertRejected(byte[] chunk) {
+        SampleChunkDecoder decoder = new SampleChunkDecoder();
+        try {
+            decoder.reset(chunk);
+            decoder.decodeInto(new SampleBuffer(4));
+            fail("Bloc invalide accepté: " + Arrays.toString(chunk));
+        } catch (IllegalArgumentException expected) {
+            // SessionDatabaseHelper.getSamples ignore le bloc
+        }
+    }
+    
+    private static byte[] patch(byte[] chunk, int index, int value) {
+        byte[] copy = chunk.clone();
+        copy[index] = (byte) value;
+        return copy;
+    }
+    
+    // En-tête valide (version, nombre, tailles) suivi de 3 octets nuls par colonne
+    private static byte[] withHeader(int count, int... lengths) {
+        byte[] out = new byte[64];
+        int position = putVarint(out, 0, SampleChunkCodec.VERSION);
+        position = putVarint(out, position, count);
+        for (int length : lengths) {
+            position = putVarint(out, position, length);
+        }
+        return Arrays.copyOf(out, position + 3 * lengths.length);
+    }
+    
+    private static int putVarint(byte[] out, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            out[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[position++] = (byte) value;
+        return position;
+    }
+}
@@ -0,0 +1,208 @@
+package com.cyclingapp.indoor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Flux de capteurs simulés à travers la {@link SensorPipeline} complète
+ * (file, parsers, fusion, listeners), sur des horodatages synthétiques.
+ */
+public class SensorFusionTest {
+    
+    private static final long MS = 1_000_000L;
+    private static final int POWER = SensorParser.KIND_POWER;
+    private static final int HEART_RATE = SensorParser.KIND_HEART_RATE;
+    private static final int CSC = SensorParser.KIND_SPEED_CADENCE;
+    
+    private final SensorParser[] parsers = new SensorParser[SensorParser.KIND_COUNT];
+    private final List<SensorSample> samples = new ArrayList<>();
+    private SensorPipeline pipeline;
+    private long published;
+    
+    @Before
+    public void setUp() {
+        pipeline = new SensorPipeline(channel -> parsers[channel], 1024,
+            NotificationRingBuffer.DropPolicy.DROP_NEWEST);
+        pipeline.setPowerFilter(null);
+        pipeline.addListener(new SensorDataListener() {
+            @Override
+            public void onDataReceived(SensorSample sample) {
+                synchronized (samples) {
+                    samples.add(sample);
+                }
+            }
+            
+            @Override
+            public void onConnectionStateChanged(boolean connected) {
+            }
+        }, ListenerRegistry.DispatchMode.INLINE, null);
+    }
+    
+    @Test
+    public void powerPacesTheStreamAndCarriesLatestHeartRate() throws Exception {
+        parsers[POWER] = new PowerSensorParser();
+        parsers[HEART_RATE] = new HeartRateSensorParser();
+        // Puissance à 4 Hz, cardio à 1 Hz décalée de 100 ms
+        for (long t = 0; t < 10_000; t += 50) {
+            if (t % 250 == 0) {
+                publish(POWER, power(200 + (int) (t / 250)), t);
+            }
+            if (t % 1000 == 100) {
+                publish(HEART_RATE, heartRate(120 + (int) (t / 1000)), t);
+            }
+        }
+        List<SensorSample> out = drain();
+        
+        // Un échantillon par paquet de puissance, aucun pour les paquets cardio
+        assertEquals(40, out.size());
+        for (int i = 0; i < out.size(); i++) {
+            SensorSample sample = out.get(i);
+            long t = sample.getTimestampNanos() / MS;
+            assertEquals(i * 250, t);
+            assertEquals(200 + i, sample.getPower());
+            if (t < 100) {
+                assertFalse(sample.hasHeartRate());
+            } else {
+                assertTrue(sample.hasHeartRate());
+                assertEquals(120 + (t - 100) / 1000, sample.getHeartRate());
+            }
+        }
+    }
+    
+    @Test
+    public void withoutPowerMeterSamplesAreEmittedEvery250Ms() throws Exception {
+        parsers[HEART_RATE] = new HeartRateSensorParser();
+        parsers[CSC] = new CscSensorParser();
+        int revolutions = 0;
+        for (long t = 0; t < 5_000; t += 50) {
+            publish(HEART_RATE, heartRate(130), t);
+            if (t % 500 == 0) {
+                // Un tour de pédalier toutes les 500 ms : 120 tr/min
+                publish(CSC, crank(revolutions++, (int) (t * 1024 / 1000)), t);
+            }
+        }
+        List<SensorSample> out = drain();
+        
+        assertEquals(20, out.size());
+        for (int i = 0; i < out.size(); i++) {
+            SensorSample sample = out.get(i);
+            assertEquals(i * 250 * MS, sample.getTimestampNanos());
+            assertFalse(sample.hasPower());
+            assertTrue(sample.hasHeartRate());
+        }
+        assertEquals(120.0, out.get(out.size() - 1).getCadence(), 0.5);
+    }
+    
+    @Test
+    public void removingThePowerMeterFallsBackToTheTickWithoutAGap() throws Exception {
+        parsers[POWER] = new PowerSensorParser();
+        parsers[HEART_RATE] = new HeartRateSensorParser();
+        for (long t = 0; t < 10_000; t += 50) {
+            if (t == 5_000) {
+                // Capteur de puissance déconnecté : ses paquets ne sont plus lus
+                sync();
+                parsers[POWER] = null;
+                pipeline.removeSensor(POWER);
+            }
+            if (t % 100 == 0) {
+                publish(HEART_RATE, heartRate(140), t);
+            }
+            if (t % 250 == 0) {
+                publish(POWER, power(250), t);
+            }
+        }
+        List<SensorSample> out = drain();
+        
+        long previous = -1;
+        for (SensorSample sample : out) {
+            long t = sample.getTimestampNanos() / MS;
+            if (previous >= 0) {
+                assertTrue("Trou de " + (t - previous) + " ms à " + t, t - previous <= 300);
+            }
+            previous = t;
+            if (t == 0) {
+                // Le cardio est arrivé avant la première puissance
+                continue;
+            }
+            assertEquals("à " + t + " ms", t < 5_000, sample.hasPower());
+            assertTrue(sample.hasHeartRate());
+        }
+        assertTrue("Dernier échantillon à " + previous + " ms", previous >= 9_600);
+    }
+    
+    @Test
+    public void removingTheHeartRateStrapDropsItFromTheNextSample() throws Exception {
+        parsers[POWER] = new PowerSensorParser();
+        parsers[HEART_RATE] = new HeartRateSensorParser();
+        for (long t = 0; t < 4_000; t += 250) {
+            if (t == 2_000) {
+                sync();
+                parsers[HEART_RATE] = null;
+                pipeline.removeSensor(HEART_RATE);
+            }
+            publish(POWER, power(180), t);
+            publish(HEART_RATE, heartRate(110), t + 10);
+        }
+        for (SensorSample sample : drain()) {
+            long t = sample.getTimestampNanos() / MS;
+            assertTrue(sample.hasPower());
+            // Sans retrait explicite, la valeur resterait « fraîche » 3 s
+            assertEquals("à " + t + " ms", t > 0 && t < 2_000, sample.hasHeartRate());
+        }
+    }
+    
+    @Test
+    public void staleValuesDisappearAfterThreeSeconds() throws Exception {
+        parsers[HEART_RATE] = new HeartRateSensorParser();
+        parsers[CSC] = new CscSensorParser();
+        publish(HEART_RATE, heartRate(100), 0);
+        for (long t = 0; t <= 4_000; t += 250) {
+            publish(CSC, crank(0, 0), t);
+        }
+        for (SensorSample sample : drain()) {
+            long t = sample.getTimestampNanos() / MS;
+            assertEquals("à " + t + " ms", t <= 3_000, sample.hasHeartRate());
+        }
+    }
+    
+    private void publish(int kind, byte[] packet, long millis) {
+        pipeline.publish(kind, packet, packet.length, millis * MS);
+        published++;
+    }
+    
+    // Attend que le thread d'ingestion ait traité tous les paquets publiés
+    private void sync() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (pipeline.getProcessedPacketCount() < published && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+    
+    private List<SensorSample> drain() throws InterruptedException {
+        sync();
+        pipeline.shutdown();
+        assertEquals(published, pipeline.getProcessedPacketCount());
+        synchronized (samples) {
+            return new ArrayList<>(samples);
+        }
+    }
+    
+    private static byte[] power(int watts) {
+        return new byte[]{0, 0, (byte) watts, (byte) (watts >> 8)};
+    }
+    
+    private static byte[] heartRate(int bpm) {
+        return new byte[]{0, (byte) bpm};
+    }
+    
+    private static byte[] crank(int revolutions, int eventTime) {
+        return new byte[]{2, (byte) revolutions, (byte) (revolutions >> 8), (byte) eventTime, (byte) (eventTime >> 8)};
+    }
+}
@@ -0,0 +1,165 @@
+package com.cyclingapp.indoor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SensorPipelineTest {
+    
+    @Test
+    public void reconfiguringNeverRunsTwoIngestionThreads() throws Exception {
+        AtomicInteger inside = new AtomicInteger();
+        AtomicBoolean overlap = new AtomicBoolean();
+        SensorParser parser = new SensorParser() {
+            @Override
+            public int getKind() {
+                return KIND_HEART_RATE;
+            }
+            
+            @Override
+            public boolean onPacket(byte[] data, int length, long timestampNanos, SensorFusion fusion) {
+                if (inside.incrementAndGet() > 1) {
+                    overlap.set(true);
+                }
+                // Assez long pour qu'un remplacement tombe pendant un paquet
+                long end = System.nanoTime() + 20_000;
+                while (System.nanoTime() < end) {
+                    Thread.yield();
+                }
+                inside.decrementAndGet();
+                return true;
+            }
+            
+            @Override
+            public void reset() {
+            }
+        };
+        SensorPipeline pipeline = new SensorPipeline(channel -> parser, 64,
+            NotificationRingBuffer.DropPolicy.DROP_OLDEST);
+        AtomicBoolean producing = new AtomicBoolean(true);
+        Thread producer = new Thread(() -> {
+            byte[] packet = {0, 72};
+            long timestamp = 0;
+            while (producing.get()) {
+                pipeline.publish(SensorParser.KIND_HEART_RATE, packet, packet.length, timestamp += 1_000_000);
+            }
+        });
+        producer.start();
+        for (int i = 0; i < 200; i++) {
+            pipeline.configureIngestion(64, NotificationRingBuffer.DropPolicy.DROP_OLDEST);
+            Thread.sleep(1);
+        }
+        producing.set(false);
+        producer.join();
+        pipeline.shutdown();
+        assertFalse("Deux threads d'ingestion ont traité des paquets en même temps", overlap.get());
+    }
+    
+    @Test
+    public void malformedPacketsCountAsInvalid() {
+        SensorPipeline pipeline = new SensorPipeline(channel -> null, 16,
+            NotificationRingBuffer.DropPolicy.DROP_NEWEST);
+        byte[] oversized = new byte[NotificationRingBuffer.DEFAULT_SLOT_SIZE + 1];
+        assertFalse(pipeline.publish(SensorParser.KIND_POWER, oversized, oversized.length, 0));
+        assertEquals(1, pipeline.getInvalidPacketCount());
+        assertEquals(0, pipeline.getDroppedPacketCount());
+        pipeline.shutdown();
+    }
+    
+    @Test
+    public void blockedPublisherDoesNotHoldTheProducerLock() throws Exception {
+        CountDownLatch parserEntered = new CountDownLatch(1);
+        CountDownLatch releaseParser = new CountDownLatch(1);
+        SensorParser parser = new HeartRateStub() {
+            @Override
+            public boolean onPacket(byte[] data, int length, long timestampNanos, SensorFusion fusion) {
+                parserEntered.countDown();
+                try {
+                    releaseParser.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            }
+        };
+        SensorPipeline pipeline = new SensorPipeline(channel -> parser, 4,
+            NotificationRingBuffer.DropPolicy.DROP_NEWEST);
+        byte[] packet = {0, 72};
+        // Le consommateur reste bloqué dans le premier paquet, puis la file se remplit
+        pipeline.publish(SensorParser.KIND_HEART_RATE, packet, packet.length, 0);
+        assertTrue(parserEntered.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 4; i++) {
+            assertTrue(pipeline.publish(SensorParser.KIND_HEART_RATE, packet, packet.length, 0));
+        }
+        
+        CountDownLatch blockedDone = new CountDownLatch(1);
+        Thread blocked = new Thread(() -> {
+            try {
+                pipeline.publishBlocking(SensorParser.KIND_HEART_RATE, packet, packet.length, 0);
+                blockedDone.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        blocked.start();
+        Thread.sleep(50);
+        
+        // Un autre producteur n'attend pas derrière l'appel bloqué : la file pleine le refuse aussitôt
+        CountDownLatch otherDone = new CountDownLatch(1);
+        Thread other = new Thread(() -> {
+            pipeline.publish(SensorParser.KIND_HEART_RATE, packet, packet.length, 0);
+            otherDone.countDown();
+        });
+        other.start();
+        boolean otherReturned = otherDone.await(1, TimeUnit.SECONDS);
+        
+        releaseParser.countDown();
+        assertTrue("publishBlocking n'a pas repris quand la file s'est vidée", blockedDone.await(5, TimeUnit.SECONDS));
+        other.join();
+        pipeline.shutdown();
+        assertTrue("publish est resté bloqué derrière publishBlocking", otherReturned);
+    }
+    
+    @Test
+    public void timeToFirstSampleIgnoresReplayedTimestamps() throws Exception {
+        SensorPipeline pipeline = new SensorPipeline(
+            channel -> channel == SensorParser.KIND_POWER ? new PowerSensorParser() : null, 16,
+            NotificationRingBuffer.DropPolicy.DROP_NEWEST);
+        long start = System.nanoTime();
+        pipeline.startTimeToFirstSample(start);
+        // Paquet rejoué : horodaté au début de l'enregistrement, bien avant la mesure
+        byte[] power = {0, 0, (byte) 200, 0};
+        pipeline.publishBlocking(SensorParser.KIND_POWER, power, power.length, 1_000_000L);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (pipeline.getTimeToFirstSampleNanos() < 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        long elapsed = System.nanoTime() - start;
+        long measured = pipeline.getTimeToFirstSampleNanos();
+        pipeline.shutdown();
+        assertTrue("Délai mesuré : " + measured, measured >= 0 && measured <= elapsed);
+    }
+    
+    private static class HeartRateStub implements SensorParser {
+        @Override
+        public int getKind() {
+            return KIND_HEART_RATE;
+        }
+        
+        @Override
+        public boolean onPacket(byte[] data, int length, long timestampNanos, SensorFusion fusion) {
+            return true;
+        }
+        
+        @Override
+        public void reset() {
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.cyclingapp.indoor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32;
+
+public class SessionJournalReaderTest {
+    
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void stopsAtTheFirstBatchWithABadChecksum() throws Exception {
+        File file = journalWithSamples(0, 10);
+        appendBatch(file, samples(10, 10), 5000L, false);
+        appendBatch(file, samples(20, 10), 9000L, true);
+        // Lot valide après le lot corrompu : ignoré lui aussi
+        appendBatch(file, samples(30, 10), 12000L, false);
+        
+        try (SessionJournalReader reader = SessionJournalReader.open(file)) {
+            assertEquals(20, readSamples(reader));
+            assertEquals(5000L, reader.getEndTimeMillis());
+        }
+    }
+    
+    @Test
+    public void dropsATornTail() throws Exception {
+        File file = journalWithSamples(0, 10);
+        appendBatch(file, samples(10, 10), 5000L, false);
+        long validLength = file.length();
+        appendBatch(file, samples(20, 10), 9000L, false);
+        long fullLength = file.length();
+        
+        // Arrêt au milieu des échantillons du dernier lot, puis au milieu de son point de contrôle
+        for (long length : new long[]{validLength + SessionJournal.SAMPLE_SIZE * 4 + 3,
+                fullLength - SessionJournal.CHECKPOINT_SIZE / 2, fullLength - 1}) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(length);
+            }
+            try (SessionJournalReader reader = SessionJournalReader.open(file)) {
+                assertEquals("Longueur " + length, 20, readSamples(reader));
+                assertEquals(5000L, reader.getEndTimeMillis());
+            }
+        }
+    }
+    
+    @Test
+    public void sessionIdRecordReplacesTheHeaderId() throws Exception {
+        SessionJournal journal = SessionJournal.create(folder.getRoot(), 0, 1000L);
+        journal.appendSample(0, 200, 90, 140);
+        journal.appendSessionId(42);
+        journal.appendSample(NANOS_PER_SECOND, 201, 90, 140);
+        File file = journal.getFile();
+        journal.close();
+        assertNull(journal.getFailure());
+        // Identifiant dans un lot corrompu : pas pris en compte
+        ByteBuffer record = allocate(SessionJournal.SESSION_ID_SIZE);
+        record.put(SessionJournal.TYPE_SESSION_ID).putLong(99);
+        appendBatch(file, record.array(), 5000L, true);
+        
+        try (SessionJournalReader reader = SessionJournalReader.open(file)) {
+            assertEquals(2, readSamples(reader));
+            assertEquals(42, reader.getSessionId());
+        }
+        try (SessionJournalReader reader = SessionJournalReader.open(file)) {
+            assertEquals(42, SessionRecovery.replay(reader, new SampleBuffer(16)).getId());
+        }
+    }
+    
+    @Test
+    public void headerIdIsKeptWithoutSessionIdRecord() throws Exception {
+        File file = journalWithSamples(7, 5);
+        try (SessionJournalReader reader = SessionJournalReader.open(file)) {
+            assertEquals(5, readSamples(reader));
+            assertEquals(7, reader.getSessionId());
+            assertEquals(1000L, reader.getStartTimeMillis());
+        }
+    }
+    
+    @Test
+    public void failedCreationIsReportedWithoutThrowing() throws Exception {
+        // Le répertoire du journal est un fichier : création impossible
+        File notADirectory = folder.newFile("journal");
+        SessionJournal journal = SessionJournal.create(notADirectory, 0, 1000L);
+        journal.appendSample(0, 200, 90, 140);
+        journal.close();
+        assertTrue(journal.getFailure() != null);
+        assertFalse(journal.getFile().exists());
+    }
+    
+    // Journal écrit par SessionJournal : un seul lot, validé à la fermeture
+    private File journalWithSamples(long sessionId, int count) throws Exception {
+        SessionJournal journal = SessionJournal.create(folder.getRoot(), sessionId, 1000L);
+        for (int i = 0; i < count; i++) {
+            journal.appendSample(i * NANOS_PER_SECOND, 200 + i, 90, 140);
+        }
+        File file = journal.getFile();
+        journal.close();
+        assertNull(journal.getFailure());
+        return file;
+    }
+    
+    private static byte[] samples(int first, int count) {
+        ByteBuffer records = allocate(SessionJournal.SAMPLE_SIZE * count);
+        for (int i = first; i < first + count; i++) {
+            records.put(SessionJournal.TYPE_SAMPLE)
+                .putLong(i * NANOS_PER_SECOND)
+                .putShort((short) (200 + i))
+                .putShort((short) 90)
+                .putShort((short) 140);
+        }
+        return records.array();
+    }
+    
+    // Ajoute un lot suivi de son point de contrôle, comme SessionJournal.commit()
+    private static void appendBatch(File file, byte[] records, long wallClock, boolean corruptChecksum) throws Exception {
+        CRC32 crc = new CRC32();
+        crc.update(records);
+        ByteBuffer checkpoint = allocate(SessionJournal.CHECKPOINT_SIZE);
+        checkpoint.put(SessionJournal.TYPE_CHECKPOINT)
+            .putLong(wallClock)
+            .putInt(records.length)
+            .putInt((int) crc.getValue() ^ (corruptChecksum ? 1 : 0));
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(records);
+            out.write(checkpoint.array());
+        }
+    }
+    
+    // Lit tous les échantillons en vérifiant leur ordre et leur contenu
+    private static int readSamples(SessionJournalReader reader) {
+        int count = 0;
+        while (reader.next()) {
+            assertTrue(reader.isSample());
+            assertEquals(count * NANOS_PER_SECOND, reader.getTimestampNanos());
+            assertEquals(200 + count, reader.getPower());
+            count++;
+        }
+        return count;
+    }
+    
+    private static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
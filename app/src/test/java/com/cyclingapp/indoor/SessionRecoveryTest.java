@@ -0,0 +1,132 @@
+package com.cyclingapp.indoor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+public class SessionRecoveryTest {
+    
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void invalidSettingsFallBackToDefaults() throws Exception {
+        SessionJournal journal = SessionJournal.create(folder.getRoot(), 0, 1000L);
+        // Réglages refusés par les setters du moteur : la sortie doit quand même être récupérée
+        journal.appendSettings(0, 0, 0, -1, 0, Float.NaN, 0, new int[]{0, 0, 0, 0, 0});
+        for (int i = 0; i < 120; i++) {
+            journal.appendSample(i * NANOS_PER_SECOND / 2, 200, 90, 140);
+        }
+        File file = journal.getFile();
+        journal.close();
+        
+        SampleBuffer samples = new SampleBuffer(64);
+        SessionJournalReader reader = SessionJournalReader.open(file);
+        Session session;
+        try {
+            session = SessionRecovery.replay(reader, samples);
+        } finally {
+            reader.close();
+        }
+        
+        assertEquals(SpeedModel.DEFAULT_RIDER_WEIGHT_KG, session.getUserWeight());
+        assertEquals(60, samples.size());
+        // Vitesse calculée avec le modèle par défaut (pente nulle), pas NaN
+        float speed = samples.getSpeed(samples.size() - 1);
+        assertTrue("Vitesse : " + speed, speed > 0 && !Float.isNaN(speed));
+        // Bandes de cadence par défaut : 90 rpm en zone 4
+        assertEquals(0, ZoneHistogram.decode(session.getCadenceZones())[2]);
+        assertTrue(ZoneHistogram.decode(session.getCadenceZones())[3] > 0);
+    }
+    
+    @Test
+    public void journaledCadenceBoundsAreReplayed() throws Exception {
+        SessionJournal journal = SessionJournal.create(folder.getRoot(), 0, 1000L);
+        journal.appendSettings(250, 185, 250, 20000, 75, 0f, 30000, new int[]{70, 80, 95, 100, 110});
+        for (int i = 0; i < 120; i++) {
+            journal.appendSample(i * NANOS_PER_SECOND / 2, 200, 90, 140);
+        }
+        File file = journal.getFile();
+        journal.close();
+        
+        SessionJournalReader reader = SessionJournalReader.open(file);
+        Session session;
+        try {
+            session = SessionRecovery.replay(reader, new SampleBuffer(64));
+        } finally {
+            reader.close();
+        }
+        
+        // 90 rpm : zone 3 avec les bandes journalisées (zone 4 par défaut)
+        assertEquals("0,0,60,0,0,0", session.getCadenceZones());
+    }
+    
+    @Test
+    public void replayMatchesTheLiveEngine() throws Exception {
+        MetricsEngine live = new MetricsEngine();
+        applySettings(live, 250, 185, new int[]{60, 75, 85, 95, 105});
+        live.startSession();
+        SessionJournal journal = SessionJournal.create(folder.getRoot(), 0, 1000L);
+        appendSettings(journal, 250, 185, new int[]{60, 75, 85, 95, 105});
+        
+        // 40 min à 4 Hz : intervalles au-dessus de CP, coupures de capteur, réglages changés à mi-parcours
+        long periodNanos = NANOS_PER_SECOND / 4;
+        long time = 0;
+        for (int i = 0; i < 40 * 60 * 4; i++) {
+            if (i == 20 * 60 * 4) {
+                applySettings(live, 280, 190, new int[]{70, 80, 90, 100, 110});
+                appendSettings(journal, 280, 190, new int[]{70, 80, 90, 100, 110});
+            }
+            time += i % 997 == 0 ? 4 * NANOS_PER_SECOND : periodNanos + (i % 7) * 1000000L;
+            int power = (i / 240) % 2 == 0 ? 320 + i % 50 : 140 + i % 30;
+            int cadence = 80 + (i / 40) % 25;
+            int heartRate = 120 + (i / 60) % 50;
+            live.update(time, power, cadence, heartRate);
+            journal.appendSample(time, power, cadence, heartRate);
+        }
+        live.stopSession();
+        Session expected = new Session();
+        live.writeSummary(expected);
+        File file = journal.getFile();
+        journal.close();
+        
+        Session replayed;
+        try (SessionJournalReader reader = SessionJournalReader.open(file)) {
+            replayed = SessionRecovery.replay(reader, new SampleBuffer(64));
+        }
+        
+        assertEquals(expected.getDistance(), replayed.getDistance(), 0.0);
+        assertEquals(expected.getCalories(), replayed.getCalories(), 0.0);
+        assertEquals(expected.getAvgPower(), replayed.getAvgPower(), 0.0);
+        assertEquals(expected.getNormalizedPower(), replayed.getNormalizedPower(), 0.0);
+        assertEquals(expected.getTrainingStressScore(), replayed.getTrainingStressScore(), 0.0);
+        assertEquals(expected.getMeanMaxCurve(), replayed.getMeanMaxCurve());
+        assertEquals(expected.getPowerZones(), replayed.getPowerZones());
+        assertEquals(expected.getCadenceZones(), replayed.getCadenceZones());
+        assertEquals(expected.getHeartRateZones(), replayed.getHeartRateZones());
+        assertTrue(expected.getWPrimeBalanceSeries().length > 0);
+        assertArrayEquals(expected.getWPrimeBalanceSeries(), replayed.getWPrimeBalanceSeries());
+    }
+    
+    // Mêmes réglages des deux côtés : moteur en direct (comme onResume) et journal
+    private static void applySettings(MetricsEngine engine, int ftp, int criticalPower, int[] cadenceBounds) {
+        engine.setCustomWindowMillis(20000);
+        engine.setFtp(ftp);
+        engine.setMaxHeartRate(190);
+        engine.setCadenceBounds(cadenceBounds);
+        engine.setCriticalPower(criticalPower, 18000);
+        engine.setRider(72, 1.5);
+    }
+    
+    private static void appendSettings(SessionJournal journal, int ftp, int criticalPower, int[] cadenceBounds) {
+        journal.appendSettings(ftp, 190, criticalPower, 18000, 72, 1.5f, 20000, cadenceBounds);
+    }
+}
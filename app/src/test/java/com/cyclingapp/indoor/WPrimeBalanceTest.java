@@ -0,0 +1,152 @@
+package com.cyclingapp.indoor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class WPrimeBalanceTest {
+    
+    private static final int CP = 250;
+    private static final int W_PRIME = 20000;
+    
+    @Test
+    public void depletesLinearlyAboveCriticalPower() {
+        WPrimeBalance model = new WPrimeBalance(CP, W_PRIME);
+        for (int i = 0; i < 200; i++) {
+            model.onSecond(350);
+        }
+        // 100 J par seconde au-dessus de CP : W' épuisé en 200 s
+        int[] series = WPrimeBalance.decodeSeries(model.encodeSeries());
+        assertEquals(200, series.length);
+        for (int i = 0; i < series.length; i++) {
+            assertEquals(W_PRIME - 100 * (i + 1), series[i]);
+        }
+        assertEquals(0.0, model.getBalance(), 1e-9);
+    }
+    
+    @Test
+    public void recoveryFollowsTheClosedFormSolution() {
+        WPrimeBalance model = new WPrimeBalance(CP, W_PRIME);
+        for (int i = 0; i < 100; i++) {
+            model.onSecond(350);
+        }
+        // Récupération à 150 W : W'bal(t) = W' - (W' - W'bal0)·exp(-(CP - P)·t / W')
+        for (int t = 1; t <= 600; t++) {
+            model.onSecond(150);
+            double expected = W_PRIME - 10000 * Math.exp(-(CP - 150) * t / (double) W_PRIME);
+            assertEquals("t = " + t + " s", expected, model.getBalance(), 1e-6);
+        }
+    }
+    
+    @Test
+    public void matchesReferenceIntervalWorkout() {
+        // 5 × (3 min à 300 W / 2 min à 150 W), référence calculée intervalle par intervalle
+        WPrimeBalance model = new WPrimeBalance(CP, W_PRIME);
+        int[] series;
+        double reference = W_PRIME;
+        int second = 0;
+        double deepest = W_PRIME;
+        for (int rep = 0; rep < 5; rep++) {
+            for (int i = 0; i < 180; i++) {
+                model.onSecond(300);
+            }
+            second += 180;
+            reference -= (300 - CP) * 180;
+            deepest = Math.min(deepest, reference);
+            series = WPrimeBalance.decodeSeries(model.encodeSeries());
+            assertEquals("fin de l'effort " + (rep + 1), reference, series[second - 1], 1.0);
+            
+            for (int i = 0; i < 120; i++) {
+                model.onSecond(150);
+            }
+            second += 120;
+            reference = W_PRIME - (W_PRIME - reference) * Math.exp(-(CP - 150) * 120 / (double) W_PRIME);
+            series = WPrimeBalance.decodeSeries(model.encodeSeries());
+            assertEquals("fin de la récupération " + (rep + 1), reference, series[second - 1], 1.0);
+        }
+        // La récupération ne compense pas l'effort : le minimum est atteint à la dernière répétition
+        assertEquals(deepest, model.getMinimum(), 1e-6);
+        assertTrue(deepest < W_PRIME - (300 - CP) * 180 * 2);
+    }
+    
+    @Test
+    public void noRecoveryAtCriticalPowerAndNeverAboveWPrime() {
+        WPrimeBalance model = new WPrimeBalance(CP, W_PRIME);
+        for (int i = 0; i < 60; i++) {
+            model.onSecond(400);
+        }
+        double depleted = model.getBalance();
+        for (int i = 0; i < 600; i++) {
+            model.onSecond(CP);
+        }
+        assertEquals(depleted, model.getBalance(), 1e-9);
+        
+        // Longue récupération à 0 W : tend vers W' sans le dépasser
+        for (int i = 0; i < 36000; i++) {
+            model.onSecond(0);
+            assertTrue(model.getBalance() <= W_PRIME);
+        }
+        assertEquals(W_PRIME, model.getBalance(), 1e-3);
+    }
+    
+    @Test
+    public void overshootGoesNegativeAndCpChangeKeepsState() {
+        WPrimeBalance model = new WPrimeBalance(CP, W_PRIME);
+        for (int i = 0; i < 50; i++) {
+            model.onSecond(750);
+        }
+        // 500 J/s pendant 50 s : 5 kJ au-delà de W'
+        assertEquals(-5000.0, model.getBalance(), 1e-9);
+        assertEquals(-5000.0, model.getMinimum(), 1e-9);
+        
+        WPrimeBalance retested = new WPrimeBalance(300, 15000);
+        retested.copyFrom(model);
+        assertEquals(-5000.0, retested.getBalance(), 1e-9);
+        assertEquals(50, retested.getSeconds());
+        retested.onSecond(200);
+        double expected = 15000 - 20000 * Math.exp(-100 / 15000.0);
+        assertEquals(expected, retested.getBalance(), 1e-6);
+        assertEquals(51, WPrimeBalance.decodeSeries(retested.encodeSeries()).length);
+    }
+    
+    @Test
+    public void matchesPublishedDifferentialModel() {
+        // Skiba et al., Eur J Appl Physiol 115:703-713 (2015) : en dessous de CP,
+        // W'bal = W' - (W' - W'bal0)·exp(-D_CP·t / W'), soit une constante de temps W'/D_CP.
+        // Valeurs attendues évaluées hors de l'application sur chaque intervalle entier
+        // (3 × (60 s à 380 W / 30 s à 100 W) puis 300 s à 100 W ; CP 250 W, W' 20 kJ)
+        double[] expected = {12200.0, 13771.57, 5971.57, 8798.07, 998.07, 4826.65};
+        WPrimeBalance model = new WPrimeBalance(CP, W_PRIME);
+        int index = 0;
+        for (int rep = 0; rep < 3; rep++) {
+            for (int i = 0; i < 60; i++) {
+                model.onSecond(380);
+            }
+            assertEquals("fin de l'effort " + (rep + 1), expected[index++], model.getBalance(), 0.01);
+            for (int i = 0; i < 30; i++) {
+                model.onSecond(100);
+            }
+            assertEquals("fin de la récupération " + (rep + 1), expected[index++], model.getBalance(), 0.01);
+        }
+        for (int i = 0; i < 300; i++) {
+            model.onSecond(100);
+        }
+        assertEquals(18400.74, model.getBalance(), 0.01);
+        assertEquals(998.07, model.getMinimum(), 0.01);
+        int[] series = WPrimeBalance.decodeSeries(model.encodeSeries());
+        assertEquals(570, series.length);
+        assertEquals(998, series[239]);
+        assertEquals(18401, series[569]);
+        
+        // Constante de temps W'/D_CP : à 50 W (D_CP = 200 W), 100 s pour un déficit divisé par e
+        WPrimeBalance recovery = new WPrimeBalance(CP, W_PRIME);
+        for (int i = 0; i < 100; i++) {
+            recovery.onSecond(350);
+        }
+        for (int i = 0; i < 100; i++) {
+            recovery.onSecond(50);
+        }
+        assertEquals(16321.21, recovery.getBalance(), 0.01);
+    }
+}
@@ -0,0 +1,57 @@
+package com.cyclingapp.indoor;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Un paquet de pédalier par appel, sur une séquence pré-calculée à 90 tr/min
+ * (un nouvel événement environ un paquet sur trois, rollover compris).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CadenceEstimatorBenchmark {
+    
+    private static final int PACKETS = 4096;
+    private static final long NOTIFY_NANOS = 250_000_000L;
+    
+    private final int[] revolutions = new int[PACKETS];
+    private final int[] eventTimes = new int[PACKETS];
+    private final CadenceEstimator estimator = new CadenceEstimator();
+    private int index;
+    private long now;
+    
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < PACKETS; i++) {
+            long events = (long) (i * NOTIFY_NANOS * 90.0 / 60e9);
+            revolutions[i] = (int) (events & 0xFFFF);
+            eventTimes[i] = (int) (Math.round(events * 60.0 / 90.0 * 1024) & 0xFFFF);
+        }
+    }
+    
+    @Benchmark
+    public double update() {
+        int i = index;
+        index = (i + 1) & (PACKETS - 1);
+        if (index == 0) {
+            // Fin de la séquence : on repart sans faire croire à un retour en arrière
+            estimator.reset();
+        }
+        now += NOTIFY_NANOS;
+        return estimator.update(revolutions[i], eventTimes[i], now);
+    }
+}
@@ -0,0 +1,47 @@
+package com.cyclingapp.indoor;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Décodage d'une notification 0x2A63 : paquet courant (puissance + pédalier)
+ * et paquet avec tous les champs. Objectif : bien moins d'une microseconde,
+ * sans allocation (à vérifier avec -prof gc).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CyclingPowerDecoderBenchmark {
+    
+    private final byte[] crankPacket = {0x20, 0x00, (byte) 0xFA, 0x00, 0x0A, 0x00, 0x00, 0x08};
+    private final byte[] fullPacket = {
+        (byte) 0xFF, 0x1F, (byte) 0x90, 0x01, 0x64, 0x34, 0x12, 0x03, 0x02, 0x01, 0x00, 0x00, 0x08,
+        (byte) 0xFF, (byte) 0xFF, 0x00, 0x04, (byte) 0xF4, 0x01, 0x38, (byte) 0xFF, 0x40, 0x01,
+        (byte) 0xE0, (byte) 0xFF, (byte) 0xB4, 0x00, 0x00, 0x0A, 0x00, (byte) 0xBE, 0x00, 0x02, 0x01
+    };
+    private final CyclingPowerMeasurement out = new CyclingPowerMeasurement();
+    
+    @Benchmark
+    public int decodeCrankPacket() {
+        CyclingPowerDecoder.decode(crankPacket, crankPacket.length, out);
+        return out.getInstantaneousPower() + out.getLastCrankEventTime();
+    }
+    
+    @Benchmark
+    public int decodeFullPacket() {
+        CyclingPowerDecoder.decode(fullPacket, fullPacket.length, out);
+        return out.getPresentFields() + out.getMaxAngle();
+    }
+}
@@ -0,0 +1,62 @@
+package com.cyclingapp.indoor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Coût de FlightRecorder.record() sur le thread GATT : une notification de
+ * puissance (8 octets) par appel, changements de fenêtre mappée compris.
+ * Un fichier neuf par itération, supprimé ensuite.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlightRecorderBenchmark {
+    
+    private final FlightRecorder recorder = FlightRecorder.getInstance();
+    private final byte[] packet = {0x20, 0, (byte) 250, 0, 10, 0, 0, 8};
+    private File directory;
+    private long timestamp;
+    
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("flight-bench").toFile();
+        recorder.startSession(directory);
+    }
+    
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        recorder.stopSession();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+    
+    @Benchmark
+    public void record() {
+        timestamp += 250_000_000L;
+        recorder.record(0x2A63, packet, packet.length, timestamp);
+    }
+}
@@ -0,0 +1,55 @@
+package com.cyclingapp.indoor;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Une valeur de puissance filtrée par appel, selon la taille de fenêtre, sur
+ * un flux bruité avec 1 % de pics à 2 000 W et 1 % de paquets à 0 W.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HampelFilterBenchmark {
+    
+    private static final int SAMPLES = 4096;
+    
+    @Param({"9", "31", "121"})
+    public int window;
+    
+    private final int[] power = new int[SAMPLES];
+    private HampelFilter filter;
+    private int index;
+    
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < SAMPLES; i++) {
+            int glitch = random.nextInt(100);
+            power[i] = glitch == 0 ? 2000 : glitch == 1 ? 0 : 220 + (int) (random.nextGaussian() * 25);
+        }
+        filter = new HampelFilter(window, HampelFilter.DEFAULT_THRESHOLD, HampelFilter.DEFAULT_MIN_DEVIATION);
+    }
+    
+    @Benchmark
+    public int filter() {
+        int i = index;
+        index = (i + 1) & (SAMPLES - 1);
+        return filter.filter(power[i]);
+    }
+}
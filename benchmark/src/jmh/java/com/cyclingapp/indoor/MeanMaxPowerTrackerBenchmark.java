@@ -0,0 +1,61 @@
+package com.cyclingapp.indoor;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Coût par seconde de la courbe mean-max sur une série synthétique de 10 h
+ * à 1 Hz, avec les durées par défaut ou une courbe complète de 5 s à 1 h.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MeanMaxPowerTrackerBenchmark {
+    
+    private static final int SERIES_SECONDS = 10 * 3600;
+    
+    @Param({"default", "full"})
+    public String durations;
+    
+    private final double[] watts = new double[SERIES_SECONDS];
+    private MeanMaxPowerTracker tracker;
+    
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < SERIES_SECONDS; i++) {
+            // Effort qui décroît lentement, avec des sprints de 10 s toutes les 10 min
+            double base = 260 - i / 400.0;
+            watts[i] = i % 600 < 10 ? 700 : base + random.nextGaussian() * 20;
+        }
+        tracker = "full".equals(durations)
+            ? new MeanMaxPowerTracker(5, 10, 30, 60, 120, 300, 600, 1200, 1800, 3600)
+            : new MeanMaxPowerTracker(MeanMaxPowerTracker.DEFAULT_DURATIONS);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SERIES_SECONDS)
+    public double series() {
+        tracker.reset();
+        for (int i = 0; i < SERIES_SECONDS; i++) {
+            tracker.onSecond(watts[i]);
+        }
+        return tracker.getBest(tracker.getDurationCount() - 1);
+    }
+}
@@ -0,0 +1,87 @@
+package com.cyclingapp.indoor;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Échantillons intégrés par seconde : une sortie synthétique de 3 h à 4 Hz
+ * (intervalles, cardio, trous de capteur) rejouée en entier, une mise à
+ * jour isolée en régime établi, et une mise à jour suivie d'un instantané.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsEngineBenchmark {
+    
+    private static final int RIDE_SAMPLES = 3 * 3600 * 4;
+    private static final long SAMPLE_NANOS = 250_000_000L;
+    
+    private final long[] timestamps = new long[RIDE_SAMPLES];
+    private final int[] power = new int[RIDE_SAMPLES];
+    private final int[] cadence = new int[RIDE_SAMPLES];
+    private final int[] heartRate = new int[RIDE_SAMPLES];
+    private final MetricsEngine engine = new MetricsEngine();
+    private int index;
+    private long offsetNanos;
+    
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        long t = 0;
+        for (int i = 0; i < RIDE_SAMPLES; i++) {
+            // Intervalles de 5 min à 300 W entre des blocs à 180 W
+            boolean hard = (i / (5 * 60 * 4)) % 2 == 1;
+            power[i] = (hard ? 300 : 180) + random.nextInt(41) - 20;
+            cadence[i] = (hard ? 95 : 85) + random.nextInt(7) - 3;
+            heartRate[i] = hard ? 165 : 140;
+            // Un trou de 5 s toutes les 20 min
+            t += i % (20 * 60 * 4) == 0 ? 5_000_000_000L : SAMPLE_NANOS;
+            timestamps[i] = t;
+        }
+        engine.startSession();
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(RIDE_SAMPLES)
+    public MetricsSnapshot ride() {
+        MetricsEngine ride = new MetricsEngine();
+        ride.startSession();
+        for (int i = 0; i < RIDE_SAMPLES; i++) {
+            ride.update(timestamps[i], power[i], cadence[i], heartRate[i]);
+        }
+        ride.stopSession();
+        return ride.snapshot();
+    }
+    
+    @Benchmark
+    public void update() {
+        int i = index;
+        if (++index == RIDE_SAMPLES) {
+            // La sortie est rejouée à la suite, l'horloge continue d'avancer
+            index = 0;
+            offsetNanos += timestamps[RIDE_SAMPLES - 1];
+        }
+        engine.update(offsetNanos + timestamps[i], power[i], cadence[i], heartRate[i]);
+    }
+    
+    @Benchmark
+    public MetricsSnapshot updateAndSnapshot() {
+        update();
+        return engine.snapshot();
+    }
+}
@@ -0,0 +1,54 @@
+package com.cyclingapp.indoor;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Coût par seconde du Normalized Power sur une session de 6 h à 1 Hz,
+ * lecture de NP, IF et TSS en fin de session comprise.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NormalizedPowerCalculatorBenchmark {
+    
+    private static final int SESSION_SECONDS = 6 * 3600;
+    private static final int FTP = 250;
+    
+    private final double[] watts = new double[SESSION_SECONDS];
+    private final NormalizedPowerCalculator calculator = new NormalizedPowerCalculator();
+    
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < SESSION_SECONDS; i++) {
+            // Blocs de 3 min alternés, avec quelques secondes en roue libre
+            watts[i] = random.nextInt(50) == 0 ? 0 : ((i / 180) % 2 == 0 ? 170 : 290) + random.nextGaussian() * 15;
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SESSION_SECONDS)
+    public double session() {
+        calculator.reset();
+        for (int i = 0; i < SESSION_SECONDS; i++) {
+            calculator.onSecond(watts[i]);
+        }
+        return calculator.getTrainingStressScore(FTP) + calculator.getIntensityFactor(FTP);
+    }
+}
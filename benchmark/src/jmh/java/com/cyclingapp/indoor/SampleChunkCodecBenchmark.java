@@ -0,0 +1,66 @@
+package com.cyclingapp.indoor;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encodage d'un bloc de 60 s (flush de SampleRecorder) et décodage d'une
+ * session d'une heure avec un décodeur réutilisé (SessionDatabaseHelper.getSamples).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SampleChunkCodecBenchmark {
+    
+    private static final int SESSION_SECONDS = 3600;
+    
+    private final SampleBuffer session = new SampleBuffer(SESSION_SECONDS);
+    private final SampleBuffer decoded = new SampleBuffer(SESSION_SECONDS);
+    private final SampleChunkDecoder decoder = new SampleChunkDecoder();
+    private byte[][] chunks;
+    
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        int power = 200;
+        for (int second = 0; second < SESSION_SECONDS; second++) {
+            power = Math.max(0, power + random.nextInt(21) - 10);
+            session.add(second, power, 85 + random.nextInt(7), 30f + power / 40f, 130 + second / 120);
+        }
+        List<SampleChunk> split = SampleChunk.split(session);
+        chunks = new byte[split.size()][];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = split.get(i).getData();
+        }
+    }
+    
+    @Benchmark
+    public byte[] encodeChunk() {
+        return SampleChunkCodec.encode(session, 0, SampleChunkCodec.CHUNK_SECONDS);
+    }
+    
+    @Benchmark
+    public int decodeSession() {
+        decoded.clear();
+        for (byte[] chunk : chunks) {
+            decoder.reset(chunk);
+            decoder.decodeInto(decoded);
+        }
+        return decoded.size();
+    }
+}
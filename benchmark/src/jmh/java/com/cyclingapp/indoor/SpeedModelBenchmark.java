@@ -0,0 +1,76 @@
+package com.cyclingapp.indoor;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Une vitesse par appel : lecture dans la table du {@link SpeedModel} contre
+ * l'ancien calcul par Math.pow de MainActivity, et coût de reconstruction de
+ * la table quand un réglage change.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpeedModelBenchmark {
+    
+    private static final int SAMPLES = 4096;
+    
+    private final int[] power = new int[SAMPLES];
+    private final int[] cadence = new int[SAMPLES];
+    private final SpeedModel model = new SpeedModel(SpeedModel.DEFAULT_RIDER_WEIGHT_KG, 0.0);
+    private int index;
+    
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < SAMPLES; i++) {
+            power[i] = 50 + random.nextInt(500);
+            cadence[i] = 60 + random.nextInt(50);
+        }
+    }
+    
+    @Benchmark
+    public double table() {
+        int i = index;
+        index = (i + 1) & (SAMPLES - 1);
+        return model.speedKmh(power[i]);
+    }
+    
+    @Benchmark
+    public double pow() {
+        int i = index;
+        index = (i + 1) & (SAMPLES - 1);
+        return powSpeed(power[i], cadence[i]);
+    }
+    
+    @Benchmark
+    public SpeedModel rebuild() {
+        int i = index;
+        index = (i + 1) & (SAMPLES - 1);
+        return new SpeedModel(60 + (i & 31), 0.0);
+    }
+    
+    // Formule remplacée (MainActivity.calculateSpeed avant le modèle physique)
+    private static double powSpeed(int power, int cadence) {
+        if (cadence == 0 || power == 0) {
+            return 0.0;
+        }
+        double speedFromPower = Math.pow(power / 3.0, 1.0 / 3.0);
+        double cadenceInfluence = Math.min(cadence / 90.0, 1.2);
+        return speedFromPower * cadenceInfluence;
+    }
+}
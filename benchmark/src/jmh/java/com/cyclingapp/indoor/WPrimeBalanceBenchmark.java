@@ -0,0 +1,53 @@
+package com.cyclingapp.indoor;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Coût par seconde du W' balance sur une séance d'intervalles d'une heure
+ * (efforts au-dessus de CP, récupérations en dessous), série par seconde comprise.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WPrimeBalanceBenchmark {
+    
+    private static final int SESSION_SECONDS = 3600;
+    
+    private final double[] watts = new double[SESSION_SECONDS];
+    private final WPrimeBalance model = new WPrimeBalance(WPrimeBalance.DEFAULT_CP, WPrimeBalance.DEFAULT_W_PRIME);
+    
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < SESSION_SECONDS; i++) {
+            // 3 min à 320 W, 2 min à 150 W
+            watts[i] = (i % 300 < 180 ? 320 : 150) + random.nextGaussian() * 15;
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SESSION_SECONDS)
+    public double session() {
+        model.reset();
+        for (int i = 0; i < SESSION_SECONDS; i++) {
+            model.onSecond(watts[i]);
+        }
+        return model.getMinimum();
+    }
+}